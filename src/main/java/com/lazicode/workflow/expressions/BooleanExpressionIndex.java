@@ -0,0 +1,406 @@
+package com.lazicode.workflow.expressions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.Opcode;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+/**
+ * Posting-list index over boolean subscriptions for sparse "which rules
+ * match" queries. Each subscription is compiled and rewritten into
+ * disjunctive normal form; every conjunction is indexed under the variables
+ * it requires to be true, together with the number of such variables.
+ *
+ * An event is the set of variables that are true; every other variable is
+ * false. Matching walks only the posting lists of the true variables and
+ * counts hits per conjunction, so its cost scales with the number of
+ * candidate conjunctions rather than the number of subscriptions. The only
+ * exception is conjunctions made entirely of negated variables, which are
+ * candidates for every event.
+ *
+ * Subscriptions can be inserted and removed at any time. Instances are not
+ * thread-safe, including concurrent matching.
+ */
+public final class BooleanExpressionIndex {
+
+    /**
+     * Maximum number of conjunctions a single subscription may expand to.
+     */
+    public static final int MAX_CONJUNCTIONS = 256;
+
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private final List<PostingList> positive = new ArrayList<>();
+    private final List<PostingList> negative = new ArrayList<>();
+    private final PostingList negativeOnly = new PostingList();
+    // Per-symbol state, indexed by symbol id
+    private int[] seenEpoch = new int[16];
+
+    // Per-conjunction state, indexed by conjunction id
+    private int[] required = new int[16];
+    private int[] owner = new int[16];
+    private int[] hits = new int[16];
+    private int[] hitEpoch = new int[16];
+    private int[] blockedEpoch = new int[16];
+    private boolean[] alive = new boolean[16];
+    private final List<int[]> conjunctionPositive = new ArrayList<>();
+    private final List<int[]> conjunctionNegative = new ArrayList<>();
+
+    // Per-subscription state, indexed by subscription id
+    private final List<int[]> subscriptions = new ArrayList<>();
+    private int[] matchedEpoch = new int[16];
+
+    private int conjunctionCount;
+    private int liveSubscriptions;
+    private int epoch;
+
+    /**
+     * Indexes a boolean subscription.
+     *
+     * @param expression A boolean expression whose variables are all booleans
+     *                   and which uses only logic operators.
+     * @return The subscription id reported by {@link #match(Collection)}.
+     * @throws InvalidExpression If the expression is not purely logical or
+     *                           expands to more than {@link #MAX_CONJUNCTIONS}
+     *                           conjunctions.
+     */
+    public int insert(Expression expression) throws InvalidExpression {
+        CompiledExpression program = expression.compile();
+        if (program.getResultType() != ValueType.BOOLEAN) {
+            throw new InvalidExpression("Only boolean expressions can be indexed: " + expression.getExpressionString());
+        }
+        if (program.getSlotCount() > Long.SIZE) {
+            throw new InvalidExpression("Expression references more than " + Long.SIZE + " variables.");
+        }
+        List<long[]> dnf = toDnf(program);
+
+        String[] symbols = program.getSymbols();
+        int subscription = subscriptions.size();
+        int[] conjunctionIds = new int[dnf.size()];
+        for (int i = 0; i < conjunctionIds.length; i++) {
+            conjunctionIds[i] = addConjunction(subscription,
+                    globalIds(dnf.get(i)[0], symbols), globalIds(dnf.get(i)[1], symbols));
+        }
+        subscriptions.add(conjunctionIds);
+        if (matchedEpoch.length <= subscription) {
+            matchedEpoch = Arrays.copyOf(matchedEpoch, subscription * 2 + 1);
+        }
+        liveSubscriptions++;
+        return subscription;
+    }
+
+    /**
+     * Removes a subscription from the index.
+     *
+     * @param subscription The id returned by {@link #insert(Expression)}.
+     * @return true if the subscription was present.
+     */
+    public boolean remove(int subscription) {
+        if (subscription < 0 || subscription >= subscriptions.size() || subscriptions.get(subscription) == null) {
+            return false;
+        }
+        for (int conjunction : subscriptions.get(subscription)) {
+            alive[conjunction] = false;
+            for (int symbol : conjunctionPositive.get(conjunction)) {
+                positive.get(symbol).release(alive);
+            }
+            for (int symbol : conjunctionNegative.get(conjunction)) {
+                negative.get(symbol).release(alive);
+            }
+            if (conjunctionPositive.get(conjunction).length == 0) {
+                negativeOnly.release(alive);
+            }
+        }
+        subscriptions.set(subscription, null);
+        liveSubscriptions--;
+        return true;
+    }
+
+    /**
+     * Returns the number of indexed subscriptions.
+     */
+    public int size() {
+        return liveSubscriptions;
+    }
+
+    /**
+     * Finds the subscriptions satisfied by an event.
+     *
+     * @param trueVariables The variables that are true; all others are false.
+     * @return The ids of the matching subscriptions, in no particular order.
+     */
+    public int[] match(Collection<String> trueVariables) {
+        int[][] result = { new int[8] };
+        int[] count = { 0 };
+        match(trueVariables, subscription -> {
+            if (count[0] == result[0].length) {
+                result[0] = Arrays.copyOf(result[0], count[0] * 2);
+            }
+            result[0][count[0]++] = subscription;
+        });
+        return Arrays.copyOf(result[0], count[0]);
+    }
+
+    /**
+     * Streams the subscriptions satisfied by an event to a consumer. Each
+     * matching subscription is reported exactly once.
+     *
+     * @param trueVariables The variables that are true; all others are false.
+     * @param consumer      Receives the ids of the matching subscriptions.
+     */
+    public void match(Collection<String> trueVariables, IntConsumer consumer) {
+        epoch++;
+        int[] ids = new int[trueVariables.size()];
+        int n = 0;
+        for (String variable : trueVariables) {
+            Integer id = symbolIds.get(variable);
+            // A variable listed twice must not count twice towards a conjunction
+            if (id != null && seenEpoch[id] != epoch) {
+                seenEpoch[id] = epoch;
+                ids[n++] = id;
+            }
+        }
+
+        // A true variable rules out every conjunction that requires it to be false
+        for (int i = 0; i < n; i++) {
+            PostingList list = negative.get(ids[i]);
+            for (int j = 0; j < list.size; j++) {
+                blockedEpoch[list.items[j]] = epoch;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            PostingList list = positive.get(ids[i]);
+            for (int j = 0; j < list.size; j++) {
+                int conjunction = list.items[j];
+                if (!alive[conjunction]) {
+                    continue;
+                }
+                if (hitEpoch[conjunction] != epoch) {
+                    hitEpoch[conjunction] = epoch;
+                    hits[conjunction] = 0;
+                }
+                if (++hits[conjunction] == required[conjunction]) {
+                    emit(conjunction, consumer);
+                }
+            }
+        }
+        for (int j = 0; j < negativeOnly.size; j++) {
+            int conjunction = negativeOnly.items[j];
+            if (alive[conjunction]) {
+                emit(conjunction, consumer);
+            }
+        }
+    }
+
+    private void emit(int conjunction, IntConsumer consumer) {
+        if (blockedEpoch[conjunction] == epoch) {
+            return;
+        }
+        int subscription = owner[conjunction];
+        if (matchedEpoch[subscription] != epoch) {
+            matchedEpoch[subscription] = epoch;
+            consumer.accept(subscription);
+        }
+    }
+
+    private int addConjunction(int subscription, int[] positiveIds, int[] negativeIds) {
+        int conjunction = conjunctionCount++;
+        if (conjunction == required.length) {
+            int capacity = conjunction * 2;
+            required = Arrays.copyOf(required, capacity);
+            owner = Arrays.copyOf(owner, capacity);
+            hits = Arrays.copyOf(hits, capacity);
+            hitEpoch = Arrays.copyOf(hitEpoch, capacity);
+            blockedEpoch = Arrays.copyOf(blockedEpoch, capacity);
+            alive = Arrays.copyOf(alive, capacity);
+        }
+        required[conjunction] = positiveIds.length;
+        owner[conjunction] = subscription;
+        alive[conjunction] = true;
+        conjunctionPositive.add(positiveIds);
+        conjunctionNegative.add(negativeIds);
+        for (int symbol : positiveIds) {
+            positive.get(symbol).add(conjunction);
+        }
+        for (int symbol : negativeIds) {
+            negative.get(symbol).add(conjunction);
+        }
+        if (positiveIds.length == 0) {
+            negativeOnly.add(conjunction);
+        }
+        return conjunction;
+    }
+
+    private int[] globalIds(long mask, String[] symbols) {
+        int[] ids = new int[Long.bitCount(mask)];
+        int n = 0;
+        for (int slot = 0; slot < symbols.length; slot++) {
+            if ((mask & (1L << slot)) != 0) {
+                ids[n++] = symbolId(symbols[slot]);
+            }
+        }
+        return ids;
+    }
+
+    private int symbolId(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        if (id == null) {
+            id = positive.size();
+            symbolIds.put(symbol, id);
+            positive.add(new PostingList());
+            negative.add(new PostingList());
+            if (seenEpoch.length <= id) {
+                seenEpoch = Arrays.copyOf(seenEpoch, id * 2 + 1);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Rewrites a compiled logic expression into disjunctive normal form.
+     * Each conjunction is a pair of slot bitmasks: variables that must be
+     * true and variables that must be false.
+     */
+    private static List<long[]> toDnf(CompiledExpression program) throws InvalidExpression {
+        int length = program.getCodeLength();
+        int[] leftChild = new int[length];
+        int[] rightChild = new int[length];
+        int[] stack = new int[Math.max(1, program.getMaxStack())];
+        int sp = 0;
+        for (int pc = 0; pc < length; pc++) {
+            int op = Opcode.op(program.getInstruction(pc));
+            if (op == Opcode.LOAD) {
+                stack[sp++] = pc;
+            } else if (op == Opcode.NOT) {
+                leftChild[pc] = stack[sp - 1];
+                stack[sp - 1] = pc;
+            } else if (Opcode.operandType(op) == ValueType.BOOLEAN) {
+                rightChild[pc] = stack[--sp];
+                leftChild[pc] = stack[sp - 1];
+                stack[sp - 1] = pc;
+            } else {
+                throw new InvalidExpression("Only logic operators can be indexed, found '" + Opcode.symbol(op) + "'.");
+            }
+        }
+        return dnf(program, leftChild, rightChild, length - 1, false);
+    }
+
+    private static List<long[]> dnf(CompiledExpression program, int[] leftChild, int[] rightChild, int pc,
+            boolean negated) throws InvalidExpression {
+        int instruction = program.getInstruction(pc);
+        int op = Opcode.op(instruction);
+        switch (op) {
+            case Opcode.LOAD: {
+                long bit = 1L << Opcode.arg(instruction);
+                List<long[]> literal = new ArrayList<>();
+                literal.add(negated ? new long[] { 0, bit } : new long[] { bit, 0 });
+                return literal;
+            }
+            case Opcode.NOT:
+                return dnf(program, leftChild, rightChild, leftChild[pc], !negated);
+            case Opcode.AND:
+            case Opcode.STRICT_AND:
+            case Opcode.NAND: {
+                // NOT (a AND b) == NOT a OR NOT b
+                boolean negateChildren = negated ^ (op == Opcode.NAND);
+                List<long[]> a = dnf(program, leftChild, rightChild, leftChild[pc], negateChildren);
+                List<long[]> b = dnf(program, leftChild, rightChild, rightChild[pc], negateChildren);
+                return negateChildren ? or(a, b) : and(a, b);
+            }
+            case Opcode.OR:
+            case Opcode.STRICT_OR:
+            case Opcode.NOR: {
+                // NOT (a OR b) == NOT a AND NOT b
+                boolean negateChildren = negated ^ (op == Opcode.NOR);
+                List<long[]> a = dnf(program, leftChild, rightChild, leftChild[pc], negateChildren);
+                List<long[]> b = dnf(program, leftChild, rightChild, rightChild[pc], negateChildren);
+                return negateChildren ? and(a, b) : or(a, b);
+            }
+            case Opcode.XOR:
+            case Opcode.XNOR: {
+                // a XOR b == (a AND NOT b) OR (NOT a AND b); XNOR is its negation
+                boolean equal = negated ^ (op == Opcode.XNOR);
+                List<long[]> a = dnf(program, leftChild, rightChild, leftChild[pc], false);
+                List<long[]> notA = dnf(program, leftChild, rightChild, leftChild[pc], true);
+                List<long[]> b = dnf(program, leftChild, rightChild, rightChild[pc], false);
+                List<long[]> notB = dnf(program, leftChild, rightChild, rightChild[pc], true);
+                return equal ? or(and(a, b), and(notA, notB)) : or(and(a, notB), and(notA, b));
+            }
+            default:
+                throw new InvalidExpression("Only logic operators can be indexed, found '" + Opcode.symbol(op) + "'.");
+        }
+    }
+
+    private static List<long[]> and(List<long[]> a, List<long[]> b) throws InvalidExpression {
+        List<long[]> result = new ArrayList<>();
+        for (long[] x : a) {
+            for (long[] y : b) {
+                long pos = x[0] | y[0];
+                long neg = x[1] | y[1];
+                if ((pos & neg) == 0) { // Drop contradictions such as A AND NOT A
+                    result.add(new long[] { pos, neg });
+                }
+            }
+        }
+        return limit(result);
+    }
+
+    private static List<long[]> or(List<long[]> a, List<long[]> b) throws InvalidExpression {
+        List<long[]> result = new ArrayList<>(a);
+        for (long[] y : b) {
+            boolean duplicate = false;
+            for (long[] x : a) {
+                duplicate |= x[0] == y[0] && x[1] == y[1];
+            }
+            if (!duplicate) {
+                result.add(y);
+            }
+        }
+        return limit(result);
+    }
+
+    private static List<long[]> limit(List<long[]> conjunctions) throws InvalidExpression {
+        if (conjunctions.size() > MAX_CONJUNCTIONS) {
+            throw new InvalidExpression("Expression expands to more than " + MAX_CONJUNCTIONS + " conjunctions.");
+        }
+        return conjunctions;
+    }
+
+    /**
+     * Growable list of conjunction ids that compacts itself once more than
+     * half of its entries belong to removed conjunctions.
+     */
+    private static final class PostingList {
+        int[] items = new int[4];
+        int size;
+        int dead;
+
+        void add(int conjunction) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = conjunction;
+        }
+
+        void release(boolean[] alive) {
+            if (++dead * 2 <= size) {
+                return;
+            }
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (alive[items[i]]) {
+                    items[n++] = items[i];
+                }
+            }
+            size = n;
+            dead = 0;
+        }
+    }
+}
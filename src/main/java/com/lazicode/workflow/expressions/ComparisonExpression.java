@@ -0,0 +1,218 @@
+package com.lazicode.workflow.expressions;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ExpressionCompiler;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+/**
+ * Class representing a predicate that mixes mathematical and logical
+ * operators, such as "(S > 0.7) AND F". Comparison operators
+ * (&lt;, &lt;=, &gt;, &gt;=, ==, !=) turn math subterms into booleans, so a
+ * threshold rule needs a single expression instead of a MathExpression node
+ * feeding a LogicExpression node.
+ *
+ * The expression is type-checked and compiled into one instruction stream
+ * at construction; the type of each variable (number or boolean) is inferred
+ * from the operators that use it. Operands are single uppercase letters or
+ * non-negative numeric literals.
+ */
+public class ComparisonExpression extends Expression {
+
+    public static final Set<String> SUPPORTED_OPERATORS;
+
+    static {
+        Set<String> ops = new HashSet<>(MathExpression.SUPPORTED_OPERATORS);
+        ops.add("<");
+        ops.add("<=");
+        ops.add(">");
+        ops.add(">=");
+        ops.add("==");
+        ops.add("!=");
+        ops.add("AND");
+        ops.add("OR");
+        ops.add("NOT");
+        ops.add("NAND");
+        ops.add("NOR");
+        ops.add("XOR");
+        ops.add("XNOR");
+        SUPPORTED_OPERATORS = Collections.unmodifiableSet(ops); // Make the set unmodifiable
+    }
+
+    private final CompiledExpression program;
+
+    /**
+     * Constructs a ComparisonExpression, converts between infix and postfix
+     * notations, and compiles the result into a boolean-valued program.
+     *
+     * @param expressionString The expression string in infix or postfix notation.
+     * @throws InvalidExpression If the expression is malformed or ill-typed,
+     *                           e.g. a boolean compared with a number.
+     */
+    public ComparisonExpression(String expressionString) throws InvalidExpression {
+        super(expressionString);
+        String expressionType = determineExpressionType(expressionString, SUPPORTED_OPERATORS);
+
+        if (expressionType.equals("unknown")) {
+            throw new InvalidExpression(
+                    "Invalid expression type, allow only valid infix or postfix comparison expressions.");
+        }
+        if (expressionType.equals("postfix")) {
+            validatePostfixExpression(expressionString, SUPPORTED_OPERATORS);
+            infixExpression = convertPostfixToInfix(expressionString);
+            postfixExpression = getExpressionString(); // Store the normalized postfix expression
+        } else { // infix
+            postfixExpression = convertInfixToPostfix(expressionString);
+            validatePostfixExpression(postfixExpression, SUPPORTED_OPERATORS);
+            infixExpression = convertPostfixToInfix(postfixExpression);
+        }
+        this.program = compile();
+    }
+
+    /**
+     * Constructs a ComparisonExpression from a compiled program read back by
+     * {@link Expression#readFrom(java.io.DataInput)}.
+     *
+     * @param expressionString The original expression string.
+     * @param compiled         The compiled program.
+     * @throws InvalidExpression If the program does not produce a boolean.
+     */
+    ComparisonExpression(String expressionString, CompiledExpression compiled) throws InvalidExpression {
+        super(expressionString, compiled);
+        this.program = compiled;
+    }
+
+    @Override
+    protected boolean isOperator(String token) {
+        return SUPPORTED_OPERATORS.contains(token);
+    }
+
+    /**
+     * Operands are single uppercase letters or numeric literals.
+     *
+     * @param token The token to evaluate.
+     * @return true if the token is a variable or a numeric literal; false otherwise.
+     */
+    @Override
+    protected boolean isOperand(String token) {
+        return ExpressionCompiler.isVariable(token) || ExpressionCompiler.isNumber(token);
+    }
+
+    /**
+     * Numeric literals may appear wherever a variable may in postfix form.
+     *
+     * @param token The token to validate.
+     * @return true if the token is a variable or a numeric literal; false otherwise.
+     */
+    @Override
+    protected boolean isValidVariable(String token) {
+        return isOperand(token);
+    }
+
+    /**
+     * Retrieves the precedence level of a given operator. Arithmetic binds
+     * tighter than comparison, which binds tighter than logic.
+     *
+     * @param operator The operator to evaluate.
+     * @return An integer representing the precedence level.
+     */
+    @Override
+    protected int precedence(String operator) {
+        switch (operator) {
+            case "^":
+                return 10;
+            case "*":
+            case "/":
+            case "%":
+                return 9;
+            case "+":
+            case "-":
+                return 8;
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                return 7;
+            case "==":
+            case "!=":
+                return 6;
+            case "NOT":
+                return 5;
+            case "NAND":
+            case "NOR":
+                return 4;
+            case "AND":
+                return 3;
+            case "OR":
+            case "XOR":
+            case "XNOR":
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    protected String operatorType(String operator) {
+        if (!SUPPORTED_OPERATORS.contains(operator)) {
+            return "none";
+        }
+        if (isFunction(operator)) {
+            return MathExpression.functionType(operator);
+        }
+        return operator.equals("NOT") ? "unary" : "binary";
+    }
+
+    @Override
+    protected boolean isFunction(String token) {
+        return MathExpression.SUPPORTED_FUNCTIONS.contains(token);
+    }
+
+    @Override
+    protected boolean isLeftAssociative(String operator) {
+        // All supported operators are left-associative
+        return true;
+    }
+
+    @Override
+    public boolean isValid() {
+        // Since the constructor validates and type-checks the expression, return true if the object is created successfully
+        return true;
+    }
+
+    @Override
+    public ValueType getResultType() {
+        return ValueType.BOOLEAN;
+    }
+
+    @Override
+    public String toString() {
+        return "ComparisonExpression{" +
+                "expressionString='" + getExpressionString() + '\'' +
+                ", infixExpression='" + infixExpression + '\'' +
+                ", postExpression='" + postfixExpression + '\'' +
+                ", variables=" + getVariables() + '\'' +
+                ", variableValues=" + getVariableValues() + '\'' +
+                ", output=" + getOutput() +
+                '}';
+    }
+
+    /**
+     * Evaluates the compiled program. Boolean variables take Boolean values
+     * and numeric variables take Number values; unset variables are unknown,
+     * and an unknown result is returned as null.
+     *
+     * @return true, false, or null if the result is unknown.
+     */
+    @Override
+    protected Object performCalculation() {
+        if (hasSuppliers()) {
+            return CompiledExpression.toBoolean(program.evaluateLazily(program.bindLazily(getVariableValues())));
+        }
+        return CompiledExpression.toBoolean(program.evaluate(program.bind(getVariableValues())));
+    }
+}
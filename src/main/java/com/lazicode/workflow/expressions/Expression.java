@@ -1,18 +1,33 @@
 package com.lazicode.workflow.expressions;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.Stack;
 import java.util.List;
 
 import org.json.JSONObject;
 
 import com.lazicode.workflow.exceptions.InvalidExpression;
 import com.lazicode.workflow.interfaces.JSONPersistable;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpressionCodec;
+import com.lazicode.workflow.expressions.compiler.ExpressionCompiler;
+import com.lazicode.workflow.expressions.compiler.Opcode;
+import com.lazicode.workflow.expressions.compiler.ValueType;
 import com.lazicode.workflow.expressions.utils.*;
 
 /**
@@ -22,12 +37,25 @@ import com.lazicode.workflow.expressions.utils.*;
  * to JSON.
  */
 public abstract class Expression implements JSONPersistable {
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("[A-Z]");
+    private static final Pattern STANDALONE_VARIABLE_PATTERN = Pattern.compile("\\b[A-Z]\\b");
+
+    // Expression kinds in the binary record written by writeTo
+    private static final byte MATH_KIND = 1;
+    private static final byte LOGIC_KIND = 2;
+    private static final byte COMPARISON_KIND = 3;
+    private static final byte SHORT_CIRCUIT_FLAG = 1;
+    // Longest expression string a record may declare; longer lengths mean the record is corrupt
+    private static final int MAX_SOURCE_BYTES = 16 << 20;
+
     private String expressionString;
     private Set<String> variables;
     private Map<String, Object> variableValues;
     private Object output;
     protected String infixExpression;
     protected String postfixExpression;
+    private CompiledExpression compiled;
+    private CompiledExpression canonical;
 
     /**
      * Constructs an Expression object, initializing the expression string,
@@ -46,6 +74,30 @@ public abstract class Expression implements JSONPersistable {
 
     }
 
+    /**
+     * Constructs an Expression from an already compiled program, as read by
+     * {@link #readFrom(DataInput)}. Nothing is tokenized or validated: the
+     * postfix form is the disassembly of the program and the infix form is
+     * rendered from it.
+     *
+     * @param expressionString The original expression string.
+     * @param compiled         The compiled program.
+     * @throws InvalidExpression If the program does not produce this expression's result type.
+     */
+    protected Expression(String expressionString, CompiledExpression compiled) throws InvalidExpression {
+        if (compiled.getResultType() != getResultType()) {
+            throw new InvalidExpression("Compiled expression produces a " + compiled.getResultType()
+                    + " value, expected " + getResultType() + ".");
+        }
+        this.expressionString = expressionString;
+        this.variables = new HashSet<>(Arrays.asList(compiled.getSymbols()));
+        this.variableValues = new HashMap<>();
+        this.output = null;
+        this.compiled = compiled;
+        this.postfixExpression = compiled.toString();
+        this.infixExpression = renderInfix(compiled, postfixExpression.split(" "));
+    }
+
     /**
      * Returns the infix expression representation.
      *
@@ -92,16 +144,15 @@ public abstract class Expression implements JSONPersistable {
     }
 
     /**
-     * Extracts variables from the given expression string by identifying uppercase
-     * letters.
+     * Extracts variables from the given expression string by identifying standalone
+     * uppercase letters, so letters inside operator names such as AND are skipped.
      *
      * @param expression The expression string to analyze.
      * @return A Set of variables found in the expression.
      */
     protected Set<String> extractVariables(String expression) {
         Set<String> variableSet = new HashSet<>();
-        Pattern pattern = Pattern.compile("[A-Z]");
-        Matcher matcher = pattern.matcher(expression);
+        Matcher matcher = STANDALONE_VARIABLE_PATTERN.matcher(expression);
         while (matcher.find()) {
             variableSet.add(matcher.group());
         }
@@ -124,10 +175,12 @@ public abstract class Expression implements JSONPersistable {
     }
 
     /**
-     * Sets the value for a specific variable.
+     * Sets the value for a specific variable. The value may also be a
+     * {@link BooleanSupplier} or {@link DoubleSupplier}, which is resolved
+     * only when an evaluation needs it and at most once per evaluation.
      *
      * @param variable The variable name.
-     * @param value    The value to assign to the variable.
+     * @param value    The value or supplier to assign to the variable.
      * @throws InvalidExpression If the variable is not part of the
      *                                  expression.
      */
@@ -140,6 +193,39 @@ public abstract class Expression implements JSONPersistable {
         }
     }
 
+    /**
+     * Checks whether any variable is bound to a supplier rather than a value.
+     *
+     * @return true if at least one variable value is a BooleanSupplier or DoubleSupplier.
+     */
+    protected boolean hasSuppliers() {
+        for (Object value : variableValues.values()) {
+            if (value instanceof BooleanSupplier || value instanceof DoubleSupplier) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a copy of the variable values with every supplier resolved once,
+     * for evaluators that need all inputs up front.
+     *
+     * @return The resolved variable values.
+     */
+    protected HashMap<String, Object> resolveSuppliers() {
+        HashMap<String, Object> resolved = new HashMap<>(variableValues);
+        for (Map.Entry<String, Object> entry : resolved.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof BooleanSupplier) {
+                entry.setValue(((BooleanSupplier) value).getAsBoolean());
+            } else if (value instanceof DoubleSupplier) {
+                entry.setValue(((DoubleSupplier) value).getAsDouble());
+            }
+        }
+        return resolved;
+    }
+
     /**
      * Calculates and returns the result of the expression, caching the output for
      * reuse.
@@ -166,6 +252,187 @@ public abstract class Expression implements JSONPersistable {
     }
 
 
+    /**
+     * Compiles the postfix form of this expression into an instruction stream
+     * over a primitive slot vector. The result is cached, since the postfix
+     * form does not change after construction.
+     *
+     * A logic expression that does not short-circuit compiles AND and OR to
+     * their strict forms, so the program is unknown whenever
+     * {@link #getOutput()} is null.
+     *
+     * @return The compiled expression.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    public CompiledExpression compile() throws InvalidExpression {
+        if (compiled == null) {
+            boolean strictLogic = this instanceof LogicExpression && !((LogicExpression) this).isShortCircuit();
+            compiled = ExpressionCompiler.compile(postfixExpression, getResultType(), strictLogic);
+        }
+        return compiled;
+    }
+
+    /**
+     * Returns the canonical form of this expression's program, in which
+     * operands of commutative operators are sorted and chains of associative
+     * logic operators are flattened. "A AND B", "B AND A" and "(A) AND (B)"
+     * share one canonical form.
+     *
+     * @return The canonical program.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    public CompiledExpression getCanonicalForm() throws InvalidExpression {
+        if (canonical == null) {
+            canonical = compile().canonicalize();
+        }
+        return canonical;
+    }
+
+    /**
+     * Returns a hash of the canonical form, suitable as a key for caches,
+     * interning and common-subexpression elimination. Equivalent spellings of
+     * an expression share a hash; expressions with different result types do
+     * not.
+     *
+     * @return The structural hash.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    public long getStructuralHash() throws InvalidExpression {
+        return getCanonicalForm().structuralHash();
+    }
+
+    /**
+     * Writes this expression as a binary record: its kind, the original
+     * expression string and the compiled program in the
+     * {@link CompiledExpressionCodec} format.
+     *
+     * @param out The target output.
+     * @throws IOException       If the output fails.
+     * @throws InvalidExpression If the expression cannot be compiled or its type cannot be serialized.
+     */
+    public void writeTo(DataOutput out) throws IOException, InvalidExpression {
+        CompiledExpression program = compile();
+        byte[] source = expressionString.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(serialKind());
+        out.writeByte(serialFlags());
+        out.writeInt(source.length);
+        out.write(source);
+        CompiledExpressionCodec.write(program, out);
+    }
+
+    /**
+     * Writes this expression as a binary record at the buffer's position, in
+     * the same format as {@link #writeTo(DataOutput)}.
+     *
+     * @param buffer The target buffer.
+     * @throws InvalidExpression If the expression cannot be compiled or its type cannot be serialized.
+     */
+    public void writeTo(ByteBuffer buffer) throws InvalidExpression {
+        CompiledExpression program = compile();
+        byte[] source = expressionString.getBytes(StandardCharsets.UTF_8);
+        buffer.put(serialKind());
+        buffer.put(serialFlags());
+        buffer.putInt(source.length);
+        buffer.put(source);
+        CompiledExpressionCodec.write(program, buffer);
+    }
+
+    /**
+     * Reads an expression written by {@link #writeTo(DataOutput)} without
+     * tokenizing, validating or compiling its expression string.
+     *
+     * @param in The source input.
+     * @return The expression, of the same class it was written from.
+     * @throws IOException       If the input fails or ends early.
+     * @throws InvalidExpression If the record is corrupt.
+     */
+    public static Expression readFrom(DataInput in) throws IOException, InvalidExpression {
+        byte kind = in.readByte();
+        byte flags = in.readByte();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_SOURCE_BYTES) {
+            throw new InvalidExpression("Corrupt expression record: invalid length.");
+        }
+        byte[] source = new byte[length];
+        in.readFully(source);
+        CompiledExpression program = CompiledExpressionCodec.read(in);
+        return fromCompiled(kind, flags, new String(source, StandardCharsets.UTF_8), program);
+    }
+
+    /**
+     * Reads an expression written by {@link #writeTo(ByteBuffer)} at the
+     * buffer's position and advances past it.
+     *
+     * @param buffer The source buffer.
+     * @return The expression, of the same class it was written from.
+     * @throws InvalidExpression If the record is truncated or corrupt.
+     */
+    public static Expression readFrom(ByteBuffer buffer) throws InvalidExpression {
+        try {
+            byte kind = buffer.get();
+            byte flags = buffer.get();
+            int length = buffer.getInt();
+            if (length < 0 || length > Math.min(buffer.remaining(), MAX_SOURCE_BYTES)) {
+                throw new InvalidExpression("Corrupt expression record: invalid length.");
+            }
+            byte[] source = new byte[length];
+            buffer.get(source);
+            CompiledExpression program = CompiledExpressionCodec.read(buffer);
+            return fromCompiled(kind, flags, new String(source, StandardCharsets.UTF_8), program);
+        } catch (BufferUnderflowException e) {
+            throw new InvalidExpression("Truncated expression record.");
+        }
+    }
+
+    /**
+     * Returns a new expression of this class and mode over another compiled
+     * program, with its own variable values.
+     */
+    Expression withProgram(CompiledExpression program) throws InvalidExpression {
+        return fromCompiled(serialKind(), serialFlags(), expressionString, program);
+    }
+
+    private static Expression fromCompiled(byte kind, byte flags, String source, CompiledExpression program)
+            throws InvalidExpression {
+        switch (kind) {
+            case MATH_KIND:
+                return new MathExpression(source, program);
+            case LOGIC_KIND:
+                return new LogicExpression(source, program, (flags & SHORT_CIRCUIT_FLAG) != 0);
+            case COMPARISON_KIND:
+                return new ComparisonExpression(source, program);
+            default:
+                throw new InvalidExpression("Corrupt expression record: unknown expression kind " + kind + ".");
+        }
+    }
+
+    private byte serialKind() throws InvalidExpression {
+        if (this instanceof MathExpression) {
+            return MATH_KIND;
+        }
+        if (this instanceof LogicExpression) {
+            return LOGIC_KIND;
+        }
+        if (this instanceof ComparisonExpression) {
+            return COMPARISON_KIND;
+        }
+        throw new InvalidExpression(getClass().getName() + " cannot be serialized.");
+    }
+
+    private byte serialFlags() {
+        if (this instanceof LogicExpression && ((LogicExpression) this).isShortCircuit()) {
+            return SHORT_CIRCUIT_FLAG;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the type of the value this expression produces.
+     *
+     * @return The result type.
+     */
+    public abstract ValueType getResultType();
+
     /**
      * Abstract method for performing the calculation of the expression.
      *
@@ -273,7 +540,7 @@ public abstract class Expression implements JSONPersistable {
         String[] tokens = expression.trim().split("\\s+");
 
         for (String token : tokens) {
-            if (!isOperand(token) && !isOperator(token) && !token.equals("(") && !token.equals(")")) {
+            if (!isOperand(token) && !isOperator(token) && !isParenthesis(token) && !isSeparator(token)) {
                 throw new InvalidExpression("Invalid token found in expression: '" + token + "'");
             }
         }
@@ -318,11 +585,11 @@ public abstract class Expression implements JSONPersistable {
         }
     
         String[] tokens = expression.split(" ");
-        Stack<String> stack = new Stack<>();
+        Deque<String> stack = new ArrayDeque<>();
         boolean lastWasOperand = false;
 
         for (String token : tokens) {
-            if (Pattern.matches("[A-Z]", token)) {
+            if (isValidVariable(token)) {
                 if (lastWasOperand) {
                     // Found two consecutive operands, indicating postfix notation
                     return "postfix";
@@ -343,6 +610,12 @@ public abstract class Expression implements JSONPersistable {
                         return "unknown";
                     }
                     stack.pop();
+                } else if (type.equals("ternary")) {
+                    if (stack.size() < 3) {
+                        return "unknown";
+                    }
+                    stack.pop();
+                    stack.pop();
                 } else {
                     return "unknown";
                 }
@@ -392,6 +665,14 @@ public abstract class Expression implements JSONPersistable {
                         operandCount--;
                         break;
 
+                    case "ternary":
+                        if (operandCount < 3) {
+                            throw new InvalidExpression("Operator '" + token + "' requires three operands but only "
+                                    + operandCount + " found.");
+                        }
+                        operandCount -= 2;
+                        break;
+
                     default:
                         throw new InvalidExpression("Unsupported operator: '" + token + "'.");
                 }
@@ -410,55 +691,131 @@ public abstract class Expression implements JSONPersistable {
     }
 
     /**
-     * Converts a postfix expression to infix notation.
+     * Converts a postfix expression to infix notation. The postfix tokens are
+     * first linked into a tree of token indices and then rendered with an
+     * explicit stack into a single StringBuilder, so the conversion is linear
+     * in the expression length and does not recurse however deep the
+     * expression nests.
      *
      * @param expressionString The postfix expression to convert.
      * @return The converted infix expression.
      * @throws InvalidExpression If the postfix expression is invalid.
      */
     protected String convertPostfixToInfix(String expressionString) throws InvalidExpression {
-        Stack<String> stack = new Stack<>();
         String[] tokens = expressionString.split(" ");
-
-        for (String token : tokens) {
+        int[][] children = new int[3][tokens.length];
+        int[] arity = new int[tokens.length];
+        boolean[] function = new boolean[tokens.length];
+        int[] stack = new int[tokens.length];
+        int sp = 0;
+
+        for (int i = 0; i < tokens.length; i++) {
+            String token = tokens[i];
             if (isValidVariable(token)) {
-                stack.push(token);
+                stack[sp++] = i;
             } else {
                 String type = operatorType(token);
 
                 switch (type) {
                     case "unary":
-                        if (stack.isEmpty()) {
-                            throw new InvalidExpression(
-                                    "Invalid postfix expression for unary operator '" + token + "'.");
-                        }
-                        String operand = stack.pop();
-                        String resultUnary = "(" + token + " " + operand + ")";
-                        stack.push(resultUnary);
+                        arity[i] = 1;
                         break;
 
                     case "binary":
-                        if (stack.size() < 2) {
-                            throw new InvalidExpression(
-                                    "Invalid postfix expression for binary operator '" + token + "'.");
-                        }
-                        String operand2 = stack.pop();
-                        String operand1 = stack.pop();
-                        String resultBinary = "(" + operand1 + " " + token + " " + operand2 + ")";
-                        stack.push(resultBinary);
+                        arity[i] = 2;
+                        break;
+
+                    case "ternary":
+                        arity[i] = 3;
                         break;
 
                     default:
                         throw new InvalidExpression("Invalid operator: '" + token + "'.");
                 }
+                if (sp < arity[i]) {
+                    throw new InvalidExpression(
+                            "Invalid postfix expression for " + type + " operator '" + token + "'.");
+                }
+                sp -= arity[i];
+                for (int k = 0; k < arity[i]; k++) {
+                    children[k][i] = stack[sp + k];
+                }
+                function[i] = isFunction(token);
+                stack[sp++] = i;
             }
         }
 
-        if (stack.size() == 1) {
-            return stack.pop();
-        } else {
+        if (sp != 1) {
             throw new InvalidExpression("Invalid postfix expression format. Conversion to infix failed.");
         }
+        return renderInfix(tokens, children, arity, function, stack[0]);
+    }
+
+    /**
+     * Renders the infix form of a compiled program, linking its postfix
+     * tokens by the arity of each instruction.
+     */
+    private static String renderInfix(CompiledExpression program, String[] tokens) {
+        int[][] children = new int[3][tokens.length];
+        int[] arity = new int[tokens.length];
+        boolean[] function = new boolean[tokens.length];
+        int[] stack = new int[tokens.length];
+        int sp = 0;
+        for (int pc = 0; pc < tokens.length; pc++) {
+            int op = Opcode.op(program.getInstruction(pc));
+            arity[pc] = Opcode.arity(op);
+            function[pc] = Opcode.isFunction(op);
+            sp -= arity[pc];
+            for (int k = 0; k < arity[pc]; k++) {
+                children[k][pc] = stack[sp + k];
+            }
+            stack[sp++] = pc;
+        }
+        return renderInfix(tokens, children, arity, function, stack[0]);
+    }
+
+    /**
+     * Renders a token tree as fully parenthesized infix: "(left op right)"
+     * for binary operators, "(op operand)" for unary ones and
+     * "name(a, b, ...)" for functions.
+     */
+    private static String renderInfix(String[] tokens, int[][] children, int[] arity, boolean[] function,
+            int root) {
+        StringBuilder result = new StringBuilder(tokens.length * 4);
+        // Each frame is a node index and the number of its operands already rendered
+        int[] nodes = new int[tokens.length + 1];
+        int[] phases = new int[tokens.length + 1];
+        int sp = 0;
+        nodes[sp] = root;
+        phases[sp++] = 0;
+
+        while (sp > 0) {
+            int node = nodes[--sp];
+            int phase = phases[sp];
+            if (arity[node] == 0) {
+                result.append(tokens[node]); // Operand
+                continue;
+            }
+            if (function[node]) {
+                result.append(phase == 0 ? tokens[node] + "(" : phase < arity[node] ? ", " : ")");
+            } else if (phase == 0) {
+                result.append('(');
+                if (arity[node] == 1) {
+                    result.append(tokens[node]).append(' ');
+                }
+            } else if (phase < arity[node]) {
+                result.append(' ').append(tokens[node]).append(' ');
+            } else {
+                result.append(')');
+            }
+            if (phase < arity[node]) {
+                nodes[sp] = node;
+                phases[sp++] = phase + 1;
+                nodes[sp] = children[phase][node];
+                phases[sp++] = 0;
+            }
+        }
+        return result.toString();
     }
 
     /**
@@ -471,7 +828,7 @@ public abstract class Expression implements JSONPersistable {
     protected String convertInfixToPostfix(String infix) throws InvalidExpression {
         // Normalize spaces and insert spaces around parentheses
         infix = infix.trim().replaceAll("\\s+", " ");
-        infix = infix.replaceAll("([()])", " $1 ");
+        infix = infix.replaceAll("([(),])", " $1 ");
         infix = infix.trim().replaceAll("\\s+", " ");
         String[] tokens = infix.split(" ");
 
@@ -483,7 +840,7 @@ public abstract class Expression implements JSONPersistable {
                     throw new InvalidExpression("Missing operator between operands: " + token);
                 }
                 lastWasOperand = true;
-            } else if (isOperator(token) || token.equals("(") || token.equals(")")) {
+            } else if (isOperator(token) || isParenthesis(token) || isSeparator(token)) {
                 lastWasOperand = false;
             } else {
                 throw new InvalidExpression("Invalid token detected: " + token);
@@ -491,7 +848,9 @@ public abstract class Expression implements JSONPersistable {
         }
 
         StringBuilder result = new StringBuilder();
-        Stack<String> stack = new Stack<>();
+        Deque<String> stack = new ArrayDeque<>();
+        // Argument count of each open parenthesis; 0 marks a grouping parenthesis that is not a call
+        Deque<Integer> arguments = new ArrayDeque<>();
         boolean expectOperand = true;
 
         if (infix == null || infix.trim().isEmpty()) {
@@ -500,17 +859,32 @@ public abstract class Expression implements JSONPersistable {
 
         for (String token : tokens) {
 
-            if (!isOperator(token) && !isOperand(token) && !isParenthesis(token)) {
+            if (!isOperator(token) && !isOperand(token) && !isParenthesis(token) && !isSeparator(token)) {
                 throw new InvalidExpression("Invalid token detected: " + token);
             }
-            if (isOperand(token)) {
+            if (isFunction(token)) {
+                // Function: held on the stack until its closing parenthesis
+                stack.push(token);
+                expectOperand = true;
+            } else if (isOperand(token)) {
                 // Operand: add directly to output
                 result.append(token).append(" ");
                 expectOperand = false; // Next, expect an operator
             } else if (token.equals("(")) {
                 // Left parenthesis: push onto stack
+                arguments.push(!stack.isEmpty() && isFunction(stack.peek()) ? 1 : 0);
                 stack.push(token);
                 expectOperand = true; // After '(', expect an operand
+            } else if (isSeparator(token)) {
+                // Argument separator: flush the current argument
+                while (!stack.isEmpty() && !stack.peek().equals("(")) {
+                    result.append(stack.pop()).append(" ");
+                }
+                if (arguments.isEmpty() || arguments.peek() == 0 || expectOperand) {
+                    throw new InvalidExpression("Misplaced ',' in expression");
+                }
+                arguments.push(arguments.pop() + 1);
+                expectOperand = true;
             } else if (token.equals(")")) {
                 // Right parenthesis: pop until left parenthesis
                 while (!stack.isEmpty() && !stack.peek().equals("(")) {
@@ -521,6 +895,17 @@ public abstract class Expression implements JSONPersistable {
                 } else {
                     throw new InvalidExpression("Mismatched parentheses in expression");
                 }
+                int argumentCount = arguments.pop();
+                if (argumentCount > 0) {
+                    // Closing a call: check the argument count and emit the function
+                    String function = stack.pop();
+                    int arity = arityOf(function);
+                    if (expectOperand || argumentCount != arity) {
+                        throw new InvalidExpression("Function '" + function + "' expects " + arity
+                                + " argument(s).");
+                    }
+                    result.append(function).append(" ");
+                }
                 expectOperand = false; // After ')', expect an operator
             } else if (isOperator(token)) {
                 if (isUnaryOperator(token) && expectOperand) {
@@ -544,6 +929,9 @@ public abstract class Expression implements JSONPersistable {
 
         // Pop any remaining operators from the stack
         while (!stack.isEmpty()) {
+            if (isFunction(stack.peek())) {
+                throw new InvalidExpression("Function '" + stack.peek() + "' must be followed by '('");
+            }
             if (stack.peek().equals("(") || stack.peek().equals(")")) {
                 throw new InvalidExpression("Mismatched parentheses in expression");
             }
@@ -554,6 +942,19 @@ public abstract class Expression implements JSONPersistable {
         return result.toString().trim();
     }
 
+    private int arityOf(String operator) {
+        switch (operatorType(operator)) {
+            case "unary":
+                return 1;
+            case "binary":
+                return 2;
+            case "ternary":
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
     /**
      * Checks if the given operator is a unary operator.
      * 
@@ -572,30 +973,49 @@ public abstract class Expression implements JSONPersistable {
      * @return true if the parentheses are balanced; false otherwise.
      */
     protected boolean isParenthesesBalanced(String expression) {
-        Stack<Character> stack = new Stack<>();
+        int depth = 0;
 
-        for (char ch : expression.toCharArray()) {
+        for (int i = 0; i < expression.length(); i++) {
+            char ch = expression.charAt(i);
             if (ch == '(') {
-                stack.push(ch);
+                depth++;
             } else if (ch == ')') {
-                if (stack.isEmpty()) {
+                if (depth == 0) {
                     return false;
                 }
-                stack.pop();
+                depth--;
             }
         }
 
-        return stack.isEmpty();
+        return depth == 0;
     }
 
     protected boolean isParenthesis(String token) {
         return token.equals("(") || token.equals(")");
     }
 
+    protected boolean isSeparator(String token) {
+        return token.equals(",");
+    }
+
+    /**
+     * Checks if a token names a function, written "name(arg, ...)" in infix
+     * and "arg ... name" in postfix. Its arity is given by
+     * {@link #operatorType(String)}. Expressions without functions keep the
+     * default.
+     *
+     * @param token The token to check.
+     * @return true if the token is a function name; false otherwise.
+     */
+    protected boolean isFunction(String token) {
+        return false;
+    }
+
     protected String addSpacesAroundParentheses(String expression) {
-        // Add a space before and after each parenthesis
+        // Add a space before and after each parenthesis and argument separator
         expression = expression.replaceAll("\\(", " ( ");
         expression = expression.replaceAll("\\)", " ) ");
+        expression = expression.replaceAll(",", " , ");
         
         // Replace multiple spaces with a single space to clean up
         expression = expression.trim().replaceAll("\\s+", " ");
@@ -610,7 +1030,7 @@ public abstract class Expression implements JSONPersistable {
      * @return true if the token is a valid variable; false otherwise.
      */
     protected boolean isValidVariable(String token) {
-        return Pattern.matches("[A-Z]", token);
+        return VARIABLE_PATTERN.matcher(token).matches();
     }
 
     /**
@@ -0,0 +1,139 @@
+package com.lazicode.workflow.expressions;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+/**
+ * Interning pool that maps every expression to one shared, immutable
+ * {@link CompiledExpression} per distinct rule, so thousands of nodes built
+ * from equivalent expressions share a single program between them. Two
+ * expressions are equivalent when they are of the same class and share a
+ * canonical form (see {@link Expression#getCanonicalForm()}); a
+ * LogicExpression's short-circuit mode is part of the key as well.
+ *
+ * {@link #intern(Expression)} returns the shared program itself, for callers
+ * that evaluate over their own slot vectors. {@link #share(Expression)}
+ * returns an expression of the argument's class built over the shared
+ * program: the program is not tokenized or compiled again, while variable
+ * values stay per holder, so setting a variable on one node is never seen
+ * by its siblings.
+ *
+ * The pool holds its programs weakly: once no holder references an interned
+ * program it is reclaimed by the garbage collector and its entry is dropped.
+ * The pool is safe for concurrent use.
+ */
+public class ExpressionPool {
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<CompiledExpression> reclaimed = new ReferenceQueue<>();
+
+    /**
+     * Returns the pooled program equivalent to an expression, registering the
+     * expression's own program if there is none.
+     *
+     * @param expression The expression to intern.
+     * @return The shared, immutable program.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    public CompiledExpression intern(Expression expression) throws InvalidExpression {
+        expunge();
+        Key key = new Key(expression);
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                CompiledExpression program = expression.compile();
+                entry = entries.putIfAbsent(key, new Entry(program, key, reclaimed));
+                if (entry == null) {
+                    return program;
+                }
+            }
+            CompiledExpression pooled = entry.get();
+            if (pooled != null) {
+                return pooled;
+            }
+            entries.remove(key, entry); // Cleared but not yet expunged; retry
+        }
+    }
+
+    /**
+     * Returns an expression equivalent to the argument, of the same class and
+     * mode, over the pooled program. The result has its own variable values;
+     * the argument itself is returned if its program is the pooled one.
+     *
+     * @param expression The expression to share.
+     * @param <T>        The expression class.
+     * @return An expression over the shared program.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Expression> T share(T expression) throws InvalidExpression {
+        CompiledExpression program = intern(expression);
+        if (program == expression.compile()) {
+            return expression;
+        }
+        return (T) expression.withProgram(program);
+    }
+
+    /**
+     * Returns the number of live distinct expressions in the pool.
+     */
+    public int size() {
+        expunge();
+        return entries.size();
+    }
+
+    private void expunge() {
+        Entry entry;
+        while ((entry = (Entry) reclaimed.poll()) != null) {
+            entries.remove(entry.key, entry);
+        }
+    }
+
+    private static final class Entry extends WeakReference<CompiledExpression> {
+        final Key key;
+
+        Entry(CompiledExpression program, Key key, ReferenceQueue<CompiledExpression> queue) {
+            super(program, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Pool key: the expression class, its short-circuit mode and its canonical
+     * program, hashed by the structural hash.
+     */
+    private static final class Key {
+        final Class<?> type;
+        final boolean shortCircuit;
+        final String canonical;
+        final long hash;
+
+        Key(Expression expression) throws InvalidExpression {
+            this.type = expression.getClass();
+            this.shortCircuit = expression instanceof LogicExpression
+                    && ((LogicExpression) expression).isShortCircuit();
+            this.canonical = expression.getCanonicalForm().toString();
+            this.hash = expression.getStructuralHash();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && type == key.type && shortCircuit == key.shortCircuit
+                    && canonical.equals(key.canonical);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+    }
+}
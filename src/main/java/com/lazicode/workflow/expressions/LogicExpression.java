@@ -2,16 +2,21 @@ package com.lazicode.workflow.expressions;
 
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.Collections;
+import java.util.regex.Pattern;
 
 import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ValueType;
 import com.lazicode.workflow.expressions.evaluators.PostfixLogic;
 
 
 public class LogicExpression extends Expression {
 
     private static final Set<String> SUPPORTED_OPERATORS;
+    private static final Pattern OPERAND_PATTERN = Pattern.compile("[A-Za-z]");
     private boolean isShortCircuit = true;
 
     static {
@@ -39,6 +44,16 @@ public class LogicExpression extends Expression {
         initializeExpression(expressionString);
     }
 
+    // Rebuilds a LogicExpression from a compiled program read back by Expression.readFrom
+    LogicExpression(String expressionString, CompiledExpression compiled, boolean isShortCircuit)
+            throws InvalidExpression {
+        super(expressionString, compiled);
+        this.isShortCircuit = isShortCircuit;
+    }
+
+    public boolean isShortCircuit() {
+        return isShortCircuit;
+    }
 
     // Helper method to centralize initialization logic
     private void initializeExpression(String expressionString) throws InvalidExpression {
@@ -60,13 +75,21 @@ public class LogicExpression extends Expression {
         }
     }
 
+    private CompiledExpression compileUnchecked() {
+        try {
+            return compile();
+        } catch (InvalidExpression e) {
+            throw new IllegalStateException("Logic expression failed to compile: " + postfixExpression, e);
+        }
+    }
+
     @Override
     protected boolean isOperand(String token) {
         // Only consider single letters A-Z or a-z as valid operands
         return !isOperator(token)
                 && !token.equals("(")
                 && !token.equals(")")
-                && token.matches("[A-Za-z]");
+                && OPERAND_PATTERN.matcher(token).matches();
     }
 
 
@@ -146,6 +169,11 @@ public class LogicExpression extends Expression {
         return true;
     }
 
+    @Override
+    public ValueType getResultType() {
+        return ValueType.BOOLEAN;
+    }
+
     @Override
     public String toString() {
         return "LogicExpression{" +
@@ -162,9 +190,12 @@ public class LogicExpression extends Expression {
 
     @Override
     protected Object performCalculation() {
-        // Cast variableValues to HashMap<String, Boolean>
-        @SuppressWarnings("unchecked")
-        HashMap<String, Boolean> booleanValues = (HashMap<String, Boolean>) (HashMap<?, ?>) getVariableValues();
+        if (hasSuppliers() && this.isShortCircuit) {
+            // Lazy bindings: only the suppliers the evaluation reaches are resolved
+            CompiledExpression program = compileUnchecked();
+            return CompiledExpression.toBoolean(program.evaluateLazily(program.bindLazily(getVariableValues())));
+        }
+        HashMap<String, Boolean> booleanValues = booleanValues();
         Boolean result;
         // Call the evalShortCircuit function
         if (this.isShortCircuit) {
@@ -174,4 +205,11 @@ public class LogicExpression extends Expression {
         }
         return result;
     }
+
+    // Variable values cast to HashMap<String, Boolean>, with suppliers resolved
+    @SuppressWarnings("unchecked")
+    private HashMap<String, Boolean> booleanValues() {
+        Map<String, Object> values = hasSuppliers() ? resolveSuppliers() : getVariableValues();
+        return (HashMap<String, Boolean>) (HashMap<?, ?>) values;
+    }
 }
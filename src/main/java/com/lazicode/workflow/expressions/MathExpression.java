@@ -2,22 +2,31 @@ package com.lazicode.workflow.expressions;
 
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.Collections;
+import java.util.regex.Pattern;
 
 import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+import com.lazicode.workflow.expressions.evaluators.ExpressionEvaluator;
 import com.lazicode.workflow.expressions.evaluators.PostfixLogic;
 import com.lazicode.workflow.expressions.evaluators.PostfixMath;
 
 
 /**
  * Class representing a mathematical expression. It supports infix and postfix notations
- * with operators: +, -, *, /, %.
+ * with operators: +, -, *, /, %, ^ and the intrinsic functions min, max, abs, sqrt,
+ * floor, ceil and clamp, written "max(A, B)" in infix and "A B max" in postfix.
  */
 public class MathExpression extends Expression {
 
     // Make SUPPORTED_OPERATORS public for access in test classes
     public static final Set<String> SUPPORTED_OPERATORS;
+    public static final Set<String> SUPPORTED_FUNCTIONS;
+    private static final Pattern OPERAND_PATTERN = Pattern.compile("[A-Za-z]");
+    private ExpressionEvaluator evaluator;
 
     static {
         Set<String> ops = new HashSet<>();
@@ -28,6 +37,17 @@ public class MathExpression extends Expression {
         ops.add("%");
         ops.add("^");
         // Exponentiation '^' is excluded as per requirements
+
+        Set<String> functions = new HashSet<>();
+        functions.add("min");
+        functions.add("max");
+        functions.add("abs");
+        functions.add("sqrt");
+        functions.add("floor");
+        functions.add("ceil");
+        functions.add("clamp");
+        SUPPORTED_FUNCTIONS = Collections.unmodifiableSet(functions);
+        ops.addAll(functions); // Functions are operators with call syntax
         SUPPORTED_OPERATORS = Collections.unmodifiableSet(ops); // Make the set unmodifiable
     }
 
@@ -60,6 +80,46 @@ public class MathExpression extends Expression {
 
 
 
+    /**
+     * Returns the arity type of an intrinsic function.
+     *
+     * @param function The function name.
+     * @return "unary", "binary" or "ternary"; null if the name is not a function.
+     */
+    static String functionType(String function) {
+        switch (function) {
+            case "abs":
+            case "sqrt":
+            case "floor":
+            case "ceil":
+                return "unary";
+            case "min":
+            case "max":
+                return "binary";
+            case "clamp":
+                return "ternary";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    protected boolean isFunction(String token) {
+        return SUPPORTED_FUNCTIONS.contains(token);
+    }
+
+    /**
+     * Constructs a MathExpression from a compiled program read back by
+     * {@link Expression#readFrom(java.io.DataInput)}.
+     *
+     * @param expressionString The original expression string.
+     * @param compiled         The compiled program.
+     * @throws InvalidExpression If the program does not produce a number.
+     */
+    MathExpression(String expressionString, CompiledExpression compiled) throws InvalidExpression {
+        super(expressionString, compiled);
+    }
+
     /**
      * Determines if a token is a supported operator in mathematical expressions.
      *
@@ -107,13 +167,14 @@ public class MathExpression extends Expression {
         return !isOperator(token)
                 && !token.equals("(")
                 && !token.equals(")")
-                && token.matches("[A-Za-z]");
+                && OPERAND_PATTERN.matcher(token).matches();
     }
     /**
-     * Determines the type of an operator: binary or none.
+     * Determines the type of an operator: unary, binary or ternary for
+     * functions, binary for arithmetic operators, or none.
      *
      * @param operator The operator to evaluate.
-     * @return "binary" if the operator is binary; "none" otherwise.
+     * @return "unary", "binary" or "ternary"; "none" if the operator is unsupported.
      */
     @Override
     protected String operatorType(String operator) {
@@ -126,7 +187,8 @@ public class MathExpression extends Expression {
             case "^":
                 return "binary";
             default:
-                return "none"; // Indicates unsupported or invalid operator
+                String type = functionType(operator);
+                return type == null ? "none" : type; // "none" indicates unsupported or invalid operator
         }
     }
 
@@ -155,6 +217,30 @@ public class MathExpression extends Expression {
         return true;
     }
 
+    /**
+     * Selects the backend used by {@link #getOutput()}, e.g. a
+     * {@link com.lazicode.workflow.expressions.evaluators.CompiledEvaluator}
+     * or {@link com.lazicode.workflow.expressions.evaluators.Exp4jEvaluator}
+     * built from {@link #compile()}.
+     *
+     * @param evaluator The backend, or null for the built-in postfix evaluator.
+     */
+    public void setEvaluator(ExpressionEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Returns the selected backend, or null if the built-in postfix evaluator is used.
+     */
+    public ExpressionEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    @Override
+    public ValueType getResultType() {
+        return ValueType.NUMBER;
+    }
+
     @Override
     public String toString() {
         return "LogicExpression{" +
@@ -170,13 +256,22 @@ public class MathExpression extends Expression {
 
     @Override
     protected Object performCalculation() {
-        // Cast variableValues to HashMap<String, Boolean>
-        @SuppressWarnings("unchecked")
-        HashMap<String, Double> doubleValues = (HashMap<String, Double>) (HashMap<?, ?>) getVariableValues();
+        HashMap<String, Double> doubleValues = doubleValues();
 
+        if (evaluator != null) {
+            return evaluator.evaluate(doubleValues);
+        }
         // Call the evalShortCircuit function
         Double result = PostfixMath.eval(this.postfixExpression, doubleValues);
         return result;
     }
+
+    // Variable values cast to HashMap<String, Double>; every variable of a math
+    // expression is needed, so each supplier is resolved once up front
+    @SuppressWarnings("unchecked")
+    private HashMap<String, Double> doubleValues() {
+        Map<String, Object> values = hasSuppliers() ? resolveSuppliers() : getVariableValues();
+        return (HashMap<String, Double>) (HashMap<?, ?>) values;
+    }
     
 }
@@ -0,0 +1,271 @@
+package com.lazicode.workflow.expressions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ExpressionDag;
+import com.lazicode.workflow.expressions.compiler.Opcode;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+/**
+ * Incremental, Rete-style network of boolean rules for facts that change
+ * one at a time. The rules are hash-consed into a shared
+ * {@link ExpressionDag}: variable loads act as alpha nodes, operator nodes
+ * act as beta nodes, and the network keeps the last value of every node as
+ * its memory. Setting a variable recomputes only the nodes downstream of it
+ * and stops wherever a node's value does not change, emitting activation
+ * and deactivation events for rules whose outcome flipped.
+ *
+ * A rule is active when it evaluates to true; unknown counts as inactive.
+ * Instances are not thread-safe.
+ */
+public final class RuleNetwork {
+
+    /**
+     * Receives rule activation changes.
+     */
+    public interface Listener {
+        /**
+         * Called when a rule starts evaluating to true.
+         *
+         * @param rule       The rule index.
+         * @param expression The rule expression.
+         */
+        void activated(int rule, Expression expression);
+
+        /**
+         * Called when a rule stops evaluating to true.
+         *
+         * @param rule       The rule index.
+         * @param expression The rule expression.
+         */
+        void deactivated(int rule, Expression expression);
+    }
+
+    private final List<Expression> rules;
+    private final ExpressionDag dag;
+    private final int[] loadNodes;      // slot -> LOAD node id
+    private final int[] parentStart;    // CSR offsets into parents
+    private final int[] parents;
+    private final int[] ruleStart;      // CSR offsets into ruleIndices
+    private final int[] ruleIndices;
+    private final double[] memory;
+    private final BitSet active = new BitSet();
+    private final BitSet dirty = new BitSet();
+    private final List<Listener> listeners = new ArrayList<>();
+
+    /**
+     * Builds a network from a collection of boolean rules. Every variable
+     * starts unknown, so no rule is active until facts are set.
+     *
+     * @param rules The rules; each must produce a boolean.
+     * @throws InvalidExpression If a rule is not boolean or cannot be compiled.
+     */
+    public RuleNetwork(Collection<? extends Expression> rules) throws InvalidExpression {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        this.dag = new ExpressionDag();
+        int[] roots = new int[this.rules.size()];
+        for (int i = 0; i < roots.length; i++) {
+            Expression rule = this.rules.get(i);
+            if (rule.getResultType() != ValueType.BOOLEAN) {
+                throw new InvalidExpression("Rule " + i + " does not produce a boolean: " + rule.getExpressionString());
+            }
+            roots[i] = dag.add(rule.compile());
+        }
+
+        int size = dag.size();
+        this.loadNodes = new int[dag.getSymbols().length];
+        int[] parentCount = new int[size + 1];
+        for (int node = 0; node < size; node++) {
+            int op = dag.getOp(node);
+            if (op == Opcode.LOAD) {
+                loadNodes[dag.getLeft(node)] = node;
+            } else if (op != Opcode.CONST) {
+                parentCount[dag.getLeft(node) + 1]++;
+                if (Opcode.arity(op) == 2 && dag.getRight(node) != dag.getLeft(node)) {
+                    parentCount[dag.getRight(node) + 1]++;
+                }
+            }
+        }
+        this.parentStart = prefixSum(parentCount);
+        this.parents = new int[parentStart[size]];
+        int[] fill = Arrays.copyOf(parentStart, size);
+        for (int node = 0; node < size; node++) {
+            int op = dag.getOp(node);
+            if (op != Opcode.LOAD && op != Opcode.CONST) {
+                parents[fill[dag.getLeft(node)]++] = node;
+                if (Opcode.arity(op) == 2 && dag.getRight(node) != dag.getLeft(node)) {
+                    parents[fill[dag.getRight(node)]++] = node;
+                }
+            }
+        }
+
+        int[] ruleCount = new int[size + 1];
+        for (int root : roots) {
+            ruleCount[root + 1]++;
+        }
+        this.ruleStart = prefixSum(ruleCount);
+        this.ruleIndices = new int[roots.length];
+        fill = Arrays.copyOf(ruleStart, size);
+        for (int i = 0; i < roots.length; i++) {
+            ruleIndices[fill[roots[i]]++] = i;
+        }
+
+        this.memory = new double[size];
+        double[] slots = new double[loadNodes.length];
+        Arrays.fill(slots, CompiledExpression.UNKNOWN);
+        dag.evaluate(slots, memory);
+        for (int i = 0; i < roots.length; i++) {
+            if (memory[roots[i]] == CompiledExpression.TRUE) {
+                active.set(i);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener for activation changes.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a previously registered listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the rules in index order.
+     */
+    public List<Expression> getRules() {
+        return rules;
+    }
+
+    /**
+     * Checks whether a rule currently evaluates to true.
+     *
+     * @param rule The rule index.
+     * @return true if the rule is active.
+     */
+    public boolean isActive(int rule) {
+        return active.get(rule);
+    }
+
+    /**
+     * Returns the indices of the currently active rules.
+     */
+    public BitSet getActiveRules() {
+        return (BitSet) active.clone();
+    }
+
+    /**
+     * Sets one fact and propagates the change through the affected nodes.
+     * Variables no rule references are ignored.
+     *
+     * @param variable The variable name.
+     * @param value    A Boolean or Number, or null to make the fact unknown.
+     */
+    public void setVariable(String variable, Object value) {
+        int slot = dag.slotOf(variable);
+        if (slot >= 0 && assign(slot, value)) {
+            propagate();
+        }
+    }
+
+    /**
+     * Sets several facts and propagates all changes in a single pass.
+     *
+     * @param values The variable values keyed by name.
+     */
+    public void setVariables(Map<String, ?> values) {
+        boolean changed = false;
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            int slot = dag.slotOf(entry.getKey());
+            if (slot >= 0) {
+                changed |= assign(slot, entry.getValue());
+            }
+        }
+        if (changed) {
+            propagate();
+        }
+    }
+
+    private boolean assign(int slot, Object value) {
+        int node = loadNodes[slot];
+        double encoded = CompiledExpression.encode(value);
+        if (sameValue(memory[node], encoded)) {
+            return false;
+        }
+        update(node, encoded);
+        return true;
+    }
+
+    /**
+     * Recomputes dirty nodes in id order. Parents always have larger ids than
+     * their children, so one ascending sweep sees every node after all of
+     * its inputs are up to date.
+     */
+    private void propagate() {
+        for (int node = dirty.nextSetBit(0); node >= 0; node = dirty.nextSetBit(node + 1)) {
+            dirty.clear(node);
+            double value = dag.evaluateNode(node, null, memory); // Dirty nodes are never loads
+            if (sameValue(memory[node], value)) {
+                continue;
+            }
+            update(node, value);
+        }
+    }
+
+    /**
+     * Stores a node's new value, schedules its parents and notifies listeners
+     * of rules rooted at the node whose outcome flipped.
+     */
+    private void update(int node, double value) {
+        memory[node] = value;
+        markParents(node);
+        boolean nowActive = value == CompiledExpression.TRUE;
+        for (int i = ruleStart[node]; i < ruleStart[node + 1]; i++) {
+            int rule = ruleIndices[i];
+            if (nowActive != active.get(rule)) {
+                active.set(rule, nowActive);
+                for (Listener listener : listeners) {
+                    if (nowActive) {
+                        listener.activated(rule, rules.get(rule));
+                    } else {
+                        listener.deactivated(rule, rules.get(rule));
+                    }
+                }
+            }
+        }
+    }
+
+    private void markParents(int node) {
+        for (int i = parentStart[node]; i < parentStart[node + 1]; i++) {
+            dirty.set(parents[i]);
+        }
+    }
+
+    private static boolean sameValue(double a, double b) {
+        return a == b || (a != a && b != b);
+    }
+
+    private static int[] prefixSum(int[] counts) {
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += counts[i - 1];
+        }
+        return counts;
+    }
+}
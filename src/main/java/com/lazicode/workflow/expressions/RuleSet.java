@@ -0,0 +1,152 @@
+package com.lazicode.workflow.expressions;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ExpressionDag;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+/**
+ * A collection of boolean rules compiled into one combined program. All
+ * rules are evaluated against a single shared binding in one pass over a
+ * hash-consed {@link ExpressionDag}, so subterms shared between rules are
+ * computed once. The result is a BitSet of the rules that fired, indexed in
+ * the order the rules were given.
+ *
+ * A RuleSet is immutable once compiled. The allocation-free
+ * {@link #evaluate(double[], double[], BitSet)} variant may be called from
+ * several threads as long as each thread uses its own scratch buffer.
+ */
+public final class RuleSet {
+    private final List<Expression> rules;
+    private final ExpressionDag dag;
+    private final int[] roots;
+
+    private RuleSet(List<Expression> rules, ExpressionDag dag, int[] roots) {
+        this.rules = rules;
+        this.dag = dag;
+        this.roots = roots;
+    }
+
+    /**
+     * Compiles a collection of rules into one RuleSet.
+     *
+     * @param rules The rules; each must produce a boolean.
+     * @return The compiled RuleSet.
+     * @throws InvalidExpression If a rule is not boolean or cannot be compiled.
+     */
+    public static RuleSet compile(Collection<? extends Expression> rules) throws InvalidExpression {
+        List<Expression> ordered = new ArrayList<>(rules);
+        ExpressionDag dag = new ExpressionDag();
+        int[] roots = new int[ordered.size()];
+        for (int i = 0; i < roots.length; i++) {
+            Expression rule = ordered.get(i);
+            if (rule.getResultType() != ValueType.BOOLEAN) {
+                throw new InvalidExpression("Rule " + i + " does not produce a boolean: " + rule.getExpressionString());
+            }
+            roots[i] = dag.add(rule.compile());
+        }
+        return new RuleSet(Collections.unmodifiableList(ordered), dag, roots);
+    }
+
+    /**
+     * Returns the number of rules.
+     */
+    public int size() {
+        return roots.length;
+    }
+
+    /**
+     * Returns the rules in index order.
+     */
+    public List<Expression> getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the number of distinct subterms evaluated per pass.
+     */
+    public int getNodeCount() {
+        return dag.size();
+    }
+
+    /**
+     * Returns the variable bound to each slot of the shared binding vector.
+     */
+    public String[] getSymbols() {
+        return dag.getSymbols();
+    }
+
+    /**
+     * Returns the slot of a variable in the shared binding vector.
+     *
+     * @param symbol The variable name.
+     * @return The slot index, or -1 if no rule references the variable.
+     */
+    public int slotOf(String symbol) {
+        return dag.slotOf(symbol);
+    }
+
+    /**
+     * Packs a map of variable values into a shared binding vector.
+     *
+     * @param values The variable values keyed by name.
+     * @return The slot vector.
+     */
+    public double[] bind(Map<String, ?> values) {
+        return dag.bind(values);
+    }
+
+    /**
+     * Allocates a scratch buffer for {@link #evaluate(double[], double[], BitSet)}.
+     */
+    public double[] newScratch() {
+        return new double[dag.size()];
+    }
+
+    /**
+     * Evaluates all rules against a binding.
+     *
+     * @param values The variable values keyed by name.
+     * @return The indices of the rules that evaluated to true.
+     */
+    public BitSet evaluate(Map<String, ?> values) {
+        return evaluate(bind(values));
+    }
+
+    /**
+     * Evaluates all rules against a binding vector.
+     *
+     * @param slots The shared binding vector, see {@link #bind(Map)}.
+     * @return The indices of the rules that evaluated to true.
+     */
+    public BitSet evaluate(double[] slots) {
+        BitSet fired = new BitSet(roots.length);
+        evaluate(slots, newScratch(), fired);
+        return fired;
+    }
+
+    /**
+     * Evaluates all rules against a binding vector without allocating.
+     * Rules whose result is false or unknown are cleared in the output.
+     *
+     * @param slots   The shared binding vector, see {@link #bind(Map)}.
+     * @param scratch A buffer from {@link #newScratch()}.
+     * @param fired   Receives the indices of the rules that evaluated to true.
+     */
+    public void evaluate(double[] slots, double[] scratch, BitSet fired) {
+        dag.evaluate(slots, scratch);
+        fired.clear();
+        for (int i = 0; i < roots.length; i++) {
+            if (scratch[roots[i]] == CompiledExpression.TRUE) {
+                fired.set(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.lazicode.workflow.expressions.analysis;
+
+import java.util.SplittableRandom;
+
+/**
+ * Sampler of one input variable of a Monte Carlo run. A distribution draws
+ * every value from the random stream it is handed and keeps no state of its
+ * own, so one instance may serve every worker of a parallel run.
+ */
+@FunctionalInterface
+public interface Distribution {
+
+    /**
+     * Draws one value.
+     *
+     * @param random The worker's random stream.
+     * @return The sampled value.
+     */
+    double sample(SplittableRandom random);
+
+    /**
+     * Always the same value.
+     *
+     * @param value The value.
+     */
+    static Distribution constant(double value) {
+        return random -> value;
+    }
+
+    /**
+     * Uniform over [low, high).
+     *
+     * @param low  The lower bound.
+     * @param high The upper bound.
+     */
+    static Distribution uniform(double low, double high) {
+        if (!(low < high)) {
+            throw new IllegalArgumentException("Uniform range [" + low + ", " + high + ") is empty.");
+        }
+        return random -> random.nextDouble(low, high);
+    }
+
+    /**
+     * Normal (Gaussian).
+     *
+     * @param mean              The mean.
+     * @param standardDeviation The standard deviation, not negative.
+     */
+    static Distribution normal(double mean, double standardDeviation) {
+        if (!(standardDeviation >= 0)) {
+            throw new IllegalArgumentException("Standard deviation must not be negative: " + standardDeviation);
+        }
+        return random -> mean + standardDeviation * random.nextGaussian();
+    }
+
+    /**
+     * Log-normal: the exponential of a normal variable.
+     *
+     * @param mu    The mean of the underlying normal variable.
+     * @param sigma The standard deviation of the underlying normal variable.
+     */
+    static Distribution logNormal(double mu, double sigma) {
+        Distribution normal = normal(mu, sigma);
+        return random -> Math.exp(normal.sample(random));
+    }
+
+    /**
+     * Exponential.
+     *
+     * @param rate The rate, i.e. the inverse of the mean; must be positive.
+     */
+    static Distribution exponential(double rate) {
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("Rate must be positive: " + rate);
+        }
+        return random -> -Math.log1p(-random.nextDouble()) / rate;
+    }
+
+    /**
+     * Triangular over [low, high] with the given mode.
+     *
+     * @param low  The lower bound.
+     * @param mode The most likely value.
+     * @param high The upper bound.
+     */
+    static Distribution triangular(double low, double mode, double high) {
+        if (!(low <= mode && mode <= high && low < high)) {
+            throw new IllegalArgumentException("Triangular distribution needs low <= mode <= high and low < high.");
+        }
+        double split = (mode - low) / (high - low);
+        return random -> {
+            double u = random.nextDouble();
+            return u < split ? low + Math.sqrt(u * (high - low) * (mode - low))
+                    : high - Math.sqrt((1 - u) * (high - low) * (high - mode));
+        };
+    }
+}
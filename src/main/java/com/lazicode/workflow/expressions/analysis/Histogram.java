@@ -0,0 +1,132 @@
+package com.lazicode.workflow.expressions.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable histogram of results in equal-width bins over [low, high]. A
+ * result equal to high falls into the last bin; results outside the range
+ * and unknown (NaN) results are counted separately.
+ */
+public final class Histogram {
+
+    private final double low;
+    private final double high;
+    private final double scale;
+    private final long[] counts;
+    private long underflow;
+    private long overflow;
+    private long unknown;
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param low  The lower bound of the first bin.
+     * @param high The upper bound of the last bin.
+     * @param bins The number of bins.
+     */
+    public Histogram(double low, double high, int bins) {
+        if (bins < 1) {
+            throw new IllegalArgumentException("Histogram must have at least one bin.");
+        }
+        if (!(low < high)) {
+            throw new IllegalArgumentException("Histogram range [" + low + ", " + high + "] is empty.");
+        }
+        this.low = low;
+        this.high = high;
+        this.scale = bins / (high - low);
+        this.counts = new long[bins];
+    }
+
+    /**
+     * Returns an empty histogram with the same bins.
+     */
+    public Histogram emptyCopy() {
+        return new Histogram(low, high, counts.length);
+    }
+
+    /**
+     * Counts one result.
+     *
+     * @param value The result.
+     */
+    public void accept(double value) {
+        if (value != value) {
+            unknown++;
+        } else if (value < low) {
+            underflow++;
+        } else if (value > high) {
+            overflow++;
+        } else {
+            counts[Math.min((int) ((value - low) * scale), counts.length - 1)]++;
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram with the same bins to this one.
+     *
+     * @param other The other histogram.
+     * @return This histogram.
+     */
+    public Histogram merge(Histogram other) {
+        if (other.low != low || other.high != high || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Cannot merge histograms with different bins.");
+        }
+        for (int bin = 0; bin < counts.length; bin++) {
+            counts[bin] += other.counts[bin];
+        }
+        underflow += other.underflow;
+        overflow += other.overflow;
+        unknown += other.unknown;
+        return this;
+    }
+
+    /**
+     * Returns the number of bins.
+     */
+    public int getBinCount() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the lower bound of a bin.
+     *
+     * @param bin The bin index.
+     */
+    public double getBinLow(int bin) {
+        return low + bin / scale;
+    }
+
+    /**
+     * Returns the count of every bin.
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * Returns the number of results below the range.
+     */
+    public long getUnderflow() {
+        return underflow;
+    }
+
+    /**
+     * Returns the number of results above the range.
+     */
+    public long getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Returns the number of unknown results.
+     */
+    public long getUnknown() {
+        return unknown;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{range=[" + low + ", " + high + "], counts=" + Arrays.toString(counts) + ", underflow="
+                + underflow + ", overflow=" + overflow + ", unknown=" + unknown + '}';
+    }
+}
@@ -0,0 +1,181 @@
+package com.lazicode.workflow.expressions.analysis;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.Supplier;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+/**
+ * Evaluates one expression under randomly sampled inputs, in parallel. Each
+ * variable is drawn from its own {@link Distribution}; the samples are
+ * written into a per-worker slot vector and evaluated in place, so a run
+ * allocates per block of samples, never per sample.
+ *
+ * A run is reproducible: the samples are cut into fixed-size blocks, and
+ * the random stream of every block is split off a {@link SplittableRandom}
+ * seeded with the run's seed along a split tree that depends only on the
+ * sample count. Partial results are combined along the same tree, so a run
+ * gives bit-for-bit the same answer for the same seed whatever the number of
+ * threads. Runs execute in the fork-join pool of the calling thread, or in
+ * the common pool.
+ *
+ * A MonteCarlo instance is immutable and may be run several times, also
+ * concurrently.
+ */
+public final class MonteCarlo {
+
+    private static final long BLOCK = 1 << 13;
+
+    private final CompiledExpression program;
+    private final Distribution[] distributions;
+
+    private MonteCarlo(CompiledExpression program, Distribution[] distributions) {
+        this.program = program;
+        this.distributions = distributions;
+    }
+
+    /**
+     * Prepares a Monte Carlo run of an expression.
+     *
+     * @param expression    The expression to evaluate.
+     * @param distributions The distribution of every variable, keyed by name.
+     * @return The prepared run.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    public static MonteCarlo of(Expression expression, Map<String, Distribution> distributions)
+            throws InvalidExpression {
+        return of(expression.compile(), distributions);
+    }
+
+    /**
+     * Prepares a Monte Carlo run of a compiled expression.
+     *
+     * @param program       The compiled expression.
+     * @param distributions The distribution of every variable, keyed by name;
+     *                      use {@link Distribution#constant(double)} for fixed inputs.
+     * @return The prepared run.
+     * @throws IllegalArgumentException If a variable has no distribution or a
+     *                                  distribution is given for a variable that
+     *                                  is not part of the expression.
+     */
+    public static MonteCarlo of(CompiledExpression program, Map<String, Distribution> distributions) {
+        String[] symbols = program.getSymbols();
+        Distribution[] samplers = new Distribution[symbols.length];
+        for (int slot = 0; slot < symbols.length; slot++) {
+            Distribution distribution = distributions.get(symbols[slot]);
+            if (distribution == null) {
+                throw new IllegalArgumentException("Variable " + symbols[slot] + " has no distribution.");
+            }
+            samplers[slot] = distribution;
+        }
+        for (String variable : distributions.keySet()) {
+            if (program.slotOf(variable) < 0) {
+                throw new IllegalArgumentException("Variable " + variable + " is not part of the expression.");
+            }
+        }
+        return new MonteCarlo(program, samplers);
+    }
+
+    /**
+     * Runs the simulation and summarizes the results with the default
+     * quantile accuracy.
+     *
+     * @param samples The number of samples.
+     * @param seed    The seed; the same seed gives the same summary.
+     * @return The summary.
+     */
+    public SampleSummary run(long samples, long seed) {
+        return run(samples, seed, SampleSummary.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Runs the simulation and summarizes the results.
+     *
+     * @param samples          The number of samples.
+     * @param seed             The seed; the same seed gives the same summary.
+     * @param relativeAccuracy The relative error bound of quantiles.
+     * @return The summary.
+     */
+    public SampleSummary run(long samples, long seed, double relativeAccuracy) {
+        SampleSummary empty = new SampleSummary(relativeAccuracy);
+        return reduce(samples, seed, empty::emptyCopy, SampleSummary::accept, SampleSummary::merge);
+    }
+
+    /**
+     * Runs the simulation and folds every result into a mutable container:
+     * each block of samples fills a container of its own, and containers are
+     * combined in block order.
+     *
+     * @param samples     The number of samples.
+     * @param seed        The seed; the same seed gives the same samples.
+     * @param supplier    Creates an empty container.
+     * @param accumulator Adds one result to a container.
+     * @param combiner    Combines two containers, the left one covering the earlier blocks.
+     * @param <A>         The container type.
+     * @return The combined container.
+     */
+    public <A> A reduce(long samples, long seed, Supplier<A> supplier, ObjDoubleConsumer<A> accumulator,
+            BinaryOperator<A> combiner) {
+        if (samples < 0) {
+            throw new IllegalArgumentException("Sample count must not be negative: " + samples);
+        }
+        return new Task<>(program, distributions, 0, samples, new SplittableRandom(seed), supplier, accumulator,
+                combiner).invoke();
+    }
+
+    private static final class Task<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledExpression program;
+        private final Distribution[] distributions;
+        private final long from;
+        private final long to;
+        private final SplittableRandom random;
+        private final Supplier<A> supplier;
+        private final ObjDoubleConsumer<A> accumulator;
+        private final BinaryOperator<A> combiner;
+
+        Task(CompiledExpression program, Distribution[] distributions, long from, long to, SplittableRandom random,
+                Supplier<A> supplier, ObjDoubleConsumer<A> accumulator, BinaryOperator<A> combiner) {
+            this.program = program;
+            this.distributions = distributions;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            long blocks = (to - from + BLOCK - 1) / BLOCK;
+            if (blocks > 1) {
+                // Split on a block boundary; the split tree depends only on the sample count
+                long middle = from + blocks / 2 * BLOCK;
+                Task<A> left = new Task<>(program, distributions, from, middle, random.split(), supplier,
+                        accumulator, combiner);
+                left.fork();
+                A right = new Task<>(program, distributions, middle, to, random, supplier, accumulator, combiner)
+                        .compute();
+                return combiner.apply(left.join(), right);
+            }
+            A container = supplier.get();
+            double[] slots = new double[distributions.length];
+            double[] stack = new double[program.getMaxStack()];
+            for (long sample = from; sample < to; sample++) {
+                for (int slot = 0; slot < slots.length; slot++) {
+                    slots[slot] = distributions[slot].sample(random);
+                }
+                accumulator.accept(container, program.evaluate(slots, stack));
+            }
+            return container;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.lazicode.workflow.expressions.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cartesian product of value ranges, one axis per variable, addressed by a
+ * point index instead of being materialized. Point indices run in row-major
+ * order: the last axis varies fastest. A grid is immutable.
+ */
+public final class ParameterGrid {
+
+    private final String[] variables;
+    private final double[][] values;
+    private final double[] starts;
+    private final double[] steps;
+    private final long[] counts;
+    private final long size;
+
+    private ParameterGrid(Builder builder) {
+        int axes = builder.variables.size();
+        this.variables = builder.variables.toArray(new String[0]);
+        this.values = builder.values.toArray(new double[0][]);
+        this.starts = new double[axes];
+        this.steps = new double[axes];
+        this.counts = new long[axes];
+        long product = 1;
+        for (int axis = 0; axis < axes; axis++) {
+            starts[axis] = builder.starts.get(axis);
+            steps[axis] = builder.steps.get(axis);
+            counts[axis] = builder.counts.get(axis);
+            try {
+                product = Math.multiplyExact(product, counts[axis]);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Parameter grid has more than " + Long.MAX_VALUE + " points.");
+            }
+        }
+        this.size = product;
+    }
+
+    /**
+     * Starts a grid definition.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the number of points in the grid.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of axes.
+     */
+    public int getAxisCount() {
+        return variables.length;
+    }
+
+    /**
+     * Returns the variables of the axes, in axis order.
+     */
+    public List<String> getVariables() {
+        return Collections.unmodifiableList(Arrays.asList(variables));
+    }
+
+    /**
+     * Returns the number of values on an axis.
+     *
+     * @param axis The axis index.
+     */
+    public long getAxisSize(int axis) {
+        return counts[axis];
+    }
+
+    /**
+     * Returns a value of an axis.
+     *
+     * @param axis     The axis index.
+     * @param position The position on the axis, from 0 to its size - 1.
+     * @return The value.
+     */
+    public double valueAt(int axis, long position) {
+        return values[axis] != null ? values[axis][(int) position] : starts[axis] + steps[axis] * position;
+    }
+
+    /**
+     * Returns the coordinates of a point.
+     *
+     * @param index The point index, from 0 to {@link #size()} - 1.
+     * @return The axis values, in axis order.
+     */
+    public double[] point(long index) {
+        double[] point = new double[variables.length];
+        long[] positions = new long[variables.length];
+        positions(index, positions);
+        for (int axis = 0; axis < point.length; axis++) {
+            point[axis] = valueAt(axis, positions[axis]);
+        }
+        return point;
+    }
+
+    /**
+     * Decodes a point index into its position on every axis.
+     *
+     * @param index     The point index.
+     * @param positions Receives the position on each axis.
+     */
+    void positions(long index, long[] positions) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Point " + index + " is outside a grid of " + size + " points.");
+        }
+        for (int axis = variables.length - 1; axis >= 0; axis--) {
+            positions[axis] = index % counts[axis];
+            index /= counts[axis];
+        }
+    }
+
+    /**
+     * Builds a grid axis by axis. The first axis added varies slowest.
+     */
+    public static final class Builder {
+        private final List<String> variables = new ArrayList<>();
+        private final List<double[]> values = new ArrayList<>();
+        private final List<Double> starts = new ArrayList<>();
+        private final List<Double> steps = new ArrayList<>();
+        private final List<Long> counts = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds an axis of evenly spaced values from one bound to the other,
+         * both included.
+         *
+         * @param variable The variable the axis sweeps.
+         * @param from     The first value.
+         * @param to       The last value.
+         * @param count    The number of values; 1 yields only the first value.
+         * @return This builder.
+         */
+        public Builder range(String variable, double from, double to, long count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("Axis " + variable + " must have at least one value.");
+            }
+            return add(variable, null, from, count == 1 ? 0 : (to - from) / (count - 1), count);
+        }
+
+        /**
+         * Adds an axis of explicit values.
+         *
+         * @param variable The variable the axis sweeps.
+         * @param values   The values, in order.
+         * @return This builder.
+         */
+        public Builder values(String variable, double... values) {
+            if (values.length == 0) {
+                throw new IllegalArgumentException("Axis " + variable + " must have at least one value.");
+            }
+            return add(variable, values.clone(), 0, 0, values.length);
+        }
+
+        private Builder add(String variable, double[] explicit, double start, double step, long count) {
+            if (variables.contains(variable)) {
+                throw new IllegalArgumentException("Variable " + variable + " already has an axis.");
+            }
+            variables.add(variable);
+            values.add(explicit);
+            starts.add(start);
+            steps.add(step);
+            counts.add(count);
+            return this;
+        }
+
+        /**
+         * Builds the grid.
+         *
+         * @throws IllegalArgumentException If the grid has no axis or more than
+         *                                  Long.MAX_VALUE points.
+         */
+        public ParameterGrid build() {
+            if (variables.isEmpty()) {
+                throw new IllegalArgumentException("Parameter grid must have at least one axis.");
+            }
+            return new ParameterGrid(this);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.lazicode.workflow.expressions.analysis;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+/**
+ * Evaluates one expression at every point of a {@link ParameterGrid}. The
+ * grid is never materialized: each worker walks its own index range with an
+ * odometer that updates only the axes that change from one point to the
+ * next, writing them into a private slot vector, so a sweep of billions of
+ * points allocates per split, not per point.
+ *
+ * Results are delivered as a lazily evaluated {@link DoubleStream}, to a
+ * callback, or folded by a reducer; {@link #summarize()} and
+ * {@link #histogram(double, double, int)} cover the common cases. Work is
+ * split by halving index ranges and runs on the common fork-join pool.
+ *
+ * A sweep is immutable and may be run several times, also concurrently.
+ */
+public final class ParameterSweep {
+
+    private static final long MIN_SPLIT = 1 << 12;
+
+    private final CompiledExpression program;
+    private final ParameterGrid grid;
+    private final int[] axisSlots;
+    private final double[] template;
+
+    private ParameterSweep(CompiledExpression program, ParameterGrid grid, int[] axisSlots, double[] template) {
+        this.program = program;
+        this.grid = grid;
+        this.axisSlots = axisSlots;
+        this.template = template;
+    }
+
+    /**
+     * Prepares a sweep of an expression in which every variable is on an axis.
+     *
+     * @param expression The expression to evaluate.
+     * @param grid       The grid of points.
+     * @return The sweep.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    public static ParameterSweep of(Expression expression, ParameterGrid grid) throws InvalidExpression {
+        return of(expression.compile(), grid, Collections.emptyMap());
+    }
+
+    /**
+     * Prepares a sweep of a compiled expression.
+     *
+     * @param program The compiled expression.
+     * @param grid    The grid of points.
+     * @param fixed   Values of the variables that are not on an axis.
+     * @return The sweep.
+     * @throws IllegalArgumentException If an axis variable is not part of the
+     *                                  expression, or an expression variable is
+     *                                  neither on an axis nor fixed.
+     */
+    public static ParameterSweep of(CompiledExpression program, ParameterGrid grid, Map<String, ?> fixed) {
+        int[] axisSlots = new int[grid.getAxisCount()];
+        boolean[] bound = new boolean[program.getSlotCount()];
+        for (int axis = 0; axis < axisSlots.length; axis++) {
+            String variable = grid.getVariables().get(axis);
+            axisSlots[axis] = program.slotOf(variable);
+            if (axisSlots[axis] < 0) {
+                throw new IllegalArgumentException("Variable " + variable + " is not part of the expression.");
+            }
+            bound[axisSlots[axis]] = true;
+        }
+        double[] template = program.bind(fixed);
+        for (int slot = 0; slot < bound.length; slot++) {
+            if (!bound[slot] && !fixed.containsKey(program.getSymbols()[slot])) {
+                throw new IllegalArgumentException("Variable " + program.getSymbols()[slot]
+                        + " is neither on an axis nor fixed.");
+            }
+        }
+        return new ParameterSweep(program, grid, axisSlots, template);
+    }
+
+    /**
+     * Returns the number of points swept.
+     */
+    public long size() {
+        return grid.size();
+    }
+
+    /**
+     * Returns the grid of points.
+     */
+    public ParameterGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns a spliterator of the results in point order. Every value is
+     * computed only when the spliterator is advanced, and splitting it
+     * halves its remaining index range.
+     */
+    public Spliterator.OfDouble spliterator() {
+        return new Cursor(0, grid.size());
+    }
+
+    /**
+     * Returns the results as a lazily evaluated stream in point order.
+     *
+     * @param parallel Whether the stream is parallel.
+     * @return The stream of results.
+     */
+    public DoubleStream stream(boolean parallel) {
+        return StreamSupport.doubleStream(spliterator(), parallel);
+    }
+
+    /**
+     * Calls a consumer with every point and its result, in parallel.
+     *
+     * @param consumer The consumer; it must be safe for concurrent use. The
+     *                 point array is reused and only valid during the call.
+     */
+    public void forEach(PointConsumer consumer) {
+        run(() -> null, (ignored, index, point, value) -> consumer.accept(index, point, value), (a, b) -> null);
+    }
+
+    /**
+     * Folds every result into a mutable container, in parallel: each split
+     * fills a container of its own and adjacent splits are combined in point
+     * order.
+     *
+     * @param supplier    Creates an empty container.
+     * @param accumulator Adds one result to a container.
+     * @param combiner    Combines two containers, the left one covering the lower indices.
+     * @param <A>         The container type.
+     * @return The combined container.
+     */
+    public <A> A reduce(Supplier<A> supplier, Accumulator<A> accumulator, BinaryOperator<A> combiner) {
+        return run(supplier, (container, index, point, value) -> accumulator.accept(container, index, value), combiner);
+    }
+
+    /**
+     * Computes the count, minimum, maximum, their point indices and the mean
+     * of the results.
+     */
+    public SweepSummary summarize() {
+        return reduce(SweepSummary::new, SweepSummary::accept, SweepSummary::merge);
+    }
+
+    /**
+     * Counts the results in equal-width bins.
+     *
+     * @param low  The lower bound of the first bin.
+     * @param high The upper bound of the last bin.
+     * @param bins The number of bins.
+     * @return The histogram.
+     */
+    public Histogram histogram(double low, double high, int bins) {
+        Histogram template = new Histogram(low, high, bins);
+        return reduce(template::emptyCopy, (histogram, index, value) -> histogram.accept(value), Histogram::merge);
+    }
+
+    /**
+     * Receives one point of a sweep.
+     */
+    @FunctionalInterface
+    public interface PointConsumer {
+        /**
+         * @param index The point index in the grid.
+         * @param point The axis values of the point, in axis order.
+         * @param value The result at the point.
+         */
+        void accept(long index, double[] point, double value);
+    }
+
+    /**
+     * Adds one result to a reduction container.
+     *
+     * @param <A> The container type.
+     */
+    @FunctionalInterface
+    public interface Accumulator<A> {
+        void accept(A container, long index, double value);
+    }
+
+    private interface Leaf<A> {
+        void accept(A container, long index, double[] point, double value);
+    }
+
+    private <A> A run(Supplier<A> supplier, Leaf<A> leaf, BinaryOperator<A> combiner) {
+        long threshold = Math.max(MIN_SPLIT, grid.size() / (ForkJoinPool.getCommonPoolParallelism() * 8L));
+        return ForkJoinPool.commonPool().invoke(new Task<>(new Cursor(0, grid.size()), threshold, supplier, leaf,
+                combiner));
+    }
+
+    private static final class Task<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final Cursor cursor;
+        private final long threshold;
+        private final Supplier<A> supplier;
+        private final Leaf<A> leaf;
+        private final BinaryOperator<A> combiner;
+
+        Task(Cursor cursor, long threshold, Supplier<A> supplier, Leaf<A> leaf, BinaryOperator<A> combiner) {
+            this.cursor = cursor;
+            this.threshold = threshold;
+            this.supplier = supplier;
+            this.leaf = leaf;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            if (cursor.estimateSize() > threshold) {
+                Cursor prefix = cursor.trySplit();
+                if (prefix != null) {
+                    Task<A> left = new Task<>(prefix, threshold, supplier, leaf, combiner);
+                    left.fork();
+                    A right = new Task<>(cursor, threshold, supplier, leaf, combiner).compute();
+                    return combiner.apply(left.join(), right);
+                }
+            }
+            A container = supplier.get();
+            cursor.drain(container, leaf);
+            return container;
+        }
+    }
+
+    /**
+     * Walks the index range [index, fence) with its own slot vector, point
+     * and stack. Axis positions are decoded once, then advanced like an
+     * odometer.
+     */
+    private final class Cursor implements Spliterator.OfDouble {
+        private long index;
+        private final long fence;
+        private double[] slots;
+        private double[] stack;
+        private double[] point;
+        private long[] positions;
+        private boolean positioned;
+
+        Cursor(long index, long fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public Cursor trySplit() {
+            long mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            Cursor prefix = new Cursor(index, mid);
+            index = mid;
+            positioned = false;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            seek();
+            double value = program.evaluate(slots, stack);
+            step();
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            if (index >= fence) {
+                return;
+            }
+            seek();
+            while (index < fence) {
+                double value = program.evaluate(slots, stack);
+                step();
+                action.accept(value);
+            }
+        }
+
+        <A> void drain(A container, Leaf<A> leaf) {
+            if (index >= fence) {
+                return;
+            }
+            seek();
+            while (index < fence) {
+                leaf.accept(container, index, point, program.evaluate(slots, stack));
+                step();
+            }
+        }
+
+        private void seek() {
+            if (positioned) {
+                return;
+            }
+            if (slots == null) {
+                slots = template.clone();
+                stack = new double[program.getMaxStack()];
+                point = new double[axisSlots.length];
+                positions = new long[axisSlots.length];
+            }
+            grid.positions(index, positions);
+            for (int axis = 0; axis < axisSlots.length; axis++) {
+                set(axis, grid.valueAt(axis, positions[axis]));
+            }
+            positioned = true;
+        }
+
+        // Moves to the next point, updating only the axes that change
+        private void step() {
+            if (++index >= fence) {
+                return;
+            }
+            for (int axis = axisSlots.length - 1; axis >= 0; axis--) {
+                if (++positions[axis] < grid.getAxisSize(axis)) {
+                    set(axis, grid.valueAt(axis, positions[axis]));
+                    return;
+                }
+                positions[axis] = 0;
+                set(axis, grid.valueAt(axis, 0));
+            }
+        }
+
+        private void set(int axis, double value) {
+            point[axis] = value;
+            slots[axisSlots[axis]] = value;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.lazicode.workflow.expressions.analysis;
+
+/**
+ * Mergeable streaming summary of sampled results: count, mean and variance
+ * (Welford's method, merged with Chan's formula), minimum, maximum and a
+ * quantile sketch. Unknown (NaN) results are counted separately and left out
+ * of every statistic.
+ *
+ * Quantiles come from a relative-error sketch in the manner of DDSketch:
+ * each non-zero result is counted in a logarithmic bucket, so a quantile is
+ * known to within the configured relative accuracy however many results are
+ * added, and merging two sketches is exact. Buckets are kept in arrays that
+ * grow with the spread of the results, not with their number, so adding a
+ * result does not allocate once the range has been seen. Infinite results,
+ * e.g. an overflowing power, are counted in two overflow buckets of their
+ * own; they make the mean infinite and the variance NaN, as they would in
+ * any floating-point sum.
+ */
+public final class SampleSummary {
+
+    /**
+     * The default relative accuracy of quantiles, 1%.
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    // Results this close to zero share the zero bucket
+    private static final double MIN_MAGNITUDE = 1e-300;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount;
+    private long negativeInfinityCount;
+    private long positiveInfinityCount;
+
+    private long count;
+    private long unknownCount;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates an empty summary with the default quantile accuracy.
+     */
+    public SampleSummary() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Creates an empty summary.
+     *
+     * @param relativeAccuracy The relative error bound of quantiles, in (0, 1).
+     */
+    public SampleSummary(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Returns an empty summary with the same quantile accuracy.
+     */
+    public SampleSummary emptyCopy() {
+        return new SampleSummary(relativeAccuracy);
+    }
+
+    /**
+     * Adds one result.
+     *
+     * @param value The result.
+     */
+    public void accept(double value) {
+        if (value != value) {
+            unknownCount++;
+            return;
+        }
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value == Double.POSITIVE_INFINITY) {
+            positiveInfinityCount++;
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            negativeInfinityCount++;
+        } else if (value > MIN_MAGNITUDE) {
+            positive.add(bucket(value), 1);
+        } else if (value < -MIN_MAGNITUDE) {
+            negative.add(bucket(-value), 1);
+        } else {
+            zeroCount++;
+        }
+    }
+
+    /**
+     * Folds another summary with the same quantile accuracy into this one.
+     *
+     * @param other The other summary.
+     * @return This summary.
+     */
+    public SampleSummary merge(SampleSummary other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge summaries with different quantile accuracy.");
+        }
+        if (other.count > 0) {
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+            count = total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            positive.addAll(other.positive);
+            negative.addAll(other.negative);
+            zeroCount += other.zeroCount;
+            negativeInfinityCount += other.negativeInfinityCount;
+            positiveInfinityCount += other.positiveInfinityCount;
+        }
+        unknownCount += other.unknownCount;
+        return this;
+    }
+
+    /**
+     * Returns the number of known results.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of unknown (NaN) results.
+     */
+    public long getUnknownCount() {
+        return unknownCount;
+    }
+
+    /**
+     * Returns the mean, or NaN if there are no results.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the sample variance, or NaN if there are fewer than two results.
+     */
+    public double getVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    /**
+     * Returns the sample standard deviation, or NaN if there are fewer than two results.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the smallest result, or NaN if there is none.
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the largest result, or NaN if there is none.
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Returns the relative error bound of {@link #getQuantile(double)}.
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Estimates a quantile of the results, to within the relative accuracy.
+     *
+     * @param q The quantile, from 0 to 1 (0.5 is the median).
+     * @return The estimate, or NaN if there are no results.
+     */
+    public double getQuantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (count - 1));
+        rank -= negativeInfinityCount;
+        if (rank < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        // Negative results in increasing order are their magnitudes in decreasing order
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            rank -= negative.counts[i];
+            if (rank < 0) {
+                return clamp(-value(negative.offset + i));
+            }
+        }
+        rank -= zeroCount;
+        if (rank < 0) {
+            return clamp(0);
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            rank -= positive.counts[i];
+            if (rank < 0) {
+                return clamp(value(positive.offset + i));
+            }
+        }
+        // Only positive infinities remain
+        return max;
+    }
+
+    private int bucket(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // The value in the middle of a bucket, in relative terms; the top bucket may reach past the largest double
+    private double value(int bucket) {
+        return Math.min(Double.MAX_VALUE, Math.exp(bucket * logGamma) * (2 / (gamma + 1)));
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Dense bucket counts over the index range seen so far.
+     */
+    private static final class Buckets {
+        long[] counts = new long[0];
+        int offset;
+
+        void add(int index, long n) {
+            if (counts.length == 0) {
+                counts = new long[16];
+                offset = index - 8;
+            } else if (index < offset || index >= offset + counts.length) {
+                grow(index);
+            }
+            counts[index - offset] += n;
+        }
+
+        void addAll(Buckets other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        private void grow(int index) {
+            int low = Math.min(offset, index);
+            int high = Math.max(offset + counts.length, index + 1);
+            int length = Math.max(high - low, counts.length * 2);
+            // Extend towards the side that ran out, keeping the old counts in place
+            int newOffset = index < offset ? high - length : low;
+            long[] grown = new long[length];
+            System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+            counts = grown;
+            offset = newOffset;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SampleSummary{count=" + count + ", unknown=" + unknownCount + ", mean=" + getMean() + ", stddev="
+                + getStandardDeviation() + ", min=" + getMin() + ", max=" + getMax() + ", median=" + getQuantile(0.5)
+                + '}';
+    }
+}
@@ -0,0 +1,127 @@
+package com.lazicode.workflow.expressions.analysis;
+
+/**
+ * Mergeable summary of a set of indexed results: their count, minimum and
+ * maximum with the index at which each occurs, and their mean. Unknown (NaN)
+ * results are counted separately and left out of every statistic. Ties go
+ * to the lowest index, so a parallel reduction gives the same answer as a
+ * sequential one.
+ */
+public final class SweepSummary {
+
+    private long count;
+    private long unknownCount;
+    private double min = Double.POSITIVE_INFINITY;
+    private long argMin = -1;
+    private double max = Double.NEGATIVE_INFINITY;
+    private long argMax = -1;
+    private double sum;
+
+    /**
+     * Adds one result.
+     *
+     * @param index The index of the result, e.g. its grid point.
+     * @param value The result.
+     */
+    public void accept(long index, double value) {
+        if (value != value) {
+            unknownCount++;
+            return;
+        }
+        count++;
+        sum += value;
+        if (value < min || (value == min && (argMin < 0 || index < argMin))) {
+            min = value;
+            argMin = index;
+        }
+        if (value > max || (value == max && (argMax < 0 || index < argMax))) {
+            max = value;
+            argMax = index;
+        }
+    }
+
+    /**
+     * Folds another summary into this one.
+     *
+     * @param other The other summary.
+     * @return This summary.
+     */
+    public SweepSummary merge(SweepSummary other) {
+        if (other.count > 0) {
+            if (other.min < min || (other.min == min && (argMin < 0 || other.argMin < argMin))) {
+                min = other.min;
+                argMin = other.argMin;
+            }
+            if (other.max > max || (other.max == max && (argMax < 0 || other.argMax < argMax))) {
+                max = other.max;
+                argMax = other.argMax;
+            }
+            count += other.count;
+            sum += other.sum;
+        }
+        unknownCount += other.unknownCount;
+        return this;
+    }
+
+    /**
+     * Returns the number of known results.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of unknown (NaN) results.
+     */
+    public long getUnknownCount() {
+        return unknownCount;
+    }
+
+    /**
+     * Returns the smallest result, or NaN if there is none.
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the index of the smallest result, or -1 if there is none.
+     */
+    public long getArgMin() {
+        return argMin;
+    }
+
+    /**
+     * Returns the largest result, or NaN if there is none.
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Returns the index of the largest result, or -1 if there is none.
+     */
+    public long getArgMax() {
+        return argMax;
+    }
+
+    /**
+     * Returns the sum of the known results.
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the mean of the known results, or NaN if there is none.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "SweepSummary{count=" + count + ", unknown=" + unknownCount + ", min=" + getMin() + " at " + argMin
+                + ", max=" + getMax() + " at " + argMax + ", mean=" + getMean() + '}';
+    }
+}
@@ -0,0 +1,384 @@
+package com.lazicode.workflow.expressions.analysis;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.batch.OffHeapBatch;
+import com.lazicode.workflow.expressions.batch.OffHeapColumn;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+/**
+ * Scores every row of a columnar dataset with an expression and keeps the
+ * k best rows, optionally only among the rows that pass a boolean guard.
+ * The dataset is split into chunks that are scored in parallel, each into a
+ * bounded heap of its own held in primitive arrays, and the heaps are
+ * merged at the end, so the full score column is never materialized.
+ *
+ * Rows whose score is unknown (NaN) are skipped, as are rows whose guard is
+ * false or unknown. Equal scores are ranked by row index, lowest first, so
+ * the result does not depend on how the work was split.
+ *
+ * The dataset may also live off the heap, in an {@link OffHeapBatch}; each
+ * chunk then stages its rows a block at a time into on-heap vectors, null
+ * rows reading as unknown.
+ *
+ * A TopK is immutable and may be used by several threads.
+ */
+public final class TopK {
+
+    private static final int MIN_CHUNK = 1 << 12;
+    private static final int STAGE_ROWS = 1 << 10;
+
+    private final CompiledExpression score;
+    private final CompiledExpression guard;
+    private final int k;
+    private final boolean lowest;
+
+    private TopK(CompiledExpression score, CompiledExpression guard, int k, boolean lowest) {
+        this.score = score;
+        this.guard = guard;
+        this.k = k;
+        this.lowest = lowest;
+    }
+
+    /**
+     * Keeps the k rows with the highest scores.
+     *
+     * @param score The scoring expression.
+     * @param k     The number of rows to keep.
+     * @return The evaluator.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    public static TopK highest(Expression score, int k) throws InvalidExpression {
+        return new TopK(score.compile(), null, checkK(k), false);
+    }
+
+    /**
+     * Keeps the k rows with the lowest scores.
+     *
+     * @param score The scoring expression.
+     * @param k     The number of rows to keep.
+     * @return The evaluator.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    public static TopK lowest(Expression score, int k) throws InvalidExpression {
+        return new TopK(score.compile(), null, checkK(k), true);
+    }
+
+    /**
+     * Returns an evaluator that only scores the rows passing a guard.
+     *
+     * @param guard A boolean expression, e.g. a LogicExpression or ComparisonExpression.
+     * @return The guarded evaluator.
+     * @throws InvalidExpression If the guard cannot be compiled or does not produce a boolean.
+     */
+    public TopK withGuard(Expression guard) throws InvalidExpression {
+        if (guard.getResultType() != ValueType.BOOLEAN) {
+            throw new InvalidExpression("Guard does not produce a boolean: " + guard.getExpressionString());
+        }
+        return new TopK(score, guard.compile(), k, lowest);
+    }
+
+    private static int checkK(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        return k;
+    }
+
+    /**
+     * Selects the best rows of a dataset.
+     *
+     * @param columns  The value of every variable per row, keyed by variable.
+     *                 Booleans are encoded as {@link CompiledExpression#TRUE} and
+     *                 {@link CompiledExpression#FALSE}, unknown values as NaN.
+     * @param rowCount The number of rows.
+     * @return The selected rows, best first.
+     * @throws IllegalArgumentException If a variable has no column or a column
+     *                                  has fewer than rowCount rows.
+     */
+    public Result select(Map<String, double[]> columns, int rowCount) {
+        double[][] scoreColumns = columnsOf(score, columns, rowCount);
+        double[][] guardColumns = guard == null ? null : columnsOf(guard, columns, rowCount);
+        return select((heap, from, to) -> scan(heap, scoreColumns, guardColumns, from, to, 0), rowCount);
+    }
+
+    /**
+     * Selects the best rows of an off-heap batch.
+     *
+     * @param batch The batch; null rows read as unknown.
+     * @return The selected rows, best first.
+     * @throws IllegalArgumentException If a variable has no column in the batch.
+     */
+    public Result select(OffHeapBatch batch) {
+        OffHeapColumn[] scoreInputs = batch.columnsOf(score);
+        OffHeapColumn[] guardInputs = guard == null ? null : batch.columnsOf(guard);
+        return select((heap, from, to) -> {
+            int rows = Math.min(STAGE_ROWS, to - from);
+            double[][] scoreColumns = new double[scoreInputs.length][rows];
+            double[][] guardColumns = guardInputs == null ? null : new double[guardInputs.length][rows];
+            for (int start = from; start < to; start += rows) {
+                int count = Math.min(rows, to - start);
+                stage(scoreInputs, start, count, scoreColumns);
+                if (guardColumns != null) {
+                    stage(guardInputs, start, count, guardColumns);
+                }
+                scan(heap, scoreColumns, guardColumns, 0, count, start);
+            }
+        }, batch.getRowCount());
+    }
+
+    private Result select(Source source, int rowCount) {
+        int chunk = Math.max(MIN_CHUNK, rowCount / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        Heap heap = new Task(source, k, 0, rowCount, chunk).invoke();
+        return heap.drain(lowest);
+    }
+
+    private static void stage(OffHeapColumn[] inputs, int from, int count, double[][] vectors) {
+        for (int slot = 0; slot < inputs.length; slot++) {
+            inputs[slot].read(from, vectors[slot], 0, count);
+        }
+    }
+
+    // Scores rows from..to of columns whose index i holds row base + i
+    private void scan(Heap heap, double[][] scoreColumns, double[][] guardColumns, int from, int to, int base) {
+        double[] scoreSlots = new double[scoreColumns.length];
+        double[] scoreStack = new double[score.getMaxStack()];
+        double[] guardSlots = guardColumns == null ? null : new double[guardColumns.length];
+        double[] guardStack = guard == null ? null : new double[guard.getMaxStack()];
+        for (int row = from; row < to; row++) {
+            if (guardSlots != null) {
+                for (int slot = 0; slot < guardSlots.length; slot++) {
+                    guardSlots[slot] = guardColumns[slot][row];
+                }
+                if (guard.evaluate(guardSlots, guardStack) != CompiledExpression.TRUE) {
+                    continue;
+                }
+            }
+            for (int slot = 0; slot < scoreSlots.length; slot++) {
+                scoreSlots[slot] = scoreColumns[slot][row];
+            }
+            double value = score.evaluate(scoreSlots, scoreStack);
+            if (value == value) {
+                heap.offer(lowest ? -value : value, base + row);
+            }
+        }
+    }
+
+    private static double[][] columnsOf(CompiledExpression program, Map<String, double[]> columns, int rowCount) {
+        double[][] bound = new double[program.getSlotCount()][];
+        for (int slot = 0; slot < bound.length; slot++) {
+            String variable = program.getSymbols()[slot];
+            bound[slot] = columns.get(variable);
+            if (bound[slot] == null) {
+                throw new IllegalArgumentException("No column for variable " + variable + ".");
+            }
+            if (bound[slot].length < rowCount) {
+                throw new IllegalArgumentException("Column " + variable + " has " + bound[slot].length
+                        + " rows, expected " + rowCount + ".");
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Scores a range of rows into a heap.
+     */
+    @FunctionalInterface
+    private interface Source {
+        void score(Heap heap, int from, int to);
+    }
+
+    private static final class Task extends RecursiveTask<Heap> {
+        private static final long serialVersionUID = 1L;
+
+        private final Source source;
+        private final int k;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Task(Source source, int k, int from, int to, int chunk) {
+            this.source = source;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Heap compute() {
+            if (to - from > chunk) {
+                int middle = (from + to) >>> 1;
+                Task left = new Task(source, k, from, middle, chunk);
+                left.fork();
+                Heap right = new Task(source, k, middle, to, chunk).compute();
+                return left.join().merge(right);
+            }
+            // A chunk never keeps more rows than it has; merging grows the heap up to k
+            Heap heap = new Heap(Math.min(k, to - from), k);
+            source.score(heap, from, to);
+            return heap;
+        }
+    }
+
+    /**
+     * Bounded min-heap of (key, row) pairs in primitive arrays; the root is
+     * the worst entry kept, so a better candidate replaces it in O(log k).
+     * Keys are scores, negated when the lowest scores are wanted. The arrays
+     * start at the given capacity and grow on demand up to the limit.
+     */
+    private static final class Heap {
+        private final int limit;
+        private double[] keys;
+        private int[] rows;
+        private int size;
+
+        Heap(int capacity, int limit) {
+            this.limit = limit;
+            keys = new double[capacity];
+            rows = new int[capacity];
+        }
+
+        void offer(double key, int row) {
+            if (size < limit) {
+                if (size == keys.length) {
+                    int capacity = (int) Math.min(limit, Math.max(16, 2L * size));
+                    keys = Arrays.copyOf(keys, capacity);
+                    rows = Arrays.copyOf(rows, capacity);
+                }
+                int i = size++;
+                keys[i] = key;
+                rows[i] = row;
+                siftUp(i);
+            } else if (worse(keys[0], rows[0], key, row)) {
+                keys[0] = key;
+                rows[0] = row;
+                siftDown(0);
+            }
+        }
+
+        Heap merge(Heap other) {
+            Heap into = size >= other.size ? this : other;
+            Heap from = into == this ? other : this;
+            for (int i = 0; i < from.size; i++) {
+                into.offer(from.keys[i], from.rows[i]);
+            }
+            return into;
+        }
+
+        // Empties the heap into a result ordered best first
+        Result drain(boolean negated) {
+            int count = size;
+            int[] resultRows = new int[count];
+            double[] resultScores = new double[count];
+            for (int i = count - 1; i >= 0; i--) {
+                resultRows[i] = rows[0];
+                resultScores[i] = negated ? -keys[0] : keys[0];
+                size--;
+                keys[0] = keys[size];
+                rows[0] = rows[size];
+                siftDown(0);
+            }
+            return new Result(resultRows, resultScores);
+        }
+
+        // A lower key is worse; for equal keys the higher row index is worse
+        private static boolean worse(double key, int row, double otherKey, int otherRow) {
+            return key < otherKey || (key == otherKey && row > otherRow);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!worse(keys[i], rows[i], keys[parent], rows[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) {
+                    return;
+                }
+                int child = left + 1 < size && worse(keys[left + 1], rows[left + 1], keys[left], rows[left])
+                        ? left + 1 : left;
+                if (!worse(keys[child], rows[child], keys[i], rows[i])) {
+                    return;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            int row = rows[a];
+            rows[a] = rows[b];
+            rows[b] = row;
+        }
+    }
+
+    /**
+     * The selected rows and their scores, best first.
+     */
+    public static final class Result {
+        private final int[] rows;
+        private final double[] scores;
+
+        Result(int[] rows, double[] scores) {
+            this.rows = rows;
+            this.scores = scores;
+        }
+
+        /**
+         * Returns the number of selected rows; fewer than k if fewer rows qualified.
+         */
+        public int size() {
+            return rows.length;
+        }
+
+        /**
+         * Returns the row index of a rank.
+         *
+         * @param rank The rank, 0 being the best.
+         */
+        public int getRow(int rank) {
+            return rows[rank];
+        }
+
+        /**
+         * Returns the score of a rank.
+         *
+         * @param rank The rank, 0 being the best.
+         */
+        public double getScore(int rank) {
+            return scores[rank];
+        }
+
+        /**
+         * Returns the selected row indices, best first.
+         */
+        public int[] getRows() {
+            return rows.clone();
+        }
+
+        /**
+         * Returns the scores of the selected rows, best first.
+         */
+        public double[] getScores() {
+            return scores.clone();
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.lazicode.workflow.expressions.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.VectorEvaluator;
+
+/**
+ * Evaluates many expressions over the same {@link ColumnBatch}, tiling the
+ * rows into cache-sized blocks. All K expressions are evaluated on one block
+ * of rows before the next block is touched, so every input column is
+ * streamed from memory once instead of once per expression; the K - 1 other
+ * reads of a block hit the cache.
+ *
+ * The block size is chosen so that a block of every input column, the
+ * shared operand stack and a block of every output fit in about
+ * {@link #CACHE_BUDGET_BYTES}, the size of a typical per-core L2 cache.
+ * Blocks are distributed over the common fork-join pool unless asked
+ * otherwise; each worker owns one set of scratch vectors shared by all K
+ * expressions.
+ *
+ * Inputs and outputs may also live off the heap, in an {@link OffHeapBatch}
+ * and {@link OffHeapColumn}s; blocks are then staged through cache-resident
+ * vectors, so memory-mapped inputs are paged in one block at a time.
+ *
+ * An evaluator is immutable and may be used by several threads at once.
+ */
+public final class BlockedBatchEvaluator {
+
+    /**
+     * Working-set budget of one block, in bytes.
+     */
+    public static final int CACHE_BUDGET_BYTES = 256 * 1024;
+
+    private static final int MIN_BLOCK_ROWS = 64;
+    private static final int MAX_BLOCK_ROWS = 4096;
+
+    private final List<CompiledExpression> programs;
+    private final int blockRows;
+    private final int maxStack;
+
+    private BlockedBatchEvaluator(List<CompiledExpression> programs, int blockRows) {
+        this.programs = Collections.unmodifiableList(programs);
+        this.blockRows = blockRows;
+        int depth = 1;
+        for (CompiledExpression program : programs) {
+            depth = Math.max(depth, program.getMaxStack());
+        }
+        this.maxStack = depth;
+    }
+
+    /**
+     * Compiles expressions into an evaluator with a block size derived from
+     * their working set.
+     *
+     * @param expressions The expressions, in output order.
+     * @return The evaluator.
+     * @throws InvalidExpression If an expression cannot be compiled.
+     */
+    public static BlockedBatchEvaluator of(List<? extends Expression> expressions) throws InvalidExpression {
+        List<CompiledExpression> programs = compile(expressions);
+        return new BlockedBatchEvaluator(programs, defaultBlockRows(programs));
+    }
+
+    /**
+     * Compiles expressions into an evaluator with a fixed block size.
+     *
+     * @param expressions The expressions, in output order.
+     * @param blockRows   The number of rows per block.
+     * @return The evaluator.
+     * @throws InvalidExpression If an expression cannot be compiled.
+     */
+    public static BlockedBatchEvaluator of(List<? extends Expression> expressions, int blockRows)
+            throws InvalidExpression {
+        if (blockRows < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockRows);
+        }
+        return new BlockedBatchEvaluator(compile(expressions), blockRows);
+    }
+
+    private static List<CompiledExpression> compile(List<? extends Expression> expressions) throws InvalidExpression {
+        List<CompiledExpression> programs = new ArrayList<>(expressions.size());
+        for (Expression expression : expressions) {
+            programs.add(expression.compile());
+        }
+        return programs;
+    }
+
+    // Rows whose input columns, stack and outputs together fill the cache budget
+    private static int defaultBlockRows(List<CompiledExpression> programs) {
+        Set<String> columns = new HashSet<>();
+        int depth = 1;
+        for (CompiledExpression program : programs) {
+            Collections.addAll(columns, program.getSymbols());
+            depth = Math.max(depth, program.getMaxStack());
+        }
+        int bytesPerRow = Double.BYTES * (columns.size() + depth + programs.size());
+        int rows = CACHE_BUDGET_BYTES / bytesPerRow;
+        rows = Math.max(MIN_BLOCK_ROWS, Math.min(MAX_BLOCK_ROWS, rows));
+        return rows / MIN_BLOCK_ROWS * MIN_BLOCK_ROWS;
+    }
+
+    /**
+     * Returns the number of expressions.
+     */
+    public int size() {
+        return programs.size();
+    }
+
+    /**
+     * Returns the number of rows per block.
+     */
+    public int getBlockRows() {
+        return blockRows;
+    }
+
+    /**
+     * Returns the compiled expressions, in output order.
+     */
+    public List<CompiledExpression> getPrograms() {
+        return programs;
+    }
+
+    /**
+     * Evaluates every expression on every row of a batch.
+     *
+     * @param batch The batch.
+     * @return The raw results, one column per expression in expression order.
+     * @throws IllegalArgumentException If a variable has no column in the batch.
+     */
+    public double[][] evaluate(ColumnBatch batch) {
+        double[][] outputs = new double[programs.size()][batch.getRowCount()];
+        evaluate(batch, outputs);
+        return outputs;
+    }
+
+    /**
+     * Evaluates every expression on every row of a batch into existing columns.
+     *
+     * @param batch   The batch.
+     * @param outputs One column per expression, of at least the batch's row count.
+     * @throws IllegalArgumentException If a variable has no column in the batch.
+     */
+    public void evaluate(ColumnBatch batch, double[][] outputs) {
+        evaluate(batch, outputs, true);
+    }
+
+    /**
+     * Evaluates every expression on every row of a batch into existing
+     * columns, optionally on the calling thread only.
+     *
+     * @param batch    The batch.
+     * @param outputs  One column per expression, of at least the batch's row count.
+     * @param parallel Whether to spread the blocks over the common fork-join pool.
+     * @throws IllegalArgumentException If a variable has no column in the batch.
+     */
+    public void evaluate(ColumnBatch batch, double[][] outputs, boolean parallel) {
+        if (outputs.length != programs.size()) {
+            throw new IllegalArgumentException("Expected " + programs.size() + " output columns, got "
+                    + outputs.length + ".");
+        }
+        double[][][] columns = new double[programs.size()][][];
+        for (int k = 0; k < columns.length; k++) {
+            columns[k] = batch.columnsOf(programs.get(k));
+            if (outputs[k].length < batch.getRowCount()) {
+                throw new IllegalArgumentException("Output column " + k + " is shorter than the batch.");
+            }
+        }
+        run(batch.getRowCount(), blockRows, parallel, (fromBlock, toBlock) -> {
+            double[][] scratch = new double[maxStack][blockRows];
+            VectorEvaluator[] evaluators = evaluators(scratch);
+            for (int block = fromBlock; block < toBlock; block++) {
+                int from = block * blockRows;
+                int count = Math.min(blockRows, batch.getRowCount() - from);
+                // Every expression runs on this block while its input rows are in cache
+                for (int k = 0; k < evaluators.length; k++) {
+                    evaluators[k].evaluate(columns[k], null, from, count, outputs[k], from);
+                }
+            }
+        });
+    }
+
+    /**
+     * Evaluates every expression on every row of an off-heap batch into
+     * off-heap columns. Each block of every input column is copied once into
+     * a cache-resident vector, null rows reading as unknown, and each block
+     * of results is copied out, unknown results becoming null rows. Blocks
+     * are rounded up to a multiple of 8 rows so that parallel workers never
+     * share a byte of an output bitmap.
+     *
+     * @param batch    The batch.
+     * @param outputs  One column per expression, of at least the batch's row
+     *                 count; columns without a validity bitmap reject unknown
+     *                 results.
+     * @param parallel Whether to spread the blocks over the common fork-join pool.
+     * @throws IllegalArgumentException If a variable has no column in the batch.
+     */
+    public void evaluate(OffHeapBatch batch, OffHeapColumn[] outputs, boolean parallel) {
+        if (outputs.length != programs.size()) {
+            throw new IllegalArgumentException("Expected " + programs.size() + " output columns, got "
+                    + outputs.length + ".");
+        }
+        Map<String, Integer> staged = new LinkedHashMap<>();
+        int[][] stagedSlots = new int[programs.size()][];
+        for (int k = 0; k < stagedSlots.length; k++) {
+            // Fails early on a missing column; each distinct column is staged once per block
+            batch.columnsOf(programs.get(k));
+            String[] symbols = programs.get(k).getSymbols();
+            stagedSlots[k] = new int[symbols.length];
+            for (int slot = 0; slot < symbols.length; slot++) {
+                Integer index = staged.get(symbols[slot]);
+                if (index == null) {
+                    index = staged.size();
+                    staged.put(symbols[slot], index);
+                }
+                stagedSlots[k][slot] = index;
+            }
+            if (outputs[k].getRowCount() < batch.getRowCount()) {
+                throw new IllegalArgumentException("Output column " + k + " is shorter than the batch.");
+            }
+        }
+        OffHeapColumn[] inputs = new OffHeapColumn[staged.size()];
+        for (Map.Entry<String, Integer> entry : staged.entrySet()) {
+            inputs[entry.getValue()] = batch.getColumn(entry.getKey());
+        }
+        int rows = batch.getRowCount();
+        int alignedRows = (blockRows + 7) & ~7;
+        run(rows, alignedRows, parallel, (fromBlock, toBlock) -> {
+            double[][] scratch = new double[maxStack][alignedRows];
+            VectorEvaluator[] evaluators = evaluators(scratch);
+            double[][] vectors = new double[inputs.length][alignedRows];
+            double[][][] columns = new double[programs.size()][][];
+            for (int k = 0; k < columns.length; k++) {
+                columns[k] = new double[stagedSlots[k].length][];
+                for (int slot = 0; slot < columns[k].length; slot++) {
+                    columns[k][slot] = vectors[stagedSlots[k][slot]];
+                }
+            }
+            double[] results = new double[alignedRows];
+            for (int block = fromBlock; block < toBlock; block++) {
+                int from = block * alignedRows;
+                int count = Math.min(alignedRows, rows - from);
+                for (int c = 0; c < inputs.length; c++) {
+                    inputs[c].read(from, vectors[c], 0, count);
+                }
+                for (int k = 0; k < evaluators.length; k++) {
+                    evaluators[k].evaluate(columns[k], null, 0, count, results, 0);
+                    outputs[k].write(from, results, 0, count);
+                }
+            }
+        });
+    }
+
+    // One evaluator per expression, all sharing the scratch of one worker
+    private VectorEvaluator[] evaluators(double[][] scratch) {
+        VectorEvaluator[] evaluators = new VectorEvaluator[programs.size()];
+        for (int k = 0; k < evaluators.length; k++) {
+            evaluators[k] = new VectorEvaluator(programs.get(k), scratch);
+        }
+        return evaluators;
+    }
+
+    private static void run(int rows, int rowsPerBlock, boolean parallel, Leaf leaf) {
+        int blocks = (rows + rowsPerBlock - 1) / rowsPerBlock;
+        int blocksPerTask = Math.max(1, parallel ? blocks / (ForkJoinPool.getCommonPoolParallelism() * 4) : blocks);
+        new Task(leaf, 0, blocks, blocksPerTask).invoke();
+    }
+
+    /**
+     * Evaluates a contiguous range of blocks on one worker.
+     */
+    @FunctionalInterface
+    private interface Leaf {
+        void run(int fromBlock, int toBlock);
+    }
+
+    private static final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Leaf leaf;
+        private final int fromBlock;
+        private final int toBlock;
+        private final int blocksPerTask;
+
+        Task(Leaf leaf, int fromBlock, int toBlock, int blocksPerTask) {
+            this.leaf = leaf;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.blocksPerTask = blocksPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock > blocksPerTask) {
+                int middle = (fromBlock + toBlock) >>> 1;
+                invokeAll(new Task(leaf, fromBlock, middle, blocksPerTask),
+                        new Task(leaf, middle, toBlock, blocksPerTask));
+                return;
+            }
+            if (fromBlock < toBlock) {
+                leaf.run(fromBlock, toBlock);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.lazicode.workflow.expressions.batch;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+/**
+ * A batch of rows stored column by column: one double[] per variable, all
+ * of at least {@link #getRowCount()} entries. Booleans are encoded as
+ * {@link CompiledExpression#TRUE} and {@link CompiledExpression#FALSE} and
+ * unknown values as NaN, as in a slot vector.
+ *
+ * The batch holds the arrays it is given without copying them.
+ */
+public final class ColumnBatch {
+
+    private final int rowCount;
+    private final Map<String, double[]> columns = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param rowCount The number of rows.
+     */
+    public ColumnBatch(int rowCount) {
+        if (rowCount < 0) {
+            throw new IllegalArgumentException("Row count must not be negative: " + rowCount);
+        }
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Adds or replaces a column.
+     *
+     * @param variable The variable the column holds.
+     * @param values   The values, one per row.
+     * @return This batch.
+     */
+    public ColumnBatch addColumn(String variable, double[] values) {
+        if (values.length < rowCount) {
+            throw new IllegalArgumentException("Column " + variable + " has " + values.length + " rows, expected "
+                    + rowCount + ".");
+        }
+        columns.put(variable, values);
+        return this;
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the variables that have a column, in insertion order.
+     */
+    public Set<String> getVariables() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /**
+     * Returns the column of a variable.
+     *
+     * @param variable The variable.
+     * @return The column, or null if the batch has none.
+     */
+    public double[] getColumn(String variable) {
+        return columns.get(variable);
+    }
+
+    /**
+     * Returns the columns a compiled expression reads, indexed by slot.
+     *
+     * @param program The compiled expression.
+     * @return The column of every slot.
+     * @throws IllegalArgumentException If a variable of the expression has no column.
+     */
+    public double[][] columnsOf(CompiledExpression program) {
+        String[] symbols = program.getSymbols();
+        double[][] bound = new double[symbols.length][];
+        for (int slot = 0; slot < symbols.length; slot++) {
+            bound[slot] = columns.get(symbols[slot]);
+            if (bound[slot] == null) {
+                throw new IllegalArgumentException("No column for variable " + symbols[slot] + ".");
+            }
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,254 @@
+package com.lazicode.workflow.expressions.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+/**
+ * A batch of rows stored column by column outside the Java heap, one
+ * {@link OffHeapColumn} per variable. It is the off-heap counterpart of
+ * {@link ColumnBatch}: multi-gigabyte working sets stay out of the
+ * garbage-collected heap, and a batch written with {@link #write(Path)} can
+ * be memory-mapped back with {@link #map(Path)} without reading it.
+ *
+ * The file is laid out little-endian as:
+ * <pre>
+ * int    magic ("LZCB")
+ * short  format version
+ * int    row count
+ * int    column count
+ * per column:
+ *   short  name length, byte[] UTF-8 name
+ *   long   offset of the values, long offset of the bitmap (-1 if none)
+ * per column, each region starting on a multiple of 8 bytes:
+ *   double[row count] values, byte[(row count + 7) / 8] validity bitmap
+ * </pre>
+ * Every region is mapped on its own, so a file may exceed 2 GiB as long as
+ * each column fits in one buffer.
+ */
+public final class OffHeapBatch {
+
+    public static final int MAGIC = 0x4C5A4342;
+    public static final short VERSION = 1;
+
+    private static final int FIXED_HEADER_BYTES = 4 + 2 + 4 + 4;
+
+    private final int rowCount;
+    private final Map<String, OffHeapColumn> columns = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param rowCount The number of rows.
+     */
+    public OffHeapBatch(int rowCount) {
+        if (rowCount < 0 || rowCount > OffHeapColumn.MAX_ROWS) {
+            throw new IllegalArgumentException("Row count must be between 0 and " + OffHeapColumn.MAX_ROWS + ": "
+                    + rowCount);
+        }
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Copies an on-heap batch off the heap; NaN entries become null rows.
+     *
+     * @param batch The batch.
+     * @return The off-heap copy.
+     */
+    public static OffHeapBatch of(ColumnBatch batch) {
+        OffHeapBatch copy = new OffHeapBatch(batch.getRowCount());
+        for (String variable : batch.getVariables()) {
+            OffHeapColumn column = OffHeapColumn.allocate(batch.getRowCount());
+            column.write(0, batch.getColumn(variable), 0, batch.getRowCount());
+            copy.addColumn(variable, column);
+        }
+        return copy;
+    }
+
+    /**
+     * Adds or replaces a column.
+     *
+     * @param variable The variable the column holds.
+     * @param column   The column.
+     * @return This batch.
+     */
+    public OffHeapBatch addColumn(String variable, OffHeapColumn column) {
+        if (column.getRowCount() < rowCount) {
+            throw new IllegalArgumentException("Column " + variable + " has " + column.getRowCount()
+                    + " rows, expected " + rowCount + ".");
+        }
+        columns.put(variable, column);
+        return this;
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the variables that have a column, in insertion order.
+     */
+    public Set<String> getVariables() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /**
+     * Returns the column of a variable.
+     *
+     * @param variable The variable.
+     * @return The column, or null if the batch has none.
+     */
+    public OffHeapColumn getColumn(String variable) {
+        return columns.get(variable);
+    }
+
+    /**
+     * Returns the columns a compiled expression reads, indexed by slot.
+     *
+     * @param program The compiled expression.
+     * @return The column of every slot.
+     * @throws IllegalArgumentException If a variable of the expression has no column.
+     */
+    public OffHeapColumn[] columnsOf(CompiledExpression program) {
+        String[] symbols = program.getSymbols();
+        OffHeapColumn[] bound = new OffHeapColumn[symbols.length];
+        for (int slot = 0; slot < symbols.length; slot++) {
+            bound[slot] = columns.get(symbols[slot]);
+            if (bound[slot] == null) {
+                throw new IllegalArgumentException("No column for variable " + symbols[slot] + ".");
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Writes the batch to a file, replacing its contents.
+     *
+     * @param path The file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        byte[][] names = new byte[columns.size()][];
+        int headerBytes = FIXED_HEADER_BYTES;
+        int i = 0;
+        for (String variable : columns.keySet()) {
+            names[i] = variable.getBytes(StandardCharsets.UTF_8);
+            headerBytes += 2 + names[i].length + 8 + 8;
+            i++;
+        }
+        ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort(VERSION).putInt(rowCount).putInt(columns.size());
+        long offset = align(headerBytes);
+        long valueBytes = (long) rowCount * Double.BYTES;
+        long validityBytes = OffHeapColumn.validityBytes(rowCount);
+        i = 0;
+        for (OffHeapColumn column : columns.values()) {
+            header.putShort((short) names[i].length).put(names[i]);
+            header.putLong(offset);
+            offset = align(offset + valueBytes);
+            if (column.hasValidity()) {
+                header.putLong(offset);
+                offset = align(offset + validityBytes);
+            } else {
+                header.putLong(-1L);
+            }
+            i++;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header.flip(), 0);
+            offset = align(headerBytes);
+            for (OffHeapColumn column : columns.values()) {
+                writeFully(channel, column.getValues().limit((int) valueBytes), offset);
+                offset = align(offset + valueBytes);
+                if (column.hasValidity()) {
+                    writeFully(channel, column.getValidity().limit((int) validityBytes), offset);
+                    offset = align(offset + validityBytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a batch written by {@link #write(Path)}. The columns are
+     * read-only views of the file; pages are loaded on first access.
+     *
+     * @param path The file.
+     * @return The mapped batch.
+     * @throws IOException If the file cannot be read or is not a batch file.
+     */
+    public static OffHeapBatch map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer fixed = readFully(channel, 0, FIXED_HEADER_BYTES);
+            if (fixed.getInt() != MAGIC) {
+                throw new IOException("Not a column batch file: " + path);
+            }
+            short version = fixed.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported column batch version " + version + ": " + path);
+            }
+            int rowCount = fixed.getInt();
+            int columnCount = fixed.getInt();
+            if (rowCount < 0 || rowCount > OffHeapColumn.MAX_ROWS || columnCount < 0) {
+                throw new IOException("Corrupt column batch header: " + path);
+            }
+            OffHeapBatch batch = new OffHeapBatch(rowCount);
+            long valueBytes = (long) rowCount * Double.BYTES;
+            int validityBytes = OffHeapColumn.validityBytes(rowCount);
+            long position = FIXED_HEADER_BYTES;
+            for (int i = 0; i < columnCount; i++) {
+                int nameLength = readFully(channel, position, 2).getShort() & 0xFFFF;
+                ByteBuffer entry = readFully(channel, position + 2, nameLength + 8 + 8);
+                byte[] name = new byte[nameLength];
+                entry.get(name);
+                long valuesAt = entry.getLong();
+                long validityAt = entry.getLong();
+                position += 2 + nameLength + 8 + 8;
+                if (valuesAt < 0 || valuesAt + valueBytes > channel.size()
+                        || validityAt + validityBytes > channel.size()) {
+                    throw new IOException("Column region out of bounds: " + path);
+                }
+                ByteBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, valuesAt, valueBytes);
+                ByteBuffer validity = validityAt < 0 ? null
+                        : channel.map(FileChannel.MapMode.READ_ONLY, validityAt, validityBytes);
+                batch.addColumn(new String(name, StandardCharsets.UTF_8),
+                        OffHeapColumn.wrap(rowCount, values, validity));
+            }
+            return batch;
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Column batch file ends early.");
+            }
+        }
+        return buffer.flip();
+    }
+}
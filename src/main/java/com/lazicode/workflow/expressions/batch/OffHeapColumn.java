@@ -0,0 +1,271 @@
+package com.lazicode.workflow.expressions.batch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+/**
+ * A column of doubles held outside the Java heap, in an Arrow-like layout:
+ * a little-endian buffer of 8-byte values and an optional validity bitmap
+ * with one bit per row, least significant bit first, where a clear bit marks
+ * the row as null. A null row reads as {@link CompiledExpression#UNKNOWN};
+ * writing NaN clears the row's bit. A column without a bitmap has no nulls.
+ *
+ * The buffers are direct or memory-mapped, so a column of any size adds
+ * nothing to the garbage-collected heap. One column holds at most
+ * {@code Integer.MAX_VALUE / 8} rows, the largest buffer that can address it.
+ *
+ * Reads may run concurrently. Writes to different rows may run concurrently
+ * as long as no two threads write rows that share a bitmap byte, i.e. each
+ * writes ranges that start and end on a multiple of 8 rows.
+ */
+public final class OffHeapColumn {
+
+    /**
+     * The largest number of rows in one column.
+     */
+    public static final int MAX_ROWS = Integer.MAX_VALUE / Double.BYTES;
+
+    private final int rowCount;
+    private final ByteBuffer data;
+    private final DoubleBuffer values;
+    private final ByteBuffer validity;
+
+    private OffHeapColumn(int rowCount, ByteBuffer data, ByteBuffer validity) {
+        this.rowCount = rowCount;
+        this.data = data;
+        this.values = data.asDoubleBuffer();
+        this.validity = validity;
+    }
+
+    /**
+     * Allocates a column of zeros, all valid, with a validity bitmap.
+     *
+     * @param rowCount The number of rows.
+     * @return The column.
+     */
+    public static OffHeapColumn allocate(int rowCount) {
+        checkRowCount(rowCount);
+        ByteBuffer data = ByteBuffer.allocateDirect(rowCount * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer validity = ByteBuffer.allocateDirect(validityBytes(rowCount));
+        for (int i = 0; i < validity.capacity(); i++) {
+            validity.put(i, (byte) 0xFF);
+        }
+        return new OffHeapColumn(rowCount, data, validity);
+    }
+
+    /**
+     * Copies an on-heap column off the heap; NaN entries become null rows.
+     *
+     * @param values The values.
+     * @return The column.
+     */
+    public static OffHeapColumn of(double[] values) {
+        OffHeapColumn column = allocate(values.length);
+        column.write(0, values, 0, values.length);
+        return column;
+    }
+
+    /**
+     * Wraps existing buffers, e.g. regions of a memory-mapped file, without
+     * copying them. The buffers' positions, limits and byte orders are not
+     * changed; the values are read from index 0 as little-endian.
+     *
+     * @param rowCount The number of rows.
+     * @param values   At least {@code rowCount * 8} bytes of values.
+     * @param validity At least {@code (rowCount + 7) / 8} bytes of bitmap, or
+     *                 null if no row is null.
+     * @return The column.
+     */
+    public static OffHeapColumn wrap(int rowCount, ByteBuffer values, ByteBuffer validity) {
+        checkRowCount(rowCount);
+        if (values.capacity() < rowCount * Double.BYTES) {
+            throw new IllegalArgumentException("Value buffer of " + values.capacity() + " bytes cannot hold "
+                    + rowCount + " rows.");
+        }
+        if (validity != null && validity.capacity() < validityBytes(rowCount)) {
+            throw new IllegalArgumentException("Validity bitmap of " + validity.capacity()
+                    + " bytes cannot hold " + rowCount + " rows.");
+        }
+        ByteBuffer data = values.duplicate().clear().limit(rowCount * Double.BYTES);
+        return new OffHeapColumn(rowCount, data.slice().order(ByteOrder.LITTLE_ENDIAN),
+                validity == null ? null : validity.duplicate().clear());
+    }
+
+    private static void checkRowCount(int rowCount) {
+        if (rowCount < 0 || rowCount > MAX_ROWS) {
+            throw new IllegalArgumentException("Row count must be between 0 and " + MAX_ROWS + ": " + rowCount);
+        }
+    }
+
+    static int validityBytes(int rowCount) {
+        return (rowCount + 7) >>> 3;
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns whether the column has a validity bitmap.
+     */
+    public boolean hasValidity() {
+        return validity != null;
+    }
+
+    /**
+     * Returns the number of null rows.
+     */
+    public int getNullCount() {
+        if (validity == null) {
+            return 0;
+        }
+        int valid = 0;
+        int full = rowCount >>> 3;
+        for (int i = 0; i < full; i++) {
+            valid += Integer.bitCount(validity.get(i) & 0xFF);
+        }
+        for (int row = full << 3; row < rowCount; row++) {
+            valid += isValid(row) ? 1 : 0;
+        }
+        return rowCount - valid;
+    }
+
+    /**
+     * Returns whether a row holds a value.
+     *
+     * @param row The row.
+     */
+    public boolean isValid(int row) {
+        return validity == null || (validity.get(row >>> 3) & (1 << (row & 7))) != 0;
+    }
+
+    /**
+     * Returns the value of a row, or unknown if the row is null.
+     *
+     * @param row The row.
+     */
+    public double get(int row) {
+        return isValid(row) ? values.get(row) : CompiledExpression.UNKNOWN;
+    }
+
+    /**
+     * Sets the value of a row; NaN makes the row null.
+     *
+     * @param row   The row.
+     * @param value The value.
+     * @throws IllegalStateException If NaN is written to a column without a
+     *                               validity bitmap.
+     */
+    public void set(int row, double value) {
+        boolean valid = !Double.isNaN(value);
+        if (validity == null && !valid) {
+            throw noValidity();
+        }
+        values.put(row, value);
+        setValid(row, valid);
+    }
+
+    /**
+     * Copies a range of rows onto the heap, writing unknown for null rows.
+     *
+     * @param from   The first row.
+     * @param target Receives the values.
+     * @param offset The position in target of the first value.
+     * @param count  The number of rows.
+     */
+    public void read(int from, double[] target, int offset, int count) {
+        values.get(from, target, offset, count);
+        if (validity == null) {
+            return;
+        }
+        int i = 0;
+        while (i < count) {
+            int row = from + i;
+            // Skip whole bytes of valid rows
+            if ((row & 7) == 0 && count - i >= 8 && validity.get(row >>> 3) == (byte) 0xFF) {
+                i += 8;
+                continue;
+            }
+            if (!isValid(row)) {
+                target[offset + i] = CompiledExpression.UNKNOWN;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Copies a range of rows from the heap; NaN entries become null rows.
+     *
+     * @param from   The first row.
+     * @param source The values.
+     * @param offset The position in source of the first value.
+     * @param count  The number of rows.
+     * @throws IllegalStateException If NaN is written to a column without a
+     *                               validity bitmap.
+     */
+    public void write(int from, double[] source, int offset, int count) {
+        if (validity == null) {
+            for (int i = 0; i < count; i++) {
+                if (Double.isNaN(source[offset + i])) {
+                    throw noValidity();
+                }
+            }
+            values.put(from, source, offset, count);
+            return;
+        }
+        values.put(from, source, offset, count);
+        int i = 0;
+        while (i < count) {
+            int row = from + i;
+            // Assemble whole bitmap bytes where the range covers them
+            if ((row & 7) == 0 && count - i >= 8) {
+                int bits = 0;
+                for (int bit = 0; bit < 8; bit++) {
+                    if (!Double.isNaN(source[offset + i + bit])) {
+                        bits |= 1 << bit;
+                    }
+                }
+                validity.put(row >>> 3, (byte) bits);
+                i += 8;
+                continue;
+            }
+            setValid(row, !Double.isNaN(source[offset + i]));
+            i++;
+        }
+    }
+
+    private void setValid(int row, boolean valid) {
+        if (validity == null) {
+            return;
+        }
+        int index = row >>> 3;
+        int mask = 1 << (row & 7);
+        int bits = validity.get(index);
+        validity.put(index, (byte) (valid ? bits | mask : bits & ~mask));
+    }
+
+    private static IllegalStateException noValidity() {
+        return new IllegalStateException("Column has no validity bitmap; it cannot hold null rows.");
+    }
+
+    /**
+     * Returns a read-only view of the values, little-endian, 8 bytes per row.
+     */
+    public ByteBuffer getValues() {
+        return data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns a read-only view of the validity bitmap, or null if the column
+     * has none.
+     */
+    public ByteBuffer getValidity() {
+        return validity == null ? null : validity.asReadOnlyBuffer();
+    }
+}
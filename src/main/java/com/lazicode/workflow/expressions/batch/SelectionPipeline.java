@@ -0,0 +1,297 @@
+package com.lazicode.workflow.expressions.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+import com.lazicode.workflow.expressions.compiler.VectorEvaluator;
+
+/**
+ * Filter-then-project pipeline over a {@link ColumnBatch}, with late
+ * materialization. The batch is processed a vector of rows at a time: the
+ * filters turn each vector into a selection vector of the row indices that
+ * pass all of them, and the projections are then evaluated only on the
+ * selected rows. A row rejected by a filter is never projected, and a row
+ * rejected by one filter is not even evaluated by the next, so cheap and
+ * selective filters belong first.
+ *
+ * An {@link OffHeapBatch} is processed the same way: each vector of every
+ * column the pipeline reads is first copied once into an on-heap vector,
+ * null rows reading as unknown, so memory-mapped batches are paged in one
+ * vector at a time.
+ *
+ * A row passes a filter only when it evaluates to true; false and unknown
+ * both reject it. A pipeline is immutable and may be executed by several
+ * threads at once.
+ */
+public final class SelectionPipeline {
+
+    /**
+     * Rows per vector: large enough to amortize instruction dispatch, small
+     * enough for the scratch vectors to stay in cache.
+     */
+    public static final int VECTOR_SIZE = 1024;
+
+    private final List<CompiledExpression> filters;
+    private final List<String> names;
+    private final List<CompiledExpression> projections;
+
+    private SelectionPipeline(Builder builder) {
+        this.filters = new ArrayList<>(builder.filters);
+        this.names = new ArrayList<>(builder.names);
+        this.projections = new ArrayList<>(builder.projections);
+    }
+
+    /**
+     * Starts a pipeline definition.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs the pipeline over a batch.
+     *
+     * @param batch The batch.
+     * @return The selected rows and their projections.
+     * @throws IllegalArgumentException If a variable of a filter or projection has no column.
+     */
+    public Selection execute(ColumnBatch batch) {
+        double[][][] filterColumns = new double[filters.size()][][];
+        for (int i = 0; i < filterColumns.length; i++) {
+            filterColumns[i] = batch.columnsOf(filters.get(i));
+        }
+        double[][][] projectionColumns = new double[projections.size()][][];
+        for (int i = 0; i < projectionColumns.length; i++) {
+            projectionColumns[i] = batch.columnsOf(projections.get(i));
+        }
+        return select(batch.getRowCount(), filterColumns, projectionColumns, null);
+    }
+
+    /**
+     * Runs the pipeline over an off-heap batch.
+     *
+     * @param batch The batch; null rows read as unknown.
+     * @return The selected rows and their projections.
+     * @throws IllegalArgumentException If a variable of a filter or projection has no column.
+     */
+    public Selection execute(OffHeapBatch batch) {
+        int vector = vectorSize(batch.getRowCount());
+        // Each distinct column is staged once per vector, however many expressions read it
+        Map<String, double[]> staged = new LinkedHashMap<>();
+        double[][][] filterColumns = new double[filters.size()][][];
+        for (int i = 0; i < filterColumns.length; i++) {
+            filterColumns[i] = stagedColumns(filters.get(i), batch, staged, vector);
+        }
+        double[][][] projectionColumns = new double[projections.size()][][];
+        for (int i = 0; i < projectionColumns.length; i++) {
+            projectionColumns[i] = stagedColumns(projections.get(i), batch, staged, vector);
+        }
+        OffHeapColumn[] inputs = new OffHeapColumn[staged.size()];
+        double[][] vectors = new double[staged.size()][];
+        int c = 0;
+        for (Map.Entry<String, double[]> entry : staged.entrySet()) {
+            inputs[c] = batch.getColumn(entry.getKey());
+            vectors[c++] = entry.getValue();
+        }
+        return select(batch.getRowCount(), filterColumns, projectionColumns, (from, count) -> {
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i].read(from, vectors[i], 0, count);
+            }
+        });
+    }
+
+    private static double[][] stagedColumns(CompiledExpression program, OffHeapBatch batch,
+            Map<String, double[]> staged, int vector) {
+        // Fails early on a missing column
+        batch.columnsOf(program);
+        String[] symbols = program.getSymbols();
+        double[][] columns = new double[symbols.length][];
+        for (int slot = 0; slot < symbols.length; slot++) {
+            columns[slot] = staged.computeIfAbsent(symbols[slot], symbol -> new double[vector]);
+        }
+        return columns;
+    }
+
+    private static int vectorSize(int rows) {
+        return Math.max(1, Math.min(VECTOR_SIZE, rows));
+    }
+
+    /**
+     * Copies a vector of rows into the staged columns, which then hold the
+     * row {@code from + i} at index i.
+     */
+    @FunctionalInterface
+    private interface Stager {
+        void stage(int from, int count);
+    }
+
+    // With a stager the columns hold one staged vector; without, the whole batch
+    private Selection select(int rows, double[][][] filterColumns, double[][][] projectionColumns, Stager stager) {
+        int vector = vectorSize(rows);
+        VectorEvaluator[] filterEvaluators = new VectorEvaluator[filters.size()];
+        for (int i = 0; i < filterEvaluators.length; i++) {
+            filterEvaluators[i] = new VectorEvaluator(filters.get(i), vector);
+        }
+        VectorEvaluator[] projectionEvaluators = new VectorEvaluator[projections.size()];
+        double[][] outputs = new double[projections.size()][rows];
+        for (int i = 0; i < projectionEvaluators.length; i++) {
+            projectionEvaluators[i] = new VectorEvaluator(projections.get(i), vector);
+        }
+
+        int[] selection = new int[rows];
+        double[] verdicts = new double[vector];
+        int selected = 0;
+        for (int start = 0; start < rows; start += vector) {
+            int count = Math.min(vector, rows - start);
+            int base = 0;
+            if (stager != null) {
+                stager.stage(start, count);
+                base = start;
+            }
+            // The selection of this vector is built in place at the end of the overall selection
+            for (int i = 0; i < count; i++) {
+                selection[selected + i] = start - base + i;
+            }
+            for (int f = 0; f < filterEvaluators.length && count > 0; f++) {
+                filterEvaluators[f].evaluate(filterColumns[f], selection, selected, count, verdicts, 0);
+                int kept = 0;
+                for (int i = 0; i < count; i++) {
+                    if (verdicts[i] == CompiledExpression.TRUE) {
+                        selection[selected + kept++] = selection[selected + i];
+                    }
+                }
+                count = kept;
+            }
+            // Project while the selected rows of this vector are still in cache
+            for (int p = 0; p < projectionEvaluators.length && count > 0; p++) {
+                projectionEvaluators[p].evaluate(projectionColumns[p], selection, selected, count, outputs[p], selected);
+            }
+            if (base != 0) {
+                for (int i = 0; i < count; i++) {
+                    selection[selected + i] += base;
+                }
+            }
+            selected += count;
+        }
+
+        Map<String, double[]> projected = new LinkedHashMap<>();
+        for (int p = 0; p < outputs.length; p++) {
+            projected.put(names.get(p), Arrays.copyOf(outputs[p], selected));
+        }
+        return new Selection(rows, Arrays.copyOf(selection, selected), projected);
+    }
+
+    /**
+     * Builds a pipeline from filters and named projections.
+     */
+    public static final class Builder {
+        private final List<CompiledExpression> filters = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<CompiledExpression> projections = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a filter; filters are applied in the order they are added.
+         *
+         * @param filter A boolean expression, e.g. a LogicExpression or ComparisonExpression.
+         * @return This builder.
+         * @throws InvalidExpression If the filter cannot be compiled or does not produce a boolean.
+         */
+        public Builder filter(Expression filter) throws InvalidExpression {
+            if (filter.getResultType() != ValueType.BOOLEAN) {
+                throw new InvalidExpression("Filter does not produce a boolean: " + filter.getExpressionString());
+            }
+            filters.add(filter.compile());
+            return this;
+        }
+
+        /**
+         * Adds a named projection, evaluated on the selected rows.
+         *
+         * @param name       The name of the projected column.
+         * @param projection The expression, typically a MathExpression.
+         * @return This builder.
+         * @throws InvalidExpression If the projection cannot be compiled.
+         */
+        public Builder project(String name, Expression projection) throws InvalidExpression {
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate projection name: " + name);
+            }
+            names.add(name);
+            projections.add(projection.compile());
+            return this;
+        }
+
+        /**
+         * Builds the pipeline.
+         */
+        public SelectionPipeline build() {
+            return new SelectionPipeline(this);
+        }
+    }
+
+    /**
+     * The rows selected by a pipeline, in row order, and the projections
+     * evaluated on them. The arrays are created for this result and are not
+     * copied again on access.
+     */
+    public static final class Selection {
+        private final int rowCount;
+        private final int[] rows;
+        private final Map<String, double[]> projections;
+
+        Selection(int rowCount, int[] rows, Map<String, double[]> projections) {
+            this.rowCount = rowCount;
+            this.rows = rows;
+            this.projections = Collections.unmodifiableMap(projections);
+        }
+
+        /**
+         * Returns the number of selected rows.
+         */
+        public int size() {
+            return rows.length;
+        }
+
+        /**
+         * Returns the number of rows in the batch.
+         */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Returns the selection vector: the indices of the selected rows, ascending.
+         */
+        public int[] getRows() {
+            return rows;
+        }
+
+        /**
+         * Returns a projected column, aligned with {@link #getRows()}.
+         *
+         * @param name The projection name.
+         * @return The projected values, or null if there is no such projection.
+         */
+        public double[] getProjection(String name) {
+            return projections.get(name);
+        }
+
+        /**
+         * Returns every projected column by name.
+         */
+        public Map<String, double[]> getProjections() {
+            return projections;
+        }
+    }
+}
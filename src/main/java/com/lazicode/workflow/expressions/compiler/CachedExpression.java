@@ -0,0 +1,200 @@
+package com.lazicode.workflow.expressions.compiler;
+
+/**
+ * A compiled expression fronted by a bounded result cache keyed by the
+ * packed slot vector. The cache is an open-addressing table over primitive
+ * arrays: keys are the raw bits of the slot values, so lookups neither box
+ * nor allocate.
+ *
+ * The cache tracks its hit rate. After every window of lookups the window's
+ * hit rate is compared with a threshold and, if it is lower, the cache
+ * disables itself and releases its table, so evaluation falls back to the
+ * plain compiled program and never costs more than it saves.
+ *
+ * Instances are not thread-safe; use one per thread.
+ */
+public final class CachedExpression {
+
+    /**
+     * Number of lookups over which the hit rate is sampled.
+     */
+    public static final int SAMPLE_WINDOW = 1024;
+
+    /**
+     * Largest capacity, the largest power of two an int can hold.
+     */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    private static final int MAX_PROBE = 8;
+
+    private final CompiledExpression expression;
+    private final int width;
+    private final int capacity;
+    private final double minHitRate;
+    private final double[] stack;
+
+    private long[] keys;
+    private double[] values;
+    private boolean[] occupied;
+    private boolean enabled;
+
+    private long hits;
+    private long misses;
+    private int windowLookups;
+    private int windowHits;
+
+    /**
+     * Creates a cache in front of a compiled expression.
+     *
+     * @param expression The compiled expression.
+     * @param capacity   Maximum number of cached results; rounded up to a power of two.
+     * @param minHitRate Hit rate, between 0 and 1, below which the cache disables itself.
+     * @throws IllegalArgumentException If the capacity is not positive, exceeds
+     *                                  {@link #MAX_CAPACITY}, or needs a key table
+     *                                  larger than an array can hold.
+     */
+    public CachedExpression(CompiledExpression expression, int capacity, double minHitRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive.");
+        }
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Cache capacity must be at most " + MAX_CAPACITY + ": " + capacity);
+        }
+        this.expression = expression;
+        this.width = expression.getSlotCount();
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        if ((long) this.capacity * width > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cache of " + this.capacity + " entries of " + width
+                    + " slots exceeds the largest key table.");
+        }
+        this.minHitRate = minHitRate;
+        this.stack = new double[expression.getMaxStack()];
+        reset();
+    }
+
+    /**
+     * Evaluates the expression, returning a cached result when the same slot
+     * vector was seen before.
+     *
+     * @param slots The slot vector, see {@link CompiledExpression#bind(java.util.Map)}.
+     * @return The result of the expression.
+     */
+    public double evaluate(double[] slots) {
+        if (!enabled) {
+            return expression.evaluate(slots, stack);
+        }
+        int mask = capacity - 1;
+        int home = hash(slots) & mask;
+        int free = -1;
+        for (int probe = 0; probe < MAX_PROBE; probe++) {
+            int index = (home + probe) & mask;
+            if (!occupied[index]) {
+                free = index;
+                break;
+            }
+            if (matches(index, slots)) {
+                record(true);
+                return values[index];
+            }
+        }
+        double result = expression.evaluate(slots, stack);
+        // Evict the home entry when the probe sequence is full, keeping the table bounded
+        int target = free >= 0 ? free : home;
+        int offset = target * width;
+        for (int i = 0; i < width; i++) {
+            keys[offset + i] = Double.doubleToRawLongBits(slots[i]);
+        }
+        values[target] = result;
+        occupied[target] = true;
+        record(false);
+        return result;
+    }
+
+    /**
+     * Returns the compiled expression behind the cache.
+     */
+    public CompiledExpression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Checks whether the cache is still consulted.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to evaluate the expression.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the overall hit rate, or 0 before the first lookup.
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Clears the cache and its metrics and re-enables it.
+     */
+    public void reset() {
+        keys = new long[capacity * width];
+        values = new double[capacity];
+        occupied = new boolean[capacity];
+        enabled = true;
+        hits = 0;
+        misses = 0;
+        windowLookups = 0;
+        windowHits = 0;
+    }
+
+    private void record(boolean hit) {
+        if (hit) {
+            hits++;
+            windowHits++;
+        } else {
+            misses++;
+        }
+        if (++windowLookups == SAMPLE_WINDOW) {
+            if ((double) windowHits / SAMPLE_WINDOW < minHitRate) {
+                enabled = false;
+                keys = null;
+                values = null;
+                occupied = null;
+            }
+            windowLookups = 0;
+            windowHits = 0;
+        }
+    }
+
+    private boolean matches(int index, double[] slots) {
+        int offset = index * width;
+        for (int i = 0; i < width; i++) {
+            if (keys[offset + i] != Double.doubleToRawLongBits(slots[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hash(double[] slots) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < width; i++) {
+            h = (h ^ Double.doubleToRawLongBits(slots[i])) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,233 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rewrites a compiled expression into a canonical form, so expressions that
+ * differ only in operand order or grouping compile to the same instruction
+ * stream:
+ * <ul>
+ * <li>chains of an associative logic operator (AND, OR, XOR) are flattened
+ * into one n-ary operation and re-emitted as a left fold;</li>
+ * <li>operands of every commutative operator are sorted by their subtree
+ * hash.</li>
+ * </ul>
+ * Arithmetic chains are not reassociated, since regrouping floating-point
+ * additions and multiplications changes rounding; their operands are still
+ * ordered, as swapping two operands is exact. Parentheses carry no
+ * information in the instruction stream, so redundant ones are already gone.
+ *
+ * Operands are ordered by a 64-bit subtree hash; distinct subtrees whose
+ * hashes collide keep their original order. The rewrite is iterative and
+ * linear in the program length apart from the sorting of operand lists.
+ */
+final class Canonicalizer {
+
+    private Canonicalizer() {
+    }
+
+    static CompiledExpression canonicalize(CompiledExpression program) {
+        int length = program.getCodeLength();
+        Tree tree = new Tree(length);
+        int[] stack = new int[length];
+        int sp = 0;
+
+        for (int pc = 0; pc < length; pc++) {
+            int instruction = program.getInstruction(pc);
+            int op = Opcode.op(instruction);
+            tree.ops[pc] = op;
+            tree.args[pc] = Opcode.arg(instruction);
+            if (op == Opcode.LOAD) {
+                tree.hashes[pc] = mix(op, program.getSymbols()[tree.args[pc]].hashCode());
+            } else if (op == Opcode.CONST) {
+                tree.hashes[pc] = mix(op, Double.doubleToLongBits(program.getConstant(tree.args[pc])));
+            } else if (!isFlattenable(op)) {
+                int arity = Opcode.arity(op);
+                sp -= arity;
+                tree.operands[pc] = new int[arity];
+                for (int i = 0; i < arity; i++) {
+                    tree.append(pc, tree.finish(stack[sp + i]));
+                }
+            } else {
+                int right = stack[--sp];
+                int left = stack[--sp];
+                tree.operands[pc] = new int[4];
+                tree.absorb(pc, left);
+                tree.absorb(pc, right);
+            }
+            stack[sp++] = pc;
+        }
+        return emit(program, tree, tree.finish(stack[0]));
+    }
+
+    private static boolean isFlattenable(int op) {
+        return op == Opcode.AND || op == Opcode.OR || op == Opcode.XOR || Opcode.isStrict(op);
+    }
+
+    /**
+     * Expression tree indexed by the position of each instruction. A node's
+     * operands are sorted and its hash computed only once it is finished,
+     * i.e. used by a parent that does not absorb it, so each operand list is
+     * sorted exactly once however long a flattened chain grows.
+     */
+    private static final class Tree {
+        final int[] ops;
+        final int[] args;
+        final long[] hashes;
+        final int[][] operands;
+        final int[] operandCounts;
+        final boolean[] finished;
+
+        Tree(int length) {
+            ops = new int[length];
+            args = new int[length];
+            hashes = new long[length];
+            operands = new int[length][];
+            operandCounts = new int[length];
+            finished = new boolean[length];
+        }
+
+        void append(int node, int operand) {
+            if (operandCounts[node] == operands[node].length) {
+                operands[node] = Arrays.copyOf(operands[node], operandCounts[node] * 2);
+            }
+            operands[node][operandCounts[node]++] = operand;
+        }
+
+        // Splices the operands of a child applying the same operator into its parent
+        void absorb(int node, int child) {
+            if (ops[child] != ops[node]) {
+                append(node, finish(child));
+                return;
+            }
+            int count = operandCounts[child];
+            if (operandCounts[node] == 0 && operands[child].length >= count) {
+                operands[node] = operands[child];
+                operandCounts[node] = count;
+            } else {
+                for (int i = 0; i < count; i++) {
+                    append(node, operands[child][i]);
+                }
+            }
+            operands[child] = null;
+        }
+
+        int finish(int node) {
+            if (finished[node] || operands[node] == null) {
+                return node; // Leaf or already finished
+            }
+            int op = ops[node];
+            if (Opcode.isCommutative(op)) {
+                sortByHash(operands[node], operandCounts[node], hashes);
+            }
+            long hash = op;
+            for (int i = 0; i < operandCounts[node]; i++) {
+                hash = mix(hash, hashes[operands[node][i]]);
+            }
+            hashes[node] = hash;
+            finished[node] = true;
+            return node;
+        }
+    }
+
+    private static void sortByHash(int[] list, int count, long[] hashes) {
+        if (count <= 16) {
+            for (int i = 1; i < count; i++) {
+                int node = list[i];
+                int j = i - 1;
+                while (j >= 0 && Long.compareUnsigned(hashes[list[j]], hashes[node]) > 0) {
+                    list[j + 1] = list[j];
+                    j--;
+                }
+                list[j + 1] = node;
+            }
+            return;
+        }
+        Integer[] boxed = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            boxed[i] = list[i];
+        }
+        Arrays.sort(boxed, (a, b) -> Long.compareUnsigned(hashes[a], hashes[b]));
+        for (int i = 0; i < count; i++) {
+            list[i] = boxed[i];
+        }
+    }
+
+    /**
+     * Emits the canonical tree in postfix order: a flattened n-ary node with
+     * operands o1..ok becomes "o1 o2 op o3 op ... ok op".
+     */
+    private static CompiledExpression emit(CompiledExpression program, Tree tree, int root) {
+        int[] ops = tree.ops;
+        int[][] operands = tree.operands;
+        int[] operandCounts = tree.operandCounts;
+        int length = ops.length;
+        int[] code = new int[length];
+        Map<Long, Integer> constantIndex = new HashMap<>();
+        double[] constants = new double[program.getConstantCount()];
+        int constantCount = 0;
+        int pc = 0;
+        int depth = 0;
+        int maxStack = 0;
+
+        int[] nodes = new int[length];
+        int[] visited = new int[length];
+        int sp = 0;
+        nodes[sp] = root;
+        visited[sp++] = 0;
+        while (sp > 0) {
+            int node = nodes[sp - 1];
+            int op = ops[node];
+            if (op == Opcode.LOAD || op == Opcode.CONST) {
+                int arg = tree.args[node];
+                if (op == Opcode.CONST) {
+                    // Re-pool constants in emission order
+                    double value = program.getConstant(arg);
+                    Integer index = constantIndex.get(Double.doubleToLongBits(value));
+                    if (index == null) {
+                        index = constantCount;
+                        constants[constantCount++] = value;
+                        constantIndex.put(Double.doubleToLongBits(value), index);
+                    }
+                    arg = index;
+                }
+                code[pc++] = Opcode.encode(op, arg);
+                maxStack = Math.max(maxStack, ++depth);
+                sp--;
+                continue;
+            }
+            int done = visited[sp - 1];
+            // A flattened operator follows each operand after the first; others follow the last one
+            if (isFlattenable(op) ? done >= 2 : done == Opcode.arity(op) && done > 0) {
+                code[pc++] = Opcode.encode(op, 0);
+                depth -= Opcode.arity(op) - 1;
+            }
+            if (done < operandCounts[node]) {
+                visited[sp - 1] = done + 1;
+                nodes[sp] = operands[node][done];
+                visited[sp++] = 0;
+            } else {
+                sp--;
+            }
+        }
+        return new CompiledExpression(code, Arrays.copyOf(constants, constantCount), program.getSymbols(),
+                symbolTypes(program), program.getResultType(), maxStack);
+    }
+
+    private static ValueType[] symbolTypes(CompiledExpression program) {
+        ValueType[] types = new ValueType[program.getSlotCount()];
+        for (int slot = 0; slot < types.length; slot++) {
+            types[slot] = program.getSymbolType(slot);
+        }
+        return types;
+    }
+
+    static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+}
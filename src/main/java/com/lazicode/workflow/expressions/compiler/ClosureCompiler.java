@@ -0,0 +1,122 @@
+package com.lazicode.workflow.expressions.compiler;
+
+/**
+ * Turns an instruction stream into a tree of closures, one per instruction,
+ * that evaluates without an operand stack. A closure tree is immutable and
+ * allocation-free to evaluate, so the functional adapters of
+ * {@link CompiledExpression} built on it can be shared by any number of
+ * threads, e.g. in a parallel stream.
+ *
+ * Operands are passed either as up to two scalars (the first and second
+ * slot) or as a slot vector. AND and OR evaluate their right operand only
+ * when the left one does not decide the result, which under Kleene
+ * semantics gives the same value as the stack interpreter.
+ *
+ * Evaluation recurses once per nesting level, so programs nested deeper
+ * than {@link #MAX_DEPTH} are not turned into closures; callers fall back to
+ * the iterative interpreter for those.
+ */
+final class ClosureCompiler {
+
+    static final int MAX_DEPTH = 256;
+
+    /**
+     * A compiled subterm. x and y are the first and second slot when the
+     * tree is built over scalars; slots is the slot vector otherwise.
+     */
+    @FunctionalInterface
+    interface Node {
+        double eval(double x, double y, double[] slots);
+    }
+
+    private ClosureCompiler() {
+    }
+
+    /**
+     * Builds the closure tree of a program.
+     *
+     * @param program The compiled expression.
+     * @param scalars Whether slots 0 and 1 are passed as x and y instead of
+     *                in the slot vector.
+     * @return The root closure, or null if the program is nested too deeply.
+     */
+    static Node compile(CompiledExpression program, boolean scalars) {
+        int length = program.getCodeLength();
+        Node[] nodes = new Node[Math.max(1, program.getMaxStack())];
+        int[] depths = new int[nodes.length];
+        int sp = 0;
+        for (int pc = 0; pc < length; pc++) {
+            int instruction = program.getInstruction(pc);
+            int op = Opcode.op(instruction);
+            int arity = Opcode.arity(op);
+            sp -= arity;
+            int depth = 0;
+            for (int i = 0; i < arity; i++) {
+                depth = Math.max(depth, depths[sp + i] + 1);
+            }
+            if (depth > MAX_DEPTH) {
+                return null;
+            }
+            Node node;
+            if (op == Opcode.LOAD) {
+                node = load(Opcode.arg(instruction), scalars);
+            } else if (op == Opcode.CONST) {
+                double value = program.getConstant(Opcode.arg(instruction));
+                node = (x, y, slots) -> value;
+            } else if (arity == 1) {
+                node = unary(op, nodes[sp]);
+            } else if (arity == 3) {
+                Node value = nodes[sp];
+                Node low = nodes[sp + 1];
+                Node high = nodes[sp + 2];
+                node = (x, y, slots) -> CompiledExpression.clamp(value.eval(x, y, slots), low.eval(x, y, slots),
+                        high.eval(x, y, slots));
+            } else {
+                node = binary(op, nodes[sp], nodes[sp + 1]);
+            }
+            nodes[sp] = node;
+            depths[sp++] = depth;
+        }
+        return nodes[0];
+    }
+
+    private static Node load(int slot, boolean scalars) {
+        if (scalars && slot == 0) {
+            return (x, y, slots) -> x;
+        }
+        if (scalars && slot == 1) {
+            return (x, y, slots) -> y;
+        }
+        return (x, y, slots) -> slots[slot];
+    }
+
+    private static Node unary(int op, Node operand) {
+        if (op == Opcode.NOT) {
+            return (x, y, slots) -> CompiledExpression.not(operand.eval(x, y, slots));
+        }
+        return (x, y, slots) -> CompiledExpression.apply(op, operand.eval(x, y, slots));
+    }
+
+    private static Node binary(int op, Node left, Node right) {
+        switch (op) {
+            case Opcode.ADD:
+                return (x, y, slots) -> left.eval(x, y, slots) + right.eval(x, y, slots);
+            case Opcode.SUB:
+                return (x, y, slots) -> left.eval(x, y, slots) - right.eval(x, y, slots);
+            case Opcode.MUL:
+                return (x, y, slots) -> left.eval(x, y, slots) * right.eval(x, y, slots);
+            case Opcode.AND:
+                return (x, y, slots) -> {
+                    double l = left.eval(x, y, slots);
+                    return l == CompiledExpression.FALSE ? l : CompiledExpression.apply(op, l, right.eval(x, y, slots));
+                };
+            case Opcode.OR:
+                return (x, y, slots) -> {
+                    double l = left.eval(x, y, slots);
+                    return l == CompiledExpression.TRUE ? l : CompiledExpression.apply(op, l, right.eval(x, y, slots));
+                };
+            default:
+                return (x, y, slots) -> CompiledExpression.apply(op, left.eval(x, y, slots), right.eval(x, y, slots));
+        }
+    }
+}
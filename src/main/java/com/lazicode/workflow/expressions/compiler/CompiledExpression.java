@@ -0,0 +1,644 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Immutable, compiled form of an expression: a flat instruction stream
+ * evaluated over a primitive slot vector instead of a token string and a
+ * value map.
+ *
+ * Every value on the evaluation stack is a double. Booleans are encoded as
+ * {@link #TRUE} and {@link #FALSE}, and an unknown (unset) value of either
+ * type is encoded as NaN, so math and logic subterms share one stack.
+ */
+public final class CompiledExpression {
+
+    public static final double TRUE = 1.0;
+    public static final double FALSE = 0.0;
+    public static final double UNKNOWN = Double.NaN;
+
+    private final int[] code;
+    private final double[] constants;
+    private final String[] symbols;
+    private final ValueType[] symbolTypes;
+    private final ValueType resultType;
+    private final int maxStack;
+    private volatile int[] jumps;
+    // Closure trees behind the functional adapters, built on first use
+    private volatile DoubleBinaryOperator scalarFunction;
+    private volatile ToDoubleFunction<double[]> slotFunction;
+
+    CompiledExpression(int[] code, double[] constants, String[] symbols, ValueType[] symbolTypes,
+            ValueType resultType, int maxStack) {
+        this.code = code;
+        this.constants = constants;
+        this.symbols = symbols;
+        this.symbolTypes = symbolTypes;
+        this.resultType = resultType;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Returns the variable bound to each slot, in slot order.
+     *
+     * @return A copy of the slot symbols.
+     */
+    public String[] getSymbols() {
+        return symbols.clone();
+    }
+
+    /**
+     * Returns the number of slots a binding vector must provide.
+     */
+    public int getSlotCount() {
+        return symbols.length;
+    }
+
+    /**
+     * Returns the slot index of a variable.
+     *
+     * @param symbol The variable name.
+     * @return The slot index, or -1 if the variable is not referenced.
+     */
+    public int slotOf(String symbol) {
+        int index = Arrays.binarySearch(symbols, symbol);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Returns the type inferred for the variable in a slot.
+     *
+     * @param slot The slot index.
+     * @return The inferred value type.
+     */
+    public ValueType getSymbolType(int slot) {
+        return symbolTypes[slot];
+    }
+
+    /**
+     * Returns the type of the value produced by the expression.
+     */
+    public ValueType getResultType() {
+        return resultType;
+    }
+
+    /**
+     * Returns the stack depth needed to evaluate the expression.
+     */
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Returns the length of the instruction stream.
+     */
+    public int getCodeLength() {
+        return code.length;
+    }
+
+    /**
+     * Returns the encoded instruction at a position of the instruction stream.
+     */
+    public int getInstruction(int pc) {
+        return code[pc];
+    }
+
+    /**
+     * Returns a constant from the constant pool.
+     */
+    public double getConstant(int index) {
+        return constants[index];
+    }
+
+    /**
+     * Returns the size of the constant pool.
+     */
+    public int getConstantCount() {
+        return constants.length;
+    }
+
+    /**
+     * Returns the canonical form of this program: operands of commutative
+     * operators sorted and chains of associative logic operators flattened,
+     * so that e.g. "A AND B" and "B AND A" compile to the same program.
+     *
+     * @return The canonical program, equivalent to this one.
+     */
+    public CompiledExpression canonicalize() {
+        return Canonicalizer.canonicalize(this);
+    }
+
+    /**
+     * Returns a 64-bit hash of the instruction stream, the referenced symbols
+     * and constants, and the result type. Call it on a canonical program, see
+     * {@link #canonicalize()}, to get a key shared by all equivalent spellings
+     * of an expression.
+     *
+     * @return The structural hash.
+     */
+    public long structuralHash() {
+        long hash = resultType.ordinal();
+        for (int instruction : code) {
+            int op = Opcode.op(instruction);
+            hash = Canonicalizer.mix(hash, op);
+            if (op == Opcode.LOAD) {
+                hash = Canonicalizer.mix(hash, symbols[Opcode.arg(instruction)].hashCode());
+            } else if (op == Opcode.CONST) {
+                hash = Canonicalizer.mix(hash, Double.doubleToLongBits(constants[Opcode.arg(instruction)]));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Packs a map of variable values into a new slot vector. Booleans map to
+     * {@link #TRUE}/{@link #FALSE}, numbers to their double value, and missing
+     * or null values to {@link #UNKNOWN}.
+     *
+     * @param values The variable values keyed by name.
+     * @return The slot vector.
+     */
+    public double[] bind(Map<String, ?> values) {
+        double[] slots = new double[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            slots[i] = encode(values.get(symbols[i]));
+        }
+        return slots;
+    }
+
+    /**
+     * Evaluates the expression over a slot vector.
+     *
+     * @param slots The slot vector, see {@link #bind(Map)}.
+     * @return The raw result: a number, or an encoded boolean for predicates.
+     */
+    public double evaluate(double[] slots) {
+        return evaluate(slots, new double[maxStack]);
+    }
+
+    /**
+     * Evaluates the expression over a slot vector using a caller-provided
+     * stack, so repeated evaluations do not allocate.
+     *
+     * @param slots The slot vector, see {@link #bind(Map)}.
+     * @param stack Scratch space of at least {@link #getMaxStack()} entries.
+     * @return The raw result: a number, or an encoded boolean for predicates.
+     */
+    public double evaluate(double[] slots, double[] stack) {
+        int sp = 0;
+        for (int instruction : code) {
+            int arg = instruction >>> Opcode.ARG_SHIFT;
+            switch (instruction & Opcode.OP_MASK) {
+                case Opcode.LOAD:
+                    stack[sp++] = slots[arg];
+                    break;
+                case Opcode.CONST:
+                    stack[sp++] = constants[arg];
+                    break;
+                case Opcode.NOT:
+                case Opcode.ABS:
+                case Opcode.SQRT:
+                case Opcode.FLOOR:
+                case Opcode.CEIL:
+                    stack[sp - 1] = apply(instruction & Opcode.OP_MASK, stack[sp - 1]);
+                    break;
+                case Opcode.CLAMP:
+                    sp -= 2;
+                    stack[sp - 1] = clamp(stack[sp - 1], stack[sp], stack[sp + 1]);
+                    break;
+                default:
+                    sp--;
+                    stack[sp - 1] = apply(instruction & Opcode.OP_MASK, stack[sp - 1], stack[sp]);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Packs a map of variable values into lazy bindings, one per slot.
+     * {@link DoubleSupplier} and {@link BooleanSupplier} values are kept as
+     * they are and resolved only if evaluation reaches them; plain values are
+     * encoded as by {@link #bind(Map)}.
+     *
+     * @param values The variable values or suppliers keyed by name.
+     * @return The lazy bindings.
+     */
+    public DoubleSupplier[] bindLazily(Map<String, ?> values) {
+        DoubleSupplier[] bindings = new DoubleSupplier[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            bindings[i] = lazy(values.get(symbols[i]));
+        }
+        return bindings;
+    }
+
+    /**
+     * Evaluates the expression over lazy bindings with real short-circuiting:
+     * the right operand of AND and OR is skipped when the left one decides
+     * the result, so its variables are never resolved. The result is the one
+     * {@link #evaluate(double[])} gives, as under Kleene semantics a false
+     * left operand decides AND and a true one decides OR whatever the right
+     * operand is. Each binding is resolved at most once per call; a null
+     * binding is unknown.
+     *
+     * @param bindings The lazy bindings, see {@link #bindLazily(Map)}.
+     * @return The raw result: a number, or an encoded boolean for predicates.
+     */
+    public double evaluateLazily(DoubleSupplier[] bindings) {
+        int[] jumps = shortCircuitJumps();
+        double[] stack = new double[maxStack];
+        double[] resolved = new double[symbols.length];
+        boolean[] isResolved = new boolean[symbols.length];
+        int sp = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            int instruction = code[pc];
+            int arg = instruction >>> Opcode.ARG_SHIFT;
+            switch (instruction & Opcode.OP_MASK) {
+                case Opcode.LOAD:
+                    if (!isResolved[arg]) {
+                        resolved[arg] = bindings[arg] == null ? UNKNOWN : bindings[arg].getAsDouble();
+                        isResolved[arg] = true;
+                    }
+                    stack[sp++] = resolved[arg];
+                    break;
+                case Opcode.CONST:
+                    stack[sp++] = constants[arg];
+                    break;
+                case Opcode.NOT:
+                case Opcode.ABS:
+                case Opcode.SQRT:
+                case Opcode.FLOOR:
+                case Opcode.CEIL:
+                    stack[sp - 1] = apply(instruction & Opcode.OP_MASK, stack[sp - 1]);
+                    break;
+                case Opcode.CLAMP:
+                    sp -= 2;
+                    stack[sp - 1] = clamp(stack[sp - 1], stack[sp], stack[sp + 1]);
+                    break;
+                default:
+                    sp--;
+                    stack[sp - 1] = apply(instruction & Opcode.OP_MASK, stack[sp - 1], stack[sp]);
+            }
+            // When a left operand decides its parent, jump over the right operand
+            while (jumps[pc] >= 0) {
+                double decided = decide(Opcode.op(code[jumps[pc]]), stack[sp - 1]);
+                if (decided != decided) {
+                    break;
+                }
+                stack[sp - 1] = decided;
+                pc = jumps[pc];
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Returns, for each instruction that ends the left operand of a
+     * short-circuiting operator, the position of that operator; -1 otherwise.
+     */
+    private int[] shortCircuitJumps() {
+        int[] table = jumps;
+        if (table == null) {
+            table = new int[code.length];
+            int[] roots = new int[Math.max(1, maxStack)];
+            int sp = 0;
+            for (int pc = 0; pc < code.length; pc++) {
+                table[pc] = -1;
+                int op = Opcode.op(code[pc]);
+                int arity = Opcode.arity(op);
+                sp -= arity;
+                if (op == Opcode.AND || op == Opcode.OR) {
+                    table[roots[sp]] = pc; // roots[sp] is the left operand
+                }
+                roots[sp++] = pc;
+            }
+            jumps = table;
+        }
+        return table;
+    }
+
+    /**
+     * Returns the result a short-circuiting operator takes when its left
+     * operand has the given value, or NaN if the right operand is needed.
+     */
+    private static double decide(int op, double left) {
+        switch (op) {
+            case Opcode.AND:
+                return left == FALSE ? FALSE : UNKNOWN;
+            case Opcode.OR:
+                return left == TRUE ? TRUE : UNKNOWN;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    /**
+     * Adapts a variable value to a lazy binding.
+     *
+     * @param value A DoubleSupplier, BooleanSupplier, Boolean, Number or null.
+     * @return The binding.
+     */
+    public static DoubleSupplier lazy(Object value) {
+        if (value instanceof DoubleSupplier) {
+            return (DoubleSupplier) value;
+        }
+        if (value instanceof BooleanSupplier) {
+            BooleanSupplier supplier = (BooleanSupplier) value;
+            return () -> supplier.getAsBoolean() ? TRUE : FALSE;
+        }
+        double encoded = encode(value);
+        return () -> encoded;
+    }
+
+    /**
+     * Evaluates a predicate and reports whether it holds. Unknown results
+     * count as not holding.
+     *
+     * @param slots The slot vector, see {@link #bind(Map)}.
+     * @return true only if the predicate evaluates to {@link #TRUE}.
+     */
+    public boolean test(double[] slots) {
+        return evaluate(slots) == TRUE;
+    }
+
+    /**
+     * Returns the expression as a function of its only variable, e.g. for
+     * {@code DoubleStream.map}. The function is stateless, so it may be
+     * shared by the threads of a parallel stream, and does not allocate
+     * unless the program is nested deeper than the closure compiler allows;
+     * such programs fall back to the interpreter, which allocates per call.
+     *
+     * @return The function; a predicate returns an encoded boolean.
+     * @throws IllegalStateException If the expression has more than one variable.
+     */
+    public DoubleUnaryOperator asDoubleUnaryOperator() {
+        requireScalarSlots(1, "DoubleUnaryOperator");
+        DoubleBinaryOperator function = scalarFunction();
+        return x -> function.applyAsDouble(x, 0);
+    }
+
+    /**
+     * Returns the expression as a function of its two variables, the first
+     * and second in slot (alphabetical) order. Stateless; allocation-free
+     * as {@link #asDoubleUnaryOperator()}.
+     *
+     * @return The function; a predicate returns an encoded boolean.
+     * @throws IllegalStateException If the expression has more than two variables.
+     */
+    public DoubleBinaryOperator asDoubleBinaryOperator() {
+        requireScalarSlots(2, "DoubleBinaryOperator");
+        return scalarFunction();
+    }
+
+    /**
+     * Returns the expression as a function of a slot vector, see
+     * {@link #bind(Map)}. Stateless and, unlike {@link #evaluate(double[])},
+     * which allocates its stack, allocation-free except for programs too
+     * deeply nested for a closure tree.
+     *
+     * @return The function; a predicate returns an encoded boolean.
+     */
+    public ToDoubleFunction<double[]> asToDoubleFunction() {
+        ToDoubleFunction<double[]> function = slotFunction;
+        if (function == null) {
+            ClosureCompiler.Node root = ClosureCompiler.compile(this, false);
+            function = root == null ? this::evaluate : slots -> root.eval(0, 0, slots);
+            slotFunction = function;
+        }
+        return function;
+    }
+
+    /**
+     * Returns a predicate as a test of a slot vector, e.g. for
+     * {@code Stream.filter}. Unknown results count as not holding, as in
+     * {@link #test(double[])}. Stateless; allocation-free as
+     * {@link #asToDoubleFunction()}.
+     *
+     * @return The predicate.
+     * @throws IllegalStateException If the expression does not produce a boolean.
+     */
+    public Predicate<double[]> asPredicate() {
+        requirePredicate();
+        ToDoubleFunction<double[]> function = asToDoubleFunction();
+        return slots -> function.applyAsDouble(slots) == TRUE;
+    }
+
+    /**
+     * Returns a predicate of its only variable as a {@link DoublePredicate},
+     * e.g. for {@code DoubleStream.filter}. Unknown results count as not
+     * holding. Stateless; allocation-free as {@link #asDoubleUnaryOperator()}.
+     *
+     * @return The predicate.
+     * @throws IllegalStateException If the expression does not produce a
+     *                               boolean or has more than one variable.
+     */
+    public DoublePredicate asDoublePredicate() {
+        requirePredicate();
+        DoubleUnaryOperator function = asDoubleUnaryOperator();
+        return x -> function.applyAsDouble(x) == TRUE;
+    }
+
+    private void requireScalarSlots(int count, String adapter) {
+        if (symbols.length > count) {
+            throw new IllegalStateException("Expression has " + symbols.length + " variables; a " + adapter
+                    + " takes at most " + count + ".");
+        }
+    }
+
+    private void requirePredicate() {
+        if (resultType != ValueType.BOOLEAN) {
+            throw new IllegalStateException("Expression does not produce a boolean.");
+        }
+    }
+
+    // The closure tree over the first two slots, built once; a race only builds an equal tree twice
+    private DoubleBinaryOperator scalarFunction() {
+        DoubleBinaryOperator function = scalarFunction;
+        if (function == null) {
+            ClosureCompiler.Node root = ClosureCompiler.compile(this, true);
+            function = root == null ? this::evaluateScalars : (x, y) -> root.eval(x, y, null);
+            scalarFunction = function;
+        }
+        return function;
+    }
+
+    // Interpreter fallback for programs nested too deeply for a closure tree
+    private double evaluateScalars(double x, double y) {
+        double[] slots = new double[symbols.length];
+        if (slots.length > 0) {
+            slots[0] = x;
+        }
+        if (slots.length > 1) {
+            slots[1] = y;
+        }
+        return evaluate(slots);
+    }
+
+    /**
+     * Applies a binary opcode to two operands.
+     *
+     * @param op    The opcode.
+     * @param left  The left operand.
+     * @param right The right operand.
+     * @return The result of the operation.
+     */
+    static double apply(int op, double left, double right) {
+        switch (op) {
+            case Opcode.ADD:
+                return left + right;
+            case Opcode.SUB:
+                return left - right;
+            case Opcode.MUL:
+                return left * right;
+            case Opcode.DIV:
+                return right == 0 ? Double.NaN : left / right; // Division by zero is NaN, as in PostfixMath
+            case Opcode.MOD:
+                return left % right;
+            case Opcode.POW:
+                return Math.pow(left, right);
+            case Opcode.MIN:
+                return Math.min(left, right);
+            case Opcode.MAX:
+                return Math.max(left, right);
+            case Opcode.LT:
+                return compare(left, right, left < right);
+            case Opcode.LE:
+                return compare(left, right, left <= right);
+            case Opcode.GT:
+                return compare(left, right, left > right);
+            case Opcode.GE:
+                return compare(left, right, left >= right);
+            case Opcode.EQ:
+                return compare(left, right, left == right);
+            case Opcode.NE:
+                return compare(left, right, left != right);
+            case Opcode.AND:
+                // Kleene semantics, as in PostfixLogic.evalShortCircuit: false wins over unknown
+                if (left == FALSE || right == FALSE) {
+                    return FALSE;
+                }
+                return left != left || right != right ? UNKNOWN : TRUE;
+            case Opcode.OR:
+                // Kleene semantics: true wins over unknown
+                if (left == TRUE || right == TRUE) {
+                    return TRUE;
+                }
+                return left != left || right != right ? UNKNOWN : FALSE;
+            case Opcode.STRICT_AND:
+                // As in PostfixLogic.eval: unknown in either operand makes the result unknown
+                return left != left || right != right ? UNKNOWN : bool(left == TRUE && right == TRUE);
+            case Opcode.STRICT_OR:
+                return left != left || right != right ? UNKNOWN : bool(left == TRUE || right == TRUE);
+            case Opcode.XOR:
+                return left != left || right != right ? UNKNOWN : bool(left != right);
+            case Opcode.NAND:
+                return left != left || right != right ? UNKNOWN : bool(!(left == TRUE && right == TRUE));
+            case Opcode.NOR:
+                return left != left || right != right ? UNKNOWN : bool(!(left == TRUE || right == TRUE));
+            case Opcode.XNOR:
+                return left != left || right != right ? UNKNOWN : bool(left == right);
+            default:
+                throw new IllegalStateException("Unsupported opcode: " + op);
+        }
+    }
+
+    /**
+     * Applies a unary opcode (NOT or a unary function) to its operand.
+     *
+     * @param op      The opcode.
+     * @param operand The operand.
+     * @return The result of the operation.
+     */
+    static double apply(int op, double operand) {
+        switch (op) {
+            case Opcode.NOT:
+                return not(operand);
+            case Opcode.ABS:
+                return Math.abs(operand);
+            case Opcode.SQRT:
+                return Math.sqrt(operand);
+            case Opcode.FLOOR:
+                return Math.floor(operand);
+            case Opcode.CEIL:
+                return Math.ceil(operand);
+            default:
+                throw new IllegalStateException("Unsupported opcode: " + op);
+        }
+    }
+
+    /**
+     * Clamps a value into a range; NaN in any argument yields NaN.
+     */
+    static double clamp(double value, double low, double high) {
+        return Math.max(low, Math.min(value, high));
+    }
+
+    static double not(double operand) {
+        return operand != operand ? UNKNOWN : bool(operand != TRUE);
+    }
+
+    private static double compare(double left, double right, boolean result) {
+        return left != left || right != right ? UNKNOWN : bool(result);
+    }
+
+    private static double bool(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /**
+     * Encodes a Boolean, Number or null into a slot value.
+     *
+     * @param value The value to encode.
+     * @return The encoded double.
+     */
+    public static double encode(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? TRUE : FALSE;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Decodes an encoded boolean result into a nullable Boolean.
+     *
+     * @param value The encoded boolean.
+     * @return true, false, or null for an unknown result.
+     */
+    public static Boolean toBoolean(double value) {
+        return value != value ? null : value == TRUE;
+    }
+
+    /**
+     * Returns a disassembly of the instruction stream in postfix order.
+     *
+     * @return The postfix token string the program was compiled from.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int instruction : code) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            int op = Opcode.op(instruction);
+            if (op == Opcode.LOAD) {
+                sb.append(symbols[Opcode.arg(instruction)]);
+            } else if (op == Opcode.CONST) {
+                sb.append(ExpressionCompiler.formatConstant(constants[Opcode.arg(instruction)]));
+            } else {
+                sb.append(Opcode.symbol(op));
+            }
+        }
+        return sb.toString();
+    }
+}
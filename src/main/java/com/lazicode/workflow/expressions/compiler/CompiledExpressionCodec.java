@@ -0,0 +1,287 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+/**
+ * Versioned binary format for {@link CompiledExpression}, so a rule catalog
+ * can be loaded without tokenizing, validating and compiling every
+ * expression string again.
+ *
+ * A record is laid out big-endian as:
+ * <pre>
+ * int    magic ("LZCE")
+ * short  format version
+ * int    payload length
+ * byte[] payload
+ * int    CRC32 of the payload
+ * </pre>
+ * and the payload holds the result type, the stack depth, the slot symbols
+ * with their inferred types, the constant pool and the instruction stream.
+ *
+ * Decoding checks the checksum and then verifies the instruction stream in a
+ * single pass (known opcodes, slot and constant indices in range, stack depth
+ * within bounds), so a corrupt or foreign record is rejected with an
+ * {@link InvalidExpression} instead of failing later during evaluation.
+ */
+public final class CompiledExpressionCodec {
+
+    public static final int MAGIC = 0x4C5A4345;
+    public static final short VERSION = 1;
+
+    /**
+     * The largest payload a record may declare. A longer length can only come
+     * from a corrupt record and is rejected before anything is allocated.
+     */
+    public static final int MAX_PAYLOAD_BYTES = 64 << 20;
+
+    private static final int HEADER_BYTES = 4 + 2 + 4;
+    private static final int TRAILER_BYTES = 4;
+    private static final ValueType[] TYPES = ValueType.values();
+
+    private CompiledExpressionCodec() {
+    }
+
+    /**
+     * Returns the number of bytes a compiled expression occupies when encoded.
+     *
+     * @param expression The compiled expression.
+     * @return The size of the encoded record in bytes.
+     */
+    public static int encodedSize(CompiledExpression expression) {
+        return HEADER_BYTES + payloadSize(expression) + TRAILER_BYTES;
+    }
+
+    /**
+     * Encodes a compiled expression into a new byte array.
+     *
+     * @param expression The compiled expression.
+     * @return The encoded record.
+     */
+    public static byte[] encode(CompiledExpression expression) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(expression));
+        write(expression, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes a compiled expression at the buffer's position and advances it.
+     *
+     * @param expression The compiled expression.
+     * @param buffer     The target buffer; its byte order is not changed.
+     * @throws java.nio.BufferOverflowException If the buffer has less than
+     *                                          {@link #encodedSize} bytes remaining.
+     */
+    public static void write(CompiledExpression expression, ByteBuffer buffer) {
+        ByteBuffer out = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int payloadSize = payloadSize(expression);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putInt(payloadSize);
+        int payloadStart = out.position();
+        writePayload(expression, out);
+        out.putInt(checksum(out, payloadStart, payloadSize));
+        buffer.position(out.position());
+    }
+
+    /**
+     * Writes a compiled expression to a data output.
+     *
+     * @param expression The compiled expression.
+     * @param out        The target output.
+     * @throws IOException If the output fails.
+     */
+    public static void write(CompiledExpression expression, DataOutput out) throws IOException {
+        out.write(encode(expression));
+    }
+
+    /**
+     * Reads a compiled expression at the buffer's position and advances it
+     * past the record.
+     *
+     * @param buffer The source buffer; its byte order is not changed.
+     * @return The decoded compiled expression.
+     * @throws InvalidExpression If the record is truncated, corrupt or of an
+     *                           unsupported version.
+     */
+    public static CompiledExpression read(ByteBuffer buffer) throws InvalidExpression {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            int payloadSize = readHeader(in.getInt(), in.getShort(), in.getInt());
+            if (in.remaining() < payloadSize + TRAILER_BYTES) {
+                throw new InvalidExpression("Truncated compiled expression record.");
+            }
+            int payloadStart = in.position();
+            int actual = checksum(in, payloadStart, payloadSize);
+            ByteBuffer payload = in.slice();
+            payload.limit(payloadSize);
+            in.position(payloadStart + payloadSize);
+            if (in.getInt() != actual) {
+                throw new InvalidExpression("Corrupt compiled expression record: checksum mismatch.");
+            }
+            CompiledExpression expression = readPayload(payload);
+            buffer.position(in.position());
+            return expression;
+        } catch (BufferUnderflowException e) {
+            throw new InvalidExpression("Truncated compiled expression record.");
+        }
+    }
+
+    /**
+     * Reads a compiled expression from a data input.
+     *
+     * @param in The source input.
+     * @return The decoded compiled expression.
+     * @throws IOException       If the input fails or ends early.
+     * @throws InvalidExpression If the record is corrupt or of an unsupported version.
+     */
+    public static CompiledExpression read(DataInput in) throws IOException, InvalidExpression {
+        int payloadSize = readHeader(in.readInt(), in.readShort(), in.readInt());
+        byte[] bytes = new byte[payloadSize];
+        in.readFully(bytes);
+        int expected = in.readInt();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != expected) {
+            throw new InvalidExpression("Corrupt compiled expression record: checksum mismatch.");
+        }
+        try {
+            return readPayload(ByteBuffer.wrap(bytes));
+        } catch (BufferUnderflowException e) {
+            throw new InvalidExpression("Truncated compiled expression record.");
+        }
+    }
+
+    private static int readHeader(int magic, short version, int payloadSize) throws InvalidExpression {
+        if (magic != MAGIC) {
+            throw new InvalidExpression("Not a compiled expression record.");
+        }
+        if (version != VERSION) {
+            throw new InvalidExpression("Unsupported compiled expression format version: " + version + ".");
+        }
+        if (payloadSize < 0 || payloadSize > MAX_PAYLOAD_BYTES) {
+            throw new InvalidExpression("Corrupt compiled expression record: invalid length " + payloadSize + ".");
+        }
+        return payloadSize;
+    }
+
+    private static int payloadSize(CompiledExpression expression) {
+        int size = 1 + 4 + 4;
+        for (String symbol : expression.getSymbols()) {
+            size += 4 + symbol.getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        size += 4 + 8 * expression.getConstantCount();
+        size += 4 + 4 * expression.getCodeLength();
+        return size;
+    }
+
+    private static void writePayload(CompiledExpression expression, ByteBuffer out) {
+        out.put((byte) expression.getResultType().ordinal());
+        out.putInt(expression.getMaxStack());
+        String[] symbols = expression.getSymbols();
+        out.putInt(symbols.length);
+        for (int slot = 0; slot < symbols.length; slot++) {
+            byte[] name = symbols[slot].getBytes(StandardCharsets.UTF_8);
+            out.putInt(name.length);
+            out.put(name);
+            out.put((byte) expression.getSymbolType(slot).ordinal());
+        }
+        out.putInt(expression.getConstantCount());
+        for (int i = 0; i < expression.getConstantCount(); i++) {
+            out.putDouble(expression.getConstant(i));
+        }
+        out.putInt(expression.getCodeLength());
+        for (int pc = 0; pc < expression.getCodeLength(); pc++) {
+            out.putInt(expression.getInstruction(pc));
+        }
+    }
+
+    private static CompiledExpression readPayload(ByteBuffer in) throws InvalidExpression {
+        ValueType resultType = readType(in.get());
+        int maxStack = in.getInt();
+        String[] symbols = new String[readCount(in, 5)];
+        ValueType[] symbolTypes = new ValueType[symbols.length];
+        for (int slot = 0; slot < symbols.length; slot++) {
+            byte[] name = new byte[readCount(in, 1)];
+            in.get(name);
+            symbols[slot] = new String(name, StandardCharsets.UTF_8);
+            symbolTypes[slot] = readType(in.get());
+            if (slot > 0 && symbols[slot - 1].compareTo(symbols[slot]) >= 0) {
+                throw new InvalidExpression("Corrupt compiled expression record: slot symbols out of order.");
+            }
+        }
+        double[] constants = new double[readCount(in, 8)];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = in.getDouble();
+        }
+        int[] code = new int[readCount(in, 4)];
+        for (int pc = 0; pc < code.length; pc++) {
+            code[pc] = in.getInt();
+        }
+        if (in.hasRemaining()) {
+            throw new InvalidExpression("Corrupt compiled expression record: trailing bytes.");
+        }
+        verify(code, symbols.length, constants.length, maxStack);
+        return new CompiledExpression(code, constants, symbols, symbolTypes, resultType, maxStack);
+    }
+
+    /**
+     * Checks that the instruction stream can be evaluated without reading
+     * outside the slot vector, the constant pool or the stack.
+     */
+    private static void verify(int[] code, int slotCount, int constantCount, int maxStack) throws InvalidExpression {
+        int depth = 0;
+        for (int instruction : code) {
+            int op = Opcode.op(instruction);
+            int arg = Opcode.arg(instruction);
+            if (!Opcode.isValid(op)) {
+                throw new InvalidExpression("Corrupt compiled expression record: unknown opcode " + op + ".");
+            }
+            if ((op == Opcode.LOAD && arg >= slotCount) || (op == Opcode.CONST && arg >= constantCount)) {
+                throw new InvalidExpression("Corrupt compiled expression record: operand index out of range.");
+            }
+            int arity = Opcode.arity(op);
+            if (depth < arity) {
+                throw new InvalidExpression("Corrupt compiled expression record: stack underflow.");
+            }
+            depth += arity == 0 ? 1 : 1 - arity;
+            if (depth > maxStack) {
+                throw new InvalidExpression("Corrupt compiled expression record: stack overflow.");
+            }
+        }
+        if (depth != 1) {
+            throw new InvalidExpression("Corrupt compiled expression record: unbalanced instruction stream.");
+        }
+    }
+
+    private static int readCount(ByteBuffer in, int minBytesPerEntry) throws InvalidExpression {
+        int count = in.getInt();
+        if (count < 0 || (long) count * minBytesPerEntry > in.remaining()) {
+            throw new InvalidExpression("Corrupt compiled expression record: invalid length.");
+        }
+        return count;
+    }
+
+    private static ValueType readType(byte ordinal) throws InvalidExpression {
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new InvalidExpression("Corrupt compiled expression record: unknown value type.");
+        }
+        return TYPES[ordinal];
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,357 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+/**
+ * Append-only, memory-mapped file of compiled expressions shared by every
+ * JVM on a host. One process compiles a rule catalog and appends it; the
+ * others map the same file read-only and decode programs straight from the
+ * shared page cache instead of parsing and compiling them again.
+ *
+ * The file starts with a 16-byte header: magic ("LZCS"), format version and
+ * the committed end offset. Each entry is
+ * <pre>
+ * int    entry length (excluding this int)
+ * long   64-bit FNV-1a hash of the key
+ * int    key length, followed by the UTF-8 key
+ * byte[] compiled expression in the {@link CompiledExpressionCodec} format
+ * </pre>
+ *
+ * Appends are serialized across processes by an exclusive lock on the
+ * header region and within a JVM by a per-file monitor. An entry is written
+ * and forced to disk before the committed end offset is advanced, so readers,
+ * which never lock, only ever see complete entries. Keys are unique: an
+ * append of a key that is already present is a no-op.
+ *
+ * The file is limited to 2 GiB, the size of a single mapping.
+ */
+public final class CompiledExpressionStore implements Closeable {
+
+    public static final int MAGIC = 0x4C5A4353;
+    public static final short VERSION = 1;
+
+    private static final int HEADER_BYTES = 16;
+    private static final int COMMITTED_END_OFFSET = 8;
+    // Writable stores open on each file, so two channels of one JVM never contend for the file lock
+    private static final Map<Path, AppendMonitor> APPEND_MONITORS = new ConcurrentHashMap<>();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private final AppendMonitor appendMonitor;
+
+    // Entry offsets by key hash; collisions are resolved by comparing the key bytes
+    private final Map<Long, int[]> offsetsByHash = new HashMap<>();
+    private final Map<String, CompiledExpression> decoded = new ConcurrentHashMap<>();
+    private MappedByteBuffer mapped;
+    private int indexedEnd = HEADER_BYTES;
+    private int size;
+    private boolean closed;
+
+    /**
+     * Serializes appends to one file within the JVM; counts the writable
+     * stores open on it, so the entry is dropped when the last one closes.
+     */
+    private static final class AppendMonitor {
+        int users;
+    }
+
+    private CompiledExpressionStore(Path path, FileChannel channel, boolean readOnly) {
+        this.path = path;
+        this.channel = channel;
+        this.readOnly = readOnly;
+        this.appendMonitor = readOnly ? null : APPEND_MONITORS.compute(path, (key, monitor) -> {
+            AppendMonitor shared = monitor == null ? new AppendMonitor() : monitor;
+            shared.users++;
+            return shared;
+        });
+    }
+
+    /**
+     * Opens a store for reading and appending, creating the file if needed.
+     *
+     * @param file The store file.
+     * @return The opened store.
+     * @throws IOException If the file cannot be opened or is not a store.
+     */
+    public static CompiledExpressionStore open(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+        CompiledExpressionStore store = new CompiledExpressionStore(path, channel, false);
+        try {
+            store.initialize();
+            store.refresh();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Opens an existing store for reading only. Entries appended later by
+     * other processes become visible on lookup.
+     *
+     * @param file The store file.
+     * @return The opened store.
+     * @throws IOException If the file does not exist or is not a store.
+     */
+    public static CompiledExpressionStore openReadOnly(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        CompiledExpressionStore store = new CompiledExpressionStore(path, channel, true);
+        try {
+            store.refresh();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Looks up the compiled expression stored under a key.
+     *
+     * @param key The key, typically the expression string.
+     * @return The compiled expression, or null if the key is not stored.
+     * @throws IOException       If the file cannot be read.
+     * @throws InvalidExpression If the stored record is corrupt.
+     */
+    public CompiledExpression get(String key) throws IOException, InvalidExpression {
+        CompiledExpression expression = decoded.get(key);
+        if (expression != null) {
+            return expression;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        synchronized (this) {
+            int offset = find(hash, keyBytes);
+            if (offset < 0) {
+                refresh(); // Another process may have appended it
+                offset = find(hash, keyBytes);
+            }
+            if (offset < 0) {
+                return null;
+            }
+            ByteBuffer record = mapped.duplicate();
+            record.position(offset + 4 + 8 + 4 + keyBytes.length);
+            expression = CompiledExpressionCodec.read(record);
+        }
+        decoded.put(key, expression);
+        return expression;
+    }
+
+    /**
+     * Appends a compiled expression under a key unless the key is already
+     * stored, by this or any other process.
+     *
+     * @param key        The key, typically the expression string.
+     * @param expression The compiled expression.
+     * @return true if the entry was appended; false if the key was already stored.
+     * @throws IOException If the file cannot be written.
+     */
+    public boolean put(String key, CompiledExpression expression) throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException("Compiled expression store is opened read-only: " + path);
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        byte[] record = CompiledExpressionCodec.encode(expression);
+        synchronized (appendMonitor) {
+            FileLock lock = channel.lock(0, HEADER_BYTES, false);
+            try {
+                synchronized (this) {
+                    refresh();
+                    if (find(hash, keyBytes) >= 0) {
+                        return false;
+                    }
+                    int length = 8 + 4 + keyBytes.length + record.length;
+                    long end = (long) indexedEnd + 4 + length;
+                    if (end > Integer.MAX_VALUE) {
+                        throw new IllegalStateException("Compiled expression store is full: " + path);
+                    }
+                    ByteBuffer entry = ByteBuffer.allocate(4 + length);
+                    entry.putInt(length).putLong(hash).putInt(keyBytes.length).put(keyBytes).put(record);
+                    entry.flip();
+                    writeFully(entry, indexedEnd);
+                    channel.force(false);
+                    // Publish only after the entry is durable, so readers never see a partial entry
+                    ByteBuffer committed = ByteBuffer.allocate(8);
+                    committed.putLong(0, end);
+                    writeFully(committed, COMMITTED_END_OFFSET);
+                    channel.force(false);
+                    refresh();
+                    return true;
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries visible to this store.
+     *
+     * @throws IOException If the file cannot be read.
+     */
+    public synchronized int size() throws IOException {
+        refresh();
+        return size;
+    }
+
+    /**
+     * Returns the path of the store file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Closes the file. Decoded expressions remain usable. Closing twice has
+     * no effect.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            channel.close();
+        } finally {
+            if (appendMonitor != null) {
+                APPEND_MONITORS.computeIfPresent(path, (key, monitor) -> --monitor.users == 0 ? null : monitor);
+            }
+        }
+    }
+
+    private void initialize() throws IOException {
+        synchronized (appendMonitor) {
+            FileLock lock = channel.lock(0, HEADER_BYTES, false);
+            try {
+                if (channel.size() == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                    header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(HEADER_BYTES);
+                    header.flip();
+                    writeFully(header, 0);
+                    channel.force(false);
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Indexes the entries committed since the last refresh, remapping the
+     * file when it has grown past the current mapping.
+     */
+    private synchronized void refresh() throws IOException {
+        if (mapped == null) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a compiled expression store: " + path);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a compiled expression store: " + path);
+            }
+            if (mapped.getShort(4) != VERSION) {
+                throw new IOException("Unsupported compiled expression store version " + mapped.getShort(4)
+                        + ": " + path);
+            }
+        }
+        long end = mapped.getLong(COMMITTED_END_OFFSET);
+        if (end <= indexedEnd) {
+            return;
+        }
+        if (end > Integer.MAX_VALUE || end > channel.size()) {
+            throw new IOException("Corrupt compiled expression store, committed end " + end + ": " + path);
+        }
+        if (end > mapped.capacity()) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        }
+        int offset = indexedEnd;
+        while (offset < end) {
+            // Validated before indexing, so a corrupt length can neither stall the loop nor reach past end
+            int length = offset + 4L <= end ? mapped.getInt(offset) : -1;
+            if (length < 8 + 4 || length > end - offset - 4) {
+                throw new IOException("Corrupt compiled expression store, entry length " + length + " at "
+                        + offset + ": " + path);
+            }
+            int keyLength = mapped.getInt(offset + 4 + 8);
+            if (keyLength < 0 || keyLength > length - 8 - 4) {
+                throw new IOException("Corrupt compiled expression store, key length " + keyLength + " at "
+                        + offset + ": " + path);
+            }
+            long hash = mapped.getLong(offset + 4);
+            int[] offsets = offsetsByHash.get(hash);
+            if (offsets == null) {
+                offsetsByHash.put(hash, new int[] { offset });
+            } else {
+                int[] grown = Arrays.copyOf(offsets, offsets.length + 1);
+                grown[offsets.length] = offset;
+                offsetsByHash.put(hash, grown);
+            }
+            size++;
+            offset += 4 + length;
+            indexedEnd = offset;
+        }
+    }
+
+    private int find(long hash, byte[] keyBytes) {
+        int[] offsets = offsetsByHash.get(hash);
+        if (offsets == null) {
+            return -1;
+        }
+        for (int offset : offsets) {
+            if (keyMatches(offset, keyBytes)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private boolean keyMatches(int offset, byte[] keyBytes) {
+        int keyOffset = offset + 4 + 8;
+        if (mapped.getInt(keyOffset) != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (mapped.get(keyOffset + 4 + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static long hash(byte[] bytes) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return h;
+    }
+}
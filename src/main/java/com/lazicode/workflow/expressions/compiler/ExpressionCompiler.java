@@ -0,0 +1,172 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+/**
+ * Compiles postfix expressions into {@link CompiledExpression} instruction
+ * streams. Math, comparison and logic operators may be mixed freely; every
+ * subterm is type-checked at compile time and the type of each variable is
+ * inferred from the operators that consume it.
+ *
+ * AND and OR compile to Kleene operators, where false decides AND and true
+ * decides OR even if the other operand is unknown, unless strict logic is
+ * requested: then they compile to {@link Opcode#STRICT_AND} and
+ * {@link Opcode#STRICT_OR}, which are unknown whenever an operand is, as in
+ * the non-short-circuit interpreter.
+ */
+public final class ExpressionCompiler {
+
+    private static final Pattern VARIABLE = Pattern.compile("[A-Z]");
+    private static final Pattern NUMBER = Pattern.compile("\\d+(\\.\\d+)?");
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Compiles a postfix expression.
+     *
+     * @param postfix      The space-separated postfix expression.
+     * @param expectedType The type the whole expression must produce.
+     * @return The compiled expression.
+     * @throws InvalidExpression If a token is unsupported, the operand count
+     *                           is wrong, or the expression is ill-typed.
+     */
+    public static CompiledExpression compile(String postfix, ValueType expectedType) throws InvalidExpression {
+        return compile(postfix, expectedType, false);
+    }
+
+    /**
+     * Compiles a postfix expression, with Kleene or strict AND and OR.
+     *
+     * @param postfix      The space-separated postfix expression.
+     * @param expectedType The type the whole expression must produce.
+     * @param strictLogic  Whether AND and OR are unknown as soon as an operand is.
+     * @return The compiled expression.
+     * @throws InvalidExpression If a token is unsupported, the operand count
+     *                           is wrong, or the expression is ill-typed.
+     */
+    public static CompiledExpression compile(String postfix, ValueType expectedType, boolean strictLogic)
+            throws InvalidExpression {
+        if (postfix == null || postfix.trim().isEmpty()) {
+            throw new InvalidExpression("Invalid expression: Expression cannot be empty.");
+        }
+        String[] tokens = postfix.trim().split("\\s+");
+
+        // Slots are assigned in sorted symbol order so equal variable sets share a layout
+        TreeSet<String> symbolSet = new TreeSet<>();
+        for (String token : tokens) {
+            if (isVariable(token)) {
+                symbolSet.add(token);
+            }
+        }
+        String[] symbols = symbolSet.toArray(new String[0]);
+        ValueType[] symbolTypes = new ValueType[symbols.length];
+
+        List<Double> constants = new ArrayList<>();
+        int[] code = new int[tokens.length];
+        // Type stack: 0 = NUMBER, 1 = BOOLEAN, 2 + slot = variable whose type is not known yet
+        int[] types = new int[tokens.length];
+        int sp = 0;
+        int maxStack = 0;
+
+        for (int pc = 0; pc < tokens.length; pc++) {
+            String token = tokens[pc];
+            if (isVariable(token)) {
+                int slot = Arrays.binarySearch(symbols, token);
+                code[pc] = Opcode.encode(Opcode.LOAD, slot);
+                types[sp++] = 2 + slot;
+            } else if (isNumber(token)) {
+                double value = Double.parseDouble(token);
+                int index = constants.indexOf(value);
+                if (index < 0) {
+                    index = constants.size();
+                    constants.add(value);
+                }
+                code[pc] = Opcode.encode(Opcode.CONST, index);
+                types[sp++] = typeCode(ValueType.NUMBER);
+            } else {
+                int op = Opcode.forSymbol(token);
+                if (op < 0) {
+                    throw new InvalidExpression("Unsupported token: '" + token + "'.");
+                }
+                int arity = Opcode.arity(op);
+                if (sp < arity) {
+                    throw new InvalidExpression("Operator '" + token + "' requires " + arity
+                            + " operand(s) but only " + sp + " found.");
+                }
+                ValueType operandType = Opcode.operandType(op);
+                for (int i = 0; i < arity; i++) {
+                    unify(types[--sp], operandType, token, symbols, symbolTypes);
+                }
+                code[pc] = Opcode.encode(strictLogic ? Opcode.strict(op) : op, 0);
+                types[sp++] = typeCode(Opcode.resultType(op));
+            }
+            maxStack = Math.max(maxStack, sp);
+        }
+
+        if (sp != 1) {
+            throw new InvalidExpression("Invalid postfix expression format. Expected a single final result, but found "
+                    + sp + " remaining.");
+        }
+        unify(types[0], expectedType, "result", symbols, symbolTypes);
+
+        double[] pool = new double[constants.size()];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = constants.get(i);
+        }
+        return new CompiledExpression(code, pool, symbols, symbolTypes, expectedType, maxStack);
+    }
+
+    /**
+     * Checks if a token is a variable reference.
+     */
+    public static boolean isVariable(String token) {
+        return VARIABLE.matcher(token).matches();
+    }
+
+    /**
+     * Checks if a token is a non-negative numeric literal.
+     */
+    public static boolean isNumber(String token) {
+        return NUMBER.matcher(token).matches();
+    }
+
+    /**
+     * Formats a constant the way it is written in an expression.
+     */
+    static String formatConstant(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value)
+                ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+
+    private static int typeCode(ValueType type) {
+        return type.ordinal();
+    }
+
+    private static void unify(int actual, ValueType expected, String context, String[] symbols,
+            ValueType[] symbolTypes) throws InvalidExpression {
+        if (actual >= 2) {
+            int slot = actual - 2;
+            if (symbolTypes[slot] == null) {
+                symbolTypes[slot] = expected;
+                return;
+            }
+            if (symbolTypes[slot] != expected) {
+                throw new InvalidExpression("Variable '" + symbols[slot] + "' is used both as "
+                        + symbolTypes[slot] + " and as " + expected + ".");
+            }
+            return;
+        }
+        if (ValueType.values()[actual] != expected) {
+            throw new InvalidExpression("Type mismatch at '" + context + "': expected " + expected
+                    + " but found " + ValueType.values()[actual] + ".");
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash-consed DAG shared by many compiled expressions. Structurally equal
+ * subterms, such as "A B AND" appearing in hundreds of rules, are stored as
+ * one node, so a single evaluation pass computes every shared subterm once
+ * per binding and all expressions referencing it reuse the result.
+ *
+ * Node ids are assigned in creation order and children are always created
+ * before their parents, so evaluating nodes in id order is a valid
+ * topological schedule. Operands of commutative operators are ordered by
+ * node id so "A B AND" and "B A AND" share a node.
+ *
+ * Instances are not thread-safe while expressions are being added;
+ * evaluation with caller-provided buffers may run concurrently once
+ * construction is finished.
+ */
+public final class ExpressionDag {
+
+    private int[] ops = new int[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int size;
+
+    private final Map<Long, Integer> nodeIndex = new HashMap<>();
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<String, Integer> symbolSlots = new HashMap<>();
+    private final List<Double> constants = new ArrayList<>();
+    private double[] constantPool = new double[0];
+
+    /**
+     * Adds a compiled expression to the DAG, reusing any node that already
+     * exists for one of its subterms.
+     *
+     * @param expression The compiled expression.
+     * @return The id of the node computing the expression's result.
+     */
+    public int add(CompiledExpression expression) {
+        int[] stack = new int[Math.max(1, expression.getMaxStack())];
+        int sp = 0;
+        for (int pc = 0; pc < expression.getCodeLength(); pc++) {
+            int instruction = expression.getInstruction(pc);
+            int op = Opcode.op(instruction);
+            int arg = Opcode.arg(instruction);
+            switch (op) {
+                case Opcode.LOAD:
+                    stack[sp++] = intern(Opcode.LOAD, symbolSlot(expression.getSymbols()[arg]), 0);
+                    break;
+                case Opcode.CONST:
+                    stack[sp++] = intern(Opcode.CONST, constantIndex(expression.getConstant(arg)), 0);
+                    break;
+                case Opcode.CLAMP: {
+                    // Desugared to max(lo, min(x, hi)) so every node has at most two operands
+                    int high = stack[--sp];
+                    int low = stack[--sp];
+                    int inner = commutative(Opcode.MIN, stack[sp - 1], high);
+                    stack[sp - 1] = commutative(Opcode.MAX, low, inner);
+                    break;
+                }
+                default:
+                    if (Opcode.arity(op) == 1) {
+                        stack[sp - 1] = intern(op, stack[sp - 1], 0);
+                        break;
+                    }
+                    int b = stack[--sp];
+                    stack[sp - 1] = commutative(op, stack[sp - 1], b);
+            }
+        }
+        return stack[0];
+    }
+
+    private int commutative(int op, int a, int b) {
+        if (Opcode.isCommutative(op) && b < a) {
+            return intern(op, b, a);
+        }
+        return intern(op, a, b);
+    }
+
+    /**
+     * Returns the number of distinct nodes in the DAG.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the opcode of a node.
+     */
+    public int getOp(int node) {
+        return ops[node];
+    }
+
+    /**
+     * Returns the first operand of a node: the slot for LOAD, the constant
+     * index for CONST, otherwise a child node id.
+     */
+    public int getLeft(int node) {
+        return left[node];
+    }
+
+    /**
+     * Returns the second operand node id of a binary node. Clamp is stored
+     * as max(lo, min(x, hi)), so no node has more than two operands.
+     */
+    public int getRight(int node) {
+        return right[node];
+    }
+
+    /**
+     * Returns the variable bound to each slot of the shared binding vector.
+     */
+    public String[] getSymbols() {
+        return symbols.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the slot of a variable in the shared binding vector.
+     *
+     * @param symbol The variable name.
+     * @return The slot index, or -1 if no expression references the variable.
+     */
+    public int slotOf(String symbol) {
+        Integer slot = symbolSlots.get(symbol);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Returns a constant from the shared constant pool.
+     */
+    public double getConstant(int index) {
+        return constantPool[index];
+    }
+
+    /**
+     * Packs a map of variable values into a shared binding vector.
+     *
+     * @param values The variable values keyed by name.
+     * @return The slot vector.
+     */
+    public double[] bind(Map<String, ?> values) {
+        double[] slots = new double[symbols.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = CompiledExpression.encode(values.get(symbols.get(i)));
+        }
+        return slots;
+    }
+
+    /**
+     * Evaluates every node of the DAG once.
+     *
+     * @param slots The shared binding vector, see {@link #bind(Map)}.
+     * @return The value of each node, indexed by node id.
+     */
+    public double[] evaluate(double[] slots) {
+        double[] values = new double[size];
+        evaluate(slots, values);
+        return values;
+    }
+
+    /**
+     * Evaluates every node of the DAG once into a caller-provided buffer.
+     *
+     * @param slots  The shared binding vector, see {@link #bind(Map)}.
+     * @param values Output buffer of at least {@link #size()} entries.
+     */
+    public void evaluate(double[] slots, double[] values) {
+        for (int i = 0; i < size; i++) {
+            values[i] = evaluateNode(i, slots, values);
+        }
+    }
+
+    /**
+     * Computes one node from the already computed values of its children.
+     *
+     * @param node   The node id.
+     * @param slots  The shared binding vector; only read by LOAD nodes.
+     * @param values The values computed so far, indexed by node id.
+     * @return The value of the node.
+     */
+    public double evaluateNode(int node, double[] slots, double[] values) {
+        switch (ops[node]) {
+            case Opcode.LOAD:
+                return slots[left[node]];
+            case Opcode.CONST:
+                return constantPool[left[node]];
+            default:
+                if (Opcode.arity(ops[node]) == 1) {
+                    return CompiledExpression.apply(ops[node], values[left[node]]);
+                }
+                return CompiledExpression.apply(ops[node], values[left[node]], values[right[node]]);
+        }
+    }
+
+    private int intern(int op, int a, int b) {
+        long key = ((long) op << 56) | ((long) a << 28) | b;
+        Integer existing = nodeIndex.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == ops.length) {
+            int capacity = size * 2;
+            ops = Arrays.copyOf(ops, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+        }
+        ops[size] = op;
+        left[size] = a;
+        right[size] = b;
+        nodeIndex.put(key, size);
+        return size++;
+    }
+
+    private int symbolSlot(String symbol) {
+        Integer slot = symbolSlots.get(symbol);
+        if (slot == null) {
+            slot = symbols.size();
+            symbols.add(symbol);
+            symbolSlots.put(symbol, slot);
+        }
+        return slot;
+    }
+
+    private int constantIndex(double value) {
+        int index = constants.indexOf(value);
+        if (index < 0) {
+            index = constants.size();
+            constants.add(value);
+            constantPool = Arrays.copyOf(constantPool, constants.size());
+            constantPool[index] = value;
+        }
+        return index;
+    }
+}
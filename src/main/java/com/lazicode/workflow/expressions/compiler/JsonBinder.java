@@ -0,0 +1,501 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binds the variables of a compiled expression straight from a UTF-8 JSON
+ * document, without building a JSONObject. The document is scanned once,
+ * left to right: only the members on a mapped path are looked at, every
+ * other value is skipped over byte by byte, and the scan stops as soon as
+ * all mapped fields have been read.
+ *
+ * A field is addressed by its member name, or by a dotted path of names
+ * into nested objects ("order.total"). Numbers are read as doubles, true
+ * and false as encoded booleans; null, a string, an array, an object or a
+ * missing field is unknown. When a name occurs twice in an object the first
+ * occurrence wins.
+ *
+ * Only the part of the document that is scanned is checked, so malformed
+ * JSON after the last mapped field goes unnoticed. A binder is immutable and
+ * may be shared by several threads as long as each uses its own slot vector.
+ */
+public final class JsonBinder {
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final CompiledExpression program;
+    private final Member root;
+    private final int[] slots;
+
+    private JsonBinder(CompiledExpression program, Member root, int[] slots) {
+        this.program = program;
+        this.root = root;
+        this.slots = slots;
+    }
+
+    /**
+     * Builds a binder that reads every variable from the top-level member
+     * of the same name.
+     *
+     * @param program The compiled expression to bind.
+     * @return The binder.
+     */
+    public static JsonBinder of(CompiledExpression program) {
+        Map<String, String> paths = new LinkedHashMap<>();
+        for (String symbol : program.getSymbols()) {
+            paths.put(symbol, symbol);
+        }
+        return of(program, paths);
+    }
+
+    /**
+     * Builds a binder from field paths to variables.
+     *
+     * @param program   The compiled expression to bind.
+     * @param variables The variable bound to each field, keyed by member
+     *                  name or dotted path.
+     * @return The binder.
+     * @throws IllegalArgumentException If a path is empty or a variable is
+     *                                  not part of the expression.
+     */
+    public static JsonBinder of(CompiledExpression program, Map<String, String> variables) {
+        Member root = new Member();
+        int[] slots = new int[variables.size()];
+        int leaf = 0;
+        for (Map.Entry<String, String> entry : variables.entrySet()) {
+            int slot = program.slotOf(entry.getValue());
+            if (slot < 0) {
+                throw new IllegalArgumentException("Variable " + entry.getValue() + " is not part of the expression.");
+            }
+            String[] names = entry.getKey().split("\\.", -1);
+            Member member = root;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].isEmpty()) {
+                    throw new IllegalArgumentException("Invalid JSON field path: '" + entry.getKey() + "'");
+                }
+                int index = member.indexOf(names[i]);
+                if (index < 0) {
+                    index = member.add(names[i]);
+                }
+                if (i == names.length - 1) {
+                    if (member.leaves[index] >= 0) {
+                        throw new IllegalArgumentException("Duplicate JSON field path: '" + entry.getKey() + "'");
+                    }
+                    member.leaves[index] = leaf;
+                } else {
+                    if (member.children[index] == null) {
+                        member.children[index] = new Member();
+                    }
+                    member = member.children[index];
+                }
+            }
+            slots[leaf++] = slot;
+        }
+        return new JsonBinder(program, root, slots);
+    }
+
+    /**
+     * Returns the compiled expression this binder fills slots for.
+     */
+    public CompiledExpression getProgram() {
+        return program;
+    }
+
+    /**
+     * Reads the mapped fields of a JSON document into a slot vector. Mapped
+     * slots whose field is absent become unknown; slots of unmapped
+     * variables are left as they are.
+     *
+     * @param json   The buffer holding the UTF-8 document.
+     * @param offset The offset of the document in the buffer.
+     * @param length The length of the document in bytes.
+     * @param slots  The slot vector, of {@link CompiledExpression#getSlotCount()} entries.
+     * @throws IllegalArgumentException If the scanned part of the document is
+     *                                  not valid JSON or is not an object.
+     */
+    public void bind(byte[] json, int offset, int length, double[] slots) {
+        for (int slot : this.slots) {
+            slots[slot] = CompiledExpression.UNKNOWN;
+        }
+        Scanner scanner = new Scanner(json, offset, offset + length, this.slots, slots);
+        scanner.skipWhitespace();
+        scanner.object(root);
+    }
+
+    /**
+     * Reads a JSON document into a new slot vector; unmapped variables are unknown.
+     *
+     * @param json The UTF-8 document.
+     * @return The slot vector.
+     */
+    public double[] bind(byte[] json) {
+        double[] vector = new double[program.getSlotCount()];
+        Arrays.fill(vector, CompiledExpression.UNKNOWN);
+        bind(json, 0, json.length, vector);
+        return vector;
+    }
+
+    /**
+     * Binds a JSON document and evaluates the expression.
+     *
+     * @param json  The UTF-8 document.
+     * @param slots Scratch slot vector; unmapped slots keep their values.
+     * @param stack Scratch stack of at least {@link CompiledExpression#getMaxStack()} entries.
+     * @return The raw result: a number, or an encoded boolean for predicates.
+     */
+    public double evaluate(byte[] json, double[] slots, double[] stack) {
+        bind(json, 0, json.length, slots);
+        return program.evaluate(slots, stack);
+    }
+
+    /**
+     * The mapped member names of one object level, as UTF-8 bytes. A name
+     * either ends a path (its leaf index is set) or leads into a nested
+     * object (its child is set).
+     */
+    private static final class Member {
+        byte[][] names = new byte[0][];
+        String[] strings = new String[0];
+        int[] leaves = new int[0];
+        Member[] children = new Member[0];
+
+        int indexOf(String name) {
+            for (int i = 0; i < strings.length; i++) {
+                if (strings[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int add(String name) {
+            int index = names.length;
+            names = Arrays.copyOf(names, index + 1);
+            strings = Arrays.copyOf(strings, index + 1);
+            leaves = Arrays.copyOf(leaves, index + 1);
+            children = Arrays.copyOf(children, index + 1);
+            names[index] = name.getBytes(StandardCharsets.UTF_8);
+            strings[index] = name;
+            leaves[index] = -1;
+            return index;
+        }
+
+        int match(byte[] json, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < names.length; i++) {
+                byte[] name = names[i];
+                if (name.length == length && Arrays.equals(name, 0, length, json, start, end)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Single-use cursor over one document.
+     */
+    private static final class Scanner {
+        final byte[] json;
+        final int end;
+        final int[] leafSlots;
+        final double[] slots;
+        final boolean[] found;
+        int pos;
+        int remaining;
+
+        Scanner(byte[] json, int start, int end, int[] leafSlots, double[] slots) {
+            this.json = json;
+            this.pos = start;
+            this.end = end;
+            this.leafSlots = leafSlots;
+            this.slots = slots;
+            this.found = new boolean[leafSlots.length];
+            this.remaining = leafSlots.length;
+        }
+
+        /**
+         * Scans an object, reading the members of the given level and
+         * descending into mapped nested objects. Returns early once every
+         * mapped field has been read.
+         */
+        void object(Member member) {
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return;
+            }
+            while (true) {
+                int index = key(member);
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (index < 0) {
+                    skipValue();
+                } else if (member.children[index] != null && peek() == '{') {
+                    object(member.children[index]);
+                } else if (member.leaves[index] >= 0 && !found[member.leaves[index]]) {
+                    int leaf = member.leaves[index];
+                    slots[leafSlots[leaf]] = scalar();
+                    found[leaf] = true;
+                    remaining--;
+                } else {
+                    skipValue();
+                }
+                if (remaining == 0) {
+                    return; // Everything mapped has been read; the rest is never looked at
+                }
+                skipWhitespace();
+                byte next = next();
+                if (next == '}') {
+                    return;
+                }
+                if (next != ',') {
+                    throw malformed("',' or '}'");
+                }
+                skipWhitespace();
+            }
+        }
+
+        // Reads a member name and returns its index in the level, or -1 if it is not mapped
+        int key(Member member) {
+            expect('"');
+            int start = pos;
+            boolean escaped = false;
+            while (true) {
+                byte b = next();
+                if (b == '"') {
+                    break;
+                }
+                if (b == '\\') {
+                    escaped = true;
+                    next();
+                }
+            }
+            if (!escaped) {
+                return member.match(json, start, pos - 1);
+            }
+            // Escaped names are rare; decode them and compare as strings
+            return member.indexOf(unescape(start, pos - 1));
+        }
+
+        double scalar() {
+            byte b = peek();
+            if (b == 't') {
+                literal("true");
+                return CompiledExpression.TRUE;
+            }
+            if (b == 'f') {
+                literal("false");
+                return CompiledExpression.FALSE;
+            }
+            if (b == '-' || (b >= '0' && b <= '9')) {
+                return number();
+            }
+            skipValue(); // null, a string, an array or an object: not a value an expression can use
+            return CompiledExpression.UNKNOWN;
+        }
+
+        double number() {
+            int start = pos;
+            boolean negative = peek() == '-';
+            if (negative) {
+                pos++;
+            }
+            long mantissa = 0;
+            int exponent = 0;
+            int digits = 0;
+            boolean exact = true;
+            while (pos < end && json[pos] >= '0' && json[pos] <= '9') {
+                if (mantissa < 100_000_000_000_000_000L) {
+                    mantissa = mantissa * 10 + (json[pos] - '0');
+                } else {
+                    exact = false;
+                }
+                pos++;
+                digits++;
+            }
+            if (pos < end && json[pos] == '.') {
+                pos++;
+                while (pos < end && json[pos] >= '0' && json[pos] <= '9') {
+                    if (mantissa < 100_000_000_000_000_000L) {
+                        mantissa = mantissa * 10 + (json[pos] - '0');
+                        exponent--;
+                    } else {
+                        exact = false;
+                    }
+                    pos++;
+                    digits++;
+                }
+            }
+            if (pos < end && (json[pos] == 'e' || json[pos] == 'E')) {
+                pos++;
+                boolean negativeExponent = false;
+                if (pos < end && (json[pos] == '+' || json[pos] == '-')) {
+                    negativeExponent = json[pos] == '-';
+                    pos++;
+                }
+                int value = 0;
+                int exponentDigits = 0;
+                while (pos < end && json[pos] >= '0' && json[pos] <= '9') {
+                    value = Math.min(value * 10 + (json[pos] - '0'), 100_000);
+                    pos++;
+                    exponentDigits++;
+                }
+                if (exponentDigits == 0) {
+                    throw malformed("an exponent");
+                }
+                exponent += negativeExponent ? -value : value;
+            }
+            if (digits == 0) {
+                throw malformed("a digit");
+            }
+            // Exact when both the mantissa and the power of ten are exact doubles
+            if (exact && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+                double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent]
+                        : mantissa / POWERS_OF_TEN[-exponent];
+                return negative ? -value : value;
+            }
+            return Double.parseDouble(new String(json, start, pos - start, StandardCharsets.ISO_8859_1));
+        }
+
+        void skipValue() {
+            byte b = peek();
+            if (b == '"') {
+                skipString();
+                return;
+            }
+            if (b == '{' || b == '[') {
+                int depth = 0;
+                do {
+                    b = next();
+                    if (b == '"') {
+                        pos--;
+                        skipString();
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+                return;
+            }
+            int start = pos;
+            while (pos < end && json[pos] != ',' && json[pos] != '}' && json[pos] != ']' && !isWhitespace(json[pos])) {
+                pos++;
+            }
+            if (pos == start) {
+                throw malformed("a value");
+            }
+        }
+
+        void skipString() {
+            expect('"');
+            while (true) {
+                byte b = next();
+                if (b == '"') {
+                    return;
+                }
+                if (b == '\\') {
+                    next();
+                }
+            }
+        }
+
+        void literal(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                if (next() != text.charAt(i)) {
+                    throw malformed("'" + text + "'");
+                }
+            }
+        }
+
+        void skipWhitespace() {
+            while (pos < end && isWhitespace(json[pos])) {
+                pos++;
+            }
+        }
+
+        void expect(char expected) {
+            if (next() != expected) {
+                throw malformed("'" + expected + "'");
+            }
+        }
+
+        byte peek() {
+            if (pos >= end) {
+                throw malformed("more input");
+            }
+            return json[pos];
+        }
+
+        byte next() {
+            byte b = peek();
+            pos++;
+            return b;
+        }
+
+        String unescape(int start, int stop) {
+            StringBuilder name = new StringBuilder();
+            int i = start;
+            while (i < stop) {
+                int runStart = i;
+                while (i < stop && json[i] != '\\') {
+                    i++;
+                }
+                name.append(new String(json, runStart, i - runStart, StandardCharsets.UTF_8));
+                if (i >= stop) {
+                    break;
+                }
+                byte escape = json[i + 1];
+                i += 2;
+                switch (escape) {
+                    case 'b':
+                        name.append('\b');
+                        break;
+                    case 'f':
+                        name.append('\f');
+                        break;
+                    case 'n':
+                        name.append('\n');
+                        break;
+                    case 'r':
+                        name.append('\r');
+                        break;
+                    case 't':
+                        name.append('\t');
+                        break;
+                    case 'u':
+                        if (i + 4 > stop) {
+                            throw malformed("four hex digits");
+                        }
+                        name.append((char) Integer.parseInt(new String(json, i, 4, StandardCharsets.ISO_8859_1), 16));
+                        i += 4;
+                        break;
+                    default:
+                        name.append((char) escape);
+                }
+            }
+            return name.toString();
+        }
+
+        IllegalArgumentException malformed(String expected) {
+            return new IllegalArgumentException("Malformed JSON: expected " + expected + " at offset " + pos + ".");
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+        }
+    }
+}
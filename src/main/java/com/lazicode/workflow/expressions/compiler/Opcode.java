@@ -0,0 +1,264 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opcodes of the compiled expression instruction stream.
+ * An instruction is a single int: the opcode in the low 8 bits and an
+ * optional argument (slot or constant index) in the upper 24 bits.
+ */
+public final class Opcode {
+
+    // Operand loads
+    public static final int LOAD = 0;   // push slots[arg]
+    public static final int CONST = 1;  // push constants[arg]
+
+    // Arithmetic: (NUMBER, NUMBER) -> NUMBER
+    public static final int ADD = 2;
+    public static final int SUB = 3;
+    public static final int MUL = 4;
+    public static final int DIV = 5;
+    public static final int MOD = 6;
+    public static final int POW = 7;
+
+    // Comparison: (NUMBER, NUMBER) -> BOOLEAN
+    public static final int LT = 8;
+    public static final int LE = 9;
+    public static final int GT = 10;
+    public static final int GE = 11;
+    public static final int EQ = 12;
+    public static final int NE = 13;
+
+    // Logic: (BOOLEAN, BOOLEAN) -> BOOLEAN, NOT is unary
+    public static final int AND = 14;
+    public static final int OR = 15;
+    public static final int XOR = 16;
+    public static final int NAND = 17;
+    public static final int NOR = 18;
+    public static final int XNOR = 19;
+    public static final int NOT = 20;
+
+    // Intrinsic functions: NUMBER arguments -> NUMBER, mapped onto java.lang.Math
+    public static final int MIN = 21;   // min(a, b)
+    public static final int MAX = 22;   // max(a, b)
+    public static final int ABS = 23;   // abs(x)
+    public static final int SQRT = 24;  // sqrt(x)
+    public static final int FLOOR = 25; // floor(x)
+    public static final int CEIL = 26;  // ceil(x)
+    public static final int CLAMP = 27; // clamp(x, lo, hi) == max(lo, min(x, hi))
+
+    // Strict logic: AND and OR of non-short-circuit expressions, unknown if either operand is unknown
+    public static final int STRICT_AND = 28;
+    public static final int STRICT_OR = 29;
+
+    public static final int ARG_SHIFT = 8;
+    public static final int OP_MASK = 0xFF;
+    public static final int MAX_ARG = (1 << (32 - ARG_SHIFT)) - 1;
+
+    private static final Map<String, Integer> BY_SYMBOL;
+    private static final String[] NAMES = new String[STRICT_OR + 1];
+
+    static {
+        Map<String, Integer> ops = new HashMap<>();
+        ops.put("+", ADD);
+        ops.put("-", SUB);
+        ops.put("*", MUL);
+        ops.put("/", DIV);
+        ops.put("%", MOD);
+        ops.put("^", POW);
+        ops.put("<", LT);
+        ops.put("<=", LE);
+        ops.put(">", GT);
+        ops.put(">=", GE);
+        ops.put("==", EQ);
+        ops.put("!=", NE);
+        ops.put("AND", AND);
+        ops.put("OR", OR);
+        ops.put("XOR", XOR);
+        ops.put("NAND", NAND);
+        ops.put("NOR", NOR);
+        ops.put("XNOR", XNOR);
+        ops.put("NOT", NOT);
+        ops.put("min", MIN);
+        ops.put("max", MAX);
+        ops.put("abs", ABS);
+        ops.put("sqrt", SQRT);
+        ops.put("floor", FLOOR);
+        ops.put("ceil", CEIL);
+        ops.put("clamp", CLAMP);
+        for (Map.Entry<String, Integer> entry : ops.entrySet()) {
+            NAMES[entry.getValue()] = entry.getKey();
+        }
+        NAMES[STRICT_AND] = "AND";
+        NAMES[STRICT_OR] = "OR";
+        NAMES[LOAD] = "LOAD";
+        NAMES[CONST] = "CONST";
+        BY_SYMBOL = Collections.unmodifiableMap(ops);
+    }
+
+    private Opcode() {
+    }
+
+    /**
+     * Looks up the opcode for an operator token.
+     *
+     * @param symbol The operator token, e.g. "+", "<=" or "AND".
+     * @return The opcode, or -1 if the token is not an operator.
+     */
+    public static int forSymbol(String symbol) {
+        Integer op = BY_SYMBOL.get(symbol);
+        return op == null ? -1 : op;
+    }
+
+    /**
+     * Returns the operator token (or mnemonic for loads) of an opcode.
+     *
+     * @param op The opcode.
+     * @return The operator token.
+     */
+    public static String symbol(int op) {
+        return NAMES[op];
+    }
+
+    /**
+     * Checks whether an int is a defined opcode.
+     *
+     * @param op The candidate opcode.
+     * @return true if the opcode is defined.
+     */
+    public static boolean isValid(int op) {
+        return op >= 0 && op < NAMES.length && NAMES[op] != null;
+    }
+
+    /**
+     * Returns the number of stack operands consumed by an opcode.
+     *
+     * @param op The opcode.
+     * @return 0 for loads, 1 for NOT and unary functions, 3 for clamp and 2
+     *         for every binary operator or function.
+     */
+    public static int arity(int op) {
+        switch (op) {
+            case LOAD:
+            case CONST:
+                return 0;
+            case NOT:
+            case ABS:
+            case SQRT:
+            case FLOOR:
+            case CEIL:
+                return 1;
+            case CLAMP:
+                return 3;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Checks whether an opcode is an intrinsic function, written with call
+     * syntax such as "max(A, B)" in infix form.
+     *
+     * @param op The opcode.
+     * @return true for intrinsic functions.
+     */
+    public static boolean isFunction(int op) {
+        return op >= MIN && op <= CLAMP;
+    }
+
+    /**
+     * Returns the type of the operands an opcode consumes.
+     *
+     * @param op The opcode.
+     * @return BOOLEAN for logic operators, NUMBER for everything else.
+     */
+    public static ValueType operandType(int op) {
+        return op >= AND && op <= NOT || isStrict(op) ? ValueType.BOOLEAN : ValueType.NUMBER;
+    }
+
+    /**
+     * Returns the type of the value an opcode produces.
+     *
+     * @param op The opcode.
+     * @return NUMBER for arithmetic operators and functions, BOOLEAN for comparison and logic operators.
+     */
+    public static ValueType resultType(int op) {
+        return op >= LT && op <= NOT || isStrict(op) ? ValueType.BOOLEAN : ValueType.NUMBER;
+    }
+
+    /**
+     * Checks whether an opcode is the strict form of AND or OR.
+     *
+     * @param op The opcode.
+     * @return true for STRICT_AND and STRICT_OR.
+     */
+    public static boolean isStrict(int op) {
+        return op == STRICT_AND || op == STRICT_OR;
+    }
+
+    /**
+     * Returns the strict form of AND and OR, which is unknown whenever an
+     * operand is unknown; every other opcode is returned unchanged.
+     *
+     * @param op The opcode.
+     * @return The strict opcode.
+     */
+    public static int strict(int op) {
+        return op == AND ? STRICT_AND : op == OR ? STRICT_OR : op;
+    }
+
+    /**
+     * Checks whether swapping the operands of a binary opcode leaves the result unchanged.
+     *
+     * @param op The opcode.
+     * @return true for commutative operators.
+     */
+    public static boolean isCommutative(int op) {
+        switch (op) {
+            case ADD:
+            case MUL:
+            case EQ:
+            case NE:
+            case AND:
+            case OR:
+            case STRICT_AND:
+            case STRICT_OR:
+            case XOR:
+            case NAND:
+            case NOR:
+            case XNOR:
+            case MIN:
+            case MAX:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Packs an opcode and its argument into a single instruction.
+     *
+     * @param op  The opcode.
+     * @param arg The argument, between 0 and {@link #MAX_ARG}.
+     * @return The encoded instruction.
+     */
+    public static int encode(int op, int arg) {
+        return op | (arg << ARG_SHIFT);
+    }
+
+    /**
+     * Extracts the opcode of an encoded instruction.
+     */
+    public static int op(int instruction) {
+        return instruction & OP_MASK;
+    }
+
+    /**
+     * Extracts the argument of an encoded instruction.
+     */
+    public static int arg(int instruction) {
+        return instruction >>> ARG_SHIFT;
+    }
+}
@@ -0,0 +1,275 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Binds the variables of a compiled expression straight from a domain object
+ * into the slot vector. Each variable is mapped to a record component, a
+ * getter ({@code getName()}, {@code isName()} or {@code name()}) or a field of
+ * the object's class; the accessors are resolved once, when the binder is
+ * built, and spun into lambdas through {@link LambdaMetafactory}. Binding an
+ * object then costs one direct call per slot: no reflection, no map and no
+ * boxing for primitive accessors.
+ *
+ * Fields, which LambdaMetafactory cannot target, are read through a method
+ * handle adapted to a primitive return type. Reference-typed accessors
+ * (Double, Boolean, ...) are encoded as by {@link CompiledExpression#bind(Map)};
+ * null reads as unknown.
+ *
+ * A binder is immutable and may be shared by several threads as long as each
+ * uses its own slot vector.
+ *
+ * @param <T> The bound class.
+ */
+public final class RecordBinder<T> {
+
+    private final CompiledExpression program;
+    private final int[] slots;
+    private final ToDoubleFunction<T>[] readers;
+
+    private RecordBinder(CompiledExpression program, int[] slots, ToDoubleFunction<T>[] readers) {
+        this.program = program;
+        this.slots = slots;
+        this.readers = readers;
+    }
+
+    /**
+     * Builds a binder, accessing the class through a private lookup. This
+     * works for any class in a module that is open to this library, which
+     * includes every class on the class path.
+     *
+     * @param type      The bound class.
+     * @param program   The compiled expression to bind.
+     * @param variables The variable bound to each accessor, keyed by accessor
+     *                  name (e.g. "amount" binds {@code amount()} or
+     *                  {@code getAmount()}).
+     * @param <T>       The bound class.
+     * @return The binder.
+     * @throws IllegalArgumentException If an accessor does not exist or a
+     *                                  variable is not part of the expression.
+     */
+    public static <T> RecordBinder<T> of(Class<T> type, CompiledExpression program, Map<String, String> variables) {
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + type.getName()
+                    + "; pass a lookup from its own module instead.", e);
+        }
+        return of(lookup, type, program, variables);
+    }
+
+    /**
+     * Builds a binder, accessing the class through the given lookup.
+     *
+     * @param lookup    A lookup with full privilege access to the bound class,
+     *                  typically {@code MethodHandles.lookup()} in its own code.
+     * @param type      The bound class.
+     * @param program   The compiled expression to bind.
+     * @param variables The variable bound to each accessor, keyed by accessor name.
+     * @param <T>       The bound class.
+     * @return The binder.
+     * @throws IllegalArgumentException If an accessor does not exist or a
+     *                                  variable is not part of the expression.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static <T> RecordBinder<T> of(MethodHandles.Lookup lookup, Class<T> type, CompiledExpression program,
+            Map<String, String> variables) {
+        int[] slots = new int[variables.size()];
+        ToDoubleFunction<T>[] readers = new ToDoubleFunction[variables.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : variables.entrySet()) {
+            int slot = program.slotOf(entry.getValue());
+            if (slot < 0) {
+                throw new IllegalArgumentException("Variable " + entry.getValue() + " is not part of the expression.");
+            }
+            slots[i] = slot;
+            readers[i] = reader(lookup, type, entry.getKey());
+            i++;
+        }
+        return new RecordBinder<>(program, slots, readers);
+    }
+
+    /**
+     * Returns the compiled expression this binder fills slots for.
+     */
+    public CompiledExpression getProgram() {
+        return program;
+    }
+
+    /**
+     * Reads the mapped accessors of an object into a slot vector. Slots of
+     * unmapped variables are left as they are.
+     *
+     * @param object The object to read.
+     * @param slots  The slot vector, of {@link CompiledExpression#getSlotCount()} entries.
+     */
+    public void bind(T object, double[] slots) {
+        for (int i = 0; i < readers.length; i++) {
+            slots[this.slots[i]] = readers[i].applyAsDouble(object);
+        }
+    }
+
+    /**
+     * Reads an object into a new slot vector; unmapped variables are unknown.
+     *
+     * @param object The object to read.
+     * @return The slot vector.
+     */
+    public double[] bind(T object) {
+        double[] vector = new double[program.getSlotCount()];
+        Arrays.fill(vector, CompiledExpression.UNKNOWN);
+        bind(object, vector);
+        return vector;
+    }
+
+    /**
+     * Binds an object and evaluates the expression without allocating.
+     *
+     * @param object The object to read.
+     * @param slots  Scratch slot vector; unmapped slots keep their values.
+     * @param stack  Scratch stack of at least {@link CompiledExpression#getMaxStack()} entries.
+     * @return The raw result: a number, or an encoded boolean for predicates.
+     */
+    public double evaluate(T object, double[] slots, double[] stack) {
+        bind(object, slots);
+        return program.evaluate(slots, stack);
+    }
+
+    private static <T> ToDoubleFunction<T> reader(MethodHandles.Lookup lookup, Class<T> type, String name) {
+        try {
+            Method method = findAccessor(type, name);
+            if (method != null) {
+                return methodReader(lookup, type, lookup.unreflect(method));
+            }
+            Field field = findField(type, name);
+            if (field != null) {
+                return handleReader(lookup.unreflectGetter(field));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + name + " of " + type.getName() + ".", e);
+        }
+        throw new IllegalArgumentException("No accessor or field " + name + " in " + type.getName() + ".");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ToDoubleFunction<T> methodReader(MethodHandles.Lookup lookup, Class<T> type,
+            MethodHandle getter) {
+        Class<?> returned = getter.type().returnType();
+        try {
+            if (returned == boolean.class) {
+                Predicate<T> predicate = (Predicate<T>) spin(lookup, Predicate.class, "test",
+                        MethodType.methodType(boolean.class, Object.class), getter,
+                        MethodType.methodType(boolean.class, type));
+                return object -> predicate.test(object) ? CompiledExpression.TRUE : CompiledExpression.FALSE;
+            }
+            if (returned.isPrimitive()) {
+                return (ToDoubleFunction<T>) spin(lookup, ToDoubleFunction.class, "applyAsDouble",
+                        MethodType.methodType(double.class, Object.class), getter,
+                        MethodType.methodType(double.class, type));
+            }
+        } catch (LambdaConversionException e) {
+            // Not a direct method handle the metafactory accepts; fall back to invoking it
+        }
+        return handleReader(getter);
+    }
+
+    private static Object spin(MethodHandles.Lookup lookup, Class<?> functionalInterface, String name,
+            MethodType erased, MethodHandle implementation, MethodType instantiated) throws LambdaConversionException {
+        CallSite site = LambdaMetafactory.metafactory(lookup, name, MethodType.methodType(functionalInterface),
+                erased, implementation, instantiated);
+        try {
+            return site.getTarget().invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to create accessor " + implementation + ".", e);
+        }
+    }
+
+    private static <T> ToDoubleFunction<T> handleReader(MethodHandle getter) {
+        Class<?> returned = getter.type().returnType();
+        if (returned == boolean.class) {
+            MethodHandle handle = getter.asType(MethodType.methodType(boolean.class, Object.class));
+            return object -> {
+                try {
+                    return (boolean) handle.invokeExact(object) ? CompiledExpression.TRUE : CompiledExpression.FALSE;
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            };
+        }
+        if (returned.isPrimitive()) {
+            MethodHandle handle = getter.asType(MethodType.methodType(double.class, Object.class));
+            return object -> {
+                try {
+                    return (double) handle.invokeExact(object);
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            };
+        }
+        MethodHandle handle = getter.asType(MethodType.methodType(Object.class, Object.class));
+        return object -> {
+            try {
+                return CompiledExpression.encode((Object) handle.invokeExact(object));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        };
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+
+    private static Method findAccessor(Class<?> type, String name) {
+        if (type.isRecord()) {
+            for (RecordComponent component : type.getRecordComponents()) {
+                if (component.getName().equals(name)) {
+                    return component.getAccessor();
+                }
+            }
+        }
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (String candidate : new String[] { "get" + capitalized, "is" + capitalized, name }) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Method method : c.getDeclaredMethods()) {
+                    if (method.getName().equals(candidate) && method.getParameterCount() == 0
+                            && method.getReturnType() != void.class && !Modifier.isStatic(method.getModifiers())) {
+                        return method;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Field findField(Class<?> type, String name) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.getName().equals(name) && !Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+}
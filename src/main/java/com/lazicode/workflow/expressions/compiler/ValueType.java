@@ -0,0 +1,9 @@
+package com.lazicode.workflow.expressions.compiler;
+
+/**
+ * Static type of a value in a compiled expression.
+ */
+public enum ValueType {
+    NUMBER,
+    BOOLEAN
+}
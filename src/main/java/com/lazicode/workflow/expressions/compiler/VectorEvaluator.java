@@ -0,0 +1,165 @@
+package com.lazicode.workflow.expressions.compiler;
+
+/**
+ * Evaluates a compiled expression a vector of rows at a time over columnar
+ * data. Each instruction runs as one tight loop over the whole vector
+ * instead of once per row, so the interpretive overhead of dispatching an
+ * instruction is paid once per vector, and the loops of the arithmetic
+ * instructions are simple enough for the JIT to unroll and vectorize.
+ *
+ * Rows are addressed either as a contiguous range or through a selection
+ * vector of row indices, so only the rows that survived a filter are
+ * evaluated. The operand stack is a set of scratch vectors owned by the
+ * evaluator: an instance is not thread-safe, and every thread needs its own.
+ */
+public final class VectorEvaluator {
+
+    private final CompiledExpression program;
+    private final double[][] stack;
+
+    /**
+     * Creates an evaluator for vectors of up to the given number of rows.
+     *
+     * @param program  The compiled expression.
+     * @param capacity The largest vector evaluated at once; around a thousand
+     *                 rows keeps the scratch vectors in cache.
+     */
+    public VectorEvaluator(CompiledExpression program, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Vector capacity must be positive: " + capacity);
+        }
+        this.program = program;
+        this.stack = new double[Math.max(1, program.getMaxStack())][capacity];
+    }
+
+    /**
+     * Creates an evaluator on caller-provided scratch vectors. Evaluators that
+     * never run at the same time, e.g. the expressions of one batch evaluated
+     * in turn by one thread, can share their scratch and so keep a single set
+     * of vectors in cache.
+     *
+     * @param program The compiled expression.
+     * @param scratch At least {@link CompiledExpression#getMaxStack()} vectors
+     *                of equal length; that length is the capacity.
+     */
+    public VectorEvaluator(CompiledExpression program, double[][] scratch) {
+        if (scratch.length < Math.max(1, program.getMaxStack()) || scratch[0].length < 1) {
+            throw new IllegalArgumentException("Scratch must hold " + program.getMaxStack()
+                    + " non-empty vectors.");
+        }
+        this.program = program;
+        this.stack = scratch;
+    }
+
+    /**
+     * Returns the compiled expression.
+     */
+    public CompiledExpression getProgram() {
+        return program;
+    }
+
+    /**
+     * Returns the largest number of rows evaluated at once.
+     */
+    public int getCapacity() {
+        return stack[0].length;
+    }
+
+    /**
+     * Evaluates the expression over a vector of rows.
+     *
+     * @param columns   The column of every slot, indexed by slot; see
+     *                  {@link CompiledExpression#slotOf(String)}.
+     * @param selection The row indices to evaluate, or null for the
+     *                  contiguous rows from {@code from}.
+     * @param from      The first row, or the first entry of the selection.
+     * @param count     The number of rows, at most {@link #getCapacity()}.
+     * @param out       Receives the raw results, one per row.
+     * @param outOffset The position in {@code out} of the first result.
+     */
+    public void evaluate(double[][] columns, int[] selection, int from, int count, double[] out, int outOffset) {
+        if (count > stack[0].length) {
+            throw new IllegalArgumentException("Vector of " + count + " rows exceeds the capacity of "
+                    + stack[0].length + ".");
+        }
+        int sp = 0;
+        for (int pc = 0; pc < program.getCodeLength(); pc++) {
+            int instruction = program.getInstruction(pc);
+            int op = Opcode.op(instruction);
+            int arg = Opcode.arg(instruction);
+            switch (op) {
+                case Opcode.LOAD:
+                    gather(columns[arg], selection, from, count, stack[sp++]);
+                    break;
+                case Opcode.CONST: {
+                    double value = program.getConstant(arg);
+                    double[] target = stack[sp++];
+                    for (int i = 0; i < count; i++) {
+                        target[i] = value;
+                    }
+                    break;
+                }
+                case Opcode.NOT:
+                case Opcode.ABS:
+                case Opcode.SQRT:
+                case Opcode.FLOOR:
+                case Opcode.CEIL: {
+                    double[] operand = stack[sp - 1];
+                    for (int i = 0; i < count; i++) {
+                        operand[i] = CompiledExpression.apply(op, operand[i]);
+                    }
+                    break;
+                }
+                case Opcode.CLAMP: {
+                    sp -= 2;
+                    double[] value = stack[sp - 1];
+                    double[] low = stack[sp];
+                    double[] high = stack[sp + 1];
+                    for (int i = 0; i < count; i++) {
+                        value[i] = CompiledExpression.clamp(value[i], low[i], high[i]);
+                    }
+                    break;
+                }
+                default:
+                    sp--;
+                    binary(op, stack[sp - 1], stack[sp], count);
+            }
+        }
+        System.arraycopy(stack[0], 0, out, outOffset, count);
+    }
+
+    private static void gather(double[] column, int[] selection, int from, int count, double[] target) {
+        if (selection == null) {
+            System.arraycopy(column, from, target, 0, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            target[i] = column[selection[from + i]];
+        }
+    }
+
+    // Applies a binary opcode element-wise, leaving the result in left
+    private static void binary(int op, double[] left, double[] right, int count) {
+        switch (op) {
+            case Opcode.ADD:
+                for (int i = 0; i < count; i++) {
+                    left[i] += right[i];
+                }
+                break;
+            case Opcode.SUB:
+                for (int i = 0; i < count; i++) {
+                    left[i] -= right[i];
+                }
+                break;
+            case Opcode.MUL:
+                for (int i = 0; i < count; i++) {
+                    left[i] *= right[i];
+                }
+                break;
+            default:
+                for (int i = 0; i < count; i++) {
+                    left[i] = CompiledExpression.apply(op, left[i], right[i]);
+                }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.lazicode.workflow.expressions.evaluators;
+
+import java.util.Map;
+
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+/**
+ * Evaluates a math expression through its compiled instruction stream.
+ * Stateless apart from the immutable program, so one instance may be used by
+ * several threads.
+ */
+public class CompiledEvaluator implements ExpressionEvaluator {
+
+    private final CompiledExpression program;
+    private final String[] symbols;
+
+    public CompiledEvaluator(CompiledExpression program) {
+        this.program = program;
+        this.symbols = program.getSymbols();
+    }
+
+    @Override
+    public Double evaluate(Map<String, Double> values) {
+        double[] slots = new double[program.getSlotCount()];
+        for (int slot = 0; slot < slots.length; slot++) {
+            Double value = values.get(symbols[slot]);
+            if (value == null) {
+                return Double.NaN; // A missing value makes the whole result unknown, as in PostfixMath
+            }
+            slots[slot] = value;
+        }
+        return program.evaluate(slots);
+    }
+}
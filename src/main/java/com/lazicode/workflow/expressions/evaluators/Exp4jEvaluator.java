@@ -0,0 +1,131 @@
+package com.lazicode.workflow.expressions.evaluators;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.Opcode;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.operator.Operator;
+
+/**
+ * Evaluates a math expression with exp4j. The compiled program is translated
+ * once into a fully parenthesized exp4j expression, which is reused for every
+ * evaluation.
+ *
+ * exp4j throws on division and modulo by zero, so both operators are
+ * replaced by versions returning NaN, as {@link PostfixMath} does. abs, sqrt,
+ * floor and ceil map onto exp4j's built-in functions; min, max and clamp are
+ * registered as custom functions.
+ *
+ * Instances are not thread-safe: exp4j keeps variable values in the
+ * expression object.
+ */
+public class Exp4jEvaluator implements ExpressionEvaluator {
+
+    private static final Operator DIVIDE = new Operator("/", 2, true, Operator.PRECEDENCE_DIVISION) {
+        @Override
+        public double apply(double... args) {
+            return args[1] == 0 ? Double.NaN : args[0] / args[1];
+        }
+    };
+
+    private static final Operator MODULO = new Operator("%", 2, true, Operator.PRECEDENCE_MODULO) {
+        @Override
+        public double apply(double... args) {
+            return args[0] % args[1];
+        }
+    };
+
+    private static final Function MIN = new Function("min", 2) {
+        @Override
+        public double apply(double... args) {
+            return Math.min(args[0], args[1]);
+        }
+    };
+
+    private static final Function MAX = new Function("max", 2) {
+        @Override
+        public double apply(double... args) {
+            return Math.max(args[0], args[1]);
+        }
+    };
+
+    private static final Function CLAMP = new Function("clamp", 3) {
+        @Override
+        public double apply(double... args) {
+            return Math.max(args[1], Math.min(args[0], args[2]));
+        }
+    };
+
+    private final String[] symbols;
+    private final Expression expression;
+
+    /**
+     * Translates a compiled math expression into exp4j.
+     *
+     * @param program The compiled expression; must produce a number.
+     * @throws IllegalArgumentException If the program is not a math expression.
+     */
+    public Exp4jEvaluator(CompiledExpression program) {
+        if (program.getResultType() != ValueType.NUMBER) {
+            throw new IllegalArgumentException("exp4j evaluates math expressions only: " + program);
+        }
+        this.symbols = program.getSymbols();
+        this.expression = new ExpressionBuilder(toInfix(program))
+                .variables(new HashSet<>(Arrays.asList(symbols)))
+                .operator(DIVIDE, MODULO)
+                .functions(MIN, MAX, CLAMP)
+                .implicitMultiplication(false)
+                .build();
+    }
+
+    @Override
+    public Double evaluate(Map<String, Double> values) {
+        for (String symbol : symbols) {
+            Double value = values.get(symbol);
+            if (value == null) {
+                return Double.NaN; // A missing value makes the whole result unknown, as in PostfixMath
+            }
+            expression.setVariable(symbol, value);
+        }
+        return expression.evaluate();
+    }
+
+    /**
+     * Renders the program as fully parenthesized infix, so exp4j's own
+     * precedence and associativity rules never come into play.
+     */
+    static String toInfix(CompiledExpression program) {
+        String[] stack = new String[program.getMaxStack()];
+        int sp = 0;
+        for (int pc = 0; pc < program.getCodeLength(); pc++) {
+            int instruction = program.getInstruction(pc);
+            int op = Opcode.op(instruction);
+            if (op == Opcode.LOAD) {
+                stack[sp++] = program.getSymbols()[Opcode.arg(instruction)];
+            } else if (op == Opcode.CONST) {
+                stack[sp++] = BigDecimal.valueOf(program.getConstant(Opcode.arg(instruction))).toPlainString();
+            } else if (Opcode.isFunction(op)) {
+                int arity = Opcode.arity(op);
+                sp -= arity;
+                StringBuilder call = new StringBuilder(Opcode.symbol(op)).append('(');
+                for (int i = 0; i < arity; i++) {
+                    call.append(i == 0 ? "" : ", ").append(stack[sp + i]);
+                }
+                stack[sp++] = call.append(')').toString();
+            } else {
+                String right = stack[--sp];
+                String left = stack[--sp];
+                stack[sp++] = "(" + left + " " + Opcode.symbol(op) + " " + right + ")";
+            }
+        }
+        return stack[0];
+    }
+}
@@ -0,0 +1,23 @@
+package com.lazicode.workflow.expressions.evaluators;
+
+import java.util.Map;
+
+/**
+ * Evaluation backend for a {@link com.lazicode.workflow.expressions.MathExpression}.
+ * A backend is built once per expression and reused for every evaluation, so
+ * each engine can keep whatever translated form of the expression suits it.
+ *
+ * All backends follow the semantics of {@link PostfixMath#eval(String, Map)}:
+ * an unset or null variable and a division by zero yield NaN.
+ */
+@FunctionalInterface
+public interface ExpressionEvaluator {
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param values The variable values keyed by name; missing or null values are unknown.
+     * @return The result, NaN when it is unknown.
+     */
+    Double evaluate(Map<String, Double> values);
+}
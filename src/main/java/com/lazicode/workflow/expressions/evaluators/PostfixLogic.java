@@ -2,41 +2,41 @@ package com.lazicode.workflow.expressions.evaluators;
 
 import java.util.Map;
 import java.util.Stack;
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Arrays;
 
 public class PostfixLogic {
 
-    // Evaluates a postfix logical expression using recursive evaluation (no short-circuit)
+    // Evaluates a postfix logical expression with Kleene semantics: false decides AND and true decides OR
+    // even when the other operand is unknown (null). Iterative, so arbitrarily deep expressions are safe.
     public static Boolean evalShortCircuit(String expression, Map<String, Boolean> values) {
         if (expression == null || expression.isEmpty()) {
             return false;  // Empty expression case
         }
 
-        List<String> tokens = new ArrayList<>(Arrays.asList(expression.split("\\s+")));
-        return evaluatePostfixHelper(tokens, values);
-    }
-
-    private static Boolean evaluatePostfixHelper(List<String> tokens, Map<String, Boolean> values) {
-        if (tokens.isEmpty()) {
-            return false;  // Empty expression case
-        }
+        String[] tokens = expression.split("\\s+");
+        Boolean[] stack = new Boolean[tokens.length];
+        int sp = 0;
 
-        String token = tokens.remove(tokens.size() - 1);
+        for (String token : tokens) {
+            if (values.containsKey(token)) {
+                stack[sp++] = values.get(token); // Push true, false, or null from values map
+                continue;
+            }
 
-        if (values.containsKey(token)) {
-            return values.get(token); // Return true, false, or null from values map
-        }
+            if (token.equals("NOT")) {
+                Boolean operand = sp > 0 ? stack[--sp] : Boolean.FALSE; // Missing operand reads as false
+                stack[sp++] = (operand == null) ? null : !operand;
+                continue;
+            }
 
-        if (token.equals("NOT")) {
-            Boolean operand = evaluatePostfixHelper(tokens, values);
-            return (operand == null) ? null : !operand;
+            Boolean right = sp > 0 ? stack[--sp] : Boolean.FALSE;
+            Boolean left = sp > 0 ? stack[--sp] : Boolean.FALSE;
+            stack[sp++] = applyShortCircuit(token, left, right);
         }
 
-        Boolean right = evaluatePostfixHelper(tokens, values);
-        Boolean left = evaluatePostfixHelper(tokens, values);
+        return sp > 0 ? stack[sp - 1] : Boolean.FALSE;
+    }
 
+    private static Boolean applyShortCircuit(String token, Boolean left, Boolean right) {
         switch (token) {
             case "AND":
                 if (Boolean.FALSE.equals(left) || Boolean.FALSE.equals(right)) {
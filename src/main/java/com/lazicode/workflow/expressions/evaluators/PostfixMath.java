@@ -47,6 +47,29 @@ public class PostfixMath {
                         double base = stack.pop();
                         stack.push(Math.pow(base, exponent));
                         break;
+                    case "min":
+                        stack.push(Math.min(stack.pop(), stack.pop()));
+                        break;
+                    case "max":
+                        stack.push(Math.max(stack.pop(), stack.pop()));
+                        break;
+                    case "abs":
+                        stack.push(Math.abs(stack.pop()));
+                        break;
+                    case "sqrt":
+                        stack.push(Math.sqrt(stack.pop()));
+                        break;
+                    case "floor":
+                        stack.push(Math.floor(stack.pop()));
+                        break;
+                    case "ceil":
+                        stack.push(Math.ceil(stack.pop()));
+                        break;
+                    case "clamp":
+                        double high = stack.pop();
+                        double low = stack.pop();
+                        stack.push(Math.max(low, Math.min(stack.pop(), high)));
+                        break;
                     default:
                         try {
                             stack.push(Double.parseDouble(token));
@@ -0,0 +1,196 @@
+package com.lazicode.workflow.expressions.providers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+/**
+ * Coalesces the variable lookups of many concurrent evaluations into one
+ * bulk fetch per tick, in the manner of a DataLoader. Each {@link #load}
+ * only queues its key and returns a future; {@link #dispatch()} hands every
+ * queued key to the {@link VariableProvider} in a single call and completes
+ * the futures from its answer.
+ *
+ * A loader built with a dispatcher schedules the dispatch itself: the first
+ * load after a dispatch submits one to the dispatcher, so every key queued
+ * before the dispatcher gets to run it goes into the same batch. Without a
+ * dispatcher, the caller decides when a tick ends by calling dispatch.
+ *
+ * Keys are deduplicated within a batch but nothing is cached across
+ * batches, so every tick sees the provider's current values. The loader is
+ * safe for concurrent use.
+ */
+public final class BatchingVariableLoader {
+
+    private final VariableProvider provider;
+    private final Executor dispatcher;
+
+    private Map<String, CompletableFuture<Object>> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+
+    /**
+     * Creates a loader that dispatches only when {@link #dispatch()} is called.
+     *
+     * @param provider The bulk provider.
+     */
+    public BatchingVariableLoader(VariableProvider provider) {
+        this(provider, null);
+    }
+
+    /**
+     * Creates a loader that schedules its own dispatches.
+     *
+     * @param provider   The bulk provider.
+     * @param dispatcher The executor that runs a dispatch once the current
+     *                   tick's loads are queued; it should run tasks
+     *                   asynchronously, as a direct executor yields batches
+     *                   of one key.
+     */
+    public BatchingVariableLoader(VariableProvider provider, Executor dispatcher) {
+        if (provider == null) {
+            throw new IllegalArgumentException("Variable provider must not be null.");
+        }
+        this.provider = provider;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Queues a key for the next batch.
+     *
+     * @param key The key to load.
+     * @return A future of the value, completed with null if the provider
+     *         has no value for the key.
+     */
+    public CompletableFuture<Object> load(String key) {
+        CompletableFuture<Object> future;
+        boolean schedule;
+        synchronized (this) {
+            future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+            schedule = dispatcher != null && !scheduled;
+            scheduled |= schedule;
+        }
+        if (schedule) {
+            dispatcher.execute(this::dispatch);
+        }
+        return future;
+    }
+
+    /**
+     * Queues several keys for the next batch.
+     *
+     * @param keys The keys to load.
+     * @return A future of the values keyed by key, completed once all of them are.
+     */
+    public CompletableFuture<Map<String, Object>> loadAll(Collection<String> keys) {
+        Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        for (String key : keys) {
+            futures.put(key, load(key));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    Map<String, Object> values = new HashMap<>();
+                    futures.forEach((key, future) -> values.put(key, future.join()));
+                    return values;
+                });
+    }
+
+    /**
+     * Loads the variables of an expression and evaluates it once they have
+     * all arrived. The expression itself is not modified: it is evaluated
+     * through its compiled program, so one expression may be shared by any
+     * number of concurrent evaluations. Boolean results follow the
+     * expression's own mode, as compiled by {@link Expression#compile()}: a
+     * short-circuit LogicExpression uses Kleene logic, any other is unknown
+     * as soon as an operand is. A numeric result is NaN if any of its
+     * variables is unknown.
+     *
+     * @param expression The expression to evaluate.
+     * @param keyOf      Maps a variable of the expression to the key it is
+     *                   loaded under, e.g. by prefixing a workflow instance id.
+     * @return A future of the result: a Double, or a nullable Boolean for
+     *         predicates.
+     * @throws InvalidExpression If the expression cannot be compiled.
+     */
+    public CompletableFuture<Object> evaluate(Expression expression, Function<String, String> keyOf)
+            throws InvalidExpression {
+        CompiledExpression program = expression.compile();
+        String[] symbols = program.getSymbols();
+        CompletableFuture<?>[] inputs = new CompletableFuture<?>[symbols.length];
+        for (int slot = 0; slot < symbols.length; slot++) {
+            inputs[slot] = load(keyOf.apply(symbols[slot]));
+        }
+        return CompletableFuture.allOf(inputs).thenApply(ignored -> {
+            boolean predicate = program.getResultType() == ValueType.BOOLEAN;
+            double[] slots = new double[symbols.length];
+            for (int slot = 0; slot < slots.length; slot++) {
+                Object value = inputs[slot].join();
+                if (value == null && !predicate) {
+                    return Double.NaN; // A missing value makes the whole result unknown, as in PostfixMath
+                }
+                slots[slot] = CompiledExpression.encode(value);
+            }
+            double result = program.evaluate(slots);
+            return predicate ? CompiledExpression.toBoolean(result) : (Object) result;
+        });
+    }
+
+    /**
+     * Fetches every queued key in one call to the provider and completes
+     * their futures when it answers.
+     *
+     * @return The number of distinct keys in the batch; 0 if none were queued.
+     */
+    public int dispatch() {
+        Map<String, CompletableFuture<Object>> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            scheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        CompletableFuture<Map<String, Object>> fetched;
+        try {
+            fetched = provider.fetch(Collections.unmodifiableSet(batch.keySet()));
+        } catch (RuntimeException e) {
+            fetched = CompletableFuture.failedFuture(e);
+        }
+        if (fetched == null) {
+            fetched = CompletableFuture.failedFuture(new IllegalStateException("Variable provider "
+                    + provider.getClass().getName() + " returned no future."));
+        }
+        fetched.whenComplete((values, failure) -> {
+            for (Map.Entry<String, CompletableFuture<Object>> entry : batch.entrySet()) {
+                if (failure != null) {
+                    entry.getValue().completeExceptionally(failure);
+                } else {
+                    entry.getValue().complete(values == null ? null : values.get(entry.getKey()));
+                }
+            }
+        });
+        return batch.size();
+    }
+
+    /**
+     * Returns the number of distinct keys waiting for the next dispatch.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+}
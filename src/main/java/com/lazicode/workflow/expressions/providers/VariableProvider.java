@@ -0,0 +1,24 @@
+package com.lazicode.workflow.expressions.providers;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Source of variable values that is expensive to query one key at a time,
+ * such as a local store shared by many workflow instances. A provider is
+ * asked for a whole batch of keys at once by a {@link BatchingVariableLoader}.
+ */
+@FunctionalInterface
+public interface VariableProvider {
+
+    /**
+     * Fetches the values of a batch of keys.
+     *
+     * @param keys The distinct keys to fetch; the set must not be modified.
+     * @return A future of the values keyed by key. Keys absent from the map,
+     *         or mapped to null, are unknown. A failed future fails every load
+     *         in the batch.
+     */
+    CompletableFuture<Map<String, Object>> fetch(Set<String> keys);
+}
@@ -0,0 +1,126 @@
+package com.lazicode.workflow.node;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from variable symbol to the nodes whose expression
+ * references it. When a shared input changes, the index yields exactly the
+ * nodes that must be re-evaluated instead of scanning every expression's
+ * variables.
+ *
+ * The index covers only the nodes added to it. A {@link com.lazicode.workflow.tasks.Task}
+ * indexes its direct children, so the nodes inside a nested Task are found
+ * through that Task's own index, not through its ancestors'.
+ */
+public class VariableIndex {
+    private final Map<String, Set<Node>> nodesByVariable = new HashMap<>();
+
+    /**
+     * Indexes a node under every variable of its expression. Nodes without
+     * an expression are ignored.
+     *
+     * @param node The node to index.
+     */
+    public void add(Node node) {
+        Expression expression = node.getExpression();
+        if (expression == null) {
+            return;
+        }
+        for (String variable : expression.getVariables()) {
+            nodesByVariable.computeIfAbsent(variable, key -> new LinkedHashSet<>()).add(node);
+        }
+    }
+
+    /**
+     * Removes a node from the index.
+     *
+     * @param node The node to remove.
+     */
+    public void remove(Node node) {
+        Expression expression = node.getExpression();
+        if (expression == null) {
+            return;
+        }
+        for (String variable : expression.getVariables()) {
+            Set<Node> nodes = nodesByVariable.get(variable);
+            if (nodes != null) {
+                nodes.remove(node);
+                if (nodes.isEmpty()) {
+                    nodesByVariable.remove(variable);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the variables referenced by at least one indexed node.
+     */
+    public Set<String> getVariables() {
+        return Collections.unmodifiableSet(nodesByVariable.keySet());
+    }
+
+    /**
+     * Returns the nodes whose expression references a variable.
+     *
+     * @param variable The variable name.
+     * @return The referencing nodes in insertion order; empty if none.
+     */
+    public Set<Node> getNodes(String variable) {
+        Set<Node> nodes = nodesByVariable.get(variable);
+        return nodes == null ? Collections.emptySet() : Collections.unmodifiableSet(nodes);
+    }
+
+    /**
+     * Returns the nodes affected by a change to any of several variables.
+     *
+     * @param variables The changed variable names.
+     * @return The union of the referencing nodes.
+     */
+    public Set<Node> getNodes(Collection<String> variables) {
+        Set<Node> affected = new LinkedHashSet<>();
+        for (String variable : variables) {
+            affected.addAll(getNodes(variable));
+        }
+        return affected;
+    }
+
+    /**
+     * Returns the distinct expressions referencing a variable. Nodes sharing
+     * one expression instance contribute it once.
+     *
+     * @param variable The variable name.
+     * @return The referencing expressions.
+     */
+    public Set<Expression> getExpressions(String variable) {
+        Set<Expression> expressions = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node node : getNodes(variable)) {
+            expressions.add(node.getExpression());
+        }
+        return expressions;
+    }
+
+    /**
+     * Applies a variable change to exactly the expressions that reference it.
+     * Each distinct expression is updated once, however many nodes share it.
+     *
+     * @param variable The variable name.
+     * @param value    The new value.
+     * @return The nodes whose expression was updated.
+     * @throws InvalidExpression If an expression rejects the variable.
+     */
+    public Set<Node> setVariable(String variable, Object value) throws InvalidExpression {
+        for (Expression expression : getExpressions(variable)) {
+            expression.setVariable(variable, value);
+        }
+        return getNodes(variable);
+    }
+}
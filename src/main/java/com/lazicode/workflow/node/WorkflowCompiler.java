@@ -0,0 +1,114 @@
+package com.lazicode.workflow.node;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ExpressionDag;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles the expressions of every Node in a workflow into one shared
+ * {@link ExpressionDag}. Subterms shared between nodes are evaluated once
+ * per binding and their results reused by every node that references them.
+ */
+public class WorkflowCompiler {
+    private final ExpressionDag dag = new ExpressionDag();
+    private final Map<Node, Integer> roots = new LinkedHashMap<>();
+
+    /**
+     * Compiles every node reachable from the given node through its
+     * connections.
+     *
+     * @param start Any node of the workflow.
+     * @return A compiler holding all reachable node expressions.
+     * @throws InvalidExpression If a node expression cannot be compiled.
+     */
+    public static WorkflowCompiler compile(Node start) throws InvalidExpression {
+        WorkflowCompiler compiler = new WorkflowCompiler();
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(start);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (!visited.add(node)) {
+                continue;
+            }
+            compiler.add(node);
+            for (Node connected : node.getConnections()) {
+                if (!visited.contains(connected)) {
+                    pending.push(connected);
+                }
+            }
+        }
+        return compiler;
+    }
+
+    /**
+     * Adds a node's expression to the shared DAG. Nodes without an
+     * expression are ignored.
+     *
+     * @param node The node to add.
+     * @throws InvalidExpression If the node expression cannot be compiled.
+     */
+    public void add(Node node) throws InvalidExpression {
+        Expression expression = node.getExpression();
+        if (expression == null || roots.containsKey(node)) {
+            return;
+        }
+        roots.put(node, dag.add(expression.compile()));
+    }
+
+    /**
+     * Returns the compiled nodes in the order they were added.
+     */
+    public Set<Node> getNodes() {
+        return Collections.unmodifiableSet(roots.keySet());
+    }
+
+    /**
+     * Returns the shared DAG.
+     */
+    public ExpressionDag getDag() {
+        return dag;
+    }
+
+    /**
+     * Returns the DAG node computing a workflow node's expression.
+     *
+     * @param node The workflow node.
+     * @return The DAG node id, or -1 if the node was not compiled.
+     */
+    public int rootOf(Node node) {
+        Integer root = roots.get(node);
+        return root == null ? -1 : root;
+    }
+
+    /**
+     * Evaluates every compiled node expression against one shared binding.
+     *
+     * @param values The variable values keyed by name.
+     * @return Each node's result: a Double for math expressions, or a Boolean
+     *         (null if unknown) for logic and comparison expressions.
+     */
+    public Map<Node, Object> evaluate(Map<String, ?> values) {
+        double[] results = dag.evaluate(dag.bind(values));
+        Map<Node, Object> outputs = new LinkedHashMap<>();
+        for (Map.Entry<Node, Integer> entry : roots.entrySet()) {
+            double result = results[entry.getValue()];
+            if (entry.getKey().getExpression().getResultType() == ValueType.BOOLEAN) {
+                outputs.put(entry.getKey(), CompiledExpression.toBoolean(result));
+            } else {
+                outputs.put(entry.getKey(), result);
+            }
+        }
+        return outputs;
+    }
+}
@@ -3,11 +3,16 @@ package com.lazicode.workflow.tasks;
 import com.lazicode.workflow.expressions.Expression;
 import com.lazicode.workflow.interfaces.ContainerAble;
 import com.lazicode.workflow.node.Node;
+import com.lazicode.workflow.node.VariableIndex;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -16,6 +21,7 @@ import java.util.stream.Collectors;
  */
 public abstract class Task extends Node implements ContainerAble {
     private LinkedHashSet<Node> nodes;
+    private final VariableIndex variableIndex = new VariableIndex();
 
     /**
      * Constructs a Task with the specified name.
@@ -60,6 +66,7 @@ public abstract class Task extends Node implements ContainerAble {
             throw new IllegalArgumentException("Adding node '" + node.getName() + "' would create a cycle.");
         }
         nodes.add(node);
+        variableIndex.add(node);
         this.connect(node); // Establish a bidirectional connection
     }
 
@@ -78,6 +85,7 @@ public abstract class Task extends Node implements ContainerAble {
             throw new IllegalArgumentException("Child node '" + node.getName() + "' is not a child of this Task.");
         }
         nodes.remove(node);
+        variableIndex.remove(node);
         this.disconnect(node); // Remove the bidirectional connection
     }
 
@@ -91,6 +99,18 @@ public abstract class Task extends Node implements ContainerAble {
         return nodes;
     }
 
+    /**
+     * Retrieves the index from variable symbol to the child nodes whose
+     * expression references it. It is kept up to date as child nodes are
+     * added and removed. Only direct children are indexed: the nodes of a
+     * nested Task are in the nested Task's own index.
+     *
+     * @return The variable index of the child nodes.
+     */
+    public VariableIndex getVariableIndex() {
+        return variableIndex;
+    }
+
     /**
      * Checks if this Task has any child nodes.
      *
@@ -150,19 +170,29 @@ public abstract class Task extends Node implements ContainerAble {
     }
 
     /**
-     * Recursively checks if this Task is an ancestor of the specified node.
+     * Checks if the specified node is reachable from this Task through
+     * connected Tasks. Uses an explicit work list and a visited set, so deep
+     * hierarchies cannot overflow the stack and bidirectional connections
+     * are not walked twice.
      *
      * @param node The node to check against.
-     * @return True if this Task is an ancestor; otherwise, false.
+     * @return True if the node is reachable; otherwise, false.
      */
     private boolean containsAncestor(Node node) {
-        if (this == node) {
-            return true;
-        }
-        for (Node parent : this.getConnections()) {
-            if (parent instanceof Task) {
-                if (((Task) parent).containsAncestor(node)) {
-                    return true;
+        Set<Node> visited = new HashSet<>();
+        Deque<Task> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            Task current = pending.pop();
+            if (current == node) {
+                return true;
+            }
+            if (!visited.add(current)) {
+                continue;
+            }
+            for (Node parent : current.getConnections()) {
+                if (parent instanceof Task && !visited.contains(parent)) {
+                    pending.push((Task) parent);
                 }
             }
         }
@@ -0,0 +1,113 @@
+package com.lazicode.workflow.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.LogicExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.evaluators.PostfixLogic;
+
+/**
+ * Construction, rendering and evaluation cost of very long generated
+ * expressions (100k tokens by default).
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.lazicode.workflow.benchmarks.LargeExpressionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LargeExpressionBenchmark {
+
+    @Param({ "100000" })
+    public int tokens;
+
+    private String logicPostfix;
+    private String mathInfix;
+    private LogicExpression logic;
+    private CompiledExpression compiled;
+    private Map<String, Boolean> logicValues;
+    private double[] slots;
+
+    @Setup
+    public void setUp() throws InvalidExpression {
+        logicPostfix = logicChain(tokens);
+        mathInfix = mathChain(tokens);
+        logic = new LogicExpression(logicPostfix);
+        compiled = logic.compile();
+        logicValues = new HashMap<>();
+        for (char c = 'A'; c <= 'Z'; c++) {
+            logicValues.put(String.valueOf(c), true);
+        }
+        slots = compiled.bind(logicValues);
+    }
+
+    /**
+     * Builds a left-nested postfix chain "A B AND C OR D AND ..." of about the given token count.
+     */
+    public static String logicChain(int tokens) {
+        StringBuilder sb = new StringBuilder("A");
+        String[] ops = { "AND", "OR", "XOR" };
+        for (int i = 1; 2 * i < tokens; i++) {
+            sb.append(' ').append((char) ('A' + i % 26)).append(' ').append(ops[i % ops.length]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builds an infix chain "A + B * C - D ..." of about the given token count.
+     */
+    public static String mathChain(int tokens) {
+        StringBuilder sb = new StringBuilder("A");
+        String[] ops = { "+", "*", "-" };
+        for (int i = 1; 2 * i < tokens; i++) {
+            sb.append(' ').append(ops[i % ops.length]).append(' ').append((char) ('A' + i % 26));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public LogicExpression constructPostfix() throws InvalidExpression {
+        return new LogicExpression(logicPostfix);
+    }
+
+    @Benchmark
+    public MathExpression constructInfix() throws InvalidExpression {
+        return new MathExpression(mathInfix);
+    }
+
+    @Benchmark
+    public Boolean evalShortCircuit() {
+        return PostfixLogic.evalShortCircuit(logic.getPostfixExpression(), logicValues);
+    }
+
+    @Benchmark
+    public double evaluateCompiled() {
+        return compiled.evaluate(slots);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LargeExpressionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,97 @@
+package com.lazicode.workflow.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.evaluators.CompiledEvaluator;
+import com.lazicode.workflow.expressions.evaluators.Exp4jEvaluator;
+import com.lazicode.workflow.expressions.evaluators.PostfixMath;
+
+/**
+ * Compares the math backends per expression shape: the string-based
+ * PostfixMath evaluator, exp4j, and the compiled program both through the
+ * map-based evaluator and over a pre-bound slot vector.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBackendBenchmark {
+
+    @Param({ "A + B", "(A + B) * C - D / E", "A ^ B + B ^ C + C * D % E - (A - B) / (C + D) * E" })
+    public String shape;
+
+    private String postfix;
+    private Map<String, Double> values;
+    private CompiledExpression program;
+    private CompiledEvaluator compiled;
+    private Exp4jEvaluator exp4j;
+    private double[] slots;
+    private double[] stack;
+
+    @Setup
+    public void setUp() throws InvalidExpression {
+        MathExpression expression = new MathExpression(shape);
+        postfix = expression.getPostfixExpression();
+        values = new HashMap<>();
+        double value = 1.5;
+        for (String variable : expression.getVariables()) {
+            values.put(variable, value);
+            value += 1.0;
+        }
+        program = expression.compile();
+        compiled = new CompiledEvaluator(program);
+        exp4j = new Exp4jEvaluator(program);
+        slots = program.bind(values);
+        stack = new double[program.getMaxStack()];
+    }
+
+    @Benchmark
+    public Double postfixMath() {
+        return PostfixMath.eval(postfix, values);
+    }
+
+    @Benchmark
+    public Double exp4j() {
+        return exp4j.evaluate(values);
+    }
+
+    @Benchmark
+    public Double compiledFromMap() {
+        return compiled.evaluate(values);
+    }
+
+    @Benchmark
+    public double compiledFromSlots() {
+        return program.evaluate(slots, stack);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MathBackendBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,168 @@
+package com.lazicode.workflow.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.expressions.batch.BlockedBatchEvaluator;
+import com.lazicode.workflow.expressions.batch.ColumnBatch;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.VectorEvaluator;
+
+/**
+ * Evaluates K math expressions over the same eight input columns of a batch
+ * far larger than the cache, once one expression at a time (every column is
+ * re-streamed from memory K times) and once through the cache-blocked
+ * {@link BlockedBatchEvaluator} (every column is streamed once).
+ *
+ * Scores are in rows per microsecond. The {@code modeledBytes} counter is
+ * not a measurement: it is the traffic each strategy would move if every
+ * column it streams came from memory, i.e. the columns read by each
+ * expression (one at a time) or the union of all of them (blocked), plus
+ * the output columns written. Divided by the row rate it gives the modeled
+ * bytes per row. To measure the actual traffic, run with a hardware
+ * profiler, e.g. {@code -prof perfnorm} on Linux, and compare the
+ * last-level cache misses per row.
+ *
+ * The first two variants run on a single thread, so they differ only in
+ * cache reuse; the last one adds the evaluator's fork-join parallelism.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiExpressionBatchBenchmark {
+
+    private static final int ROWS = 1 << 21;
+    private static final int VECTOR = 1024;
+    private static final String[] VARIABLES = { "A", "B", "C", "D", "E", "F", "G", "H" };
+    private static final String[] OPERATORS = { " + ", " - ", " * " };
+
+    @Param({ "4", "16", "48" })
+    public int expressions;
+
+    private ColumnBatch batch;
+    private List<MathExpression> sources;
+    private VectorEvaluator[] evaluators;
+    private double[][][] columns;
+    private double[][] outputs;
+    private BlockedBatchEvaluator blocked;
+    private long perExpressionBytes;
+    private long distinctBytes;
+
+    /**
+     * Modeled bytes each invocation reads and writes, see the class comment.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Traffic {
+        public long modeledBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            modeledBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws InvalidExpression {
+        SplittableRandom random = new SplittableRandom(49);
+        batch = new ColumnBatch(ROWS);
+        for (String variable : VARIABLES) {
+            double[] column = new double[ROWS];
+            for (int row = 0; row < ROWS; row++) {
+                column[row] = random.nextDouble() + 0.5;
+            }
+            batch.addColumn(variable, column);
+        }
+        sources = new ArrayList<>();
+        for (int k = 0; k < expressions; k++) {
+            StringBuilder shape = new StringBuilder(VARIABLES[random.nextInt(VARIABLES.length)]);
+            for (int term = 0; term < 3; term++) {
+                shape.append(OPERATORS[random.nextInt(OPERATORS.length)])
+                        .append(VARIABLES[random.nextInt(VARIABLES.length)]);
+            }
+            sources.add(new MathExpression(shape.toString()));
+        }
+        blocked = BlockedBatchEvaluator.of(sources);
+        // Both strategies write every output column once
+        long outputBytes = (long) expressions * Double.BYTES * ROWS;
+        int perExpressionColumns = 0;
+        Set<String> distinctColumns = new HashSet<>();
+        for (CompiledExpression program : blocked.getPrograms()) {
+            perExpressionColumns += program.getSlotCount();
+            Collections.addAll(distinctColumns, program.getSymbols());
+        }
+        perExpressionBytes = (long) perExpressionColumns * Double.BYTES * ROWS + outputBytes;
+        distinctBytes = (long) distinctColumns.size() * Double.BYTES * ROWS + outputBytes;
+        evaluators = new VectorEvaluator[expressions];
+        columns = new double[expressions][][];
+        for (int k = 0; k < expressions; k++) {
+            evaluators[k] = new VectorEvaluator(blocked.getPrograms().get(k), VECTOR);
+            columns[k] = batch.columnsOf(evaluators[k].getProgram());
+        }
+        outputs = new double[expressions][ROWS];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[][] oneExpressionAtATime(Traffic traffic) {
+        for (int k = 0; k < evaluators.length; k++) {
+            for (int from = 0; from < ROWS; from += VECTOR) {
+                evaluators[k].evaluate(columns[k], null, from, Math.min(VECTOR, ROWS - from), outputs[k], from);
+            }
+        }
+        traffic.modeledBytes += perExpressionBytes;
+        return outputs;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[][] cacheBlocked(Traffic traffic) {
+        blocked.evaluate(batch, outputs, false);
+        traffic.modeledBytes += distinctBytes;
+        return outputs;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[][] cacheBlockedParallel(Traffic traffic) {
+        blocked.evaluate(batch, outputs, true);
+        traffic.modeledBytes += distinctBytes;
+        return outputs;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MultiExpressionBatchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
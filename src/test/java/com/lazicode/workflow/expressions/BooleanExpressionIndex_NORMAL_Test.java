@@ -0,0 +1,108 @@
+package com.lazicode.workflow.expressions;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BooleanExpressionIndex_NORMAL_Test {
+
+    private static final String[] RULES = {
+            "A B AND", "A B OR", "A NOT", "A B AND C NOT AND", "A B XOR", "A B XNOR",
+            "A B NAND", "A B NOR", "A B AND C D AND OR", "(A OR B) AND (C OR D)",
+            "NOT (A AND (B OR NOT C))", "A A NOT AND", "A B XOR C XOR", "D" };
+
+    private static Set<Integer> asSet(int[] ids) {
+        Set<Integer> set = new HashSet<>();
+        for (int id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    @Test
+    void testMatchesAgreeWithRuleSet() throws InvalidExpression {
+        BooleanExpressionIndex index = new BooleanExpressionIndex();
+        List<Expression> expressions = new ArrayList<>();
+        for (String rule : RULES) {
+            Expression expression = new LogicExpression(rule);
+            expressions.add(expression);
+            assertEquals(expressions.size() - 1, index.insert(expression));
+        }
+        RuleSet ruleSet = RuleSet.compile(expressions);
+
+        String[] variables = { "A", "B", "C", "D" };
+        for (int mask = 0; mask < 16; mask++) {
+            Set<String> trueVariables = new HashSet<>();
+            Map<String, Boolean> values = new HashMap<>();
+            for (int i = 0; i < variables.length; i++) {
+                values.put(variables[i], (mask & (1 << i)) != 0);
+                if ((mask & (1 << i)) != 0) {
+                    trueVariables.add(variables[i]);
+                }
+            }
+            BitSet expected = ruleSet.evaluate(values);
+            Set<Integer> expectedIds = new HashSet<>();
+            expected.stream().forEach(expectedIds::add);
+            assertEquals(expectedIds, asSet(index.match(trueVariables)), "Failed for " + trueVariables);
+        }
+    }
+
+    @Test
+    void testInsertAndRemove() throws InvalidExpression {
+        BooleanExpressionIndex index = new BooleanExpressionIndex();
+        int ab = index.insert(new LogicExpression("A B AND"));
+        int notC = index.insert(new LogicExpression("C NOT"));
+        int a = index.insert(new LogicExpression("A B OR"));
+        assertEquals(3, index.size());
+
+        assertEquals(Set.of(ab, notC, a), asSet(index.match(List.of("A", "B"))));
+
+        assertTrue(index.remove(ab));
+        assertFalse(index.remove(ab));
+        assertTrue(index.remove(notC));
+        assertEquals(1, index.size());
+        assertEquals(Set.of(a), asSet(index.match(List.of("A", "B"))));
+        assertEquals(0, index.match(Arrays.asList("C", "Z")).length);
+
+        int again = index.insert(new LogicExpression("A B AND"));
+        assertEquals(Set.of(a, again), asSet(index.match(List.of("A", "B"))));
+    }
+
+    @Test
+    void testOnlyCandidatePostingsAreVisited() throws InvalidExpression {
+        BooleanExpressionIndex index = new BooleanExpressionIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.insert(new LogicExpression("X Y AND"));
+        }
+        int rare = index.insert(new LogicExpression("Q R AND"));
+        assertArrayEquals(new int[] { rare }, index.match(List.of("Q", "R")));
+    }
+
+    @Test
+    void testDuplicateVariablesCountOnce() throws InvalidExpression {
+        BooleanExpressionIndex index = new BooleanExpressionIndex();
+        int both = index.insert(new LogicExpression("A B AND"));
+        int either = index.insert(new LogicExpression("A B OR"));
+
+        assertEquals(Set.of(either), asSet(index.match(List.of("A", "A"))));
+        assertEquals(Set.of(both, either), asSet(index.match(List.of("B", "A", "B"))));
+    }
+
+    @Test
+    void testNumericExpressionIsRejected() {
+        BooleanExpressionIndex index = new BooleanExpressionIndex();
+        assertThrows(InvalidExpression.class, () -> index.insert(new ComparisonExpression("X > 1")));
+        assertThrows(InvalidExpression.class, () -> index.insert(new MathExpression("A B +")));
+    }
+}
@@ -0,0 +1,43 @@
+package com.lazicode.workflow.expressions;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComparisonExpression_ABNORMAL_Test {
+
+    @Test
+    void testBooleanComparedWithNumber() {
+        InvalidExpression exception = assertThrows(InvalidExpression.class,
+                () -> new ComparisonExpression("(A AND B) > 1"));
+        assertTrue(exception.getMessage().contains("Type mismatch"));
+    }
+
+    @Test
+    void testVariableUsedAsNumberAndBoolean() {
+        InvalidExpression exception = assertThrows(InvalidExpression.class,
+                () -> new ComparisonExpression("(A > 1) AND A"));
+        assertTrue(exception.getMessage().contains("Variable 'A' is used both as"));
+    }
+
+    @Test
+    void testNumericResultIsRejected() {
+        InvalidExpression exception = assertThrows(InvalidExpression.class,
+                () -> new ComparisonExpression("A + B"));
+        assertTrue(exception.getMessage().contains("expected BOOLEAN but found NUMBER"));
+    }
+
+    @Test
+    void testUnsupportedOperator() {
+        InvalidExpression exception = assertThrows(InvalidExpression.class,
+                () -> new ComparisonExpression("A <> B"));
+        assertTrue(exception.getMessage().contains("Invalid token found in expression: '<>'"));
+    }
+
+    @Test
+    void testMissingOperand() {
+        assertThrows(InvalidExpression.class, () -> new ComparisonExpression("A >"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.lazicode.workflow.expressions;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComparisonExpression_NORMAL_Test {
+
+    @Test
+    void testThresholdAndFlagInfix() throws InvalidExpression {
+        ComparisonExpression expr = new ComparisonExpression("S > 0.7 AND F");
+        assertEquals("S 0.7 > F AND", expr.getPostfixExpression());
+        assertEquals(Set.of("S", "F"), expr.getVariables());
+
+        expr.setVariable("S", 0.9);
+        expr.setVariable("F", true);
+        assertEquals(true, expr.getOutput());
+
+        expr.setVariable("S", 0.5);
+        assertEquals(false, expr.getOutput());
+    }
+
+    @Test
+    void testPostfixInput() throws InvalidExpression {
+        ComparisonExpression expr = new ComparisonExpression("A B + C <=");
+        assertEquals("((A + B) <= C)", expr.getInfixExpression());
+
+        expr.setVariable("A", 1.0);
+        expr.setVariable("B", 2.0);
+        expr.setVariable("C", 3.0);
+        assertEquals(true, expr.getOutput());
+    }
+
+    @Test
+    void testArithmeticBindsTighterThanComparison() throws InvalidExpression {
+        ComparisonExpression expr = new ComparisonExpression("A * 2 + B == C OR (NOT D)");
+        assertEquals("A 2 * B + C == D NOT OR", expr.getPostfixExpression());
+    }
+
+    @Test
+    void testAllComparisonOperators() throws InvalidExpression {
+        Map<String, Boolean> expected = Map.of(
+                "<", false, "<=", true, ">", false, ">=", true, "==", true, "!=", false);
+        for (Map.Entry<String, Boolean> entry : expected.entrySet()) {
+            ComparisonExpression expr = new ComparisonExpression("A " + entry.getKey() + " B");
+            expr.setVariable("A", 4);
+            expr.setVariable("B", 4.0);
+            assertEquals(entry.getValue(), expr.getOutput(), "Failed for operator " + entry.getKey());
+        }
+    }
+
+    @Test
+    void testUnsetVariableIsUnknown() throws InvalidExpression {
+        ComparisonExpression expr = new ComparisonExpression("(A > 1) AND F");
+        expr.setVariable("A", 2.0);
+        assertNull(expr.getOutput());
+
+        // False wins over unknown
+        expr.setVariable("A", 0.0);
+        assertEquals(false, expr.getOutput());
+    }
+
+    @Test
+    void testCompiledProgramOverSlotVector() throws InvalidExpression {
+        ComparisonExpression expr = new ComparisonExpression("S > 0.7 AND F");
+        CompiledExpression program = expr.compile();
+
+        assertEquals(ValueType.BOOLEAN, program.getResultType());
+        assertEquals(ValueType.BOOLEAN, program.getSymbolType(program.slotOf("F")));
+        assertEquals(ValueType.NUMBER, program.getSymbolType(program.slotOf("S")));
+
+        double[] slots = new double[program.getSlotCount()];
+        slots[program.slotOf("S")] = 0.8;
+        slots[program.slotOf("F")] = CompiledExpression.TRUE;
+        assertTrue(program.test(slots));
+        slots[program.slotOf("F")] = CompiledExpression.FALSE;
+        assertFalse(program.test(slots));
+    }
+}
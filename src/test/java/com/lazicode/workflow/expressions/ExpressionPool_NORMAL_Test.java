@@ -0,0 +1,96 @@
+package com.lazicode.workflow.expressions;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionPool_NORMAL_Test {
+
+    @Test
+    void testEquivalentExpressionsShareOneProgram() throws InvalidExpression {
+        ExpressionPool pool = new ExpressionPool();
+        CompiledExpression first = pool.intern(new LogicExpression("A AND B"));
+        CompiledExpression second = pool.intern(new LogicExpression("B AND A"));
+        CompiledExpression postfix = pool.intern(new LogicExpression("A B AND"));
+
+        assertSame(first, second);
+        assertSame(first, postfix);
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void testClassAndModeAreDistinguished() throws InvalidExpression {
+        ExpressionPool pool = new ExpressionPool();
+        CompiledExpression logic = pool.intern(new LogicExpression("A AND B"));
+        CompiledExpression shortCircuit = pool.intern(new LogicExpression("A AND B", true));
+        CompiledExpression comparison = pool.intern(new ComparisonExpression("A AND B"));
+        CompiledExpression math = pool.intern(new MathExpression("A + B"));
+
+        assertNotSame(logic, shortCircuit);
+        assertNotSame(logic, comparison);
+        assertNotSame(logic, math);
+        assertEquals(4, pool.size());
+    }
+
+    @Test
+    void testSharedExpressionsKeepTheirOwnVariables() throws InvalidExpression {
+        ExpressionPool pool = new ExpressionPool();
+        LogicExpression first = pool.share(new LogicExpression("A AND B", true));
+        LogicExpression second = pool.share(new LogicExpression("B AND A", true));
+
+        assertNotSame(first, second);
+        assertSame(first.compile(), second.compile());
+        assertTrue(second.isShortCircuit());
+
+        first.setVariable("A", true);
+        first.setVariable("B", true);
+        second.setVariable("A", true);
+        second.setVariable("B", false);
+        assertEquals(true, first.getOutput());
+        assertEquals(false, second.getOutput());
+    }
+
+    @Test
+    void testConcurrentInterningYieldsOneProgram() {
+        ExpressionPool pool = new ExpressionPool();
+        Set<CompiledExpression> seen = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 2000).parallel().forEach(i -> {
+            try {
+                seen.add(pool.intern(new MathExpression(i % 2 == 0 ? "A * B + C" : "C + B * A")));
+            } catch (InvalidExpression e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertEquals(1, seen.size());
+    }
+
+    @Test
+    void testReclaimedProgramsAreDropped() throws InvalidExpression, InterruptedException {
+        ExpressionPool pool = new ExpressionPool();
+        CompiledExpression held = pool.intern(new MathExpression("A + B"));
+        WeakReference<CompiledExpression> dropped = new WeakReference<>(pool.intern(new MathExpression("A * B")));
+        assertEquals(2, pool.size());
+
+        // Nothing but the pool refers to the product any more; wait a bounded time for a collection
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pool.size() > 1 && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, pool.size());
+        assertNull(dropped.get());
+        assertSame(held, pool.intern(new MathExpression("B + A")));
+        pool.intern(new MathExpression("B * A"));
+        assertEquals(2, pool.size());
+    }
+}
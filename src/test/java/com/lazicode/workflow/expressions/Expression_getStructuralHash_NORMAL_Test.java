@@ -0,0 +1,34 @@
+package com.lazicode.workflow.expressions;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Expression_getStructuralHash_NORMAL_Test {
+
+    @Test
+    void testEquivalentSpellingsShareAHash() throws InvalidExpression {
+        LogicExpression ab = new LogicExpression("A AND B");
+        LogicExpression ba = new LogicExpression("B AND A");
+        LogicExpression parenthesized = new LogicExpression("(A) AND (B)");
+        LogicExpression postfix = new LogicExpression("B A AND");
+
+        assertEquals(ab.getStructuralHash(), ba.getStructuralHash());
+        assertEquals(ab.getStructuralHash(), parenthesized.getStructuralHash());
+        assertEquals(ab.getStructuralHash(), postfix.getStructuralHash());
+        assertEquals(ab.getCanonicalForm().toString(), ba.getCanonicalForm().toString());
+        assertNotEquals(ab.getStructuralHash(), new LogicExpression("A OR B").getStructuralHash());
+    }
+
+    @Test
+    void testGroupingOfLogicChainsDoesNotMatter() throws InvalidExpression {
+        assertEquals(new LogicExpression("(A OR B) OR (C OR D)").getStructuralHash(),
+                new LogicExpression("D OR (C OR (B OR A))").getStructuralHash());
+        assertEquals(new MathExpression("A * B + C").getStructuralHash(),
+                new MathExpression("C + B * A").getStructuralHash());
+        assertEquals(new ComparisonExpression("(S > 0.7) AND F").getStructuralHash(),
+                new ComparisonExpression("F AND (S > 0.7)").getStructuralHash());
+    }
+}
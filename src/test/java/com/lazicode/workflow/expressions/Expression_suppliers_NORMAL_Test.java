@@ -0,0 +1,70 @@
+package com.lazicode.workflow.expressions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Expression_suppliers_NORMAL_Test {
+
+    @Test
+    void testShortCircuitLogicSkipsUnneededSupplier() throws InvalidExpression {
+        LogicExpression expression = new LogicExpression("A AND (B OR C)", true);
+        AtomicInteger calls = new AtomicInteger();
+        expression.setVariable("A", (BooleanSupplier) () -> false);
+        expression.setVariable("B", (BooleanSupplier) () -> {
+            calls.incrementAndGet();
+            return true;
+        });
+        expression.setVariable("C", true);
+
+        assertEquals(false, expression.getOutput());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void testNonShortCircuitLogicResolvesSuppliers() throws InvalidExpression {
+        LogicExpression expression = new LogicExpression("A AND B", false);
+        expression.setVariable("A", (BooleanSupplier) () -> true);
+        expression.setVariable("B", (BooleanSupplier) () -> true);
+
+        assertEquals(true, expression.getOutput());
+    }
+
+    @Test
+    void testMathResolvesEachSupplierOnce() throws InvalidExpression {
+        MathExpression expression = new MathExpression("X * X + Y");
+        AtomicInteger calls = new AtomicInteger();
+        expression.setVariable("X", (DoubleSupplier) () -> {
+            calls.incrementAndGet();
+            return 4.0;
+        });
+        expression.setVariable("Y", 1.0);
+
+        assertEquals(17.0, (Double) expression.getOutput());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testComparisonSkipsExpensiveFeature() throws InvalidExpression {
+        ComparisonExpression expression = new ComparisonExpression("(S > 0.7) AND F");
+        AtomicInteger calls = new AtomicInteger();
+        expression.setVariable("S", (DoubleSupplier) () -> 0.2);
+        expression.setVariable("F", (BooleanSupplier) () -> {
+            calls.incrementAndGet();
+            return true;
+        });
+
+        assertEquals(false, expression.getOutput());
+        assertEquals(0, calls.get());
+
+        expression.setVariable("S", (DoubleSupplier) () -> 0.9);
+        assertEquals(true, expression.getOutput());
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,94 @@
+package com.lazicode.workflow.expressions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Expression_writeTo_NORMAL_Test {
+
+    @Test
+    void testDataStreamRoundTripKeepsClassAndForms() throws InvalidExpression, IOException {
+        Expression[] originals = {
+                new MathExpression("(A + B) * C"),
+                new LogicExpression("A AND (B OR C)", true),
+                new ComparisonExpression("(S > 0.7) AND F"),
+        };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Expression expression : originals) {
+                expression.writeTo(out);
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (Expression original : originals) {
+                Expression copy = Expression.readFrom(in);
+                assertSame(original.getClass(), copy.getClass());
+                assertEquals(original.getExpressionString(), copy.getExpressionString());
+                assertEquals(original.getPostfixExpression(), copy.getPostfixExpression());
+                assertEquals(original.getInfixExpression(), copy.getInfixExpression());
+                assertEquals(original.getVariables(), copy.getVariables());
+            }
+        }
+    }
+
+    @Test
+    void testReadExpressionsEvaluate() throws InvalidExpression {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        new MathExpression("A B - C /").writeTo(buffer);
+        new LogicExpression("A OR B", true).writeTo(buffer);
+        new ComparisonExpression("A + 1 >= B").writeTo(buffer);
+        buffer.flip();
+
+        Expression math = Expression.readFrom(buffer);
+        math.setVariable("A", 10.0);
+        math.setVariable("B", 4.0);
+        math.setVariable("C", 2.0);
+        assertEquals(3.0, math.getOutput());
+
+        LogicExpression logic = (LogicExpression) Expression.readFrom(buffer);
+        assertTrue(logic.isShortCircuit());
+        logic.setVariable("A", true);
+        logic.setVariable("B", null);
+        assertEquals(true, logic.getOutput());
+
+        Expression comparison = Expression.readFrom(buffer);
+        comparison.setVariable("A", 2.0);
+        comparison.setVariable("B", 3.0);
+        assertEquals(true, comparison.getOutput());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void testOversizedSourceLengthIsRejectedBeforeAllocating() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(1);
+            out.writeByte(0);
+            out.writeInt(Integer.MAX_VALUE - 8);
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertThrows(InvalidExpression.class, () -> Expression.readFrom(in));
+        }
+    }
+
+    @Test
+    void testUnknownKindIsRejected() throws InvalidExpression {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        new MathExpression("A + B").writeTo(buffer);
+        buffer.flip();
+        buffer.put(0, (byte) 42);
+
+        assertThrows(InvalidExpression.class, () -> Expression.readFrom(buffer));
+    }
+}
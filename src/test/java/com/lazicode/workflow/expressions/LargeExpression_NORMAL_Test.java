@@ -0,0 +1,76 @@
+package com.lazicode.workflow.expressions;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.benchmarks.LargeExpressionBenchmark;
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.evaluators.PostfixLogic;
+import com.lazicode.workflow.expressions.evaluators.PostfixMath;
+import com.lazicode.workflow.node.Node;
+import com.lazicode.workflow.tasks.Task;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LargeExpression_NORMAL_Test {
+
+    private static final int TOKENS = 100_000;
+
+    @Test
+    void testDeepPostfixLogicExpression() {
+        String postfix = LargeExpressionBenchmark.logicChain(TOKENS);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            LogicExpression expr = new LogicExpression(postfix);
+            assertTrue(expr.getInfixExpression().startsWith("((((("));
+            assertEquals(postfix.split(" ").length, expr.getInfixExpression().split(" ").length);
+
+            Map<String, Boolean> values = new HashMap<>();
+            for (char c = 'A'; c <= 'Z'; c++) {
+                values.put(String.valueOf(c), c % 2 == 0);
+            }
+            Boolean shortCircuit = PostfixLogic.evalShortCircuit(postfix, values);
+            assertEquals(PostfixLogic.eval(postfix, values), shortCircuit);
+
+            CompiledExpression program = expr.compile();
+            assertEquals(shortCircuit, CompiledExpression.toBoolean(program.evaluate(program.bind(values))));
+        });
+    }
+
+    @Test
+    void testLongInfixMathExpression() {
+        String infix = LargeExpressionBenchmark.mathChain(TOKENS);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            MathExpression expr = new MathExpression(infix);
+            Map<String, Double> values = new HashMap<>();
+            for (char c = 'A'; c <= 'Z'; c++) {
+                values.put(String.valueOf(c), 1.0);
+            }
+            Double expected = PostfixMath.eval(expr.getPostfixExpression(), values);
+            CompiledExpression program = expr.compile();
+            assertEquals(expected, program.evaluate(program.bind(values)), 1e-9);
+        });
+    }
+
+    @Test
+    void testDeepTaskHierarchyCycleCheck() throws InvalidExpression {
+        Task root = new Task("task0") {
+        };
+        Task current = root;
+        for (int i = 1; i < 20_000; i++) {
+            Task child = new Task("task" + i) {
+            };
+            current.addNode(child);
+            current = child;
+        }
+        Task leaf = current;
+        assertThrows(IllegalArgumentException.class, () -> leaf.addNode(root));
+
+        Node plain = new Node("plain") {
+        };
+        assertDoesNotThrow(() -> leaf.addNode(plain));
+    }
+}
@@ -0,0 +1,67 @@
+package com.lazicode.workflow.expressions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogicExpression_compile_NORMAL_Test {
+
+    private static final String[] EXPRESSIONS = {
+            "A B OR", "A B AND", "A B AND C OR", "A B OR C AND", "A NOT B AND", "A B XOR C NAND",
+            "A B NOR C XNOR", "A B AND A C OR AND" };
+    private static final Boolean[] VALUES = { Boolean.TRUE, Boolean.FALSE, null };
+
+    // Compares the compiled program with the interpreter on every true/false/unknown assignment
+    private static void assertCompiledMatchesInterpreter(boolean shortCircuit) throws InvalidExpression {
+        for (String postfix : EXPRESSIONS) {
+            LogicExpression expression = new LogicExpression(postfix, shortCircuit);
+            CompiledExpression program = expression.compile();
+            List<String> variables = new ArrayList<>(expression.getVariables());
+            int assignments = (int) Math.pow(VALUES.length, variables.size());
+            for (int assignment = 0; assignment < assignments; assignment++) {
+                Map<String, Object> values = new HashMap<>();
+                int digits = assignment;
+                for (String variable : variables) {
+                    Boolean value = VALUES[digits % VALUES.length];
+                    digits /= VALUES.length;
+                    values.put(variable, value);
+                    expression.setVariable(variable, value);
+                }
+                Boolean compiled = CompiledExpression.toBoolean(program.evaluate(program.bind(values)));
+                assertEquals(expression.getOutput(), compiled, postfix + " with " + values);
+            }
+        }
+    }
+
+    @Test
+    void testNonShortCircuitCompilesToStrictLogic() throws InvalidExpression {
+        assertCompiledMatchesInterpreter(false);
+    }
+
+    @Test
+    void testShortCircuitCompilesToKleeneLogic() throws InvalidExpression {
+        assertCompiledMatchesInterpreter(true);
+    }
+
+    @Test
+    void testUnknownOperandDecidesOnlyInStrictMode() throws InvalidExpression {
+        Map<String, Object> values = new HashMap<>();
+        values.put("A", true);
+        values.put("B", null);
+
+        CompiledExpression strict = new LogicExpression("A B OR").compile();
+        CompiledExpression kleene = new LogicExpression("A B OR", true).compile();
+
+        assertNull(CompiledExpression.toBoolean(strict.evaluate(strict.bind(values))));
+        assertEquals(Boolean.TRUE, CompiledExpression.toBoolean(kleene.evaluate(kleene.bind(values))));
+        assertNotEquals(strict.canonicalize().structuralHash(), kleene.canonicalize().structuralHash());
+    }
+}
@@ -0,0 +1,36 @@
+package com.lazicode.workflow.expressions;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MathExpression_functions_ABNORMAL_Test {
+
+    @Test
+    void testWrongArgumentCount() {
+        assertThrows(InvalidExpression.class, () -> new MathExpression("max(A)"));
+        assertThrows(InvalidExpression.class, () -> new MathExpression("abs(A, B)"));
+        assertThrows(InvalidExpression.class, () -> new MathExpression("clamp(A, B)"));
+        assertThrows(InvalidExpression.class, () -> new MathExpression("min()"));
+    }
+
+    @Test
+    void testMisplacedSeparator() {
+        assertThrows(InvalidExpression.class, () -> new MathExpression("(A, B)"));
+        assertThrows(InvalidExpression.class, () -> new MathExpression("max(A, , B)"));
+        assertThrows(InvalidExpression.class, () -> new MathExpression("max(A B)"));
+    }
+
+    @Test
+    void testFunctionWithoutCall() {
+        assertThrows(InvalidExpression.class, () -> new MathExpression("abs A + B"));
+        assertThrows(InvalidExpression.class, () -> new MathExpression("A max"));
+    }
+
+    @Test
+    void testUnknownFunction() {
+        assertThrows(InvalidExpression.class, () -> new MathExpression("pow(A, B)"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.lazicode.workflow.expressions;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+import com.lazicode.workflow.expressions.compiler.ExpressionDag;
+import com.lazicode.workflow.expressions.compiler.Opcode;
+import com.lazicode.workflow.expressions.evaluators.Exp4jEvaluator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MathExpression_functions_NORMAL_Test {
+
+    private static Map<String, Double> values(double a, double b, double c) {
+        Map<String, Double> values = new HashMap<>();
+        values.put("A", a);
+        values.put("B", b);
+        values.put("C", c);
+        return values;
+    }
+
+    @Test
+    void testInfixFunctionsConvertToPostfix() throws InvalidExpression {
+        MathExpression expression = new MathExpression("max(A, B) + abs(C)");
+        assertEquals("A B max C abs +", expression.getPostfixExpression());
+        assertEquals("(max(A, B) + abs(C))", expression.getInfixExpression());
+
+        MathExpression nested = new MathExpression("clamp(A * B, floor(C), ceil(sqrt(A)))");
+        assertEquals("A B * C floor A sqrt ceil clamp", nested.getPostfixExpression());
+        assertEquals("clamp((A * B), floor(C), ceil(sqrt(A)))", nested.getInfixExpression());
+    }
+
+    @Test
+    void testPostfixFunctionsConvertToInfix() throws InvalidExpression {
+        MathExpression expression = new MathExpression("A B min C -");
+        assertEquals("(min(A, B) - C)", expression.getInfixExpression());
+    }
+
+    @Test
+    void testFunctionsEvaluateThroughEveryBackend() throws InvalidExpression {
+        MathExpression expression = new MathExpression("clamp(A - B, min(C, B), max(C, abs(A))) + sqrt(floor(C))");
+        CompiledExpression program = expression.compile();
+        Exp4jEvaluator exp4j = new Exp4jEvaluator(program);
+        ExpressionDag dag = new ExpressionDag();
+        int root = dag.add(program);
+
+        double[][] inputs = { { 10, 2, 4.7 }, { -3, 1, 0.5 }, { 1, 5, 9.2 } };
+        for (double[] input : inputs) {
+            Map<String, Double> values = values(input[0], input[1], input[2]);
+            double low = Math.min(input[2], input[1]);
+            double high = Math.max(input[2], Math.abs(input[0]));
+            double expected = Math.max(low, Math.min(input[0] - input[1], high)) + Math.sqrt(Math.floor(input[2]));
+
+            for (Map.Entry<String, Double> entry : values.entrySet()) {
+                expression.setVariable(entry.getKey(), entry.getValue());
+            }
+            assertEquals(expected, (Double) expression.getOutput(), 1e-12);
+            assertEquals(expected, program.evaluate(program.bind(values)), 1e-12);
+            assertEquals(expected, exp4j.evaluate(values), 1e-12);
+
+            double[] slots = new double[dag.getSymbols().length];
+            for (int slot = 0; slot < slots.length; slot++) {
+                slots[slot] = values.get(dag.getSymbols()[slot]);
+            }
+            assertEquals(expected, dag.evaluate(slots)[root], 1e-12);
+        }
+    }
+
+    @Test
+    void testFunctionsAreDedicatedOpcodes() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("max(A, B)").compile();
+        assertEquals(Opcode.MAX, Opcode.op(program.getInstruction(program.getCodeLength() - 1)));
+        assertEquals(new MathExpression("max(A, B)").getStructuralHash(),
+                new MathExpression("max(B, A)").getStructuralHash());
+        assertNotEquals(new MathExpression("max(A, B)").getStructuralHash(),
+                new MathExpression("min(A, B)").getStructuralHash());
+    }
+
+    @Test
+    void testFunctionsRoundTripThroughBinaryFormat() throws InvalidExpression {
+        MathExpression original = new MathExpression("clamp(A, B, C) * ceil(A)");
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        original.writeTo(buffer);
+        buffer.flip();
+
+        Expression copy = Expression.readFrom(buffer);
+        assertEquals(original.getInfixExpression(), copy.getInfixExpression());
+        assertEquals(original.getPostfixExpression(), copy.getPostfixExpression());
+    }
+
+    @Test
+    void testComparisonExpressionAcceptsFunctions() throws InvalidExpression {
+        ComparisonExpression expression = new ComparisonExpression("max(A, B) > 0.5 AND F");
+        expression.setVariable("A", 0.2);
+        expression.setVariable("B", 0.7);
+        expression.setVariable("F", true);
+        assertEquals(true, expression.getOutput());
+    }
+}
@@ -0,0 +1,88 @@
+package com.lazicode.workflow.expressions;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleNetwork_NORMAL_Test {
+
+    private static class RecordingListener implements RuleNetwork.Listener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void activated(int rule, Expression expression) {
+            events.add("+" + rule);
+        }
+
+        @Override
+        public void deactivated(int rule, Expression expression) {
+            events.add("-" + rule);
+        }
+    }
+
+    @Test
+    void testActivationAndDeactivationEvents() throws InvalidExpression {
+        RuleNetwork network = new RuleNetwork(List.of(
+                new LogicExpression("A B AND", true),
+                new LogicExpression("A C OR", true),
+                new ComparisonExpression("(X > 10) AND B")));
+        RecordingListener listener = new RecordingListener();
+        network.addListener(listener);
+
+        assertTrue(network.getActiveRules().isEmpty());
+
+        network.setVariable("A", true);
+        assertEquals(List.of("+1"), listener.events);
+
+        network.setVariable("B", true);
+        assertEquals(List.of("+1", "+0"), listener.events);
+
+        network.setVariable("X", 11);
+        assertEquals(List.of("+1", "+0", "+2"), listener.events);
+
+        network.setVariable("A", false);
+        assertEquals(List.of("+1", "+0", "+2", "-0", "-1"), listener.events);
+        assertEquals(BitSet.valueOf(new long[] { 0b100 }), network.getActiveRules());
+    }
+
+    @Test
+    void testUnchangedFactEmitsNothing() throws InvalidExpression {
+        RuleNetwork network = new RuleNetwork(List.of(new LogicExpression("A B OR")));
+        RecordingListener listener = new RecordingListener();
+        network.addListener(listener);
+
+        network.setVariable("A", true); // Strict OR stays unknown while B is unset
+        network.setVariable("A", true); // Unchanged fact
+        network.setVariable("B", true); // Activates the rule
+        network.setVariable("Z", true); // Not referenced by any rule
+        assertEquals(List.of("+0"), listener.events);
+
+        network.setVariable("A", null); // Unknown again, deactivates the rule
+        network.setVariable("B", null); // Still unknown
+        assertEquals(List.of("+0", "-0"), listener.events);
+    }
+
+    @Test
+    void testBatchUpdateMatchesRuleSet() throws InvalidExpression {
+        List<Expression> rules = List.of(
+                new LogicExpression("A B XOR"),
+                new LogicExpression("A B AND C NOT AND"),
+                new LogicExpression("A B NAND C NOR"));
+        RuleNetwork network = new RuleNetwork(rules);
+        RuleSet ruleSet = RuleSet.compile(rules);
+
+        for (int mask = 0; mask < 8; mask++) {
+            Map<String, Boolean> facts = Map.of("A", (mask & 1) != 0, "B", (mask & 2) != 0, "C", (mask & 4) != 0);
+            network.setVariables(facts);
+            assertEquals(ruleSet.evaluate(facts), network.getActiveRules(), "Failed for " + facts);
+            assertEquals(((mask & 1) != 0) ^ ((mask & 2) != 0), network.isActive(0));
+        }
+    }
+}
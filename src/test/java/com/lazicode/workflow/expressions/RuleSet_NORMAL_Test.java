@@ -0,0 +1,74 @@
+package com.lazicode.workflow.expressions;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleSet_NORMAL_Test {
+
+    @Test
+    void testFiredRulesBitset() throws InvalidExpression {
+        RuleSet rules = RuleSet.compile(List.of(
+                new LogicExpression("A B AND"),
+                new LogicExpression("A B AND C OR"),
+                new LogicExpression("C NOT"),
+                new ComparisonExpression("(X > 3) AND A")));
+
+        BitSet fired = rules.evaluate(Map.of("A", true, "B", false, "C", false, "X", 5.0));
+        assertEquals(BitSet.valueOf(new long[] { 0b1100 }), fired);
+
+        fired = rules.evaluate(Map.of("A", true, "B", true, "C", true, "X", 1.0));
+        assertEquals(BitSet.valueOf(new long[] { 0b0011 }), fired);
+    }
+
+    @Test
+    void testSharedSubtermsAcrossRules() throws InvalidExpression {
+        List<Expression> guards = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            guards.add(new LogicExpression("A B AND C OR"));
+        }
+        RuleSet rules = RuleSet.compile(guards);
+        assertEquals(100, rules.size());
+        assertEquals(5, rules.getNodeCount());
+        assertEquals(100, rules.evaluate(Map.of("A", false, "B", false, "C", true)).cardinality());
+    }
+
+    @Test
+    void testUnknownResultDoesNotFire() throws InvalidExpression {
+        RuleSet rules = RuleSet.compile(List.of(new LogicExpression("A B AND")));
+        assertTrue(rules.evaluate(Map.of("A", true)).isEmpty());
+    }
+
+    @Test
+    void testAllocationFreeEvaluationMatchesMapPath() throws InvalidExpression {
+        RuleSet rules = RuleSet.compile(List.of(
+                new LogicExpression("A B XOR"),
+                new LogicExpression("A B NAND")));
+        double[] scratch = rules.newScratch();
+        BitSet fired = new BitSet();
+        Map<String, Boolean> values = new HashMap<>();
+        for (boolean a : new boolean[] { false, true }) {
+            for (boolean b : new boolean[] { false, true }) {
+                values.put("A", a);
+                values.put("B", b);
+                rules.evaluate(rules.bind(values), scratch, fired);
+                assertEquals(rules.evaluate(values), fired);
+            }
+        }
+    }
+
+    @Test
+    void testMathRuleIsRejected() {
+        InvalidExpression exception = assertThrows(InvalidExpression.class,
+                () -> RuleSet.compile(List.of(new MathExpression("A B +"))));
+        assertTrue(exception.getMessage().contains("does not produce a boolean"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.lazicode.workflow.expressions.analysis;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarlo_NORMAL_Test {
+
+    private static MonteCarlo portfolio() throws InvalidExpression {
+        Map<String, Distribution> distributions = new HashMap<>();
+        distributions.put("A", Distribution.normal(100, 15));
+        distributions.put("B", Distribution.uniform(0, 10));
+        distributions.put("W", Distribution.constant(2));
+        return MonteCarlo.of(new MathExpression("A + W * B"), distributions);
+    }
+
+    @Test
+    void testMomentsAndQuantiles() throws InvalidExpression {
+        SampleSummary summary = portfolio().run(400_000, 46);
+
+        // A + 2B: mean 100 + 10, variance 15^2 + 4 * 100 / 12
+        assertEquals(400_000, summary.getCount());
+        assertEquals(110, summary.getMean(), 0.1);
+        assertEquals(225 + 400.0 / 12, summary.getVariance(), 2.5);
+        assertEquals(110, summary.getQuantile(0.5), 110 * 0.02);
+        assertTrue(summary.getMin() <= summary.getQuantile(0) && summary.getQuantile(1) <= summary.getMax());
+    }
+
+    @Test
+    void testSameSeedSameResultAcrossParallelism() throws Exception {
+        MonteCarlo run = portfolio();
+        SampleSummary common = run.run(100_003, 7);
+        SampleSummary single = new ForkJoinPool(1).submit(() -> run.run(100_003, 7)).get();
+        SampleSummary many = new ForkJoinPool(8).submit(() -> run.run(100_003, 7)).get();
+
+        for (SampleSummary other : new SampleSummary[] { single, many }) {
+            assertEquals(common.getCount(), other.getCount());
+            assertEquals(Double.doubleToLongBits(common.getMean()), Double.doubleToLongBits(other.getMean()));
+            assertEquals(Double.doubleToLongBits(common.getVariance()), Double.doubleToLongBits(other.getVariance()));
+            assertEquals(common.getQuantile(0.99), other.getQuantile(0.99));
+        }
+        assertNotEquals(common.getMean(), run.run(100_003, 8).getMean());
+    }
+
+    @Test
+    void testSketchIsWithinRelativeAccuracy() {
+        Random random = new Random(46);
+        double[] values = new double[50_000];
+        SampleSummary left = new SampleSummary(0.01);
+        SampleSummary right = left.emptyCopy();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 3) * (random.nextInt(4) == 0 ? -1 : 1);
+            (i % 2 == 0 ? left : right).accept(values[i]);
+        }
+        left.accept(Double.NaN);
+        SampleSummary merged = left.merge(right);
+        Arrays.sort(values);
+
+        assertEquals(values.length, merged.getCount());
+        assertEquals(1, merged.getUnknownCount());
+        for (double q : new double[] { 0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1 }) {
+            double exact = values[(int) (q * (values.length - 1))];
+            assertEquals(exact, merged.getQuantile(q), Math.abs(exact) * 0.01 + 1e-12, "q=" + q);
+        }
+        assertEquals(Arrays.stream(values).average().getAsDouble(), merged.getMean(), 1e-6);
+    }
+
+    @Test
+    void testInfiniteResultsAreCountedInOverflowBuckets() {
+        SampleSummary summary = new SampleSummary();
+        summary.accept(1.0);
+        summary.accept(Double.POSITIVE_INFINITY);
+        summary.accept(2.0);
+        SampleSummary other = summary.emptyCopy();
+        other.accept(Double.NEGATIVE_INFINITY);
+        other.accept(Double.MAX_VALUE);
+        summary.merge(other);
+
+        assertEquals(5, summary.getCount());
+        assertEquals(Double.NEGATIVE_INFINITY, summary.getMin());
+        assertEquals(Double.POSITIVE_INFINITY, summary.getMax());
+        assertEquals(Double.NEGATIVE_INFINITY, summary.getQuantile(0));
+        assertEquals(2.0, summary.getQuantile(0.5), 0.02);
+        assertEquals(Double.MAX_VALUE, summary.getQuantile(0.75), Double.MAX_VALUE * 0.01);
+        assertEquals(Double.POSITIVE_INFINITY, summary.getQuantile(1));
+        assertTrue(Double.isNaN(summary.getVariance()));
+    }
+
+    @Test
+    void testDistributions() {
+        SplittableRandom random = new SplittableRandom(1);
+        SampleSummary exponential = new SampleSummary();
+        SampleSummary triangular = new SampleSummary();
+        Distribution rate = Distribution.exponential(2);
+        Distribution triangle = Distribution.triangular(0, 1, 4);
+        for (int i = 0; i < 200_000; i++) {
+            exponential.accept(rate.sample(random));
+            triangular.accept(triangle.sample(random));
+        }
+
+        assertEquals(0.5, exponential.getMean(), 0.01);
+        assertEquals(5.0 / 3, triangular.getMean(), 0.01);
+        assertTrue(triangular.getMin() >= 0 && triangular.getMax() <= 4);
+        assertThrows(IllegalArgumentException.class, () -> Distribution.uniform(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> Distribution.normal(0, -1));
+    }
+
+    @Test
+    void testMissingDistributionIsRejected() {
+        Map<String, Distribution> distributions = new HashMap<>();
+        distributions.put("A", Distribution.constant(1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> MonteCarlo.of(new MathExpression("A + B"), distributions));
+        distributions.put("B", Distribution.constant(1));
+        distributions.put("C", Distribution.constant(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> MonteCarlo.of(new MathExpression("A + B"), distributions));
+    }
+}
@@ -0,0 +1,140 @@
+package com.lazicode.workflow.expressions.analysis;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParameterSweep_NORMAL_Test {
+
+    private static ParameterGrid grid() {
+        return ParameterGrid.builder()
+                .range("X", -2, 2, 41)
+                .values("Y", 1, 2, 3, 5)
+                .range("Z", 0, 1, 11)
+                .build();
+    }
+
+    private static ParameterSweep sweep(String expression, ParameterGrid grid, String constant, double value)
+            throws InvalidExpression {
+        Map<String, Object> fixed = new HashMap<>();
+        fixed.put(constant, value);
+        return ParameterSweep.of(new MathExpression(expression).compile(), grid, fixed);
+    }
+
+    private static double f(double x, double y, double z) {
+        return (x - 0.5) * (x - 0.5) + y * z;
+    }
+
+    @Test
+    void testStreamFollowsRowMajorOrder() throws InvalidExpression {
+        ParameterGrid grid = grid();
+        ParameterSweep sweep = sweep("(X - H) * (X - H) + Y * Z", grid, "H", 0.5);
+        double[] results = sweep.stream(false).toArray();
+
+        assertEquals(41 * 4 * 11, sweep.size());
+        assertEquals(sweep.size(), results.length);
+        int index = 0;
+        for (int x = 0; x < 41; x++) {
+            for (double y : new double[] { 1, 2, 3, 5 }) {
+                for (int z = 0; z < 11; z++) {
+                    assertEquals(f(-2 + 0.1 * x, y, 0.1 * z), results[index++], 1e-12);
+                }
+            }
+        }
+        assertArrayEquals(results, sweep.stream(true).toArray());
+    }
+
+    @Test
+    void testSummaryAndHistogram() throws InvalidExpression {
+        ParameterGrid grid = grid();
+        ParameterSweep sweep = sweep("(X - H) * (X - H) + Y * Z", grid, "H", 0.5);
+        double[] results = sweep.stream(false).toArray();
+
+        SweepSummary summary = sweep.summarize();
+        int argMin = 0;
+        int argMax = 0;
+        double sum = 0;
+        for (int i = 0; i < results.length; i++) {
+            argMin = results[i] < results[argMin] ? i : argMin;
+            argMax = results[i] > results[argMax] ? i : argMax;
+            sum += results[i];
+        }
+        assertEquals(results.length, summary.getCount());
+        assertEquals(argMin, summary.getArgMin());
+        assertEquals(argMax, summary.getArgMax());
+        assertEquals(results[argMin], summary.getMin());
+        assertEquals(sum / results.length, summary.getMean(), 1e-9);
+        assertArrayEquals(new double[] { 0.5, 1, 0 }, grid.point(summary.getArgMin()), 1e-12);
+
+        Histogram histogram = sweep.histogram(0, 10, 5);
+        long total = histogram.getUnderflow() + histogram.getOverflow();
+        for (long count : histogram.getCounts()) {
+            total += count;
+        }
+        assertEquals(sweep.size(), total);
+        long inFirstBin = 0;
+        for (double value : results) {
+            inFirstBin += value >= 0 && value < 2 ? 1 : 0;
+        }
+        assertEquals(inFirstBin, histogram.getCounts()[0]);
+    }
+
+    @Test
+    void testForEachVisitsEveryPointOnce() throws InvalidExpression {
+        ParameterGrid grid = ParameterGrid.builder().range("A", 0, 99, 100).range("B", 0, 999, 1000).build();
+        ParameterSweep sweep = sweep("A * T + B", grid, "T", 1000);
+        AtomicLongArray visits = new AtomicLongArray((int) sweep.size());
+
+        sweep.forEach((index, point, value) -> {
+            assertEquals(index, (long) value);
+            assertEquals(value, point[0] * 1000 + point[1]);
+            visits.incrementAndGet((int) index);
+        });
+        for (int i = 0; i < visits.length(); i++) {
+            assertEquals(1, visits.get(i), "point " + i);
+        }
+    }
+
+    @Test
+    void testHugeGridsAreNeverMaterialized() throws InvalidExpression {
+        ParameterGrid grid = ParameterGrid.builder()
+                .range("A", 0, 1, 1_000_000).range("B", 0, 1, 1_000_000).range("C", 0, 1, 1_000).build();
+        ParameterSweep sweep = ParameterSweep.of(new MathExpression("A + B + C"), grid);
+        Spliterator.OfDouble spliterator = sweep.spliterator();
+        Spliterator.OfDouble prefix = spliterator.trySplit();
+
+        assertEquals(1_000_000_000_000_000L, sweep.size());
+        assertEquals(sweep.size(), prefix.estimateSize() + spliterator.estimateSize());
+        assertEquals(3, sweep.stream(true).limit(3).count());
+        double[] last = new double[1];
+        spliterator.tryAdvance((double value) -> last[0] = value);
+        assertArrayEquals(grid.point(sweep.size() / 2), new double[] { 0.5000005000005, 0, 0 }, 1e-12);
+        assertEquals(0.5000005000005, last[0], 1e-12);
+    }
+
+    @Test
+    void testFixedVariablesAndValidation() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("X * K").compile();
+        ParameterGrid grid = ParameterGrid.builder().range("X", 1, 3, 3).build();
+        Map<String, Object> fixed = new HashMap<>();
+        fixed.put("K", 10.0);
+
+        assertArrayEquals(new double[] { 10, 20, 30 }, ParameterSweep.of(program, grid, fixed).stream(false).toArray());
+        assertThrows(IllegalArgumentException.class,
+                () -> ParameterSweep.of(program, grid, Collections.emptyMap()));
+        assertThrows(IllegalArgumentException.class,
+                () -> ParameterSweep.of(program, ParameterGrid.builder().range("Q", 0, 1, 2).build(), fixed));
+        assertThrows(IllegalArgumentException.class,
+                () -> ParameterGrid.builder().range("X", 0, 1, 1L << 32).range("Y", 0, 1, 1L << 32).build());
+    }
+}
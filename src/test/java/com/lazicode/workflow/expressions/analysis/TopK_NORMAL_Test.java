@@ -0,0 +1,135 @@
+package com.lazicode.workflow.expressions.analysis;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.ComparisonExpression;
+import com.lazicode.workflow.expressions.LogicExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.expressions.batch.ColumnBatch;
+import com.lazicode.workflow.expressions.batch.OffHeapBatch;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopK_NORMAL_Test {
+
+    private static final int ROWS = 200_000;
+
+    private static Map<String, double[]> dataset() {
+        Random random = new Random(47);
+        Map<String, double[]> columns = new HashMap<>();
+        double[] a = new double[ROWS];
+        double[] b = new double[ROWS];
+        double[] c = new double[ROWS];
+        double[] f = new double[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            a[row] = random.nextInt(1000) / 10.0; // Coarse values, so scores tie
+            b[row] = random.nextInt(20);
+            c[row] = random.nextInt(100) == 0 ? Double.NaN : random.nextDouble();
+            f[row] = random.nextBoolean() ? CompiledExpression.TRUE : CompiledExpression.FALSE;
+        }
+        columns.put("A", a);
+        columns.put("B", b);
+        columns.put("C", c);
+        columns.put("F", f);
+        return columns;
+    }
+
+    private static int[] bruteForce(Map<String, double[]> columns, boolean lowest, int k, boolean guarded) {
+        double[] a = columns.get("A");
+        double[] b = columns.get("B");
+        double[] c = columns.get("C");
+        double[] f = columns.get("F");
+        Comparator<Integer> byScore = Comparator.comparingDouble(row -> a[row] * b[row] - c[row]);
+        if (!lowest) {
+            byScore = byScore.reversed();
+        }
+        return IntStream.range(0, ROWS).boxed()
+                .filter(row -> !Double.isNaN(c[row]))
+                .filter(row -> !guarded || (f[row] == CompiledExpression.TRUE && b[row] > 5))
+                .sorted(byScore.thenComparingInt(row -> row))
+                .limit(k).mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void testHighestAndLowestMatchSorting() throws InvalidExpression {
+        Map<String, double[]> columns = dataset();
+        MathExpression score = new MathExpression("A * B - C");
+
+        TopK.Result highest = TopK.highest(score, 1000).select(columns, ROWS);
+        assertArrayEquals(bruteForce(columns, false, 1000, false), highest.getRows());
+        for (int rank = 1; rank < highest.size(); rank++) {
+            assertTrue(highest.getScore(rank - 1) >= highest.getScore(rank));
+        }
+        assertEquals(columns.get("A")[highest.getRow(0)] * columns.get("B")[highest.getRow(0)]
+                - columns.get("C")[highest.getRow(0)], highest.getScore(0));
+
+        TopK.Result lowest = TopK.lowest(score, 50).select(columns, ROWS);
+        assertArrayEquals(bruteForce(columns, true, 50, false), lowest.getRows());
+    }
+
+    @Test
+    void testGuardFiltersRows() throws InvalidExpression {
+        Map<String, double[]> columns = dataset();
+        TopK topK = TopK.highest(new MathExpression("A * B - C"), 100)
+                .withGuard(new ComparisonExpression("F AND (B > 5)"));
+
+        assertArrayEquals(bruteForce(columns, false, 100, true), topK.select(columns, ROWS).getRows());
+    }
+
+    @Test
+    void testFewerQualifyingRowsThanK() throws InvalidExpression {
+        Map<String, double[]> columns = new HashMap<>();
+        columns.put("X", new double[] { 3, Double.NaN, 1, 2 });
+        columns.put("G", new double[] { 1, 1, 0, 1 });
+
+        TopK.Result result = TopK.highest(new MathExpression("X"), 10)
+                .withGuard(new LogicExpression("G", true)).select(columns, 4);
+        assertArrayEquals(new int[] { 0, 3 }, result.getRows());
+        assertArrayEquals(new double[] { 3, 2 }, result.getScores());
+    }
+
+    @Test
+    void testKLargerThanTheDatasetOnlyAllocatesWhatQualifies() throws InvalidExpression {
+        Map<String, double[]> columns = dataset();
+
+        TopK.Result all = TopK.lowest(new MathExpression("A * B - C"), Integer.MAX_VALUE).select(columns, ROWS);
+        assertArrayEquals(bruteForce(columns, true, ROWS, false), all.getRows());
+    }
+
+    @Test
+    void testOffHeapBatchesMatchOnHeapColumns() throws InvalidExpression {
+        Map<String, double[]> columns = dataset();
+        ColumnBatch batch = new ColumnBatch(ROWS);
+        columns.forEach(batch::addColumn);
+        TopK topK = TopK.highest(new MathExpression("A * B - C"), 100)
+                .withGuard(new ComparisonExpression("F AND (B > 5)"));
+
+        TopK.Result result = topK.select(OffHeapBatch.of(batch));
+        assertArrayEquals(bruteForce(columns, false, 100, true), result.getRows());
+        assertArrayEquals(topK.select(columns, ROWS).getScores(), result.getScores());
+    }
+
+    @Test
+    void testInvalidArgumentsAreRejected() throws InvalidExpression {
+        MathExpression score = new MathExpression("A + B");
+        Map<String, double[]> columns = new HashMap<>();
+        columns.put("A", new double[3]);
+
+        assertThrows(IllegalArgumentException.class, () -> TopK.highest(score, 0));
+        assertThrows(IllegalArgumentException.class, () -> TopK.highest(score, 5).select(columns, 3));
+        columns.put("B", new double[2]);
+        assertThrows(IllegalArgumentException.class, () -> TopK.highest(score, 5).select(columns, 3));
+        assertThrows(InvalidExpression.class, () -> TopK.highest(score, 5).withGuard(score));
+        assertEquals(0, TopK.highest(score, 5).select(columns, 0).size());
+        assertTrue(Arrays.equals(new int[0], TopK.highest(score, 5).select(columns, 0).getRows()));
+    }
+}
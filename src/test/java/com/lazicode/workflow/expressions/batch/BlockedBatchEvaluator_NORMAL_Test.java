@@ -0,0 +1,98 @@
+package com.lazicode.workflow.expressions.batch;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.ComparisonExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockedBatchEvaluator_NORMAL_Test {
+
+    private static final int ROWS = 10_007;
+
+    private static ColumnBatch batch() {
+        Random random = new Random(49);
+        ColumnBatch batch = new ColumnBatch(ROWS);
+        for (String variable : new String[] { "A", "B", "C", "D" }) {
+            double[] column = new double[ROWS];
+            for (int row = 0; row < ROWS; row++) {
+                column[row] = random.nextDouble() * 10 + 0.5;
+            }
+            batch.addColumn(variable, column);
+        }
+        return batch;
+    }
+
+    private static List<Expression> expressions() throws InvalidExpression {
+        return List.of(new MathExpression("A + B"), new MathExpression("(A + B) * C - D / A"),
+                new MathExpression("C ^ B % D"), new MathExpression("D - C * B"),
+                new ComparisonExpression("A * 2 > B"));
+    }
+
+    // One full pass per expression, as a scoring job would run them separately
+    private static double[] evaluateAlone(CompiledExpression program, ColumnBatch batch) {
+        double[][] columns = batch.columnsOf(program);
+        double[] slots = new double[program.getSlotCount()];
+        double[] stack = new double[program.getMaxStack()];
+        double[] out = new double[batch.getRowCount()];
+        for (int row = 0; row < out.length; row++) {
+            for (int slot = 0; slot < slots.length; slot++) {
+                slots[slot] = columns[slot][row];
+            }
+            out[row] = program.evaluate(slots, stack);
+        }
+        return out;
+    }
+
+    @Test
+    void testMatchesOneExpressionAtATime() throws InvalidExpression {
+        ColumnBatch batch = batch();
+        BlockedBatchEvaluator evaluator = BlockedBatchEvaluator.of(expressions());
+
+        double[][] outputs = evaluator.evaluate(batch);
+
+        assertEquals(5, evaluator.size());
+        assertEquals(5, outputs.length);
+        for (int k = 0; k < outputs.length; k++) {
+            assertArrayEquals(evaluateAlone(evaluator.getPrograms().get(k), batch), outputs[k], "expression " + k);
+        }
+    }
+
+    @Test
+    void testBlockSizeDoesNotChangeResults() throws InvalidExpression {
+        ColumnBatch batch = batch();
+        double[][] expected = BlockedBatchEvaluator.of(expressions(), ROWS).evaluate(batch);
+
+        for (int blockRows : new int[] { 1, 7, 64, 1000 }) {
+            double[][] outputs = new double[5][ROWS];
+            BlockedBatchEvaluator.of(expressions(), blockRows).evaluate(batch, outputs, blockRows % 2 == 0);
+            for (int k = 0; k < outputs.length; k++) {
+                assertArrayEquals(expected[k], outputs[k], "block " + blockRows + ", expression " + k);
+            }
+        }
+    }
+
+    @Test
+    void testDefaultBlockFitsCacheBudget() throws InvalidExpression {
+        BlockedBatchEvaluator evaluator = BlockedBatchEvaluator.of(expressions());
+
+        int blockRows = evaluator.getBlockRows();
+        assertEquals(0, blockRows % 64);
+        assertTrue(blockRows >= 64 && blockRows <= 4096);
+        assertTrue(blockRows * Double.BYTES * (4 + 5) <= BlockedBatchEvaluator.CACHE_BUDGET_BYTES);
+    }
+
+    @Test
+    void testMissingColumnIsRejected() throws InvalidExpression {
+        BlockedBatchEvaluator evaluator = BlockedBatchEvaluator.of(List.of(new MathExpression("A + E")));
+
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(batch()));
+    }
+}
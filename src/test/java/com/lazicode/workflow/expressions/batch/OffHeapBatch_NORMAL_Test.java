@@ -0,0 +1,133 @@
+package com.lazicode.workflow.expressions.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapBatch_NORMAL_Test {
+
+    private static final int ROWS = 3_001;
+
+    @TempDir
+    Path directory;
+
+    private static ColumnBatch batch() {
+        Random random = new Random(50);
+        ColumnBatch batch = new ColumnBatch(ROWS);
+        for (String variable : new String[] { "A", "B", "C" }) {
+            double[] column = new double[ROWS];
+            for (int row = 0; row < ROWS; row++) {
+                column[row] = random.nextInt(25) == 0 ? CompiledExpression.UNKNOWN : random.nextDouble() * 10;
+            }
+            batch.addColumn(variable, column);
+        }
+        return batch;
+    }
+
+    @Test
+    void testColumnKeepsNullsInValidityBitmap() {
+        OffHeapColumn column = OffHeapColumn.of(new double[] { 1.5, Double.NaN, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0 });
+
+        assertEquals(9, column.getRowCount());
+        assertEquals(1, column.getNullCount());
+        assertFalse(column.isValid(1));
+        assertTrue(Double.isNaN(column.get(1)));
+        assertEquals(9.0, column.get(8));
+        assertEquals((byte) 0b1111_1101, column.getValidity().get(0));
+
+        column.set(1, 2.0);
+        column.set(8, Double.NaN);
+        double[] values = new double[9];
+        column.read(0, values, 0, 9);
+        assertArrayEquals(new double[] { 1.5, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, Double.NaN }, values);
+        assertEquals(1, column.getNullCount());
+    }
+
+    @Test
+    void testColumnWithoutBitmapRejectsNulls() {
+        ByteBuffer values = ByteBuffer.allocateDirect(4 * Double.BYTES);
+        OffHeapColumn column = OffHeapColumn.wrap(4, values, null);
+
+        column.write(0, new double[] { 1, 2, 3, 4 }, 0, 4);
+        assertEquals(3.0, column.get(2));
+        assertEquals(0, column.getNullCount());
+        assertThrows(IllegalStateException.class, () -> column.set(0, Double.NaN));
+        assertEquals(1.0, column.get(0));
+    }
+
+    @Test
+    void testWriteAndMapRoundTrip() throws IOException {
+        ColumnBatch source = batch();
+        OffHeapBatch batch = OffHeapBatch.of(source);
+        Path file = directory.resolve("batch.lzcb");
+
+        batch.write(file);
+        OffHeapBatch mapped = OffHeapBatch.map(file);
+
+        assertEquals(ROWS, mapped.getRowCount());
+        assertEquals(batch.getVariables(), mapped.getVariables());
+        for (String variable : source.getVariables()) {
+            double[] values = new double[ROWS];
+            mapped.getColumn(variable).read(0, values, 0, ROWS);
+            assertArrayEquals(source.getColumn(variable), values, variable);
+            assertEquals(batch.getColumn(variable).getNullCount(), mapped.getColumn(variable).getNullCount());
+        }
+        assertThrows(ReadOnlyBufferException.class, () -> mapped.getColumn("A").set(0, 1.0));
+    }
+
+    @Test
+    void testMapRejectsForeignFile() throws IOException {
+        Path file = directory.resolve("foreign.bin");
+        Files.write(file, new byte[64]);
+
+        assertThrows(IOException.class, () -> OffHeapBatch.map(file));
+    }
+
+    @Test
+    void testBlockedEvaluationMatchesOnHeap() throws InvalidExpression, IOException {
+        ColumnBatch source = batch();
+        Path file = directory.resolve("inputs.lzcb");
+        OffHeapBatch.of(source).write(file);
+        List<MathExpression> expressions = List.of(new MathExpression("A + B"), new MathExpression("A * C - B"),
+                new MathExpression("C / A"));
+
+        for (int blockRows : new int[] { 5, 64, 4096 }) {
+            BlockedBatchEvaluator evaluator = BlockedBatchEvaluator.of(expressions, blockRows);
+            double[][] expected = evaluator.evaluate(source);
+            OffHeapColumn[] outputs = new OffHeapColumn[3];
+            for (int k = 0; k < outputs.length; k++) {
+                outputs[k] = OffHeapColumn.allocate(ROWS);
+            }
+
+            evaluator.evaluate(OffHeapBatch.map(file), outputs, true);
+
+            for (int k = 0; k < outputs.length; k++) {
+                double[] values = new double[ROWS];
+                outputs[k].read(0, values, 0, ROWS);
+                assertArrayEquals(expected[k], values, "block " + blockRows + ", expression " + k);
+            }
+        }
+    }
+
+    @Test
+    void testMissingColumnIsRejected() throws InvalidExpression {
+        BlockedBatchEvaluator evaluator = BlockedBatchEvaluator.of(List.of(new MathExpression("A + D")));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> evaluator.evaluate(OffHeapBatch.of(batch()), new OffHeapColumn[] { OffHeapColumn.allocate(ROWS) },
+                        false));
+    }
+}
@@ -0,0 +1,136 @@
+package com.lazicode.workflow.expressions.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.ComparisonExpression;
+import com.lazicode.workflow.expressions.LogicExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.expressions.compiler.CompiledExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectionPipeline_NORMAL_Test {
+
+    private static final int ROWS = 5_000;
+
+    private static ColumnBatch batch() {
+        Random random = new Random(48);
+        double[] a = new double[ROWS];
+        double[] b = new double[ROWS];
+        double[] x = new double[ROWS];
+        double[] y = new double[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            a[row] = random.nextInt(10) == 0 ? CompiledExpression.TRUE : CompiledExpression.FALSE;
+            b[row] = random.nextInt(20) == 0 ? CompiledExpression.UNKNOWN
+                    : random.nextBoolean() ? CompiledExpression.TRUE : CompiledExpression.FALSE;
+            x[row] = random.nextDouble() * 10;
+            y[row] = random.nextDouble() * 10;
+        }
+        return new ColumnBatch(ROWS).addColumn("A", a).addColumn("B", b).addColumn("X", x).addColumn("Y", y);
+    }
+
+    private static Boolean bool(double encoded) {
+        return CompiledExpression.toBoolean(encoded);
+    }
+
+    @Test
+    void testMatchesRowByRowEvaluation() throws InvalidExpression {
+        ColumnBatch batch = batch();
+        LogicExpression guard = new LogicExpression("A AND B", true);
+        MathExpression score = new MathExpression("X * Y - X");
+        MathExpression ratio = new MathExpression("Y / X");
+        SelectionPipeline pipeline = SelectionPipeline.builder()
+                .filter(guard).project("score", score).project("ratio", ratio).build();
+
+        SelectionPipeline.Selection selection = pipeline.execute(batch);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int row = 0; row < ROWS; row++) {
+            guard.setVariable("A", bool(batch.getColumn("A")[row]));
+            guard.setVariable("B", bool(batch.getColumn("B")[row]));
+            if (Boolean.TRUE.equals(guard.getOutput())) {
+                expected.add(row);
+            }
+        }
+        assertEquals(expected.size(), selection.size());
+        assertTrue(selection.size() > 0 && selection.size() < ROWS / 5);
+        for (int i = 0; i < selection.size(); i++) {
+            int row = selection.getRows()[i];
+            assertEquals(expected.get(i), row);
+            score.setVariable("X", batch.getColumn("X")[row]);
+            score.setVariable("Y", batch.getColumn("Y")[row]);
+            ratio.setVariable("X", batch.getColumn("X")[row]);
+            ratio.setVariable("Y", batch.getColumn("Y")[row]);
+            assertEquals((Double) score.getOutput(), selection.getProjection("score")[i], 1e-12);
+            assertEquals((Double) ratio.getOutput(), selection.getProjection("ratio")[i], 1e-12);
+        }
+    }
+
+    @Test
+    void testFiltersRefineEachOther() throws InvalidExpression {
+        ColumnBatch batch = batch();
+        SelectionPipeline chained = SelectionPipeline.builder()
+                .filter(new LogicExpression("A", true))
+                .filter(new ComparisonExpression("X > Y"))
+                .project("sum", new MathExpression("X + Y")).build();
+        SelectionPipeline combined = SelectionPipeline.builder()
+                .filter(new ComparisonExpression("A AND (X > Y)"))
+                .project("sum", new MathExpression("X + Y")).build();
+
+        SelectionPipeline.Selection left = chained.execute(batch);
+        SelectionPipeline.Selection right = combined.execute(batch);
+        assertArrayEquals(right.getRows(), left.getRows());
+        assertArrayEquals(right.getProjection("sum"), left.getProjection("sum"));
+        for (int row : left.getRows()) {
+            assertEquals(CompiledExpression.TRUE, batch.getColumn("A")[row]);
+            assertTrue(batch.getColumn("X")[row] > batch.getColumn("Y")[row]);
+        }
+    }
+
+    @Test
+    void testOffHeapBatchesMatchOnHeapBatches() throws InvalidExpression {
+        ColumnBatch batch = batch();
+        SelectionPipeline pipeline = SelectionPipeline.builder()
+                .filter(new LogicExpression("A OR B", true))
+                .filter(new ComparisonExpression("X > 2"))
+                .project("score", new MathExpression("X * Y - X"))
+                .project("x", new MathExpression("X")).build();
+
+        SelectionPipeline.Selection onHeap = pipeline.execute(batch);
+        SelectionPipeline.Selection offHeap = pipeline.execute(OffHeapBatch.of(batch));
+        assertTrue(onHeap.size() > SelectionPipeline.VECTOR_SIZE);
+        assertEquals(ROWS, offHeap.getRowCount());
+        assertArrayEquals(onHeap.getRows(), offHeap.getRows());
+        assertArrayEquals(onHeap.getProjection("score"), offHeap.getProjection("score"));
+        assertArrayEquals(onHeap.getProjection("x"), offHeap.getProjection("x"));
+        assertThrows(IllegalArgumentException.class, () -> SelectionPipeline.builder()
+                .project("p", new MathExpression("X + Z")).build().execute(OffHeapBatch.of(batch)));
+    }
+
+    @Test
+    void testWithoutFiltersEveryRowIsSelected() throws InvalidExpression {
+        ColumnBatch batch = new ColumnBatch(3).addColumn("X", new double[] { 1, 2, 3 });
+        SelectionPipeline.Selection selection = SelectionPipeline.builder()
+                .project("double", new MathExpression("X + X")).build().execute(batch);
+
+        assertArrayEquals(new int[] { 0, 1, 2 }, selection.getRows());
+        assertArrayEquals(new double[] { 2, 4, 6 }, selection.getProjection("double"));
+        assertEquals(0, SelectionPipeline.builder().build().execute(new ColumnBatch(0)).size());
+    }
+
+    @Test
+    void testInvalidPipelinesAreRejected() throws InvalidExpression {
+        assertThrows(InvalidExpression.class,
+                () -> SelectionPipeline.builder().filter(new MathExpression("X + Y")));
+        assertThrows(IllegalArgumentException.class, () -> SelectionPipeline.builder()
+                .project("p", new MathExpression("X")).project("p", new MathExpression("Y")));
+        SelectionPipeline pipeline = SelectionPipeline.builder().project("p", new MathExpression("X + Z")).build();
+        assertThrows(IllegalArgumentException.class, () -> pipeline.execute(batch()));
+        assertThrows(IllegalArgumentException.class, () -> new ColumnBatch(3).addColumn("X", new double[2]));
+    }
+}
@@ -0,0 +1,73 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedExpression_NORMAL_Test {
+
+    @Test
+    void testRepeatedTuplesHitTheCache() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B * C +", ValueType.NUMBER);
+        CachedExpression cached = new CachedExpression(program, 64, 0.5);
+
+        for (int i = 0; i < 10 * CachedExpression.SAMPLE_WINDOW; i++) {
+            double[] slots = { i % 4, i % 3, 1.0 };
+            assertEquals(program.evaluate(slots), cached.evaluate(slots));
+        }
+        assertTrue(cached.isEnabled());
+        assertEquals(12, cached.getMisses());
+        assertTrue(cached.getHitRate() > 0.99);
+    }
+
+    @Test
+    void testLowHitRateDisablesTheCache() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B +", ValueType.NUMBER);
+        CachedExpression cached = new CachedExpression(program, 16, 0.5);
+
+        for (int i = 0; i < CachedExpression.SAMPLE_WINDOW; i++) {
+            double[] slots = { i, 1.0 };
+            assertEquals(i + 1.0, cached.evaluate(slots));
+        }
+        assertFalse(cached.isEnabled());
+        assertEquals(42.0, cached.evaluate(new double[] { 41.0, 1.0 }));
+        assertEquals(CachedExpression.SAMPLE_WINDOW, cached.getMisses());
+
+        cached.reset();
+        assertTrue(cached.isEnabled());
+        assertEquals(0.0, cached.getHitRate());
+    }
+
+    @Test
+    void testBoundedTableStaysCorrectUnderEviction() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A 2 ^ B -", ValueType.NUMBER);
+        CachedExpression cached = new CachedExpression(program, 2, 0.0);
+        for (int i = 0; i < 500; i++) {
+            double[] slots = { i % 37, i % 11 };
+            assertEquals(program.evaluate(slots), cached.evaluate(slots));
+        }
+    }
+
+    @Test
+    void testNaNInputsAreCachedByBits() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B AND", ValueType.BOOLEAN);
+        CachedExpression cached = new CachedExpression(program, 8, 0.0);
+        double[] slots = { CompiledExpression.FALSE, CompiledExpression.UNKNOWN };
+        assertEquals(CompiledExpression.FALSE, cached.evaluate(slots));
+        assertEquals(CompiledExpression.FALSE, cached.evaluate(slots));
+        assertEquals(1, cached.getHits());
+    }
+
+    @Test
+    void testOversizedCapacitiesAreRejected() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B * C +", ValueType.NUMBER);
+
+        assertThrows(IllegalArgumentException.class, () -> new CachedExpression(program, 0, 0.5));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachedExpression(program, CachedExpression.MAX_CAPACITY + 1, 0.5));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachedExpression(program, CachedExpression.MAX_CAPACITY, 0.5));
+    }
+}
@@ -0,0 +1,108 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledExpressionCodec_NORMAL_Test {
+
+    @Test
+    void testByteBufferRoundTrip() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("S 0.7 > F AND", ValueType.BOOLEAN);
+        ByteBuffer buffer = ByteBuffer.allocate(CompiledExpressionCodec.encodedSize(program) + 8)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(7);
+        CompiledExpressionCodec.write(program, buffer);
+        assertEquals(4 + CompiledExpressionCodec.encodedSize(program), buffer.position());
+
+        buffer.flip();
+        assertEquals(7, buffer.getInt());
+        CompiledExpression copy = CompiledExpressionCodec.read(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+
+        assertEquals(program.toString(), copy.toString());
+        assertArrayEquals(program.getSymbols(), copy.getSymbols());
+        assertEquals(ValueType.NUMBER, copy.getSymbolType(copy.slotOf("S")));
+        assertEquals(ValueType.BOOLEAN, copy.getSymbolType(copy.slotOf("F")));
+        assertEquals(ValueType.BOOLEAN, copy.getResultType());
+        assertEquals(program.getMaxStack(), copy.getMaxStack());
+        assertEquals(CompiledExpression.TRUE, copy.evaluate(new double[] { CompiledExpression.TRUE, 0.9 }));
+    }
+
+    @Test
+    void testDataStreamRoundTripOfSeveralRecords() throws InvalidExpression, IOException {
+        String[] postfix = { "A B + C *", "A 2 ^ B 3 % -", "X" };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (String expression : postfix) {
+                CompiledExpressionCodec.write(ExpressionCompiler.compile(expression, ValueType.NUMBER), out);
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (String expression : postfix) {
+                assertEquals(expression, CompiledExpressionCodec.read(in).toString());
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void testCorruptRecordsAreRejected() throws InvalidExpression {
+        byte[] record = CompiledExpressionCodec.encode(ExpressionCompiler.compile("A B AND", ValueType.BOOLEAN));
+
+        byte[] flipped = record.clone();
+        flipped[record.length - 6] ^= 1;
+        InvalidExpression checksum = assertThrows(InvalidExpression.class,
+                () -> CompiledExpressionCodec.read(ByteBuffer.wrap(flipped)));
+        assertTrue(checksum.getMessage().contains("checksum"));
+
+        byte[] version = record.clone();
+        version[5] = 99;
+        assertThrows(InvalidExpression.class, () -> CompiledExpressionCodec.read(ByteBuffer.wrap(version)));
+
+        byte[] truncated = Arrays.copyOf(record, record.length - 3);
+        assertThrows(InvalidExpression.class, () -> CompiledExpressionCodec.read(ByteBuffer.wrap(truncated)));
+        assertThrows(InvalidExpression.class, () -> CompiledExpressionCodec.read(ByteBuffer.wrap(new byte[16])));
+    }
+
+    @Test
+    void testOversizedLengthIsRejectedBeforeAllocating() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(CompiledExpressionCodec.MAGIC);
+            out.writeShort(CompiledExpressionCodec.VERSION);
+            out.writeInt(Integer.MAX_VALUE - 8);
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            InvalidExpression e = assertThrows(InvalidExpression.class, () -> CompiledExpressionCodec.read(in));
+            assertTrue(e.getMessage().contains("length"));
+        }
+    }
+
+    @Test
+    void testUnbalancedProgramIsRejectedDespiteValidChecksum() {
+        // One LOAD followed by a binary AND: well-formed record, invalid program
+        CompiledExpression bogus = new CompiledExpression(
+                new int[] { Opcode.encode(Opcode.LOAD, 0), Opcode.encode(Opcode.AND, 0) },
+                new double[0], new String[] { "A" }, new ValueType[] { ValueType.BOOLEAN }, ValueType.BOOLEAN, 2);
+        byte[] record = CompiledExpressionCodec.encode(bogus);
+
+        InvalidExpression e = assertThrows(InvalidExpression.class,
+                () -> CompiledExpressionCodec.read(ByteBuffer.wrap(record)));
+        assertTrue(e.getMessage().contains("underflow"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledExpressionStore_NORMAL_Test {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReaderSeesEntriesAppendedByWriter() throws IOException, InvalidExpression {
+        Path file = directory.resolve("rules.lzcs");
+        try (CompiledExpressionStore writer = CompiledExpressionStore.open(file);
+                CompiledExpressionStore reader = CompiledExpressionStore.openReadOnly(file)) {
+            assertNull(reader.get("A B +"));
+
+            assertTrue(writer.put("A B +", ExpressionCompiler.compile("A B +", ValueType.NUMBER)));
+            assertFalse(writer.put("A B +", ExpressionCompiler.compile("A B +", ValueType.NUMBER)));
+            assertTrue(writer.put("S 0.5 > F AND", ExpressionCompiler.compile("S 0.5 > F AND", ValueType.BOOLEAN)));
+
+            CompiledExpression sum = reader.get("A B +");
+            assertEquals("A B +", sum.toString());
+            assertEquals(5.0, sum.evaluate(new double[] { 2.0, 3.0 }));
+            assertSame(sum, reader.get("A B +"));
+            assertEquals(ValueType.BOOLEAN, reader.get("S 0.5 > F AND").getResultType());
+            assertEquals(2, reader.size());
+        }
+
+        try (CompiledExpressionStore reopened = CompiledExpressionStore.openReadOnly(file)) {
+            assertEquals(2, reopened.size());
+            assertEquals("S 0.5 > F AND", reopened.get("S 0.5 > F AND").toString());
+            assertThrows(IllegalStateException.class,
+                    () -> reopened.put("A", ExpressionCompiler.compile("A", ValueType.NUMBER)));
+        }
+    }
+
+    @Test
+    void testConcurrentAppendsFromSeveralStoresKeepEveryKeyOnce() throws Exception {
+        Path file = directory.resolve("shared.lzcs");
+        int writers = 4;
+        int keys = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<CompiledExpressionStore> stores = new ArrayList<>();
+        try {
+            List<Future<Integer>> appended = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                CompiledExpressionStore store = CompiledExpressionStore.open(file);
+                stores.add(store);
+                appended.add(executor.submit(() -> {
+                    int count = 0;
+                    for (int k = 0; k < keys; k++) {
+                        String postfix = "A " + k + " +";
+                        if (store.put(postfix, ExpressionCompiler.compile(postfix, ValueType.NUMBER))) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : appended) {
+                total += future.get();
+            }
+            assertEquals(keys, total);
+
+            try (CompiledExpressionStore reader = CompiledExpressionStore.openReadOnly(file)) {
+                assertEquals(keys, reader.size());
+                for (int k = 0; k < keys; k++) {
+                    assertEquals(k + 1.0, reader.get("A " + k + " +").evaluate(new double[] { 1.0 }));
+                }
+            }
+        } finally {
+            executor.shutdown();
+            for (CompiledExpressionStore store : stores) {
+                store.close();
+            }
+        }
+    }
+
+    @Test
+    void testCorruptEntryLengthsAreRejected() throws IOException, InvalidExpression {
+        // The first entry starts after the 16-byte header; its key length follows the length and hash
+        int[][] corruptions = { { 16, -4 }, { 16, 3 }, { 16, 1 << 30 }, { 28, -1 }, { 28, 1 << 20 } };
+        for (int[] corruption : corruptions) {
+            Path file = directory.resolve("corrupt" + corruption[0] + "_" + corruption[1] + ".lzcs");
+            try (CompiledExpressionStore writer = CompiledExpressionStore.open(file)) {
+                writer.put("A B +", ExpressionCompiler.compile("A B +", ValueType.NUMBER));
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(4).putInt(0, corruption[1]), corruption[0]);
+            }
+            IOException e = assertThrows(IOException.class, () -> CompiledExpressionStore.openReadOnly(file));
+            assertTrue(e.getMessage().startsWith("Corrupt compiled expression store"), e.getMessage());
+        }
+    }
+
+    @Test
+    void testClosingOneWriterLeavesTheOthersUsable() throws IOException, InvalidExpression {
+        Path file = directory.resolve("writers.lzcs");
+        CompiledExpressionStore first = CompiledExpressionStore.open(file);
+        CompiledExpressionStore second = CompiledExpressionStore.open(file);
+        first.close();
+        first.close();
+
+        assertTrue(second.put("A B +", ExpressionCompiler.compile("A B +", ValueType.NUMBER)));
+        second.close();
+
+        // A store reopened after every writer closed appends under a fresh monitor
+        try (CompiledExpressionStore reopened = CompiledExpressionStore.open(file)) {
+            assertTrue(reopened.put("A B *", ExpressionCompiler.compile("A B *", ValueType.NUMBER)));
+            assertEquals(2, reopened.size());
+        }
+    }
+}
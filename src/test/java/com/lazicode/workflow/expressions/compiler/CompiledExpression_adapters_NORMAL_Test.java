@@ -0,0 +1,116 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.Random;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledExpression_adapters_NORMAL_Test {
+
+    private static void assertSameValue(double expected, double actual, String message) {
+        assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual), message);
+    }
+
+    @Test
+    void testToDoubleFunctionMatchesInterpreter() throws InvalidExpression {
+        String[][] programs = {
+                { "A B + C * D /", "NUMBER" },
+                { "A B % C ^ A max", "NUMBER" },
+                { "A abs sqrt B floor + C ceil - A B C clamp +", "NUMBER" },
+                { "A B < C D >= AND A C == OR NOT", "BOOLEAN" },
+                { "A B > C D <= NAND A B != XOR", "BOOLEAN" },
+        };
+        Random random = new Random(44);
+        for (String[] entry : programs) {
+            CompiledExpression program = ExpressionCompiler.compile(entry[0], ValueType.valueOf(entry[1]));
+            ToDoubleFunction<double[]> function = program.asToDoubleFunction();
+            for (int trial = 0; trial < 500; trial++) {
+                double[] slots = new double[program.getSlotCount()];
+                for (int slot = 0; slot < slots.length; slot++) {
+                    slots[slot] = random.nextInt(10) == 0 ? Double.NaN : random.nextInt(7) - 3;
+                }
+                assertSameValue(program.evaluate(slots), function.applyAsDouble(slots), entry[0]);
+            }
+        }
+    }
+
+    @Test
+    void testKleeneLogicMatchesInterpreter() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B AND C OR A NOT B OR AND", ValueType.BOOLEAN);
+        ToDoubleFunction<double[]> function = program.asToDoubleFunction();
+        double[] domain = { CompiledExpression.TRUE, CompiledExpression.FALSE, CompiledExpression.UNKNOWN };
+        for (double a : domain) {
+            for (double b : domain) {
+                for (double c : domain) {
+                    double[] slots = { a, b, c };
+                    assertSameValue(program.evaluate(slots), function.applyAsDouble(slots), a + " " + b + " " + c);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testScalarAdaptersInStreams() throws InvalidExpression {
+        DoubleUnaryOperator square = ExpressionCompiler.compile("X X * 1 +", ValueType.NUMBER).asDoubleUnaryOperator();
+        DoubleBinaryOperator hypot = ExpressionCompiler.compile("X X * Y Y * + sqrt", ValueType.NUMBER)
+                .asDoubleBinaryOperator();
+
+        assertEquals(IntStream.range(0, 10_000).mapToDouble(i -> i * (double) i + 1).sum(),
+                IntStream.range(0, 10_000).parallel().mapToDouble(i -> i).map(square).sum());
+        assertEquals(5.0, hypot.applyAsDouble(3, 4));
+        assertEquals(5.0, DoubleStream.of(3, 4).reduce(0, (a, b) -> hypot.applyAsDouble(a, b)), 1e-12);
+        assertEquals(7.0, ExpressionCompiler.compile("3 4 +", ValueType.NUMBER).asDoubleUnaryOperator()
+                .applyAsDouble(100));
+    }
+
+    @Test
+    void testPredicates() throws InvalidExpression {
+        CompiledExpression range = ExpressionCompiler.compile("X 0 > X 10 < AND", ValueType.BOOLEAN);
+        assertEquals(9, IntStream.range(-20, 20).parallel().mapToDouble(i -> i)
+                .filter(range.asDoublePredicate()).count());
+
+        Predicate<double[]> predicate = ExpressionCompiler.compile("A B >", ValueType.BOOLEAN).asPredicate();
+        assertTrue(predicate.test(new double[] { 2, 1 }));
+        assertFalse(predicate.test(new double[] { 1, 2 }));
+        assertFalse(predicate.test(new double[] { Double.NaN, 2 }));
+    }
+
+    @Test
+    void testDeepProgramsFallBackToInterpreter() throws InvalidExpression {
+        StringBuilder postfix = new StringBuilder("X");
+        for (int i = 0; i < 5_000; i++) {
+            postfix.append(" X +");
+        }
+        CompiledExpression program = ExpressionCompiler.compile(postfix.toString(), ValueType.NUMBER);
+
+        assertEquals(5_001.0, program.asDoubleUnaryOperator().applyAsDouble(1));
+        assertEquals(10_002.0, program.asToDoubleFunction().applyAsDouble(new double[] { 2 }));
+    }
+
+    @Test
+    void testClosureTreesAreBuiltOnce() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B * A -", ValueType.NUMBER);
+
+        assertSame(program.asToDoubleFunction(), program.asToDoubleFunction());
+        assertSame(program.asDoubleBinaryOperator(), program.asDoubleBinaryOperator());
+        assertEquals(4.0, program.asDoubleBinaryOperator().applyAsDouble(2, 3));
+    }
+
+    @Test
+    void testAdapterShapeIsChecked() throws InvalidExpression {
+        CompiledExpression threeVariables = ExpressionCompiler.compile("A B C + +", ValueType.NUMBER);
+
+        assertThrows(IllegalStateException.class, threeVariables::asDoubleUnaryOperator);
+        assertThrows(IllegalStateException.class, threeVariables::asDoubleBinaryOperator);
+        assertThrows(IllegalStateException.class, threeVariables::asPredicate);
+    }
+}
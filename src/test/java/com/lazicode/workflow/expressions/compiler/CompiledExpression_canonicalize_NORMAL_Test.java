@@ -0,0 +1,76 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledExpression_canonicalize_NORMAL_Test {
+
+    private static CompiledExpression canonical(String postfix, ValueType type) throws InvalidExpression {
+        return ExpressionCompiler.compile(postfix, type).canonicalize();
+    }
+
+    @Test
+    void testCommutativeOperandsAreOrdered() throws InvalidExpression {
+        assertEquals(canonical("A B AND", ValueType.BOOLEAN).toString(),
+                canonical("B A AND", ValueType.BOOLEAN).toString());
+        assertEquals(canonical("A B * C +", ValueType.NUMBER).toString(),
+                canonical("C B A * +", ValueType.NUMBER).toString());
+        assertEquals(canonical("X 2 ==", ValueType.BOOLEAN).toString(),
+                canonical("2 X ==", ValueType.BOOLEAN).toString());
+        assertNotEquals(canonical("A B -", ValueType.NUMBER).toString(),
+                canonical("B A -", ValueType.NUMBER).toString());
+    }
+
+    @Test
+    void testAssociativeLogicChainsAreFlattened() throws InvalidExpression {
+        CompiledExpression left = canonical("A B AND C AND D AND", ValueType.BOOLEAN);
+        CompiledExpression right = canonical("D C B A AND AND AND", ValueType.BOOLEAN);
+        CompiledExpression mixed = canonical("B D AND A C AND AND", ValueType.BOOLEAN);
+
+        assertEquals(left.toString(), right.toString());
+        assertEquals(left.toString(), mixed.toString());
+        assertEquals(left.structuralHash(), mixed.structuralHash());
+        assertEquals(2, left.getMaxStack());
+        // Different operators are not merged
+        assertNotEquals(left.toString(), canonical("A B AND C D OR AND", ValueType.BOOLEAN).toString());
+    }
+
+    @Test
+    void testArithmeticChainsAreNotReassociated() throws InvalidExpression {
+        assertNotEquals(canonical("A B + C +", ValueType.NUMBER).toString(),
+                canonical("A B C + +", ValueType.NUMBER).toString());
+    }
+
+    @Test
+    void testCanonicalProgramEvaluatesLikeTheOriginal() throws InvalidExpression {
+        String postfix = "S 0.5 > F AND G NOT OR H F XOR AND T 3 * S + 2 != OR";
+        CompiledExpression program = ExpressionCompiler.compile(postfix, ValueType.BOOLEAN);
+        CompiledExpression canonical = program.canonicalize();
+        assertEquals(program.getCodeLength(), canonical.getCodeLength());
+
+        Random random = new Random(7);
+        double[] choices = { CompiledExpression.TRUE, CompiledExpression.FALSE, CompiledExpression.UNKNOWN };
+        for (int i = 0; i < 1000; i++) {
+            double[] slots = new double[program.getSlotCount()];
+            for (int slot = 0; slot < slots.length; slot++) {
+                slots[slot] = program.getSymbolType(slot) == ValueType.BOOLEAN
+                        ? choices[random.nextInt(3)]
+                        : random.nextInt(4) * 0.25;
+            }
+            assertEquals(program.evaluate(slots), canonical.evaluate(slots));
+        }
+    }
+
+    @Test
+    void testResultTypeIsPartOfTheHash() throws InvalidExpression {
+        assertNotEquals(canonical("A", ValueType.NUMBER).structuralHash(),
+                canonical("A", ValueType.BOOLEAN).structuralHash());
+        assertNotEquals(canonical("A B +", ValueType.NUMBER).structuralHash(),
+                canonical("A C +", ValueType.NUMBER).structuralHash());
+    }
+}
@@ -0,0 +1,100 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledExpression_evaluateLazily_NORMAL_Test {
+
+    private static BooleanSupplier counting(boolean value, AtomicInteger calls) {
+        return () -> {
+            calls.incrementAndGet();
+            return value;
+        };
+    }
+
+    @Test
+    void testDecidedRightOperandIsNotResolved() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B C OR AND", ValueType.BOOLEAN);
+        AtomicInteger a = new AtomicInteger();
+        AtomicInteger b = new AtomicInteger();
+        AtomicInteger c = new AtomicInteger();
+        Map<String, Object> values = new HashMap<>();
+        values.put("A", counting(false, a));
+        values.put("B", counting(true, b));
+        values.put("C", counting(true, c));
+
+        assertEquals(CompiledExpression.FALSE, program.evaluateLazily(program.bindLazily(values)));
+        assertEquals(1, a.get());
+        assertEquals(0, b.get());
+        assertEquals(0, c.get());
+    }
+
+    @Test
+    void testNestedShortCircuitSkipsInnerOperands() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B AND C OR", ValueType.BOOLEAN);
+        AtomicInteger b = new AtomicInteger();
+        AtomicInteger c = new AtomicInteger();
+        Map<String, Object> values = new HashMap<>();
+        values.put("A", (BooleanSupplier) () -> false);
+        values.put("B", counting(true, b));
+        values.put("C", counting(true, c));
+
+        // A false decides the AND, which leaves C to decide the OR
+        assertEquals(CompiledExpression.TRUE, program.evaluateLazily(program.bindLazily(values)));
+        assertEquals(0, b.get());
+        assertEquals(1, c.get());
+    }
+
+    @Test
+    void testRepeatedVariableIsResolvedOnce() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("X X * X +", ValueType.NUMBER);
+        AtomicInteger calls = new AtomicInteger();
+        Map<String, Object> values = new HashMap<>();
+        values.put("X", (DoubleSupplier) () -> {
+            calls.incrementAndGet();
+            return 3.0;
+        });
+
+        assertEquals(12.0, program.evaluateLazily(program.bindLazily(values)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testMissingBindingIsUnknown() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B OR", ValueType.BOOLEAN);
+        Map<String, Object> values = new HashMap<>();
+        values.put("A", (BooleanSupplier) () -> false);
+
+        assertTrue(Double.isNaN(program.evaluateLazily(program.bindLazily(values))));
+    }
+
+    @Test
+    void testMatchesEagerEvaluation() throws InvalidExpression {
+        String[] postfixes = { "A B AND C OR", "A B C OR AND NOT", "A B NAND C NOR", "A B XOR C D AND OR",
+                "A NOT B AND C D OR AND" };
+        Object[] domain = { Boolean.TRUE, Boolean.FALSE, null };
+        Random random = new Random(40);
+        for (String postfix : postfixes) {
+            CompiledExpression program = ExpressionCompiler.compile(postfix, ValueType.BOOLEAN);
+            for (int trial = 0; trial < 200; trial++) {
+                Map<String, Object> values = new HashMap<>();
+                for (String symbol : program.getSymbols()) {
+                    values.put(symbol, domain[random.nextInt(domain.length)]);
+                }
+                double eager = program.evaluate(program.bind(values));
+                double lazy = program.evaluateLazily(program.bindLazily(values));
+                assertEquals(Double.doubleToLongBits(eager), Double.doubleToLongBits(lazy), postfix + " " + values);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.LogicExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionCompiler_NORMAL_Test {
+
+    @Test
+    void testSlotsAreSortedAndConstantsPooled() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("C A 2 * + 2 >", ValueType.BOOLEAN);
+        assertArrayEquals(new String[] { "A", "C" }, program.getSymbols());
+        assertEquals(1, program.getConstantCount());
+        assertEquals(3, program.getMaxStack());
+        assertEquals("C A 2 * + 2 >", program.toString());
+    }
+
+    @Test
+    void testMathExpressionMatchesPostfixMath() throws InvalidExpression {
+        MathExpression expr = new MathExpression("A B * C D / + E F % G ^ -");
+        Map<String, Double> values = new HashMap<>(Map.of(
+                "A", 3.0, "B", 4.0, "C", 8.0, "D", 2.0, "E", 10.0, "F", 3.0, "G", 2.0));
+        CompiledExpression program = expr.compile();
+        assertEquals(15.0, program.evaluate(program.bind(values)), 0.0001);
+    }
+
+    @Test
+    void testDivisionByZeroIsNaN() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B /", ValueType.NUMBER);
+        assertTrue(Double.isNaN(program.evaluate(new double[] { 8.0, 0.0 })));
+    }
+
+    @Test
+    void testLogicExpressionKleeneSemantics() throws InvalidExpression {
+        LogicExpression expr = new LogicExpression("A B AND C OR", true);
+        CompiledExpression program = expr.compile();
+        Map<String, Boolean> values = new HashMap<>();
+        values.put("A", false);
+        values.put("C", true);
+        assertEquals(Boolean.TRUE, CompiledExpression.toBoolean(program.evaluate(program.bind(values))));
+
+        values.put("C", false);
+        assertEquals(Boolean.FALSE, CompiledExpression.toBoolean(program.evaluate(program.bind(values))));
+
+        values.put("A", true);
+        assertNull(CompiledExpression.toBoolean(program.evaluate(program.bind(values))));
+    }
+
+    @Test
+    void testReusableStack() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B XOR NOT", ValueType.BOOLEAN);
+        double[] stack = new double[program.getMaxStack()];
+        assertEquals(CompiledExpression.TRUE, program.evaluate(new double[] { 1.0, 1.0 }, stack));
+        assertEquals(CompiledExpression.FALSE, program.evaluate(new double[] { 1.0, 0.0 }, stack));
+    }
+}
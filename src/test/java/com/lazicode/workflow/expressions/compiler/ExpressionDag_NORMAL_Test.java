@@ -0,0 +1,58 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionDag_NORMAL_Test {
+
+    private static CompiledExpression logic(String postfix) throws InvalidExpression {
+        return ExpressionCompiler.compile(postfix, ValueType.BOOLEAN);
+    }
+
+    @Test
+    void testSharedSubtermsAreStoredOnce() throws InvalidExpression {
+        ExpressionDag dag = new ExpressionDag();
+        int first = dag.add(logic("A B AND C OR"));   // A, B, AND, C, OR
+        int second = dag.add(logic("B A AND C NOT AND")); // reuses A, B, AND, C; adds NOT, AND
+        int third = dag.add(logic("A B AND C OR"));
+
+        assertEquals(7, dag.size());
+        assertEquals(first, third);
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void testEvaluateAllRootsInOnePass() throws InvalidExpression {
+        ExpressionDag dag = new ExpressionDag();
+        int or = dag.add(logic("A B AND C OR"));
+        int andNot = dag.add(logic("A B AND C NOT AND"));
+        int threshold = dag.add(ExpressionCompiler.compile("X 2 * 10 >", ValueType.BOOLEAN));
+
+        double[] values = dag.evaluate(dag.bind(Map.of("A", true, "B", true, "C", false, "X", 6.0)));
+        assertEquals(CompiledExpression.TRUE, values[or]);
+        assertEquals(CompiledExpression.TRUE, values[andNot]);
+        assertEquals(CompiledExpression.TRUE, values[threshold]);
+
+        values = dag.evaluate(dag.bind(Map.of("A", true, "B", false, "C", true, "X", 4.0)));
+        assertEquals(CompiledExpression.TRUE, values[or]);
+        assertEquals(CompiledExpression.FALSE, values[andNot]);
+        assertEquals(CompiledExpression.FALSE, values[threshold]);
+    }
+
+    @Test
+    void testNonCommutativeOperandsAreKept() throws InvalidExpression {
+        ExpressionDag dag = new ExpressionDag();
+        int ab = dag.add(ExpressionCompiler.compile("A B -", ValueType.NUMBER));
+        int ba = dag.add(ExpressionCompiler.compile("B A -", ValueType.NUMBER));
+        assertNotEquals(ab, ba);
+
+        double[] values = dag.evaluate(dag.bind(Map.of("A", 5.0, "B", 3.0)));
+        assertEquals(2.0, values[ab]);
+        assertEquals(-2.0, values[ba]);
+    }
+}
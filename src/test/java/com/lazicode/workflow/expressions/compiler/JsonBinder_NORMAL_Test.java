@@ -0,0 +1,117 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.ComparisonExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonBinder_NORMAL_Test {
+
+    private static byte[] utf8(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> mapping(String... pairs) {
+        Map<String, String> mapping = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            mapping.put(pairs[i], pairs[i + 1]);
+        }
+        return mapping;
+    }
+
+    @Test
+    void testTopLevelFieldsByVariableName() throws InvalidExpression {
+        CompiledExpression program = new ComparisonExpression("(A + B > 10) AND C").compile();
+        JsonBinder binder = JsonBinder.of(program);
+
+        double[] slots = binder.bind(utf8("{\"x\": [1, {\"A\": 99}], \"A\": 4, \"B\": 7.5, \"C\": true}"));
+        assertEquals(4.0, slots[program.slotOf("A")]);
+        assertEquals(7.5, slots[program.slotOf("B")]);
+        assertEquals(CompiledExpression.TRUE, slots[program.slotOf("C")]);
+        assertTrue(program.test(slots));
+    }
+
+    @Test
+    void testNestedPathsAndSkippedValues() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("T * (Q - D)").compile();
+        JsonBinder binder = JsonBinder.of(program,
+                mapping("order.total", "T", "order.lines.count", "Q", "discount", "D"));
+        String json = "{\"id\": \"e-1\\\"}\", \"tags\": [\"a\", \"]}\"], \"order\": {\"currency\": \"EUR\","
+                + " \"total\": 2.5e1, \"lines\": {\"count\": 4}}, \"discount\": 1}";
+
+        assertEquals(75.0, program.evaluate(binder.bind(utf8(json))));
+    }
+
+    @Test
+    void testScanStopsOnceAllFieldsAreRead() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("A + B").compile();
+        JsonBinder binder = JsonBinder.of(program);
+
+        // Everything after B is never scanned, so the broken tail is not noticed
+        assertEquals(3.0, program.evaluate(binder.bind(utf8("{\"B\": 2, \"A\": 1, \"rest\": [[[ not json"))));
+        assertThrows(IllegalArgumentException.class, () -> binder.bind(utf8("{\"A\": 1, \"rest\": [[[ not json")));
+    }
+
+    @Test
+    void testUnusableAndMissingValuesAreUnknown() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("A + B + C + D").compile();
+        JsonBinder binder = JsonBinder.of(program);
+
+        double[] slots = binder.bind(utf8("{\"A\": null, \"B\": \"12\", \"C\": [1]}"));
+        for (String symbol : program.getSymbols()) {
+            assertTrue(Double.isNaN(slots[program.slotOf(symbol)]), symbol);
+        }
+    }
+
+    @Test
+    void testFirstOccurrenceAndEscapedNames() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("A - B").compile();
+        JsonBinder binder = JsonBinder.of(program, mapping("a", "A", "b\"x", "B"));
+
+        double[] slots = binder.bind(utf8("{\"a\": 5, \"a\": 9, \"b\\\"x\": 2}"));
+        assertEquals(3.0, program.evaluate(slots));
+    }
+
+    @Test
+    void testNumbersMatchJsonObject() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("A + B").compile();
+        JsonBinder binder = JsonBinder.of(program);
+        String[] literals = { "0", "-0", "17", "-3.25", "1e3", "1E-7", "0.1", "123456789012345678901234567890",
+                "1.7976931348623157e308", "4.9e-324", "2.2250738585072014E-308", "0.30000000000000004",
+                "9007199254740993", "-12.5e+2" };
+        for (String literal : literals) {
+            double[] slots = binder.bind(utf8("{\"A\": " + literal + ", \"B\": 0}"));
+            assertEquals(Double.parseDouble(literal), slots[program.slotOf("A")], literal);
+        }
+        Random random = new Random(43);
+        for (int i = 0; i < 1000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+            String json = new JSONObject().put("A", value).put("B", random.nextInt()).toString();
+            JSONObject parsed = new JSONObject(json);
+            double[] slots = binder.bind(utf8(json));
+            assertEquals(parsed.getDouble("A"), slots[program.slotOf("A")], json);
+            assertEquals(parsed.getDouble("B"), slots[program.slotOf("B")], json);
+        }
+    }
+
+    @Test
+    void testMalformedJsonIsRejected() throws InvalidExpression {
+        JsonBinder binder = JsonBinder.of(new MathExpression("A + B").compile());
+
+        assertThrows(IllegalArgumentException.class, () -> binder.bind(utf8("[1, 2]")));
+        assertThrows(IllegalArgumentException.class, () -> binder.bind(utf8("{\"A\" 1}")));
+        assertThrows(IllegalArgumentException.class, () -> binder.bind(utf8("{\"A\": 1")));
+        assertThrows(IllegalArgumentException.class, () -> binder.bind(utf8("{\"A\": tru}")));
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonBinder.of(new MathExpression("A + B").compile(), mapping("a..b", "A")));
+    }
+}
@@ -0,0 +1,111 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.ComparisonExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordBinder_NORMAL_Test {
+
+    record Order(double amount, int quantity, boolean priority, Double discount) {
+    }
+
+    static class Account {
+        private final long balance;
+        private final boolean active;
+        public float rate;
+
+        Account(long balance, boolean active, float rate) {
+            this.balance = balance;
+            this.active = active;
+            this.rate = rate;
+        }
+
+        public long getBalance() {
+            return balance;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+    private static Map<String, String> mapping(String... pairs) {
+        Map<String, String> mapping = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            mapping.put(pairs[i], pairs[i + 1]);
+        }
+        return mapping;
+    }
+
+    @Test
+    void testRecordComponentsMatchSetVariable() throws InvalidExpression {
+        ComparisonExpression rule = new ComparisonExpression("(A * Q > 100) AND P");
+        CompiledExpression program = rule.compile();
+        RecordBinder<Order> binder = RecordBinder.of(Order.class, program,
+                mapping("amount", "A", "quantity", "Q", "priority", "P"));
+
+        double[] slots = new double[program.getSlotCount()];
+        double[] stack = new double[program.getMaxStack()];
+        for (Order order : new Order[] { new Order(30.0, 4, true, null), new Order(30.0, 3, true, null),
+                new Order(50.0, 10, false, 0.1) }) {
+            rule.setVariable("A", order.amount());
+            rule.setVariable("Q", (double) order.quantity());
+            rule.setVariable("P", order.priority());
+            assertEquals(rule.getOutput(), CompiledExpression.toBoolean(binder.evaluate(order, slots, stack)));
+        }
+    }
+
+    @Test
+    void testBoxedComponentNullIsUnknown() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("A - A * D").compile();
+        RecordBinder<Order> binder = RecordBinder.of(Order.class, program, mapping("amount", "A", "discount", "D"));
+
+        assertEquals(90.0, program.evaluate(binder.bind(new Order(100.0, 1, false, 0.1))), 1e-9);
+        assertTrue(Double.isNaN(program.evaluate(binder.bind(new Order(100.0, 1, false, null)))));
+    }
+
+    @Test
+    void testPojoGettersAndFields() throws InvalidExpression {
+        CompiledExpression program = new ComparisonExpression("(B * R >= 5) AND F").compile();
+        RecordBinder<Account> binder = RecordBinder.of(Account.class, program,
+                mapping("balance", "B", "rate", "R", "active", "F"));
+
+        double[] slots = binder.bind(new Account(100, true, 0.05f));
+        assertEquals(100.0, slots[program.slotOf("B")]);
+        assertEquals(CompiledExpression.TRUE, slots[program.slotOf("F")]);
+        assertEquals(0.05f, (float) slots[program.slotOf("R")]);
+        assertTrue(program.test(slots));
+        assertFalse(program.test(binder.bind(new Account(100, false, 0.05f))));
+    }
+
+    @Test
+    void testUnmappedSlotsAreLeftAlone() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("A + B").compile();
+        RecordBinder<Order> binder = RecordBinder.of(Order.class, program, mapping("amount", "A"));
+        Map<String, Object> values = new HashMap<>();
+        values.put("B", 2.0);
+
+        double[] slots = program.bind(values);
+        binder.bind(new Order(3.0, 0, false, null), slots);
+        assertEquals(5.0, program.evaluate(slots));
+        assertTrue(Double.isNaN(program.evaluate(binder.bind(new Order(3.0, 0, false, null)))));
+    }
+
+    @Test
+    void testInvalidMappingIsRejected() throws InvalidExpression {
+        CompiledExpression program = new MathExpression("A + B").compile();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> RecordBinder.of(Order.class, program, mapping("missing", "A")));
+        assertThrows(IllegalArgumentException.class,
+                () -> RecordBinder.of(Order.class, program, mapping("amount", "Z")));
+    }
+}
@@ -0,0 +1,70 @@
+package com.lazicode.workflow.expressions.compiler;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorEvaluator_NORMAL_Test {
+
+    private static final String[][] PROGRAMS = {
+            { "A B + C * D /", "NUMBER" },
+            { "A B - C % A B max -", "NUMBER" },
+            { "A abs sqrt B floor + C ceil - A B C clamp + 2 ^", "NUMBER" },
+            { "A B < C D >= AND A C == OR NOT", "BOOLEAN" },
+            { "A B > C D <= NAND A B != XOR D 1 > OR", "BOOLEAN" },
+    };
+
+    private static double[][] columns(Random random, int slots, int rows) {
+        double[][] columns = new double[slots][rows];
+        for (double[] column : columns) {
+            for (int row = 0; row < rows; row++) {
+                column[row] = random.nextInt(15) == 0 ? Double.NaN : random.nextInt(9) - 4;
+            }
+        }
+        return columns;
+    }
+
+    @Test
+    void testContiguousRowsMatchInterpreter() throws InvalidExpression {
+        Random random = new Random(48);
+        for (String[] entry : PROGRAMS) {
+            CompiledExpression program = ExpressionCompiler.compile(entry[0], ValueType.valueOf(entry[1]));
+            double[][] columns = columns(random, program.getSlotCount(), 700);
+            VectorEvaluator evaluator = new VectorEvaluator(program, 256);
+            double[] out = new double[700];
+            for (int from = 0; from < 700; from += 256) {
+                int count = Math.min(256, 700 - from);
+                evaluator.evaluate(columns, null, from, count, out, from);
+            }
+            double[] slots = new double[program.getSlotCount()];
+            for (int row = 0; row < 700; row++) {
+                for (int slot = 0; slot < slots.length; slot++) {
+                    slots[slot] = columns[slot][row];
+                }
+                assertEquals(Double.doubleToLongBits(program.evaluate(slots)), Double.doubleToLongBits(out[row]),
+                        entry[0] + " row " + row);
+            }
+        }
+    }
+
+    @Test
+    void testSelectionVectorIsGathered() throws InvalidExpression {
+        CompiledExpression program = ExpressionCompiler.compile("A B * C +", ValueType.NUMBER);
+        double[][] columns = columns(new Random(7), 3, 100);
+        int[] selection = { 90, 3, 3, 42, 99, 0, 57 };
+        VectorEvaluator evaluator = new VectorEvaluator(program, 8);
+        double[] out = new double[10];
+
+        evaluator.evaluate(columns, selection, 2, 5, out, 1);
+        for (int i = 0; i < 5; i++) {
+            int row = selection[2 + i];
+            double expected = columns[0][row] * columns[1][row] + columns[2][row];
+            assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(out[1 + i]));
+        }
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(columns, null, 0, 9, out, 0));
+    }
+}
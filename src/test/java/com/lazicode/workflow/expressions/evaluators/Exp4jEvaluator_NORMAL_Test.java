@@ -0,0 +1,72 @@
+package com.lazicode.workflow.expressions.evaluators;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.LogicExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.expressions.compiler.ExpressionCompiler;
+import com.lazicode.workflow.expressions.compiler.ValueType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Exp4jEvaluator_NORMAL_Test {
+
+    private static final String[] EXPRESSIONS = {
+            "A + B * C",
+            "(A - B) / C",
+            "A % B + C ^ B",
+            "A ^ B ^ C",
+            "A - B - C",
+            "A / (B - B)",
+    };
+
+    @Test
+    void testBackendsAgreeWithPostfixMath() throws InvalidExpression {
+        Random random = new Random(11);
+        for (String source : EXPRESSIONS) {
+            MathExpression expression = new MathExpression(source);
+            ExpressionEvaluator exp4j = new Exp4jEvaluator(expression.compile());
+            ExpressionEvaluator compiled = new CompiledEvaluator(expression.compile());
+            for (int i = 0; i < 200; i++) {
+                Map<String, Double> values = new HashMap<>();
+                for (String variable : expression.getVariables()) {
+                    values.put(variable, random.nextInt(10) == 0 ? null : (double) random.nextInt(5));
+                }
+                Double expected = PostfixMath.eval(expression.getPostfixExpression(), values);
+                assertEquals(expected, exp4j.evaluate(values), source + " " + values);
+                assertEquals(expected, compiled.evaluate(values), source + " " + values);
+            }
+        }
+    }
+
+    @Test
+    void testEvaluatorIsSelectablePerExpression() throws InvalidExpression {
+        MathExpression expression = new MathExpression("(A + B) / C");
+        expression.setVariable("A", 4.0);
+        expression.setVariable("B", 2.0);
+        expression.setVariable("C", 3.0);
+        assertNull(expression.getEvaluator());
+        assertEquals(2.0, expression.getOutput());
+
+        expression.setEvaluator(new Exp4jEvaluator(expression.compile()));
+        assertEquals(2.0, expression.getOutput());
+        expression.setVariable("C", 0.0);
+        assertTrue(((Double) expression.getOutput()).isNaN());
+
+        expression.setEvaluator(null);
+        assertTrue(((Double) expression.getOutput()).isNaN());
+    }
+
+    @Test
+    void testConstantsAndNonMathProgramsAreTranslated() throws InvalidExpression {
+        assertEquals("((A * 0.5) + 12.0)",
+                Exp4jEvaluator.toInfix(ExpressionCompiler.compile("A 0.5 * 12 +", ValueType.NUMBER)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Exp4jEvaluator(new LogicExpression("A AND B").compile()));
+    }
+}
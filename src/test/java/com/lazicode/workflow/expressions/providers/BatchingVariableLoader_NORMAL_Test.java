@@ -0,0 +1,158 @@
+package com.lazicode.workflow.expressions.providers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.ComparisonExpression;
+import com.lazicode.workflow.expressions.LogicExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchingVariableLoader_NORMAL_Test {
+
+    /**
+     * In-memory stand-in for a slow store that records every bulk fetch.
+     */
+    private static final class InMemoryProvider implements VariableProvider {
+        final Map<String, Object> values = new HashMap<>();
+        final List<Set<String>> fetches = new ArrayList<>();
+
+        @Override
+        public synchronized CompletableFuture<Map<String, Object>> fetch(Set<String> keys) {
+            fetches.add(new HashSet<>(keys));
+            Map<String, Object> found = new HashMap<>();
+            for (String key : keys) {
+                if (values.containsKey(key)) {
+                    found.put(key, values.get(key));
+                }
+            }
+            return CompletableFuture.completedFuture(found);
+        }
+    }
+
+    @Test
+    void testConcurrentEvaluationsShareOneFetch() throws InvalidExpression {
+        InMemoryProvider provider = new InMemoryProvider();
+        provider.values.put("i1.A", true);
+        provider.values.put("i1.B", false);
+        provider.values.put("i2.A", true);
+        provider.values.put("i2.B", true);
+        provider.values.put("i1.X", 3.0);
+        provider.values.put("i1.Y", 4.0);
+        BatchingVariableLoader loader = new BatchingVariableLoader(provider);
+
+        LogicExpression rule = new LogicExpression("A AND B", true);
+        MathExpression score = new MathExpression("X * Y + X");
+        CompletableFuture<Object> first = loader.evaluate(rule, variable -> "i1." + variable);
+        CompletableFuture<Object> second = loader.evaluate(rule, variable -> "i2." + variable);
+        CompletableFuture<Object> third = loader.evaluate(score, variable -> "i1." + variable);
+
+        assertFalse(first.isDone());
+        assertEquals(6, loader.getPendingCount());
+        assertEquals(6, loader.dispatch());
+
+        assertEquals(1, provider.fetches.size());
+        assertEquals(new HashSet<>(Arrays.asList("i1.A", "i1.B", "i2.A", "i2.B", "i1.X", "i1.Y")),
+                provider.fetches.get(0));
+        assertEquals(false, first.join());
+        assertEquals(true, second.join());
+        assertEquals(15.0, third.join());
+        assertEquals(0, loader.dispatch());
+    }
+
+    @Test
+    void testDuplicateKeysAreFetchedOnce() {
+        InMemoryProvider provider = new InMemoryProvider();
+        provider.values.put("K", 1.0);
+        BatchingVariableLoader loader = new BatchingVariableLoader(provider);
+
+        CompletableFuture<Object> a = loader.load("K");
+        CompletableFuture<Object> b = loader.load("K");
+        CompletableFuture<Map<String, Object>> all = loader.loadAll(Arrays.asList("K", "L"));
+        loader.dispatch();
+
+        assertSame(a, b);
+        assertEquals(new HashSet<>(Arrays.asList("K", "L")), provider.fetches.get(0));
+        assertEquals(1.0, all.join().get("K"));
+        assertNull(all.join().get("L"));
+    }
+
+    @Test
+    void testDispatcherBatchesOneTick() throws InvalidExpression {
+        InMemoryProvider provider = new InMemoryProvider();
+        provider.values.put("S", 0.9);
+        provider.values.put("F", true);
+        Queue<Runnable> ticks = new ArrayDeque<>();
+        BatchingVariableLoader loader = new BatchingVariableLoader(provider, ticks::add);
+
+        ComparisonExpression rule = new ComparisonExpression("(S > 0.7) AND F");
+        CompletableFuture<Object> result = loader.evaluate(rule, variable -> variable);
+        loader.load("G");
+
+        assertEquals(1, ticks.size());
+        ticks.poll().run();
+        assertEquals(1, provider.fetches.size());
+        assertEquals(true, result.join());
+
+        // The next load starts a new tick
+        loader.load("S");
+        assertEquals(1, ticks.size());
+    }
+
+    @Test
+    void testMissingValuesAreUnknown() throws InvalidExpression {
+        InMemoryProvider provider = new InMemoryProvider();
+        provider.values.put("A", false);
+        BatchingVariableLoader loader = new BatchingVariableLoader(provider);
+
+        CompletableFuture<Object> decided = loader.evaluate(new LogicExpression("A AND B", true), v -> v);
+        CompletableFuture<Object> unknown = loader.evaluate(new LogicExpression("A OR B", true), v -> v);
+        CompletableFuture<Object> math = loader.evaluate(new MathExpression("B ^ C"), v -> v);
+        loader.dispatch();
+
+        assertEquals(false, decided.join());
+        assertNull(unknown.join());
+        assertTrue(Double.isNaN((Double) math.join()));
+    }
+
+    @Test
+    void testProviderFailureFailsTheBatch() {
+        IllegalStateException failure = new IllegalStateException("store offline");
+        BatchingVariableLoader loader = new BatchingVariableLoader(keys -> CompletableFuture.failedFuture(failure));
+
+        CompletableFuture<Object> a = loader.load("A");
+        CompletableFuture<Object> b = loader.load("B");
+        loader.dispatch();
+
+        CompletionException thrown = assertThrows(CompletionException.class, a::join);
+        assertSame(failure, thrown.getCause());
+        assertTrue(b.isCompletedExceptionally());
+    }
+
+    @Test
+    void testProviderReturningNullFailsTheBatch() {
+        Queue<Runnable> ticks = new ArrayDeque<>();
+        BatchingVariableLoader loader = new BatchingVariableLoader(keys -> null, ticks::add);
+
+        CompletableFuture<Object> a = loader.load("A");
+        CompletableFuture<Object> b = loader.load("B");
+        ticks.poll().run();
+
+        CompletionException thrown = assertThrows(CompletionException.class, a::join);
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+        assertTrue(b.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,63 @@
+package com.lazicode.workflow.node;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.LogicExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+import com.lazicode.workflow.tasks.Task;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VariableIndex_NORMAL_Test {
+
+    private static Node node(String name, Expression expression) {
+        return new Node(name, expression, 0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE) {
+        };
+    }
+
+    @Test
+    void testTaskIndexFollowsAddAndRemove() throws InvalidExpression {
+        Task task = new Task("task") {
+        };
+        Node guard = node("guard", new LogicExpression("A B AND"));
+        Node score = node("score", new MathExpression("A C +"));
+        Node other = node("other", new LogicExpression("D NOT"));
+        task.addNode(guard);
+        task.addNode(score);
+        task.addNode(other);
+
+        VariableIndex index = task.getVariableIndex();
+        assertEquals(Set.of("A", "B", "C", "D"), index.getVariables());
+        assertEquals(List.of(guard, score), List.copyOf(index.getNodes("A")));
+        assertEquals(Set.of(guard), index.getNodes("B"));
+        assertTrue(index.getNodes("N").isEmpty(), "Letters of operator names are not variables");
+
+        task.removeNode(score);
+        assertEquals(Set.of(guard), index.getNodes("A"));
+        assertFalse(index.getVariables().contains("C"));
+        assertEquals(Set.of(guard, other), index.getNodes(List.of("B", "D")));
+    }
+
+    @Test
+    void testSetVariableUpdatesOnlyAffectedExpressions() throws InvalidExpression {
+        LogicExpression shared = new LogicExpression("A B OR");
+        MathExpression unaffected = new MathExpression("C D *");
+        VariableIndex index = new VariableIndex();
+        Node first = node("first", shared);
+        Node second = node("second", shared);
+        index.add(first);
+        index.add(second);
+        index.add(node("third", unaffected));
+
+        assertEquals(1, index.getExpressions("A").size());
+        assertEquals(Set.of(first, second), index.setVariable("A", true));
+        shared.setVariable("B", false);
+        assertEquals(true, shared.getOutput());
+        assertThrows(InvalidExpression.class, () -> unaffected.getVariable("A"));
+    }
+}
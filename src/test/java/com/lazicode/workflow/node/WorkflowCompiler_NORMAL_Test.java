@@ -0,0 +1,55 @@
+package com.lazicode.workflow.node;
+
+import org.junit.jupiter.api.Test;
+
+import com.lazicode.workflow.exceptions.InvalidExpression;
+import com.lazicode.workflow.expressions.Expression;
+import com.lazicode.workflow.expressions.LogicExpression;
+import com.lazicode.workflow.expressions.MathExpression;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkflowCompiler_NORMAL_Test {
+
+    private static Node node(String name, Expression expression) {
+        return new Node(name, expression, 0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE) {
+        };
+    }
+
+    @Test
+    void testCompilesAllReachableNodes() throws InvalidExpression {
+        Node first = node("first", new LogicExpression("A B AND C OR"));
+        Node second = node("second", new LogicExpression("A B AND C NOT AND"));
+        Node score = node("score", new MathExpression("X Y +"));
+        Node empty = new Node("empty") {
+        };
+        first.connect(second);
+        second.connect(score);
+        score.connect(empty);
+
+        WorkflowCompiler compiler = WorkflowCompiler.compile(first);
+        assertEquals(3, compiler.getNodes().size());
+        assertEquals(-1, compiler.rootOf(empty));
+        // A, B, AND, C, OR, NOT, AND, X, Y, +
+        assertEquals(10, compiler.getDag().size());
+
+        Map<Node, Object> outputs = compiler.evaluate(Map.of(
+                "A", true, "B", true, "C", false, "X", 1.5, "Y", 2.0));
+        assertEquals(true, outputs.get(first));
+        assertEquals(true, outputs.get(second));
+        assertEquals(3.5, outputs.get(score));
+    }
+
+    @Test
+    void testUnknownInputsPropagate() throws InvalidExpression {
+        Node guard = node("guard", new LogicExpression("A B AND"));
+        WorkflowCompiler compiler = new WorkflowCompiler();
+        compiler.add(guard);
+
+        assertNull(compiler.evaluate(Map.of("A", true)).get(guard));
+        // A non-short-circuit guard is unknown as soon as one input is, as in the interpreter
+        assertNull(compiler.evaluate(Map.of("A", false)).get(guard));
+    }
+}